@@ -29,6 +29,11 @@ if [ -n "${TEMPLATES_BUCKET}" ]; then
   mc mb --ignore-existing local/"${TEMPLATES_BUCKET}"
 fi
 
+if [ -n "${CAMERA_ARCHIVE_BUCKET}" ]; then
+  echo "Создание бакета: ${CAMERA_ARCHIVE_BUCKET}"
+  mc mb --ignore-existing local/"${CAMERA_ARCHIVE_BUCKET}"
+fi
+
 if [ -n "${LOKI_BUCKET}" ]; then
   echo "Создание бакета: ${LOKI_BUCKET}"
   mc mb --ignore-existing local/"${LOKI_BUCKET}"
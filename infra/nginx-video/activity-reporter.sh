@@ -0,0 +1,38 @@
+#!/bin/sh
+# Пакетный отчёт активности HLS-зрителей для подписанных ссылок.
+# nginx пишет id камеры на каждый запрос в ACTIVITY_LOG; раз в REPORT_INTERVAL_SECONDS
+# скрипт берёт новые строки, схлопывает до уникальных камер и шлёт одним POST в building-service.
+
+ACTIVITY_LOG="${ACTIVITY_LOG:-/var/log/nginx/hls-activity/activity.log}"
+REPORT_URL="${REPORT_URL:-http://building-service:8091/internal/video/activity}"
+REPORT_INTERVAL_SECONDS="${REPORT_INTERVAL_SECONDS:-15}"
+MAX_LOG_BYTES="${MAX_LOG_BYTES:-10485760}"
+
+offset=0
+while true; do
+  sleep "$REPORT_INTERVAL_SECONDS"
+  [ -f "$ACTIVITY_LOG" ] || continue
+
+  size=$(wc -c < "$ACTIVITY_LOG")
+  # файл усечён (нами или вручную) — читаем с начала
+  [ "$size" -lt "$offset" ] && offset=0
+  [ "$size" -eq "$offset" ] && continue
+
+  ids=$(tail -c +"$((offset + 1))" "$ACTIVITY_LOG" | head -c "$((size - offset))" \
+    | grep -E '^[0-9a-fA-F-]{36}$' | sort -u | sed 's/.*/"&"/' | paste -sd, -)
+  offset=$size
+
+  if [ -n "$ids" ]; then
+    wget -q -O /dev/null \
+      --header "Content-Type: application/json" \
+      --header "X-Video-Secret: ${VIDEO_INTERNAL_SECRET}" \
+      --post-data "{\"cameraIds\":[${ids}]}" \
+      "$REPORT_URL" || echo "activity report failed" >&2
+  fi
+
+  # nginx пишет с O_APPEND, поэтому усечение безопасно
+  if [ "$size" -gt "$MAX_LOG_BYTES" ]; then
+    : > "$ACTIVITY_LOG"
+    offset=0
+  fi
+done
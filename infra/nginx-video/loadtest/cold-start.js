@@ -0,0 +1,104 @@
+// Бенчмарк холодного старта камеры: время до первого кадра (загружен первый сегмент плейлиста).
+//
+// Запуск (TOKEN — JWT менеджера стройки: нужен для /stop между итерациями):
+//   k6 run -e BASE_URL=http://localhost:8088 -e TOKEN=<jwt> \
+//          -e BUILDING_ID=<uuid> -e CAMERA_ID=<uuid> infra/nginx-video/loadtest/cold-start.js
+//
+// Сценарии идут последовательно, по ITERATIONS итераций:
+//   poll — старое поведение: /stream сразу, затем опрос плейлиста до 200 (считаются 404);
+//   wait — /stream?waitReady=true, ответ после появления плейлиста;
+//   warm — поток уже запущен (как после прогрева), без остановки между итерациями.
+// Сравнивайте ttff_ms{scenario:...} и playlist_404.
+
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8088';
+const API_URL = __ENV.API_URL || 'http://localhost:8091';
+const TOKEN = __ENV.TOKEN;
+const BUILDING_ID = __ENV.BUILDING_ID;
+const CAMERA_ID = __ENV.CAMERA_ID;
+const ITERATIONS = Number(__ENV.ITERATIONS || 10);
+const POLL_MS = Number(__ENV.POLL_MS || 250);
+
+const ttff = new Trend('ttff_ms', true);
+const playlist404 = new Counter('playlist_404');
+
+function scenario(exec, startTime) {
+  return { executor: 'per-vu-iterations', exec, vus: 1, iterations: ITERATIONS, startTime, maxDuration: '10m' };
+}
+
+export const options = {
+  scenarios: {
+    poll: scenario('poll', '0s'),
+    wait: scenario('wait', '10m'),
+    warm: scenario('warm', '20m'),
+  },
+};
+
+function authHeaders() {
+  return { headers: { Authorization: `Bearer ${TOKEN}` } };
+}
+
+function stopCamera() {
+  http.post(`${API_URL}/${BUILDING_ID}/cameras/${CAMERA_ID}/stop`, null, authHeaders());
+  sleep(1);
+}
+
+function firstSegment(playlist) {
+  const line = playlist.split('\n').find((l) => l && !l.startsWith('#'));
+  return line ? line.trim() : null;
+}
+
+// Плейлист → (для ABR) первый вариант → первый сегмент.
+function fetchFirstFrame(playlistUrl, params) {
+  let url = playlistUrl;
+  for (let depth = 0; depth < 2; depth++) {
+    const res = http.get(url, params);
+    if (res.status !== 200) {
+      playlist404.add(1);
+      return false;
+    }
+    const next = firstSegment(res.body || '');
+    if (!next) return false;
+    url = url.substring(0, url.lastIndexOf('/') + 1) + next;
+    if (!next.endsWith('.m3u8')) break;
+  }
+  return http.get(url, params).status === 200;
+}
+
+function stream(waitReady) {
+  const res = http.get(
+    `${BASE_URL}/api/video/stream?buildingId=${BUILDING_ID}&cameraId=${CAMERA_ID}&waitReady=${waitReady}`,
+    authHeaders(),
+  );
+  check(res, { 'stream 200': (r) => r.status === 200 });
+  return res.json('hlsUrl');
+}
+
+function measure(waitReady) {
+  const started = Date.now();
+  const playlistUrl = `${BASE_URL}${stream(waitReady)}`;
+  const params = playlistUrl.includes('/hls/s/') ? {} : authHeaders();
+  while (!fetchFirstFrame(playlistUrl, params)) {
+    if (Date.now() - started > 60_000) return;
+    sleep(POLL_MS / 1000);
+  }
+  ttff.add(Date.now() - started);
+}
+
+export function poll() {
+  stopCamera();
+  measure(false);
+}
+
+export function wait() {
+  stopCamera();
+  measure(true);
+}
+
+export function warm() {
+  measure(false);
+  sleep(1);
+}
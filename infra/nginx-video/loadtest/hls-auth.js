@@ -0,0 +1,82 @@
+// Нагрузочный тест раздачи HLS-сегментов: auth_request (JWT) против подписанных ссылок (secure_link).
+//
+// Запуск (поток камеры должен быть запущен, building-service с VIDEO_HLS_TOKEN_SECRET):
+//   k6 run -e BASE_URL=http://localhost:8088 -e TOKEN=<jwt> \
+//          -e BUILDING_ID=<uuid> -e CAMERA_ID=<uuid> infra/nginx-video/loadtest/hls-auth.js
+//
+// Сценарии идут последовательно с одинаковой нагрузкой; сравнивайте
+// http_reqs и http_req_duration в разрезе {scenario:subrequest} и {scenario:token}.
+
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8088';
+const TOKEN = __ENV.TOKEN;
+const BUILDING_ID = __ENV.BUILDING_ID;
+const CAMERA_ID = __ENV.CAMERA_ID;
+const VUS = Number(__ENV.VUS || 50);
+const DURATION = __ENV.DURATION || '60s';
+
+export const options = {
+  scenarios: {
+    subrequest: {
+      executor: 'constant-vus',
+      exec: 'subrequest',
+      vus: VUS,
+      duration: DURATION,
+    },
+    token: {
+      executor: 'constant-vus',
+      exec: 'token',
+      vus: VUS,
+      duration: DURATION,
+      startTime: DURATION,
+    },
+  },
+  thresholds: {
+    'http_req_failed{scenario:subrequest}': ['rate<0.01'],
+    'http_req_failed{scenario:token}': ['rate<0.01'],
+  },
+};
+
+function authHeaders() {
+  return { headers: { Authorization: `Bearer ${TOKEN}` } };
+}
+
+function lastSegment(playlist) {
+  const lines = playlist.split('\n').filter((l) => l.endsWith('.ts'));
+  return lines[lines.length - 1];
+}
+
+export function setup() {
+  const stream = http.get(
+    `${BASE_URL}/api/video/stream?buildingId=${BUILDING_ID}&cameraId=${CAMERA_ID}`,
+    authHeaders(),
+  );
+  const signedPlaylist = stream.json('hlsUrl');
+  if (!signedPlaylist || !signedPlaylist.startsWith('/hls/s/')) {
+    throw new Error(`hlsUrl is not signed: ${signedPlaylist} (set VIDEO_HLS_TOKEN_SECRET)`);
+  }
+  return {
+    plainDir: `/hls/${BUILDING_ID}/${CAMERA_ID}/`,
+    signedDir: signedPlaylist.substring(0, signedPlaylist.lastIndexOf('/') + 1),
+  };
+}
+
+function fetchSegment(dir, params) {
+  const playlist = http.get(`${BASE_URL}${dir}index.m3u8`, params);
+  check(playlist, { 'playlist 200': (r) => r.status === 200 });
+  const segment = lastSegment(playlist.body || '');
+  if (!segment) return;
+  const res = http.get(`${BASE_URL}${dir}${segment}`, params);
+  // сегмент мог быть удалён ffmpeg (delete_segments) между запросами — это не ошибка авторизации
+  check(res, { 'segment served': (r) => r.status === 200 || r.status === 404 });
+}
+
+export function subrequest(data) {
+  fetchSegment(data.plainDir, authHeaders());
+}
+
+export function token(data) {
+  fetchSegment(data.signedDir, {});
+}
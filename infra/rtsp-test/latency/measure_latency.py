@@ -0,0 +1,202 @@
+#!/usr/bin/env python3
+"""Замер задержки glass-to-glass для видеопотоков стройки.
+
+publish  — публикует в mediamtx (infra/rtsp-test) тестовый поток, в верхней полосе которого
+           закодированы миллисекунды настенных часов (32 блока 16x16, бит на блок).
+measure  — читает поток так же, как плеер (HLS: сегменты; LL-HLS: preload hint + блокирующая
+           перезагрузка), декодирует кадры ffmpeg и для каждого кадра считает now - метка.
+
+Замеряется задержка до декодированного кадра у клиента; плеер добавляет к ней буфер
+(PART-HOLD-BACK для LL-HLS, 3 x TARGETDURATION для обычного HLS) — он выводится отдельной строкой.
+Часы publish и measure должны совпадать (запускайте на одной машине).
+
+Пример:
+  ./measure_latency.py publish --rtsp rtsp://localhost:8554/latency
+  # камера с rtspUrl=rtsp://rtsp-server:8554/latency, transcode=true, lowLatency=true|false
+  ./measure_latency.py measure --url "http://localhost:8088/hls/s/<token>/<exp>/<b>/<c>/index.m3u8" --seconds 60
+  ./measure_latency.py measure --url rtsp://localhost:8554/latency --seconds 20   # базовая линия источника
+"""
+import argparse
+import statistics
+import subprocess
+import sys
+import threading
+import time
+import urllib.parse
+import urllib.request
+
+BITS = 32
+BLOCK = 16
+
+
+def publish(args):
+    start_ms = int(time.time() * 1000) % (1 << 32)
+    stamp = (f"if(lt(Y,{BLOCK}),"
+             f"if(lt(X,{BITS * BLOCK}),255*mod(floor(({start_ms}+T*1000)/pow(2,floor(X/{BLOCK}))),2),128),"
+             f"lum(X,Y))")
+    cmd = ["ffmpeg", "-hide_banner", "-loglevel", "warning", "-re",
+           "-f", "lavfi", "-i", "testsrc2=size=640x360:rate=25",
+           "-vf", f"geq=lum='{stamp}':cb='cb(X,Y)':cr='cr(X,Y)'",
+           "-c:v", "libx264", "-preset", "veryfast", "-tune", "zerolatency", "-pix_fmt", "yuv420p",
+           "-g", "25", "-f", "rtsp", "-rtsp_transport", "tcp", args.rtsp]
+    print("publishing to", args.rtsp, file=sys.stderr)
+    return subprocess.call(cmd)
+
+
+def decoder(input_format):
+    cmd = ["ffmpeg", "-hide_banner", "-loglevel", "error",
+           "-fflags", "nobuffer", "-flags", "low_delay", "-probesize", "32768", "-analyzeduration", "0"]
+    if input_format:
+        cmd += ["-f", input_format]
+    cmd += ["-i", "pipe:0",
+            "-vf", f"crop={BITS * BLOCK}:{BLOCK}:0:0,scale={BITS}:1:flags=area",
+            "-f", "rawvideo", "-pix_fmt", "gray", "pipe:1"]
+    return cmd
+
+
+def read_frames(stdout, samples, deadline):
+    while time.time() < deadline:
+        row = stdout.read(BITS)
+        if len(row) < BITS:
+            return
+        now_ms = int(time.time() * 1000) % (1 << 32)
+        stamp = sum(1 << i for i, v in enumerate(row) if v > 127)
+        latency = (now_ms - stamp) % (1 << 32)
+        if latency < 60_000:
+            samples.append(latency)
+
+
+def get(url):
+    with urllib.request.urlopen(url, timeout=30) as r:
+        return r.read()
+
+
+def with_query(url, **params):
+    parts = urllib.parse.urlsplit(url)
+    query = urllib.parse.urlencode(params)
+    return urllib.parse.urlunsplit(parts._replace(query=query))
+
+
+def parse_playlist(text):
+    """Возвращает (tags, entries): entries — [(msn, part_index|None, uri)] в порядке плейлиста."""
+    tags, entries = {}, []
+    msn, part = 0, 0
+    pending_inf = False
+    for line in text.splitlines():
+        line = line.strip()
+        if line.startswith("#EXT-X-MEDIA-SEQUENCE:"):
+            msn = int(line.split(":", 1)[1])
+        elif line.startswith("#EXT-X-PART:"):
+            uri = line.split('URI="', 1)[1].split('"', 1)[0]
+            entries.append((msn, part, uri))
+            part += 1
+        elif line.startswith("#EXTINF:"):
+            pending_inf = True
+        elif line.startswith("#") and ":" in line:
+            key, value = line.split(":", 1)
+            tags[key] = value
+        elif line and not line.startswith("#") and pending_inf:
+            entries.append((msn, None, line))
+            msn, part, pending_inf = msn + 1, 0, False
+    return tags, entries
+
+
+def attr(value, name):
+    for item in (value or "").split(","):
+        if item.startswith(name + "="):
+            return item.split("=", 1)[1].strip('"')
+    return None
+
+
+def feed_hls(url, sink, deadline):
+    tags, entries = parse_playlist(get(url).decode())
+    low_latency = "#EXT-X-PART-INF" in tags
+    init = attr(tags.get("#EXT-X-MAP"), "URI")
+    if init:
+        sink.write(get(urllib.parse.urljoin(url, init)))
+
+    if low_latency:
+        hold_back = float(attr(tags["#EXT-X-SERVER-CONTROL"], "PART-HOLD-BACK"))
+        parts = [e for e in entries if e[1] is not None]
+        msn, part, uri = parts[-1]
+        # начинаем с ближайшей независимой части, как плеер
+        for e in reversed(parts):
+            if e[1] == 0:
+                msn, part, uri = e
+                break
+        for e in parts[parts.index((msn, part, uri)):]:
+            sink.write(get(urllib.parse.urljoin(url, e[2])))
+            msn, part = e[0], e[1]
+        while time.time() < deadline:
+            tags, _ = parse_playlist(get(with_query(url, _HLS_msn=msn, _HLS_part=part + 1)).decode())
+            hint = attr(tags.get("#EXT-X-PRELOAD-HINT"), "URI")
+            sink.write(get(urllib.parse.urljoin(url, hint)))  # блокируется, пока часть не готова
+            part += 1
+        return hold_back, "LL-HLS"
+
+    target = float(tags["#EXT-X-TARGETDURATION"])
+    seen = set()
+    segments = [e for e in entries if e[1] is None]
+    for msn, _, uri in segments[-1:]:
+        sink.write(get(urllib.parse.urljoin(url, uri)))
+        seen.add(msn)
+    while time.time() < deadline:
+        time.sleep(target / 4)
+        _, entries = parse_playlist(get(url).decode())
+        for msn, part, uri in entries:
+            if part is None and msn not in seen and msn > max(seen):
+                sink.write(get(urllib.parse.urljoin(url, uri)))
+                seen.add(msn)
+    return 3 * target, "HLS"
+
+
+def measure(args):
+    deadline = time.time() + args.seconds
+    samples = []
+    is_rtsp = args.url.startswith("rtsp://")
+    if is_rtsp:
+        cmd = decoder(None)
+        cmd[cmd.index("pipe:0")] = args.url
+        cmd[cmd.index("-i"):cmd.index("-i")] = ["-rtsp_transport", "tcp"]
+        proc = subprocess.Popen(cmd, stdout=subprocess.PIPE)
+        read_frames(proc.stdout, samples, deadline)
+        proc.kill()
+        hold_back, mode = 0.0, "RTSP"
+    else:
+        proc = subprocess.Popen(decoder(None), stdin=subprocess.PIPE, stdout=subprocess.PIPE)
+        reader = threading.Thread(target=read_frames, args=(proc.stdout, samples, deadline), daemon=True)
+        reader.start()
+        try:
+            hold_back, mode = feed_hls(args.url, proc.stdin, deadline)
+        finally:
+            proc.stdin.close()
+            reader.join(timeout=5)
+            proc.kill()
+
+    if not samples:
+        print("no timestamped frames decoded (is the camera fed by `publish`?)", file=sys.stderr)
+        return 1
+    samples.sort()
+    p95 = samples[min(len(samples) - 1, int(len(samples) * 0.95))]
+    print(f"mode={mode} frames={len(samples)}")
+    print(f"decoded latency ms: p50={statistics.median(samples):.0f} p95={p95} "
+          f"min={samples[0]} max={samples[-1]}")
+    print(f"glass-to-glass estimate ms (+player hold-back {hold_back:.3f}s): "
+          f"p50={statistics.median(samples) + hold_back * 1000:.0f}")
+    return 0
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    sub = parser.add_subparsers(dest="command", required=True)
+    p = sub.add_parser("publish")
+    p.add_argument("--rtsp", default="rtsp://localhost:8554/latency")
+    m = sub.add_parser("measure")
+    m.add_argument("--url", required=True)
+    m.add_argument("--seconds", type=int, default=60)
+    args = parser.parse_args()
+    return publish(args) if args.command == "publish" else measure(args)
+
+
+if __name__ == "__main__":
+    sys.exit(main())
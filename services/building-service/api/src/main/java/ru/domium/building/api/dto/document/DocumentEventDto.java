@@ -0,0 +1,23 @@
+package ru.domium.building.api.dto.document;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Событие жизненного цикла документа из outbox document-service.
+ * Несёт полное состояние документа; {@code seq} растёт с каждым изменением документа.
+ */
+@Data
+public class DocumentEventDto {
+    private UUID eventId;
+    private long seq;
+    private String type;
+    private UUID documentId;
+    private UUID projectId;
+    private UUID stageCode;
+    private String groupType;
+    private String status;
+    private Instant occurredAt;
+}
@@ -0,0 +1,45 @@
+package ru.domium.building.api.dto.feed;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Событие ленты изменений стройки (SSE)")
+public class BuildingFeedEventDto {
+    @Schema(description = "Id события: эпоха запуска узла и порядковый номер; его же клиент передаёт в Last-Event-ID "
+            + "при переподключении", example = "3f9a1c0d5e7b2a64-42")
+    private String id;
+
+    @Schema(description = "Тип события", example = "STAGE_ADVANCED")
+    private String type;
+
+    @Schema(description = "Идентификатор стройки")
+    private UUID buildingId;
+
+    @Schema(description = "Время события (UTC)")
+    private Instant at;
+
+    @Schema(description = "Новый текущий этап (STAGE_ADVANCED)")
+    private UUID stageId;
+
+    @Schema(description = "Название нового этапа (STAGE_ADVANCED)")
+    private String stageName;
+
+    @Schema(description = "Прогресс стройки после изменения, %")
+    private Integer progress;
+
+    @Schema(description = "Отмеченные виды работ (WORK_ITEMS_COMPLETED)")
+    private List<UUID> workItemIds;
+
+    @Schema(description = "Камера (CAMERA_STATE)")
+    private UUID cameraId;
+
+    @Schema(description = "Идёт ли трансляция камеры (CAMERA_STATE)")
+    private Boolean running;
+}
@@ -19,4 +19,7 @@ public class ObjectInfoDto {
 
     @Schema(description = "Прогресс 0..100")
     private int progress;
+
+    @Schema(description = "Статус стройки", example = "ACTIVE")
+    private String status;
 }
@@ -0,0 +1,16 @@
+package ru.domium.building.api.dto.project;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Schema(description = "Страница списка строек (курсорная пагинация)")
+public class ProjectPageDto {
+    @Schema(description = "Стройки страницы, от недавно изменённых к давним")
+    private List<ProjectDto> items;
+
+    @Schema(description = "Курсор следующей страницы; null — страница последняя")
+    private String nextCursor;
+}
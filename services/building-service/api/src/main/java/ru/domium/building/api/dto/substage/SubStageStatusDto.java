@@ -25,6 +25,12 @@ public class SubStageStatusDto {
     @Schema(description = "Флаг завершения подэтапа")
     private boolean completed;
 
+    @Schema(description = "Выполнено видов работ подэтапа", example = "3")
+    private int completedWorkItems;
+
+    @Schema(description = "Всего видов работ подэтапа", example = "5")
+    private int totalWorkItems;
+
     @Schema(description = "Время завершения (UTC), если завершён")
     private Instant completedAt;
 
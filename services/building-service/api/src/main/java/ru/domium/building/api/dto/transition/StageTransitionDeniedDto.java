@@ -13,6 +13,12 @@ public class StageTransitionDeniedDto {
     @Schema(description = "Идентификатор стройки", example = "8f1d6d18-1bfb-4a8a-95c9-6bfe0c2e8a0b")
     private UUID buildingId;
 
+    @Schema(description = "Текущий этап стройки (если запрет вызван тем, что этап уже сменился)")
+    private UUID currentStageId;
+
+    @Schema(description = "Название текущего этапа")
+    private String currentStageName;
+
     @Schema(description = "Список нарушений (причин запрета)")
     private List<TransitionViolationDto> violations = new ArrayList<>();
 }
@@ -2,6 +2,7 @@ package ru.domium.building.api.dto.video;
 
 import lombok.Data;
 
+import java.util.List;
 import java.util.UUID;
 
 @Data
@@ -11,13 +12,26 @@ public class CameraDto {
     private String name;
     private boolean enabled;
     private boolean transcode;
+    private boolean lowLatency;
+    private boolean archive;
 
     /**
-     * Относительный URL плейлиста (m3u8), например: /hls/{buildingId}/{cameraId}/index.m3u8
+     * Варианты качества (ABR). Пусто — одна дорожка.
+     */
+    private List<String> renditions;
+
+    /**
+     * Относительный URL плейлиста (m3u8), например: /hls/{buildingId}/{cameraId}/index.m3u8.
+     * При ABR это master-плейлист со ссылками на варианты.
      */
     private String hlsUrl;
 
     private boolean running;
+
+    /**
+     * Плейлист уже записан и его можно открывать в плеере. Заполняется только в /stream.
+     */
+    private Boolean ready;
 }
 
 
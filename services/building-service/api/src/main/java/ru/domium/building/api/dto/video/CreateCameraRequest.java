@@ -2,6 +2,8 @@ package ru.domium.building.api.dto.video;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class CreateCameraRequest {
     private String name;
@@ -10,6 +12,20 @@ public class CreateCameraRequest {
      * Если камера отдаёт H265/нестабильный GOP — включите перекодирование в H264.
      */
     private Boolean transcode;
+    /**
+     * Лестница качеств (ABR), например ["720p", "480p", "360p"]. Требует transcode=true.
+     * Один процесс ffmpeg пишет все варианты и master-плейлист.
+     */
+    private List<String> renditions;
+    /**
+     * LL-HLS (задержка ~1-2с): CMAF-части, EXT-X-PART, блокирующая перезагрузка плейлиста.
+     * Требует transcode=true и одну дорожку (без renditions).
+     */
+    private Boolean lowLatency;
+    /**
+     * Архив: снимок раз в минуту (по умолчанию) в MinIO и суточный таймлапс MP4. Работает независимо от онлайн-потока.
+     */
+    private Boolean archive;
 }
 
 
@@ -0,0 +1,14 @@
+package ru.domium.building.api.dto.video;
+
+import lombok.Data;
+
+/**
+ * Ответ узла-владельца на внутренний запуск потока (другой узел ждёт по нему первый плейлист).
+ */
+@Data
+public class StreamStartedDto {
+    /**
+     * Время запуска текущего процесса ffmpeg; пусто — поток ждёт перезапуска.
+     */
+    private Long startedAtMs;
+}
@@ -0,0 +1,14 @@
+package ru.domium.building.api.dto.video;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class TimelapseDto {
+    /**
+     * Сутки архива (в часовом поясе domium.video.archive.zone).
+     */
+    private LocalDate date;
+    private long sizeBytes;
+}
@@ -0,0 +1,14 @@
+package ru.domium.building.api.dto.video;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Пакетный отчёт об активности HLS-зрителей (камеры, по которым были запросы за период).
+ */
+@Data
+public class VideoActivityReport {
+    private List<UUID> cameraIds;
+}
@@ -0,0 +1,14 @@
+package ru.domium.building.api.dto.workitem;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Schema(description = "Запрос на отметку нескольких видов работ (work items) текущей стадии как выполненных")
+public class CompleteWorkItemsRequest {
+    @Schema(description = "Идентификаторы видов работ; уже выполненные пропускаются")
+    private List<UUID> workItemIds;
+}
@@ -1,32 +1,102 @@
 package ru.domium.building.client;
 
-import java.util.List;
-import java.util.UUID;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Клиент document-service.
+ * <p>
+ * Экземпляры берутся из discovery и кешируются на {@code instance-cache-ms}; запросы распределяются по ним
+ * по кругу. У каждого экземпляра свой circuit breaker: открытый экземпляр пропускается. 5xx и сетевые ошибки
+ * повторяются (не больше {@code max-attempts}, пауза с jitter) на следующем экземпляре; 4xx не повторяются.
+ * Если все попытки неудачны — {@code 503}. Латентность и ошибки — {@code documents_client_requests_seconds{instance,outcome}}.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class DocumentServiceClient {
+    private static final String INSTANCES_KEY = "instances";
+
     private final DiscoveryClient discoveryClient;
     private final RestTemplate restTemplate;
+    private final DocumentServiceClientProperties props;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreakerRegistry breakers;
+    private final Cache<String, List<ServiceInstance>> instances;
+    private final AtomicInteger nextInstance = new AtomicInteger();
+
+    public DocumentServiceClient(DiscoveryClient discoveryClient,
+                                 RestTemplate restTemplate,
+                                 DocumentServiceClientProperties props,
+                                 MeterRegistry meterRegistry) {
+        this.discoveryClient = discoveryClient;
+        this.restTemplate = restTemplate;
+        this.props = props;
+        this.meterRegistry = meterRegistry;
+        DocumentServiceClientProperties.Breaker breaker = props.getBreaker();
+        this.breakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(breaker.getSlidingWindowSize())
+                .minimumNumberOfCalls(breaker.getMinimumCalls())
+                .failureRateThreshold(breaker.getFailureRateThreshold())
+                .waitDurationInOpenState(Duration.ofMillis(breaker.getOpenStateMs()))
+                .permittedNumberOfCallsInHalfOpenState(breaker.getHalfOpenCalls())
+                .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(breakers).bindTo(meterRegistry);
+        this.instances = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(Math.max(1, props.getInstanceCacheMs())))
+                .build();
+    }
+
+    /**
+     * Счётчики документов этапа по статусам без выгрузки самих документов
+     * ({@code GET /projects/{projectId}/documents/status-counts}).
+     */
+    public StageStatusCounts stageStatusCounts(UUID projectId, UUID stageId, List<String> excludeGroupTypes, String bearerToken) {
+        StringBuilder path = new StringBuilder("/projects/").append(projectId)
+            .append("/documents/status-counts?stage=").append(stageId);
+        for (String groupType : excludeGroupTypes) path.append("&excludeGroupType=").append(groupType);
+        return get(path.toString(), bearerToken, StageStatusCounts.class).orElseGet(StageStatusCounts::empty);
+    }
 
-    public List<DocumentInstanceDto> listStageDocuments(UUID projectId, UUID stageId, String bearerToken) {
-        String baseUrl = resolveBaseUrl();
-        if (baseUrl == null) return List.of();
-        String url = baseUrl + "/projects/" + projectId + "/documents?stage=" + stageId;
+    /**
+     * GET к document-service. Пусто — document-service не зарегистрирован в discovery (не развёрнут)
+     * или ответил без тела.
+     */
+    private <T> Optional<T> get(String path, String bearerToken, Class<T> type) {
+        List<ServiceInstance> candidates = instances.get(INSTANCES_KEY, k -> discoverInstances());
+        if (candidates.isEmpty()) {
+            log.warn("No document-service instances registered as {}", props.getServiceIds());
+            return Optional.empty();
+        }
 
         HttpHeaders headers = new HttpHeaders();
         if (bearerToken != null && !bearerToken.isBlank()) {
@@ -34,38 +104,101 @@ public class DocumentServiceClient {
         }
         HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-        try {
-            ResponseEntity<List<DocumentInstanceDto>> response = restTemplate.exchange(
-                url,
-                HttpMethod.GET,
-                entity,
-                new ParameterizedTypeReference<>() {}
-            );
-            return response.getBody() == null ? List.of() : response.getBody();
-        } catch (RestClientException e) {
-            log.warn("Failed to fetch documents for project {} stage {}: {}", projectId, stageId, e.getMessage());
-            return List.of();
+        int attempts = Math.max(1, props.getMaxAttempts());
+        RuntimeException lastError = null;
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            if (attempt > 1) backoff(attempt);
+            ServiceInstance instance = pick(candidates);
+            if (instance == null) {
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "All document-service instances are failing", lastError);
+            }
+            CircuitBreaker breaker = breaker(instance);
+            long start = System.nanoTime();
+            String outcome = "success";
+            try {
+                T body = restTemplate.exchange(baseUrl(instance) + path, HttpMethod.GET, entity, type).getBody();
+                breaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return Optional.ofNullable(body);
+            } catch (HttpClientErrorException e) {
+                // ответ экземпляра корректен: ошибка в запросе, повтор не поможет
+                outcome = "client_error";
+                breaker.onSuccess(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            } catch (HttpServerErrorException | ResourceAccessException e) {
+                outcome = e instanceof ResourceAccessException ? "io_error" : "server_error";
+                breaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                lastError = e;
+                log.warn("document-service {} failed (attempt {}/{}): {}", instanceKey(instance), attempt, attempts, e.getMessage());
+            } catch (RuntimeException e) {
+                outcome = "error";
+                breaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                throw e;
+            } finally {
+                timer(instance, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
         }
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                "document-service request failed after " + attempts + " attempts", lastError);
     }
 
-    private String resolveBaseUrl() {
-        List<ServiceInstance> instances = discoveryClient.getInstances("documents");
-        if (instances == null || instances.isEmpty()) {
-            instances = discoveryClient.getInstances("document-service");
+    private List<ServiceInstance> discoverInstances() {
+        for (String serviceId : props.getServiceIds()) {
+            List<ServiceInstance> found = discoveryClient.getInstances(serviceId);
+            if (found != null && !found.isEmpty()) return List.copyOf(found);
         }
-        if (instances == null || instances.isEmpty()) return null;
-        ServiceInstance instance = instances.getFirst();
-        return "http://" + instance.getHost() + ":" + instance.getPort();
+        return List.of();
     }
 
-    @Data
-    public static class DocumentInstanceDto {
-        private String status;
-        private GroupInfo group;
+    /**
+     * Следующий по кругу экземпляр, чей breaker пропускает вызов; null — все открыты.
+     */
+    private ServiceInstance pick(List<ServiceInstance> candidates) {
+        for (int i = 0; i < candidates.size(); i++) {
+            ServiceInstance candidate = candidates.get(Math.floorMod(nextInstance.getAndIncrement(), candidates.size()));
+            if (breaker(candidate).tryAcquirePermission()) return candidate;
+        }
+        return null;
+    }
+
+    private void backoff(int attempt) {
+        long cap = Math.min(props.getRetryMaxBackoffMs(), props.getRetryBackoffMs() << Math.min(attempt - 2, 20));
+        if (cap <= 0) return;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "document-service request interrupted");
+        }
+    }
+
+    private CircuitBreaker breaker(ServiceInstance instance) {
+        return breakers.circuitBreaker("documents-" + instanceKey(instance));
+    }
+
+    private Timer timer(ServiceInstance instance, String outcome) {
+        return Timer.builder("documents.client.requests")
+                .description("document-service call time per target instance")
+                .tag("instance", instanceKey(instance))
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String baseUrl(ServiceInstance instance) {
+        return "http://" + instanceKey(instance);
+    }
+
+    private static String instanceKey(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
     }
 
     @Data
-    public static class GroupInfo {
-        private String type;
+    public static class StageStatusCounts {
+        private long total;
+        private Map<String, Long> counts = new LinkedHashMap<>();
+
+        static StageStatusCounts empty() {
+            return new StageStatusCounts();
+        }
     }
 }
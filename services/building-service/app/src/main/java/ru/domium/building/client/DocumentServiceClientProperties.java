@@ -0,0 +1,59 @@
+package ru.domium.building.client;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "domium.documents.client")
+public class DocumentServiceClientProperties {
+    /**
+     * Имена document-service в discovery, по порядку: берётся первое, у которого есть экземпляры.
+     */
+    private List<String> serviceIds = new ArrayList<>(List.of("documents", "document-service"));
+
+    /**
+     * Сколько держать список экземпляров из discovery (мс).
+     */
+    private long instanceCacheMs = 10_000;
+
+    private long connectTimeoutMs = 1_000;
+    private long readTimeoutMs = 2_000;
+
+    /**
+     * Ожидание свободного соединения в пуле (мс).
+     */
+    private long connectionRequestTimeoutMs = 500;
+
+    private int maxConnections = 50;
+    private int maxConnectionsPerRoute = 20;
+
+    /**
+     * Попыток на запрос, включая первую. Повтор — только при 5xx и сетевых ошибках, каждый раз на следующем экземпляре.
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * Пауза перед повтором: случайная в [0, min(retry-max-backoff-ms, retry-backoff-ms * 2^(n-1))] (full jitter).
+     */
+    private long retryBackoffMs = 100;
+    private long retryMaxBackoffMs = 1_000;
+
+    private Breaker breaker = new Breaker();
+
+    /**
+     * Circuit breaker на каждый экземпляр: открытый экземпляр пропускается балансировкой.
+     */
+    @Data
+    public static class Breaker {
+        private int slidingWindowSize = 20;
+        private int minimumCalls = 5;
+        private float failureRateThreshold = 50;
+        private long openStateMs = 10_000;
+        private int halfOpenCalls = 2;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.domium.building.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.api.dto.video.StreamStartedDto;
+import ru.domium.building.model.StreamLease;
+import ru.domium.building.service.video.HlsTokenService;
+import ru.domium.building.service.video.VideoStreamingProperties;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Вызовы другого узла building-service — владельца потока камеры (адрес берётся из аренды).
+ */
+@Slf4j
+@Component
+public class VideoNodeClient {
+    private final VideoStreamingProperties props;
+    private final HlsTokenService hlsTokenService;
+    private final RestTemplate restTemplate;
+
+    public VideoNodeClient(VideoStreamingProperties props, HlsTokenService hlsTokenService, RestTemplateBuilder builder) {
+        this.props = props;
+        this.hlsTokenService = hlsTokenService;
+        this.restTemplate = builder
+                .connectTimeout(Duration.ofSeconds(2))
+                .readTimeout(Duration.ofMillis(props.getStartQueueTimeoutMs() + 5_000))
+                .build();
+    }
+
+    /**
+     * Запускает поток на узле-владельце.
+     *
+     * @return время запуска процесса на владельце
+     */
+    public OptionalLong start(StreamLease owner, UUID buildingId, UUID cameraId) {
+        String url = "http://" + owner.getNodeAddress() + "/internal/video/streams/start?buildingId=" + buildingId
+                + "&cameraId=" + cameraId;
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Video-Secret", hlsTokenService.internalSecret());
+        try {
+            StreamStartedDto started = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(headers),
+                    StreamStartedDto.class).getBody();
+            return started == null || started.getStartedAtMs() == null
+                    ? OptionalLong.empty()
+                    : OptionalLong.of(started.getStartedAtMs());
+        } catch (HttpStatusCodeException e) {
+            throw new ResponseStatusException(e.getStatusCode(), "Stream owner " + owner.getNodeId() + " answered "
+                    + e.getStatusCode().value());
+        } catch (RestClientException e) {
+            log.warn("Stream owner {} ({}) is unreachable: {}", owner.getNodeId(), owner.getNodeAddress(), e.getMessage());
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Stream owner node is unavailable, retry after the lease expires");
+        }
+    }
+}
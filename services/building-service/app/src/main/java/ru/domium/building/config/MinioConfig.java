@@ -0,0 +1,24 @@
+package ru.domium.building.config;
+
+import io.minio.MinioClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MinioConfig {
+
+    /**
+     * Тот же MinIO, что у document-service. Без ключей (архив выключен) клиент создаётся анонимным.
+     */
+    @Bean
+    MinioClient minioClient(@Value("${minio.endpoint}") String endpoint,
+                            @Value("${minio.access-key:}") String accessKey,
+                            @Value("${minio.secret-key:}") String secretKey) {
+        MinioClient.Builder builder = MinioClient.builder().endpoint(endpoint);
+        if (!accessKey.isBlank() && !secretKey.isBlank()) {
+            builder.credentials(accessKey, secretKey);
+        }
+        return builder.build();
+    }
+}
@@ -1,14 +1,52 @@
 package ru.domium.building.config;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
+import ru.domium.building.client.DocumentServiceClientProperties;
 
 @Configuration
 public class RestClientConfig {
+    /**
+     * Пул соединений и таймауты для вызовов других сервисов. Повторы делают клиенты сами, поэтому
+     * встроенные повторы HttpClient выключены.
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient serviceHttpClient(DocumentServiceClientProperties props) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(props.getConnectTimeoutMs()))
+                .setSocketTimeout(Timeout.ofMilliseconds(props.getReadTimeoutMs()))
+                .setTimeToLive(TimeValue.ofMinutes(5))
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(props.getMaxConnections())
+                        .setMaxConnPerRoute(props.getMaxConnectionsPerRoute())
+                        .setDefaultConnectionConfig(connectionConfig)
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .disableAutomaticRetries()
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.build();
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     CloseableHttpClient serviceHttpClient,
+                                     DocumentServiceClientProperties props) {
+        return builder
+                .requestFactory(() -> {
+                    var factory = new HttpComponentsClientHttpRequestFactory(serviceHttpClient);
+                    factory.setConnectionRequestTimeout((int) props.getConnectionRequestTimeoutMs());
+                    return factory;
+                })
+                .build();
     }
 }
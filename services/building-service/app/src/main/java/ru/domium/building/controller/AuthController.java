@@ -5,20 +5,29 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.api.dto.video.VideoActivityReport;
 import ru.domium.building.repository.BuildingCameraRepository;
 import ru.domium.building.service.AccessService;
 import ru.domium.building.service.video.FfmpegStreamManager;
+import ru.domium.building.service.video.HlsTokenService;
+import ru.domium.building.service.video.VideoAccessCache;
+import ru.domium.security.annotation.PublicEndpoint;
 import ru.domium.security.util.SecurityUtils;
 
 import java.util.UUID;
 
 import static org.springframework.http.HttpStatus.FORBIDDEN;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
 /**
  * Endpoint для nginx auth_request.
+ * Решения кешируются в {@link VideoAccessCache}, чтобы сегменты не ходили в БД на каждый запрос.
  */
 @RestController
 @RequiredArgsConstructor
@@ -26,19 +35,38 @@ public class AuthController {
     private final AccessService accessService;
     private final BuildingCameraRepository cameraRepository;
     private final FfmpegStreamManager streamManager;
+    private final VideoAccessCache accessCache;
+    private final HlsTokenService hlsTokenService;
 
     @GetMapping("/internal/video/auth")
     public ResponseEntity<Void> auth(@RequestParam UUID buildingId,
                                      @RequestParam UUID cameraId,
                                      @AuthenticationPrincipal Jwt jwt) {
         UUID userId = SecurityUtils.requireSubjectUuid(jwt);
-        accessService.requireAccess(buildingId, userId);
-        if (!cameraRepository.existsByIdAndBuildingId(cameraId, buildingId)) {
-            throw new ResponseStatusException(FORBIDDEN, "Camera not accessible");
-        }
+        accessCache.requireAccess(userId, buildingId, cameraId, () -> {
+            accessService.requireAccess(buildingId, userId);
+            if (!cameraRepository.existsByIdAndBuildingId(cameraId, buildingId)) {
+                throw new ResponseStatusException(FORBIDDEN, "Camera not accessible");
+            }
+        });
         streamManager.touch(cameraId);
         return ResponseEntity.noContent().build();
     }
+
+    /**
+     * Пакетный отчёт активности от nginx для подписанных ссылок (там нет auth_request на каждый сегмент).
+     * Защищён тем же секретом, что и подпись ссылок.
+     */
+    @PostMapping("/internal/video/activity")
+    @PublicEndpoint
+    public ResponseEntity<Void> activity(@RequestHeader(name = "X-Video-Secret", required = false) String secret,
+                                         @RequestBody VideoActivityReport report) {
+        if (!hlsTokenService.isInternalSecret(secret)) {
+            throw new ResponseStatusException(UNAUTHORIZED, "Invalid video secret");
+        }
+        streamManager.touchAll(report == null ? null : report.getCameraIds());
+        return ResponseEntity.noContent().build();
+    }
 }
 
 
@@ -4,22 +4,30 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.domium.building.mapper.ProjectMapper;
 import ru.domium.building.mapper.TransitionMapper;
 import ru.domium.security.util.SecurityUtils;
 import ru.domium.security.annotation.PublicEndpoint;
+import ru.domium.building.service.BuildingDetailsCache;
+import ru.domium.building.service.BuildingListQuery;
 import ru.domium.building.service.BuildingService;
+import ru.domium.building.service.ManagerNameBackfillJob;
+import ru.domium.building.service.StageAdvanceResult;
 import ru.domium.building.api.dto.BuildingDetailsDto;
 import ru.domium.building.api.dto.CreateBuildingRequest;
 import ru.domium.building.api.dto.project.ProjectDto;
+import ru.domium.building.api.dto.project.ProjectPageDto;
 import ru.domium.building.api.dto.substage.SubStageStatusDto;
 import ru.domium.building.api.dto.transition.StageTransitionDeniedDto;
 import ru.domium.building.api.dto.workflow.StageDto;
+import ru.domium.building.api.dto.workitem.CompleteWorkItemsRequest;
 import ru.domium.building.repository.BuildingProjectionRepository;
 import ru.domium.building.model.BuildingProjection;
 import ru.domium.building.service.stage.requirement.StageTransitionNotAllowedException;
@@ -35,7 +43,10 @@ import java.util.UUID;
 public class BuildingController {
 
     private final BuildingService buildingService;
+    private final BuildingDetailsCache buildingDetailsCache;
     private final BuildingProjectionRepository buildingProjectionRepository;
+    private final BuildingListQuery buildingListQuery;
+    private final ManagerNameBackfillJob managerNameBackfillJob;
     private final ProjectMapper projectMapper;
     private final TransitionMapper transitionMapper;
 
@@ -66,43 +77,85 @@ public class BuildingController {
         return ResponseEntity.ok(projectMapper.toProjectDto(projection));
     }
 
-    @Operation(summary = "Список строек текущего пользователя (CLIENT/MANAGER)")
+    @Operation(summary = "Список строек текущего пользователя (CLIENT/MANAGER)",
+            description = "Весь список без пагинации; для больших списков — /buildings/page")
     @GetMapping
     @PreAuthorize("hasAnyRole('CLIENT','MANAGER')")
     public ResponseEntity<List<ProjectDto>> getMyBuildings(@AuthenticationPrincipal Jwt jwt) {
         UUID userId = SecurityUtils.requireSubjectUuid(jwt);
 
         if (SecurityUtils.hasRoleIgnoreCase(jwt, "MANAGER")) {
-            String managerNameFromJwt = SecurityUtils.resolveDisplayName(jwt);
-            List<BuildingProjection> projections = buildingProjectionRepository.findByManagerId(userId);
-
-            if (managerNameFromJwt != null && !managerNameFromJwt.isBlank()) {
-                boolean changed = false;
-                for (BuildingProjection p : projections) {
-                    if (p.getManagerName() == null || p.getManagerName().isBlank()) {
-                        p.setManagerName(managerNameFromJwt);
-                        changed = true;
-                    }
-                }
-                if (changed) buildingProjectionRepository.saveAll(projections);
-            }
-
-            return ResponseEntity.ok(projections.stream().map(projectMapper::toProjectDto).toList());
+            return ResponseEntity.ok(toManagerDtos(buildingProjectionRepository.findByManagerId(userId), userId, jwt));
         }
 
         return ResponseEntity.ok(buildingProjectionRepository.findByClientId(userId).stream().map(projectMapper::toProjectDto).toList());
     }
 
+    @Operation(summary = "Страница строек текущего пользователя (CLIENT/MANAGER)",
+            description = "Курсорная пагинация от недавно изменённых; фильтры по стадии, статусу, прогрессу и префиксу названия проекта")
+    @GetMapping("/page")
+    @PreAuthorize("hasAnyRole('CLIENT','MANAGER')")
+    public ResponseEntity<ProjectPageDto> getMyBuildingsPage(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer limit,
+                                                             @RequestParam(required = false) String stage,
+                                                             @RequestParam(required = false) String status,
+                                                             @RequestParam(required = false) Integer progressMin,
+                                                             @RequestParam(required = false) Integer progressMax,
+                                                             @RequestParam(required = false) String projectNamePrefix,
+                                                             @AuthenticationPrincipal Jwt jwt) {
+        UUID userId = SecurityUtils.requireSubjectUuid(jwt);
+        BuildingListQuery.Filter filter = new BuildingListQuery.Filter(stage, status, progressMin, progressMax, projectNamePrefix);
+
+        ProjectPageDto dto = new ProjectPageDto();
+        if (SecurityUtils.hasRoleIgnoreCase(jwt, "MANAGER")) {
+            BuildingListQuery.Page page = buildingListQuery.forManager(userId, filter, cursor, limit);
+            dto.setItems(toManagerDtos(page.items(), userId, jwt));
+            dto.setNextCursor(page.nextCursor());
+        } else {
+            BuildingListQuery.Page page = buildingListQuery.forClient(userId, filter, cursor, limit);
+            dto.setItems(page.items().stream().map(projectMapper::toProjectDto).toList());
+            dto.setNextCursor(page.nextCursor());
+        }
+        return ResponseEntity.ok(dto);
+    }
+
+    /**
+     * Пустое имя менеджера подставляется из JWT только в ответ; в БД его допишет {@link ManagerNameBackfillJob}.
+     */
+    private List<ProjectDto> toManagerDtos(List<BuildingProjection> projections, UUID managerId, Jwt jwt) {
+        String managerNameFromJwt = SecurityUtils.resolveDisplayName(jwt);
+        boolean hasName = managerNameFromJwt != null && !managerNameFromJwt.isBlank();
+        return projections.stream().map(p -> {
+            ProjectDto dto = projectMapper.toProjectDto(p);
+            if (hasName && (p.getManagerName() == null || p.getManagerName().isBlank())) {
+                managerNameBackfillJob.remember(managerId, managerNameFromJwt);
+                if (dto.getManager() != null) dto.getManager().setName(managerNameFromJwt);
+            }
+            return dto;
+        }).toList();
+    }
+
     @Operation(summary = "Получить стройку по ID")
     @GetMapping("/{id}")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<BuildingDetailsDto> getBuilding(@PathVariable UUID id,
-                                                          @AuthenticationPrincipal Jwt jwt) {
+                                                          @AuthenticationPrincipal Jwt jwt,
+                                                          WebRequest request) {
         UUID userId = SecurityUtils.requireSubjectUuid(jwt);
-        BuildingDetailsDto dto = new BuildingDetailsDto();
-        dto.setBuilding(buildingService.getBuilding(id, userId));
-        dto.setProject(buildingProjectionRepository.findById(id).map(projectMapper::toProjectDto).orElse(null));
-        return ResponseEntity.ok(dto);
+        String etag = buildingDetailsCache.etag(id, userId);
+        if (request.checkNotModified(etag)) {
+            return null; // 304 с ETag уже выставлен
+        }
+        BuildingDetailsDto dto = buildingDetailsCache.get(etag, () -> {
+            BuildingDetailsDto details = new BuildingDetailsDto();
+            details.setBuilding(buildingService.getBuilding(id, userId));
+            details.setProject(buildingProjectionRepository.findById(id).map(projectMapper::toProjectDto).orElse(null));
+            return details;
+        });
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(dto);
     }
 
     @Operation(summary = "Список этапов (stages) по workflow этой стройки")
@@ -135,17 +188,37 @@ public class BuildingController {
         return ResponseEntity.ok().build();
     }
 
-    @Operation(summary = "Перейти на следующий этап")
+    @Operation(summary = "Отметить несколько видов работ текущей стадии как выполненные",
+            description = "Все виды работ проверяются до записи; в ответе — статусы подэтапов текущей стадии")
+    @PostMapping("/{id}/work-items/complete")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<List<SubStageStatusDto>> completeWorkItems(@PathVariable UUID id,
+                                                                     @RequestBody CompleteWorkItemsRequest request,
+                                                                     @AuthenticationPrincipal Jwt jwt) {
+        UUID userId = SecurityUtils.requireSubjectUuid(jwt);
+        return ResponseEntity.ok(buildingService.completeWorkItems(id, userId, request.getWorkItemIds()));
+    }
+
+    @Operation(summary = "Перейти на следующий этап",
+            description = "409: STAGE_CHANGED — этап уже сменился (в ответе текущий); CONCURRENT_UPDATE — конфликт "
+                    + "параллельных изменений без смены этапа, запрос можно повторить с тем же Idempotency-Key")
     @PostMapping("/{id}/stage/next")
     @PreAuthorize("hasRole('MANAGER')")
-    public ResponseEntity<?> nextStage(@PathVariable UUID id, @AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<?> nextStage(@PathVariable UUID id,
+                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                       @RequestParam(required = false) UUID expectedStageId,
+                                       @AuthenticationPrincipal Jwt jwt) {
         UUID userId = SecurityUtils.requireSubjectUuid(jwt);
         try {
             String managerNameFromJwt = SecurityUtils.hasRoleIgnoreCase(jwt, "MANAGER") ? SecurityUtils.resolveDisplayName(jwt) : null;
-            BuildingProjection projection = buildingService.nextStage(id, userId, managerNameFromJwt);
-            return ResponseEntity.ok(projectMapper.toProjectDto(projection));
+            StageAdvanceResult result = buildingService.nextStage(id, userId, managerNameFromJwt, expectedStageId, idempotencyKey);
+            return ResponseEntity.ok()
+                    .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                    .body(projectMapper.toProjectDto(result.projection()));
         } catch (StageTransitionNotAllowedException e) {
             StageTransitionDeniedDto denied = transitionMapper.toDenied(id, e.getViolations());
+            denied.setCurrentStageId(e.getCurrentStageId());
+            denied.setCurrentStageName(e.getCurrentStageName());
             return ResponseEntity.status(409).body(denied);
         }
     }
@@ -0,0 +1,40 @@
+package ru.domium.building.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.domium.building.service.BuildingService;
+import ru.domium.building.service.feed.BuildingFeed;
+import ru.domium.security.util.SecurityUtils;
+
+import java.util.UUID;
+
+@RestController
+@RequiredArgsConstructor
+@Tag(name = "Building feed", description = "Лента изменений строек (Server-Sent Events)")
+public class BuildingFeedController {
+    private final BuildingService buildingService;
+    private final BuildingFeed buildingFeed;
+
+    @Operation(summary = "Поток изменений строек пользователя",
+            description = "События STAGE_ADVANCED, WORK_ITEMS_COMPLETED, CAMERA_STATE. При переподключении EventSource "
+                    + "присылает Last-Event-ID и получает пропущенное; событие reset — пропущенное дочитать нельзя, "
+                    + "состояние нужно перечитать. Без buildingId — все стройки пользователя на момент подписки.")
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('CLIENT','MANAGER')")
+    public SseEmitter feed(@RequestParam(required = false) UUID buildingId,
+                           @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                           @AuthenticationPrincipal Jwt jwt) {
+        UUID userId = SecurityUtils.requireSubjectUuid(jwt);
+        return buildingFeed.subscribe(buildingService.feedBuildingIds(userId, buildingId), lastEventId);
+    }
+}
@@ -3,20 +3,32 @@ package ru.domium.building.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.domium.building.api.dto.video.CameraDto;
 import ru.domium.building.api.dto.video.CreateCameraRequest;
+import ru.domium.building.api.dto.video.TimelapseDto;
 import ru.domium.building.model.BuildingCamera;
 import ru.domium.building.service.AccessService;
 import ru.domium.building.service.CameraService;
+import ru.domium.building.service.video.ByteRange;
 import ru.domium.security.util.SecurityUtils;
 
+import java.io.InputStream;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("{buildingId}/cameras")
@@ -58,17 +70,27 @@ public class CameraController {
         return ResponseEntity.ok(cameraService.get(buildingId, cameraId));
     }
 
-    @Operation(summary = "Получить URL трансляции (m3u8). Стартует поток по требованию.")
+    @Operation(summary = "Получить URL трансляции (m3u8). Стартует поток по требованию.",
+            description = "waitReady=true — ответ после появления первого плейлиста (или по таймауту, тогда ready=false); "
+                    + "поток запроса при этом не занят. Если поток камеры на другом узле, он запускается там.")
     @GetMapping("/{cameraId}/stream")
     @PreAuthorize("hasAnyRole('CLIENT','MANAGER')")
-    public ResponseEntity<CameraDto> stream(@PathVariable UUID buildingId,
-                                            @PathVariable UUID cameraId,
-                                            @AuthenticationPrincipal Jwt jwt) {
+    public CompletableFuture<ResponseEntity<CameraDto>> stream(@PathVariable UUID buildingId,
+                                                               @PathVariable UUID cameraId,
+                                                               @RequestParam(defaultValue = "false") boolean waitReady,
+                                                               @RequestParam(required = false) Long timeoutMs,
+                                                               @AuthenticationPrincipal Jwt jwt) {
         UUID userId = SecurityUtils.requireSubjectUuid(jwt);
         accessService.requireAccess(buildingId, userId);
         BuildingCamera cam = cameraService.requireCamera(buildingId, cameraId);
-        cameraService.ensureStarted(buildingId, cam);
-        return ResponseEntity.ok(cameraService.get(buildingId, cameraId));
+        OptionalLong startedAt = cameraService.ensureStarted(buildingId, cam);
+        CameraDto dto = cameraService.get(buildingId, cameraId);
+        long timeout = waitReady ? (timeoutMs == null ? Long.MAX_VALUE : timeoutMs) : 0;
+        return cameraService.awaitReady(buildingId, cameraId, startedAt, timeout)
+                .thenApply(ready -> {
+                    dto.setReady(ready);
+                    return ResponseEntity.ok(dto);
+                });
     }
 
     @Operation(summary = "Остановить поток камеры (MANAGER)")
@@ -83,6 +105,54 @@ public class CameraController {
         cameraService.stop(cameraId);
         return ResponseEntity.ok().build();
     }
-}
 
+    @Operation(summary = "Суточные таймлапсы архива камеры")
+    @GetMapping("/{cameraId}/timelapse")
+    @PreAuthorize("hasAnyRole('CLIENT','MANAGER')")
+    public ResponseEntity<List<TimelapseDto>> timelapses(@PathVariable UUID buildingId,
+                                                         @PathVariable UUID cameraId,
+                                                         @AuthenticationPrincipal Jwt jwt) {
+        UUID userId = SecurityUtils.requireSubjectUuid(jwt);
+        accessService.requireAccess(buildingId, userId);
+        cameraService.requireCamera(buildingId, cameraId);
+        return ResponseEntity.ok(cameraService.listTimelapses(buildingId, cameraId));
+    }
+
+    @Operation(summary = "Таймлапс за сутки (MP4, поддерживает Range)",
+            description = "Байты идут из MinIO потоком; на Range: bytes=a-b отвечает 206 с Content-Range.")
+    @GetMapping("/{cameraId}/timelapse/{date}")
+    @PreAuthorize("hasAnyRole('CLIENT','MANAGER')")
+    public ResponseEntity<StreamingResponseBody> timelapse(@PathVariable UUID buildingId,
+                                                           @PathVariable UUID cameraId,
+                                                           @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                           @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+                                                           @AuthenticationPrincipal Jwt jwt) {
+        UUID userId = SecurityUtils.requireSubjectUuid(jwt);
+        accessService.requireAccess(buildingId, userId);
+        cameraService.requireCamera(buildingId, cameraId);
+        long size = cameraService.timelapseSize(buildingId, cameraId, date);
+        Optional<ByteRange> requested = ByteRange.parse(range, size);
 
+        if (requested.isPresent() && !requested.get().isSatisfiable()) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, ByteRange.UNSATISFIABLE.contentRange(size))
+                    .build();
+        }
+        long offset = requested.map(ByteRange::start).orElse(0L);
+        long length = requested.map(ByteRange::length).orElse(size);
+        StreamingResponseBody body = out -> {
+            try (InputStream in = cameraService.openTimelapse(buildingId, cameraId, date, offset, length)) {
+                in.transferTo(out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = requested.isPresent()
+                ? ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .header(HttpHeaders.CONTENT_RANGE, requested.get().contentRange(size))
+                : ResponseEntity.ok();
+        return response
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .contentType(MediaType.parseMediaType("video/mp4"))
+                .contentLength(length)
+                .body(body);
+    }
+}
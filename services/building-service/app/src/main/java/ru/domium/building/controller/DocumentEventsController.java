@@ -0,0 +1,52 @@
+package ru.domium.building.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.api.dto.document.DocumentEventDto;
+import ru.domium.building.service.document.DocumentEventsProperties;
+import ru.domium.building.service.document.DocumentSignoffProjection;
+import ru.domium.security.annotation.PublicEndpoint;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+/**
+ * Приём событий документов от ретранслятора outbox document-service. Запрос защищён секретом X-Documents-Secret.
+ * Ответ 2xx означает, что пачка применена целиком; иначе ретранслятор повторит её.
+ */
+@RestController
+@RequiredArgsConstructor
+public class DocumentEventsController {
+    private final DocumentSignoffProjection projection;
+    private final DocumentEventsProperties props;
+
+    @PostMapping("/internal/documents/events")
+    @PublicEndpoint
+    public ResponseEntity<Void> accept(@RequestHeader(name = "X-Documents-Secret", required = false) String secret,
+                                       @RequestBody List<DocumentEventDto> events) {
+        if (!isValidSecret(secret)) {
+            throw new ResponseStatusException(UNAUTHORIZED, "Invalid documents secret");
+        }
+        try {
+            projection.apply(events);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(BAD_REQUEST, e.getMessage());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private boolean isValidSecret(String value) {
+        String expected = props.getSecret();
+        if (expected == null || expected.isBlank() || value == null) return false;
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+}
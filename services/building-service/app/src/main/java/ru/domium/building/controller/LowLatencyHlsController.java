@@ -0,0 +1,126 @@
+package ru.domium.building.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.service.video.HlsTokenService;
+import ru.domium.building.service.video.LowLatencyHlsPackager;
+import ru.domium.building.service.video.StreamPlacement;
+import ru.domium.security.annotation.PublicEndpoint;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+/**
+ * LL-HLS: то, что nginx не умеет сам — блокирующая перезагрузка плейлиста и ожидание части из preload hint.
+ * Вызывается только nginx после проверки подписанной ссылки; защищён секретом X-Video-Secret.
+ * Запросы не держат поток сервлета: ответ приходит из {@link LowLatencyHlsPackager}, когда часть опубликована.
+ * Если поток камеры на другом узле, запрос через X-Accel-Redirect уходит владельцу.
+ */
+@RestController
+@RequiredArgsConstructor
+public class LowLatencyHlsController {
+    private static final Pattern PART_FILE = Pattern.compile("^part_(\\d+)\\.m4s$");
+    private static final MediaType M3U8 = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+    private static final String X_ACCEL_REDIRECT = "X-Accel-Redirect";
+    private static final String FORWARDED = "X-Video-Forwarded";
+
+    private final LowLatencyHlsPackager packager;
+    private final HlsTokenService hlsTokenService;
+    private final StreamPlacement placement;
+
+    /**
+     * Блокирующая перезагрузка: ответ, когда в плейлисте есть сегмент {@code msn} (и часть {@code part}).
+     * По таймауту отдаётся текущий плейлист.
+     */
+    @GetMapping("/internal/video/ll/playlist")
+    @PublicEndpoint
+    public CompletableFuture<ResponseEntity<String>> playlist(@RequestHeader(name = "X-Video-Secret", required = false) String secret,
+                                                              @RequestParam UUID buildingId,
+                                                              @RequestParam UUID cameraId,
+                                                              @RequestParam long msn,
+                                                              @RequestParam(required = false) Integer part,
+                                                              @RequestHeader(name = FORWARDED, required = false) String forwarded) {
+        requireSecret(secret);
+        if (!packager.isActive(cameraId) && forwarded == null) {
+            Optional<String> owner = ownerRedirect(cameraId, "/internal/video/ll/playlist?buildingId=" + buildingId
+                    + "&cameraId=" + cameraId + "&msn=" + msn + (part == null ? "" : "&part=" + part));
+            if (owner.isPresent()) {
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.ok().header(X_ACCEL_REDIRECT, owner.get()).<String>build());
+            }
+        }
+        long lastPart = packager.lastPart(cameraId)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Low-latency stream is not running"));
+        // Спецификация: запрос дальше чем на два сегмента вперёд — 400.
+        if ((part != null && part < 0) || packager.isTooFarAhead(lastPart, msn)) {
+            throw new ResponseStatusException(BAD_REQUEST, "_HLS_msn/_HLS_part is too far ahead");
+        }
+        return packager.awaitPart(cameraId, packager.requiredPart(msn, part), packager.blockingTimeoutMs())
+                .thenApply(ready -> packager.playlist(cameraId)
+                        .map(body -> ResponseEntity.ok()
+                                .contentType(M3U8)
+                                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                                .body(body))
+                        .orElseGet(() -> ResponseEntity.notFound().build()));
+    }
+
+    /**
+     * Часть из EXT-X-PRELOAD-HINT, которой ещё нет на диске: ждём публикации и отдаём через X-Accel-Redirect.
+     */
+    @GetMapping("/internal/video/ll/part")
+    @PublicEndpoint
+    public CompletableFuture<ResponseEntity<Void>> part(@RequestHeader(name = "X-Video-Secret", required = false) String secret,
+                                                        @RequestParam UUID buildingId,
+                                                        @RequestParam UUID cameraId,
+                                                        @RequestParam String name,
+                                                        @RequestHeader(name = FORWARDED, required = false) String forwarded) {
+        requireSecret(secret);
+        Matcher m = PART_FILE.matcher(name);
+        if (m.matches() && !packager.isActive(cameraId) && forwarded == null) {
+            Optional<String> owner = ownerRedirect(cameraId, "/internal/video/ll/part?buildingId=" + buildingId
+                    + "&cameraId=" + cameraId + "&name=" + name);
+            if (owner.isPresent()) {
+                return CompletableFuture.completedFuture(
+                        ResponseEntity.ok().header(X_ACCEL_REDIRECT, owner.get()).<Void>build());
+            }
+        }
+        if (!m.matches() || !packager.isActive(cameraId)) {
+            return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
+        }
+        long number = Long.parseLong(m.group(1));
+        return packager.awaitPart(cameraId, number, packager.blockingTimeoutMs())
+                .thenApply(ready -> ready
+                        ? ResponseEntity.ok()
+                        .header(X_ACCEL_REDIRECT, "/_ll_files/" + buildingId + "/" + cameraId + "/" + name)
+                        .<Void>build()
+                        : ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Поток на другом узле: nginx повторит запрос к владельцу через internal location {@code /_node/{host:port}/...}
+     * и пометит его {@value #FORWARDED}, чтобы владелец, потерявший поток, не отправил его дальше.
+     */
+    private Optional<String> ownerRedirect(UUID cameraId, String uri) {
+        return placement.remoteOwner(cameraId).map(owner -> "/_node/" + owner.getNodeAddress() + uri);
+    }
+
+    private void requireSecret(String secret) {
+        if (!hlsTokenService.isInternalSecret(secret)) {
+            throw new ResponseStatusException(UNAUTHORIZED, "Invalid video secret");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.domium.building.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.service.projection.ProjectionRebuildJob;
+import ru.domium.building.service.projection.ProjectionRebuildProperties;
+import ru.domium.building.service.projection.ProjectionRebuildStatus;
+import ru.domium.security.annotation.PublicEndpoint;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+/**
+ * Ручной запуск сверки проекций строек (после исправления бага или массовой правки данных). Защищён X-Maintenance-Secret.
+ */
+@RestController
+@RequiredArgsConstructor
+public class ProjectionRebuildController {
+    private final ProjectionRebuildJob job;
+    private final ProjectionRebuildProperties props;
+
+    @PostMapping("/internal/projections/rebuild")
+    @PublicEndpoint
+    public ResponseEntity<ProjectionRebuildStatus> start(@RequestHeader(name = "X-Maintenance-Secret", required = false) String secret,
+                                                         @RequestParam(defaultValue = "false") boolean repair) {
+        requireSecret(secret);
+        return ResponseEntity.accepted().body(job.start(repair));
+    }
+
+    @GetMapping("/internal/projections/rebuild")
+    @PublicEndpoint
+    public ProjectionRebuildStatus status(@RequestHeader(name = "X-Maintenance-Secret", required = false) String secret) {
+        requireSecret(secret);
+        return job.status();
+    }
+
+    private void requireSecret(String value) {
+        String expected = props.getSecret();
+        if (expected == null || expected.isBlank() || value == null
+                || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8))) {
+            throw new ResponseStatusException(UNAUTHORIZED, "Invalid maintenance secret");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.domium.building.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.api.dto.video.StreamStartedDto;
+import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.service.CameraService;
+import ru.domium.building.service.video.HlsTokenService;
+import ru.domium.building.service.video.StreamOwnedElsewhereException;
+import ru.domium.security.annotation.PublicEndpoint;
+
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+
+/**
+ * Межузловые вызовы видео: узел, к которому пришёл зритель, запускает поток у владельца камеры.
+ * Доступ зрителя уже проверен вызывающим узлом; запрос защищён секретом X-Video-Secret.
+ */
+@RestController
+@RequiredArgsConstructor
+public class VideoPlacementController {
+    private final CameraService cameraService;
+    private final HlsTokenService hlsTokenService;
+
+    @PostMapping("/internal/video/streams/start")
+    @PublicEndpoint
+    public ResponseEntity<StreamStartedDto> start(@RequestHeader(name = "X-Video-Secret", required = false) String secret,
+                                                  @RequestParam UUID buildingId,
+                                                  @RequestParam UUID cameraId) {
+        if (!hlsTokenService.isInternalSecret(secret)) {
+            throw new ResponseStatusException(UNAUTHORIZED, "Invalid video secret");
+        }
+        BuildingCamera camera = cameraService.requireCamera(buildingId, cameraId);
+        OptionalLong startedAt;
+        try {
+            startedAt = cameraService.ensureStartedLocally(buildingId, camera);
+        } catch (StreamOwnedElsewhereException e) {
+            // аренду успел перехватить третий узел — не гоняем запрос по кругу
+            throw new ResponseStatusException(CONFLICT, e.getMessage());
+        }
+        StreamStartedDto dto = new StreamStartedDto();
+        dto.setStartedAtMs(startedAt.isPresent() ? startedAt.getAsLong() : null);
+        return ResponseEntity.ok(dto);
+    }
+}
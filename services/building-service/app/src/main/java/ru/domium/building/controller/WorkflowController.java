@@ -2,19 +2,26 @@ package ru.domium.building.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.domium.security.util.SecurityUtils;
+import ru.domium.building.model.Workflow;
 import ru.domium.building.service.WorkflowService;
+import ru.domium.building.service.WorkflowTemplateService;
 import ru.domium.building.api.dto.workflow.CreateWorkflowRequest;
 import ru.domium.building.api.dto.workflow.UpsertStagesRequest;
 import ru.domium.building.api.dto.workflow.UpsertStageTasksRequest;
 import ru.domium.building.api.dto.workflow.WorkflowDto;
 
+import java.io.IOException;
 import java.util.UUID;
 
 @RestController
@@ -24,6 +31,7 @@ import java.util.UUID;
 @PreAuthorize("hasRole('MANAGER')")
 public class WorkflowController {
     private final WorkflowService workflowService;
+    private final WorkflowTemplateService workflowTemplates;
 
     @Operation(summary = "Активный workflow текущего manager")
     @GetMapping("/me/active")
@@ -78,4 +86,25 @@ public class WorkflowController {
         UUID managerId = SecurityUtils.requireSubjectUuid(jwt);
         return ResponseEntity.ok(workflowService.upsertStageTasks(id, stageId, managerId, request));
     }
+
+    @Operation(summary = "Импорт workflow из JSON-документа (стадии с деревом задач одним запросом)",
+            description = "Документ в формате экспорта; идентификаторы из документа игнорируются, создаётся новый workflow.")
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<WorkflowDto> importWorkflow(@AuthenticationPrincipal Jwt jwt,
+                                                      HttpServletRequest request) throws IOException {
+        UUID managerId = SecurityUtils.requireSubjectUuid(jwt);
+        return ResponseEntity.ok(workflowTemplates.importWorkflow(managerId, request.getInputStream()));
+    }
+
+    @Operation(summary = "Экспорт workflow с деревом задач (потоковый JSON)")
+    @GetMapping("/{id}/export")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable UUID id, @AuthenticationPrincipal Jwt jwt) {
+        UUID managerId = SecurityUtils.requireSubjectUuid(jwt);
+        Workflow wf = workflowTemplates.requireReadable(id, managerId);
+        StreamingResponseBody body = out -> workflowTemplates.writeExport(wf, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"workflow-" + id + ".json\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 }
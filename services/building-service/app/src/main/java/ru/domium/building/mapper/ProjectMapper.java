@@ -17,5 +17,6 @@ public interface ProjectMapper {
     @Mapping(target = "objectInfo.attributes", source = "metadata")
     @Mapping(target = "objectInfo.stage", source = "stage")
     @Mapping(target = "objectInfo.progress", source = "progress")
+    @Mapping(target = "objectInfo.status", source = "status")
     ProjectDto toProjectDto(BuildingProjection projection);
 }
@@ -4,11 +4,21 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import ru.domium.building.api.dto.substage.SubStageStatusDto;
 import ru.domium.building.model.Task;
+import ru.domium.building.model.WorkflowDefinition;
 
 @Mapper(componentModel = "spring")
 public interface SubStageStatusMapper {
     @Mapping(target = "completed", ignore = true)
     @Mapping(target = "completedAt", ignore = true)
     @Mapping(target = "workItems", ignore = true)
+    @Mapping(target = "completedWorkItems", ignore = true)
+    @Mapping(target = "totalWorkItems", ignore = true)
     SubStageStatusDto toDto(Task subStageTask);
+
+    @Mapping(target = "completed", ignore = true)
+    @Mapping(target = "completedAt", ignore = true)
+    @Mapping(target = "workItems", ignore = true)
+    @Mapping(target = "completedWorkItems", ignore = true)
+    @Mapping(target = "totalWorkItems", ignore = true)
+    SubStageStatusDto toDto(WorkflowDefinition.TaskDef subStage);
 }
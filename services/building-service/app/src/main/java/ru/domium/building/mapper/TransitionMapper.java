@@ -16,5 +16,7 @@ public interface TransitionMapper {
 
     @Mapping(target = "buildingId", source = "buildingId")
     @Mapping(target = "violations", source = "violations")
+    @Mapping(target = "currentStageId", ignore = true)
+    @Mapping(target = "currentStageName", ignore = true)
     StageTransitionDeniedDto toDenied(UUID buildingId, List<TransitionViolation> violations);
 }
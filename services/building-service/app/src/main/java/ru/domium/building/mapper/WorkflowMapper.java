@@ -1,6 +1,7 @@
 package ru.domium.building.mapper;
 
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import ru.domium.building.api.dto.workflow.WorkflowDto;
 import ru.domium.building.api.dto.workflow.StageDto;
 import ru.domium.building.api.dto.workflow.SubStageDto;
@@ -8,6 +9,7 @@ import ru.domium.building.api.dto.workitem.WorkItemDto;
 import ru.domium.building.model.Workflow;
 import ru.domium.building.model.Stage;
 import ru.domium.building.model.Task;
+import ru.domium.building.model.WorkflowDefinition;
 
 import java.util.List;
 
@@ -22,4 +24,11 @@ public interface WorkflowMapper {
 
     WorkItemDto toWorkItemDto(Task task);
     List<WorkItemDto> toWorkItemDtos(List<Task> tasks);
+
+    // вложенные списки собирает вызывающий код из смежности WorkflowDefinition
+    @Mapping(target = "subStages", ignore = true)
+    StageDto toDto(WorkflowDefinition.StageDef stage);
+    @Mapping(target = "workItems", ignore = true)
+    SubStageDto toSubStageDto(WorkflowDefinition.TaskDef task);
+    WorkItemDto toWorkItemDto(WorkflowDefinition.TaskDef task);
 }
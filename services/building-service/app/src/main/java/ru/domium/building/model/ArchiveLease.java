@@ -0,0 +1,22 @@
+package ru.domium.building.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Аренда задачи архива камер узлом (снимки камеры или склейка суток). Время — по часам БД.
+ */
+@Entity
+@Table(name = "video_archive_leases")
+@Data
+public class ArchiveLease {
+    @Id
+    private String leaseKey;
+
+    private String nodeId;
+    private Instant expiresAt;
+}
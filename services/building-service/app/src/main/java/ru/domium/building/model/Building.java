@@ -2,12 +2,14 @@ package ru.domium.building.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import ru.domium.building.service.video.VideoAccessInvalidationListener;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "buildings")
+@EntityListeners(VideoAccessInvalidationListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -1,18 +1,25 @@
 package ru.domium.building.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import ru.domium.building.service.video.VideoAccessInvalidationListener;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
 @Table(name = "building_cameras")
+@EntityListeners(VideoAccessInvalidationListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -26,6 +33,19 @@ public class BuildingCamera {
     private String rtspUrl;
     private boolean enabled = true;
     private boolean transcode = false;
+    private boolean lowLatency = false;
+
+    /**
+     * Архив: снимки раз в {@code domium.video.archive.snapshot-interval-ms} и суточный таймлапс в MinIO.
+     */
+    private boolean archive = false;
+
+    /**
+     * Имена пресетов ABR (domium.video.renditions). Пусто — одна дорожка.
+     */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(columnDefinition = "jsonb")
+    private List<String> renditions;
 
     private LocalDateTime createdAt = LocalDateTime.now();
     private LocalDateTime updatedAt;
@@ -26,6 +26,7 @@ public class BuildingProjection {
     private String managerName;
     private String stage;
     private int progress;
+    private String status = "ACTIVE";
     private String videoUrl = "https://sample-videos.com/zip/10/mp4/SampleVideo_1280x720_1mb.mp4";
     private LocalDateTime updatedAt;
 
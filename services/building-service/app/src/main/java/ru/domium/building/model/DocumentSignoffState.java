@@ -0,0 +1,37 @@
+package ru.domium.building.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Последнее применённое состояние документа этапа (проекция событий document-service).
+ */
+@Entity
+@Table(name = "document_signoff_documents")
+@Data
+public class DocumentSignoffState {
+    @Id
+    private UUID documentId;
+
+    private UUID projectId;
+    private UUID stageId;
+
+    /**
+     * Тип группы документа; пустая строка — без группы.
+     */
+    private String groupType;
+
+    private String status;
+
+    /**
+     * Номер последнего применённого события.
+     */
+    private long seq;
+
+    private Instant updatedAt;
+}
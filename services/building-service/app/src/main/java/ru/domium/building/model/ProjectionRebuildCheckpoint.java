@@ -0,0 +1,42 @@
+package ru.domium.building.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Состояние прохода сверки {@link BuildingProjection} с {@link Building}.
+ */
+@Entity
+@Table(name = "projection_rebuild_checkpoints")
+@Data
+public class ProjectionRebuildCheckpoint {
+    @Id
+    private String job;
+
+    /**
+     * true — расхождения исправляются, false — только считаются.
+     */
+    private boolean repair;
+
+    /**
+     * Последняя обработанная стройка; {@code null} — проход ещё не начат.
+     */
+    private UUID lastBuildingId;
+
+    private long scanned;
+    private long drifted;
+    private long repaired;
+
+    private Instant startedAt;
+    private Instant updatedAt;
+
+    /**
+     * {@code null} — проход не завершён и продолжится с {@link #lastBuildingId}.
+     */
+    private Instant finishedAt;
+}
@@ -0,0 +1,32 @@
+package ru.domium.building.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Аренда потока камеры узлом. Время — по часам БД, поэтому расхождение часов узлов не важно.
+ */
+@Entity
+@Table(name = "video_stream_leases")
+@Data
+public class StreamLease {
+    @Id
+    private UUID cameraId;
+
+    private UUID buildingId;
+    private String nodeId;
+
+    /**
+     * host:port узла для проксирования (адрес регистрации в Consul).
+     */
+    private String nodeAddress;
+
+    private Instant acquiredAt;
+    private Instant expiresAt;
+    private Instant lastAccessAt;
+}
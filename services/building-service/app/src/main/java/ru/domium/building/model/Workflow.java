@@ -1,5 +1,6 @@
 package ru.domium.building.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
@@ -19,4 +20,10 @@ public class Workflow {
     private String name;
     private boolean active = true;
     private Instant createdAt = Instant.now();
+
+    /**
+     * Меняется только {@link ru.domium.building.repository.WorkflowRepository#bumpVersion}.
+     */
+    @Column(insertable = false, updatable = false)
+    private long version;
 }
@@ -0,0 +1,146 @@
+package ru.domium.building.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Неизменяемый снимок workflow версии {@link #version()}: стадии по порядку, индекс стадии по id
+ * и дерево задач (стадия → подэтапы → виды работ). Все выборки — поиск в хеш-таблице.
+ */
+public final class WorkflowDefinition {
+
+    public record StageDef(UUID id, String name, String description, int plannedDays, int position) {
+    }
+
+    public record TaskDef(UUID id, UUID stageId, UUID parentId, String type, String name, String description, int position) {
+    }
+
+    private final UUID workflowId;
+    private final long version;
+    private final List<StageDef> stages;
+    private final Map<UUID, Integer> stageIndex;
+    private final Map<UUID, TaskDef> tasks;
+    private final Map<UUID, List<TaskDef>> subStagesByStage;
+    private final Map<UUID, List<TaskDef>> workItemsBySubStage;
+    private final Map<UUID, Integer> workItemsByStage;
+    private final int totalWorkItems;
+
+    private WorkflowDefinition(UUID workflowId, long version, List<StageDef> stages, List<TaskDef> tasks) {
+        this.workflowId = workflowId;
+        this.version = version;
+        this.stages = List.copyOf(stages);
+
+        Map<UUID, Integer> index = new HashMap<>();
+        for (int i = 0; i < this.stages.size(); i++) index.put(this.stages.get(i).id(), i);
+        this.stageIndex = Map.copyOf(index);
+
+        Map<UUID, TaskDef> byId = new HashMap<>();
+        Map<UUID, List<TaskDef>> subStages = new LinkedHashMap<>();
+        Map<UUID, List<TaskDef>> workItems = new LinkedHashMap<>();
+        tasks.stream().sorted(Comparator.comparingInt(TaskDef::position)).forEach(t -> {
+            byId.put(t.id(), t);
+            if (t.parentId() == null) subStages.computeIfAbsent(t.stageId(), k -> new ArrayList<>()).add(t);
+            else workItems.computeIfAbsent(t.parentId(), k -> new ArrayList<>()).add(t);
+        });
+        this.tasks = Map.copyOf(byId);
+        this.subStagesByStage = copyOfLists(subStages);
+        this.workItemsBySubStage = copyOfLists(workItems);
+
+        Map<UUID, Integer> perStage = new HashMap<>();
+        int total = 0;
+        for (TaskDef t : byId.values()) {
+            if (t.parentId() == null || !byId.containsKey(t.parentId())) continue;
+            perStage.merge(t.stageId(), 1, Integer::sum);
+            total++;
+        }
+        this.workItemsByStage = Map.copyOf(perStage);
+        this.totalWorkItems = total;
+    }
+
+    public static WorkflowDefinition of(UUID workflowId, long version, List<Stage> stages, List<Task> tasks) {
+        List<StageDef> stageDefs = stages.stream()
+                .sorted(Comparator.comparingInt(Stage::getPosition))
+                .map(s -> new StageDef(s.getId(), s.getName(), s.getDescription(), s.getPlannedDays(), s.getPosition()))
+                .toList();
+        List<TaskDef> taskDefs = tasks.stream()
+                .map(t -> new TaskDef(t.getId(), t.getStageId(), t.getParentId(), t.getType(),
+                        t.getName(), t.getDescription(), t.getPosition()))
+                .toList();
+        return new WorkflowDefinition(workflowId, version, stageDefs, taskDefs);
+    }
+
+    /**
+     * Workflow, которого нет в БД: ни одной стадии, переход невозможен.
+     */
+    public static WorkflowDefinition empty(UUID workflowId) {
+        return new WorkflowDefinition(workflowId, -1, List.of(), List.of());
+    }
+
+    public UUID workflowId() {
+        return workflowId;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public List<StageDef> stages() {
+        return stages;
+    }
+
+    public Optional<StageDef> stage(UUID stageId) {
+        Integer index = stageId == null ? null : stageIndex.get(stageId);
+        return index == null ? Optional.empty() : Optional.of(stages.get(index));
+    }
+
+    public Optional<TaskDef> task(UUID taskId) {
+        return taskId == null ? Optional.empty() : Optional.ofNullable(tasks.get(taskId));
+    }
+
+    public List<TaskDef> subStages(UUID stageId) {
+        return stageId == null ? List.of() : subStagesByStage.getOrDefault(stageId, List.of());
+    }
+
+    public List<TaskDef> workItems(UUID subStageId) {
+        return subStageId == null ? List.of() : workItemsBySubStage.getOrDefault(subStageId, List.of());
+    }
+
+    /**
+     * Число видов работ стадии (во всех её подэтапах).
+     */
+    public int workItemCount(UUID stageId) {
+        return stageId == null ? 0 : workItemsByStage.getOrDefault(stageId, 0);
+    }
+
+    /**
+     * Число видов работ во всём workflow.
+     */
+    public int totalWorkItems() {
+        return totalWorkItems;
+    }
+
+    /**
+     * Переход со стадии {@code currentStageId} на следующую по порядку.
+     */
+    public StageTransition next(UUID currentStageId) {
+        int totalStages = stages.size();
+        Integer currentIndex = currentStageId == null ? null : stageIndex.get(currentStageId);
+        if (currentIndex == null || currentIndex >= totalStages - 1) {
+            return new StageTransition(null, null, -1, totalStages, false);
+        }
+        StageDef nextStage = stages.get(currentIndex + 1);
+        return new StageTransition(nextStage.id(), nextStage.name(), currentIndex + 1, totalStages, true);
+    }
+
+    private static Map<UUID, List<TaskDef>> copyOfLists(Map<UUID, List<TaskDef>> source) {
+        Map<UUID, List<TaskDef>> copy = new HashMap<>();
+        source.forEach((k, v) -> copy.put(k, List.copyOf(v)));
+        return Map.copyOf(copy);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.domium.building.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.domium.building.model.ArchiveLease;
+
+public interface ArchiveLeaseRepository extends JpaRepository<ArchiveLease, String> {
+
+    /**
+     * Берёт аренду, если её нет, она истекла или уже наша (тогда продлевает). Возвращает 1, если аренда наша.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into video_archive_leases (lease_key, node_id, expires_at)
+            values (:leaseKey, :nodeId, now() + :ttlMs * interval '1 millisecond')
+            on conflict (lease_key) do update
+               set node_id = excluded.node_id,
+                   expires_at = excluded.expires_at
+             where video_archive_leases.node_id = excluded.node_id
+                or video_archive_leases.expires_at < now()
+            """)
+    int tryAcquire(@Param("leaseKey") String leaseKey,
+                   @Param("nodeId") String nodeId,
+                   @Param("ttlMs") long ttlMs);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ArchiveLease l where l.leaseKey = :leaseKey and l.nodeId = :nodeId")
+    int release(@Param("leaseKey") String leaseKey, @Param("nodeId") String nodeId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ArchiveLease l where l.nodeId = :nodeId")
+    int releaseAll(@Param("nodeId") String nodeId);
+}
@@ -1,8 +1,11 @@
 package ru.domium.building.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.domium.building.model.BuildingCamera;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,6 +16,19 @@ public interface BuildingCameraRepository extends JpaRepository<BuildingCamera,
     Optional<BuildingCamera> findByIdAndBuildingId(UUID id, UUID buildingId);
 
     boolean existsByIdAndBuildingId(UUID id, UUID buildingId);
+
+    List<BuildingCamera> findByArchiveTrueAndEnabledTrue();
+
+    List<BuildingCamera> findByArchiveTrue();
+
+    @Query("""
+            select c from BuildingCamera c, Building b
+            where b.id = c.buildingId
+              and c.enabled = true
+              and b.status = 'ACTIVE'
+              and b.currentStageName in :stageNames
+            """)
+    List<BuildingCamera> findEnabledInActiveStages(@Param("stageNames") Collection<String> stageNames);
 }
 
 
@@ -1,13 +1,91 @@
 package ru.domium.building.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import ru.domium.building.model.BuildingProjection;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
-public interface BuildingProjectionRepository extends JpaRepository<BuildingProjection, UUID> {
+public interface BuildingProjectionRepository extends JpaRepository<BuildingProjection, UUID>,
+        JpaSpecificationExecutor<BuildingProjection> {
     List<BuildingProjection> findByClientId(UUID clientId);
 
     List<BuildingProjection> findByManagerId(UUID managerId);
+
+    @Modifying
+    @Query("update BuildingProjection p set p.progress = :progress, p.updatedAt = current_timestamp where p.id = :id")
+    int updateProgress(@Param("id") UUID id, @Param("progress") int progress);
+
+    /**
+     * Дописывает имя менеджера в его стройки, где имени ещё нет.
+     */
+    @Modifying
+    @Query("update BuildingProjection p set p.managerName = :name "
+            + "where p.managerId = :managerId and (p.managerName is null or p.managerName = '')")
+    int fillMissingManagerName(@Param("managerId") UUID managerId, @Param("name") String name);
+
+    @Query("select distinct p.managerId from BuildingProjection p "
+            + "where p.managerId is not null and (p.managerName is null or p.managerName = '')")
+    List<UUID> findManagerIdsWithoutName();
+
+    /**
+     * Известное имя менеджера из любой другой его стройки.
+     */
+    @Query("select max(p.managerName) from BuildingProjection p "
+            + "where p.managerId = :managerId and p.managerName is not null and p.managerName <> ''")
+    String findKnownManagerName(@Param("managerId") UUID managerId);
+
+    /**
+     * Проекция для стройки, у которой её нет (сверка). {@code metadata} получает значение по умолчанию из БД,
+     * имена проекта и менеджера берутся из других проекций того же проекта/менеджера — в самой стройке их нет;
+     * если взять неоткуда, остаются пустыми (имя менеджера позже допишет {@code ManagerNameBackfillJob}).
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into building_projections (id, project_id, project_name, client_id, manager_id, manager_name,
+                                              stage, status, progress, video_url, updated_at)
+            select b.id, b.project_id,
+                   (select max(o.project_name) from building_projections o
+                     where o.project_id = b.project_id and o.project_name <> ''),
+                   b.client_id, b.manager_id,
+                   (select max(o.manager_name) from building_projections o
+                     where o.manager_id = b.manager_id and o.manager_name <> ''),
+                   b.current_stage_name, b.status, :progress, :videoUrl, localtimestamp
+              from buildings b
+             where b.id = :id and b.version = :buildingVersion
+            on conflict (id) do nothing
+            """)
+    int insertMissing(@Param("id") UUID id,
+                      @Param("buildingVersion") long buildingVersion,
+                      @Param("progress") int progress,
+                      @Param("videoUrl") String videoUrl);
+
+    /**
+     * Исправляет поля проекции, выводимые из стройки, только если с момента сверки не менялись ни проекция
+     * ({@code updated_at}), ни стройка ({@code version}). 0 — параллельно записано свежее состояние, исправлять нечего.
+     * Имя менеджера, имя проекта и метаданные не трогаются.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            update building_projections p
+               set project_id = b.project_id,
+                   client_id = b.client_id,
+                   manager_id = b.manager_id,
+                   stage = b.current_stage_name,
+                   status = b.status,
+                   progress = :progress,
+                   updated_at = localtimestamp
+              from buildings b
+             where p.id = :id and p.updated_at = :seenUpdatedAt
+               and b.id = p.id and b.version = :buildingVersion
+            """)
+    int repairDerived(@Param("id") UUID id,
+                      @Param("seenUpdatedAt") LocalDateTime seenUpdatedAt,
+                      @Param("buildingVersion") long buildingVersion,
+                      @Param("progress") int progress);
 }
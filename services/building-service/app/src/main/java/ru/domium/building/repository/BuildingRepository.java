@@ -1,14 +1,87 @@
 package ru.domium.building.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.domium.building.model.Building;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 public interface BuildingRepository extends JpaRepository<Building, UUID> {
     List<Building> findByClientId(UUID clientId);
 
-    boolean existsByWorkflowIdAndCurrentStageIdIn(UUID workflowId, Collection<UUID> stageIds);
+    /**
+     * Версия деталей стройки для ETag: два поиска по первичному ключу, без загрузки сущностей.
+     * Имя менеджера входит отдельно — его дописывает фоновая задача, не трогая {@code updated_at}.
+     */
+    @Query(nativeQuery = true, value = """
+            select b.version as version,
+                   b.client_id as clientId,
+                   b.manager_id as managerId,
+                   cast(extract(epoch from p.updated_at) * 1000000 as bigint) as projectionUpdatedMicros,
+                   p.manager_name as managerName
+              from buildings b
+              left join building_projections p on p.id = b.id
+             where b.id = :id
+            """)
+    Optional<DetailsVersion> findDetailsVersion(@Param("id") UUID id);
+
+    /**
+     * Следующая пачка строек по id (keyset): не зависит от смещения и не держит курсор между пачками.
+     */
+    List<Building> findByIdGreaterThanOrderById(UUID afterId, Limit limit);
+
+    @Query("select b.id from Building b where b.clientId = :userId or b.managerId = :userId")
+    Set<UUID> findIdsByParticipant(@Param("userId") UUID userId);
+
+    /**
+     * Какие из стадий workflow сейчас текущие хотя бы у одной стройки. Один запрос на любой набор стадий.
+     */
+    @Query("select distinct b.currentStageId from Building b where b.workflowId = :workflowId and b.currentStageId in :stageIds")
+    Set<UUID> findStageIdsInUse(@Param("workflowId") UUID workflowId, @Param("stageIds") Collection<UUID> stageIds);
+
+    /**
+     * Регистрирует ключ идемпотентности перехода. 0 — ключ уже использован (в т.ч. параллельным запросом,
+     * который успел зафиксироваться: вставка ждёт его транзакцию).
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into stage_advance_requests (building_id, idempotency_key, user_id, from_stage_id)
+            values (:buildingId, :key, :userId, :fromStageId)
+            on conflict (building_id, idempotency_key) do nothing
+            """)
+    int registerAdvanceKey(@Param("buildingId") UUID buildingId,
+                           @Param("key") String key,
+                           @Param("userId") UUID userId,
+                           @Param("fromStageId") UUID fromStageId);
+
+    @Query(nativeQuery = true, value = """
+            select exists(select 1 from stage_advance_requests where building_id = :buildingId and idempotency_key = :key)
+            """)
+    boolean existsAdvanceKey(@Param("buildingId") UUID buildingId, @Param("key") String key);
+
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from stage_advance_requests where created_at < :before")
+    int deleteAdvanceKeysBefore(@Param("before") Instant before);
+
+    interface DetailsVersion {
+        long getVersion();
+
+        UUID getClientId();
+
+        UUID getManagerId();
+
+        Long getProjectionUpdatedMicros();
+
+        String getManagerName();
+    }
 }
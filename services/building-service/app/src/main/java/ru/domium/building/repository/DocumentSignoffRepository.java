@@ -0,0 +1,57 @@
+package ru.domium.building.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.domium.building.model.DocumentSignoffState;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface DocumentSignoffRepository extends JpaRepository<DocumentSignoffState, UUID> {
+
+    /**
+     * Блокирует состояния документов пачки (в порядке id, чтобы параллельные пачки не взаимоблокировались).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from DocumentSignoffState d where d.documentId in :ids order by d.documentId")
+    List<DocumentSignoffState> lockAll(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into stage_document_summary (project_id, stage_id, group_type, status, doc_count)
+            values (:projectId, :stageId, :groupType, :status, :delta)
+            on conflict (project_id, stage_id, group_type, status)
+            do update set doc_count = stage_document_summary.doc_count + excluded.doc_count
+            """)
+    int addToSummary(@Param("projectId") UUID projectId,
+                     @Param("stageId") UUID stageId,
+                     @Param("groupType") String groupType,
+                     @Param("status") String status,
+                     @Param("delta") long delta);
+
+    /**
+     * Число документов этапа по статусам без групп {@code excludedGroupTypes}.
+     */
+    @Query(nativeQuery = true, value = """
+            select status as status, sum(doc_count) as count
+              from stage_document_summary
+             where project_id = :projectId and stage_id = :stageId
+               and group_type not in (:excludedGroupTypes)
+             group by status
+            having sum(doc_count) > 0
+            """)
+    List<StatusCount> stageStatusCounts(@Param("projectId") UUID projectId,
+                                        @Param("stageId") UUID stageId,
+                                        @Param("excludedGroupTypes") Collection<String> excludedGroupTypes);
+
+    interface StatusCount {
+        String getStatus();
+
+        long getCount();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.domium.building.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.domium.building.model.ProjectionRebuildCheckpoint;
+
+import java.util.Optional;
+
+public interface ProjectionRebuildCheckpointRepository extends JpaRepository<ProjectionRebuildCheckpoint, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from ProjectionRebuildCheckpoint c where c.job = :job")
+    Optional<ProjectionRebuildCheckpoint> lock(@Param("job") String job);
+}
@@ -0,0 +1,93 @@
+package ru.domium.building.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.domium.building.model.StreamLease;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface StreamLeaseRepository extends JpaRepository<StreamLease, UUID> {
+
+    /**
+     * Берёт аренду, если её нет, она истекла или уже наша (тогда продлевает). Возвращает 1, если аренда наша.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into video_stream_leases (camera_id, building_id, node_id, node_address, acquired_at, expires_at)
+            values (:cameraId, :buildingId, :nodeId, :nodeAddress, now(), now() + :ttlMs * interval '1 millisecond')
+            on conflict (camera_id) do update
+               set node_id = excluded.node_id,
+                   node_address = excluded.node_address,
+                   building_id = excluded.building_id,
+                   expires_at = excluded.expires_at,
+                   acquired_at = case when video_stream_leases.node_id = excluded.node_id
+                                      then video_stream_leases.acquired_at else excluded.acquired_at end
+             where video_stream_leases.node_id = excluded.node_id
+                or video_stream_leases.expires_at < now()
+            """)
+    int tryAcquire(@Param("cameraId") UUID cameraId,
+                   @Param("buildingId") UUID buildingId,
+                   @Param("nodeId") String nodeId,
+                   @Param("nodeAddress") String nodeAddress,
+                   @Param("ttlMs") long ttlMs);
+
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            update video_stream_leases
+               set expires_at = now() + :ttlMs * interval '1 millisecond'
+             where node_id = :nodeId and camera_id in (:cameraIds)
+            """)
+    int renew(@Param("nodeId") String nodeId,
+              @Param("cameraIds") Collection<UUID> cameraIds,
+              @Param("ttlMs") long ttlMs);
+
+    /**
+     * Отмечает недавних зрителей камер (пришедших на любой узел): по этой отметке владелец не останавливает поток,
+     * а после падения владельца другой узел поднимает его заново.
+     */
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            update video_stream_leases
+               set last_access_at = now()
+             where camera_id in (:cameraIds)
+            """)
+    int recordAccess(@Param("cameraIds") Collection<UUID> cameraIds);
+
+    @Transactional
+    @Modifying
+    @Query("delete from StreamLease l where l.cameraId = :cameraId and l.nodeId = :nodeId")
+    int release(@Param("cameraId") UUID cameraId, @Param("nodeId") String nodeId);
+
+    @Transactional
+    @Modifying
+    @Query("delete from StreamLease l where l.nodeId = :nodeId")
+    int releaseAll(@Param("nodeId") String nodeId);
+
+    List<StreamLease> findByNodeId(String nodeId);
+
+    @Query(nativeQuery = true, value = """
+            select * from video_stream_leases
+             where camera_id = :cameraId and expires_at >= now()
+            """)
+    Optional<StreamLease> findLive(@Param("cameraId") UUID cameraId);
+
+    /**
+     * Истёкшие аренды камер, у которых недавно были зрители: их узел, вероятно, упал.
+     */
+    @Query(nativeQuery = true, value = """
+            select * from video_stream_leases
+             where expires_at < now()
+               and last_access_at >= now() - :activeWithinMs * interval '1 millisecond'
+             order by last_access_at desc
+            """)
+    List<StreamLease> findOrphaned(@Param("activeWithinMs") long activeWithinMs);
+}
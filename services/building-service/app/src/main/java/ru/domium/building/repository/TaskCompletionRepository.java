@@ -1,15 +1,117 @@
 package ru.domium.building.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.domium.building.model.TaskCompletion;
 import ru.domium.building.model.TaskCompletionId;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
 public interface TaskCompletionRepository extends JpaRepository<TaskCompletion, TaskCompletionId> {
     @Query("select c.id.taskId from TaskCompletion c where c.id.buildingId = :buildingId and c.id.taskId in :taskIds")
     Set<UUID> findCompletedTaskIds(@Param("buildingId") UUID buildingId, @Param("taskIds") Set<UUID> taskIds);
+
+    /**
+     * Выполненные виды работ стройки на стадии (по индексу building_id, без списка id задач).
+     */
+    @Query(nativeQuery = true, value = """
+            select c.task_id
+              from building_task_completions c
+              join workflow_tasks t on t.id = c.task_id
+             where c.building_id = :buildingId and t.stage_id = :stageId
+            """)
+    Set<UUID> findCompletedTaskIdsInStage(@Param("buildingId") UUID buildingId, @Param("stageId") UUID stageId);
+
+    /**
+     * Отмечает виды работ выполненными одним многострочным INSERT (уже выполненные пропускаются)
+     * и в том же запросе прибавляет новые отметки к счётчикам подэтапов и стадий стройки.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            with inserted as (
+                insert into building_task_completions (building_id, task_id, completed_by, completed_at)
+                select :buildingId, t.id, :completedBy, :completedAt
+                  from workflow_tasks t
+                 where t.id in (:taskIds)
+                on conflict (building_id, task_id) do nothing
+                returning task_id
+            )
+            insert into building_progress_counters (building_id, scope_id, stage_id, completed)
+            select :buildingId, s.scope_id, t.stage_id, count(*)
+              from inserted i
+              join workflow_tasks t on t.id = i.task_id and t.parent_id is not null
+             cross join lateral (values (t.parent_id), (t.stage_id)) as s(scope_id)
+             group by s.scope_id, t.stage_id
+            on conflict (building_id, scope_id)
+            do update set completed = building_progress_counters.completed + excluded.completed
+            """)
+    int insertMissing(@Param("buildingId") UUID buildingId,
+                      @Param("taskIds") Collection<UUID> taskIds,
+                      @Param("completedBy") UUID completedBy,
+                      @Param("completedAt") Instant completedAt);
+
+    /**
+     * Счётчики стройки на стадии: по каждому подэтапу и по самой стадии (scopeId = stageId).
+     */
+    @Query(nativeQuery = true, value = """
+            select scope_id as scopeId, completed as completed
+              from building_progress_counters
+             where building_id = :buildingId and stage_id = :stageId
+            """)
+    List<ScopeCount> findStageCounters(@Param("buildingId") UUID buildingId, @Param("stageId") UUID stageId);
+
+    /**
+     * Выполнено видов работ по всей стройке (сумма счётчиков стадий).
+     */
+    @Query(nativeQuery = true, value = """
+            select coalesce(sum(completed), 0)
+              from building_progress_counters
+             where building_id = :buildingId and scope_id = stage_id
+            """)
+    long sumCompleted(@Param("buildingId") UUID buildingId);
+
+    @Query(nativeQuery = true, value = """
+            select building_id as buildingId, coalesce(sum(completed), 0) as completed
+              from building_progress_counters
+             where building_id in (:buildingIds) and scope_id = stage_id
+             group by building_id
+            """)
+    List<BuildingCount> sumCompletedByBuilding(@Param("buildingIds") Collection<UUID> buildingIds);
+
+    @Modifying
+    @Query(nativeQuery = true, value = "delete from building_progress_counters where stage_id = :stageId")
+    int deleteStageCounters(@Param("stageId") UUID stageId);
+
+    /**
+     * Пересчитывает счётчики стадии по отметкам (после правки дерева задач; отметки удалённых видов работ не учитываются).
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            insert into building_progress_counters (building_id, scope_id, stage_id, completed)
+            select c.building_id, s.scope_id, t.stage_id, count(*)
+              from building_task_completions c
+              join workflow_tasks t on t.id = c.task_id and t.parent_id is not null
+             cross join lateral (values (t.parent_id), (t.stage_id)) as s(scope_id)
+             where t.stage_id = :stageId
+             group by c.building_id, s.scope_id, t.stage_id
+            """)
+    int insertStageCounters(@Param("stageId") UUID stageId);
+
+    interface BuildingCount {
+        UUID getBuildingId();
+
+        long getCompleted();
+    }
+
+    interface ScopeCount {
+        UUID getScopeId();
+
+        int getCompleted();
+    }
 }
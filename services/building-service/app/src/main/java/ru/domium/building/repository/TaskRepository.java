@@ -11,4 +11,5 @@ public interface TaskRepository extends JpaRepository<Task, UUID> {
     List<Task> findByStageIdAndParentIdIsNullOrderByPosition(UUID stageId);
     List<Task> findByParentIdOrderByPosition(UUID parentId);
     List<Task> findByParentIdInOrderByParentIdAscPositionAsc(Collection<UUID> parentIds);
+    List<Task> findByStageIdInOrderByPositionAsc(Collection<UUID> stageIds);
 }
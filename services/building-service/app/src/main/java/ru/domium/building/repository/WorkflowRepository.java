@@ -15,4 +15,11 @@ public interface WorkflowRepository extends JpaRepository<Workflow, UUID> {
     @Modifying
     @Query("update Workflow w set w.active=false where w.managerId = :managerId and w.active=true")
     int deactivateActive(@Param("managerId") UUID managerId);
+
+    @Query("select w.version from Workflow w where w.id = :id")
+    Optional<Long> findVersion(@Param("id") UUID id);
+
+    @Modifying
+    @Query("update Workflow w set w.version = w.version + 1 where w.id = :id")
+    int bumpVersion(@Param("id") UUID id);
 }
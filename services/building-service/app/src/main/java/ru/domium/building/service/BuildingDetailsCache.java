@@ -0,0 +1,68 @@
+package ru.domium.building.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.api.dto.BuildingDetailsDto;
+import ru.domium.building.repository.BuildingRepository;
+import ru.domium.building.repository.BuildingRepository.DetailsVersion;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Детали стройки ({@code GET /{id}}) с ETag и кешем ответа на узле.
+ * <p>
+ * ETag строится из {@code buildings.version} (меняется при любом изменении стройки), {@code building_projections.updated_at}
+ * (прогресс и исправления проекции) и имени менеджера. Проба версии заодно проверяет доступ, поэтому совпавший
+ * If-None-Match (304) и попадание в кеш стоят одного запроса по первичным ключам. Ответ в кеше лежит под своим ETag:
+ * после изменения стройки старая запись просто перестаёт запрашиваться и вытесняется.
+ */
+@Component
+public class BuildingDetailsCache {
+    private final BuildingRepository buildingRepository;
+    private final Cache<String, BuildingDetailsDto> responses;
+
+    public BuildingDetailsCache(BuildingRepository buildingRepository,
+                                @Value("${domium.buildings.details-cache.max-size:10000}") long maxSize,
+                                @Value("${domium.buildings.details-cache.ttl:PT10M}") Duration ttl) {
+        this.buildingRepository = buildingRepository;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Текущий ETag деталей стройки; 404 — стройки нет, 403 — пользователь не клиент и не менеджер стройки.
+     */
+    public String etag(UUID buildingId, UUID userId) {
+        if (userId == null) throw new AccessDeniedException("Unauthorized");
+        DetailsVersion v = buildingRepository.findDetailsVersion(buildingId)
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Building not found: " + buildingId));
+        if (!userId.equals(v.getClientId()) && !userId.equals(v.getManagerId())) {
+            throw new AccessDeniedException("Forbidden");
+        }
+        return etag(buildingId, v);
+    }
+
+    /**
+     * Ответ из кеша по ETag или {@code loader}. Загруженные данные не старше ETag: проба версии выполнена до загрузки.
+     */
+    public BuildingDetailsDto get(String etag, Supplier<BuildingDetailsDto> loader) {
+        return responses.get(etag, key -> loader.get());
+    }
+
+    static String etag(UUID buildingId, DetailsVersion v) {
+        long updated = v.getProjectionUpdatedMicros() == null ? 0 : v.getProjectionUpdatedMicros();
+        return "\"" + buildingId + "-" + v.getVersion() + "-" + Long.toHexString(updated)
+                + "-" + Integer.toHexString(Objects.hashCode(v.getManagerName())) + "\"";
+    }
+}
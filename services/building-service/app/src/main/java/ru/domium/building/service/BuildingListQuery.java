@@ -0,0 +1,116 @@
+package ru.domium.building.service;
+
+import jakarta.persistence.criteria.Predicate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import ru.domium.building.model.BuildingProjection;
+import ru.domium.building.repository.BuildingProjectionRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+/**
+ * Постраничный список строек владельца (менеджера или клиента) с курсором по (updatedAt, id):
+ * следующая страница начинается строго после последней строки предыдущей, без OFFSET.
+ * Порядок совпадает с составными индексами (owner, updated_at DESC, id DESC).
+ */
+@Component
+@RequiredArgsConstructor
+public class BuildingListQuery {
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 200;
+    private static final Sort ORDER = Sort.by(Sort.Order.desc("updatedAt"), Sort.Order.desc("id"));
+
+    private final BuildingProjectionRepository repository;
+
+    public record Filter(String stage, String status, Integer progressMin, Integer progressMax, String projectNamePrefix) {
+    }
+
+    public record Page(List<BuildingProjection> items, String nextCursor) {
+    }
+
+    /**
+     * Позиция в списке: последняя строка предыдущей страницы.
+     */
+    public record Cursor(LocalDateTime updatedAt, UUID id) {
+        public String encode() {
+            String raw = updatedAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String value) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new ResponseStatusException(BAD_REQUEST, "Invalid cursor");
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Page forManager(UUID managerId, Filter filter, String cursor, Integer limit) {
+        return page("managerId", managerId, filter, cursor, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public Page forClient(UUID clientId, Filter filter, String cursor, Integer limit) {
+        return page("clientId", clientId, filter, cursor, limit);
+    }
+
+    private Page page(String ownerAttribute, UUID ownerId, Filter filter, String cursor, Integer limit) {
+        int size = limit == null ? DEFAULT_LIMIT : limit;
+        if (size < 1 || size > MAX_LIMIT) {
+            throw new ResponseStatusException(BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        Filter f = filter == null ? new Filter(null, null, null, null, null) : filter;
+        if (f.progressMin() != null && f.progressMax() != null && f.progressMin() > f.progressMax()) {
+            throw new ResponseStatusException(BAD_REQUEST, "progressMin must not exceed progressMax");
+        }
+        Cursor after = cursor == null || cursor.isBlank() ? null : Cursor.decode(cursor);
+
+        Specification<BuildingProjection> spec = (root, query, cb) -> {
+            List<Predicate> where = new ArrayList<>();
+            where.add(cb.equal(root.get(ownerAttribute), ownerId));
+            if (f.stage() != null && !f.stage().isBlank()) where.add(cb.equal(root.get("stage"), f.stage()));
+            if (f.status() != null && !f.status().isBlank()) where.add(cb.equal(root.get("status"), f.status()));
+            if (f.progressMin() != null) where.add(cb.ge(root.get("progress"), f.progressMin()));
+            if (f.progressMax() != null) where.add(cb.le(root.get("progress"), f.progressMax()));
+            if (f.projectNamePrefix() != null && !f.projectNamePrefix().isBlank()) {
+                String pattern = escapeLike(f.projectNamePrefix().trim().toLowerCase(Locale.ROOT)) + "%";
+                where.add(cb.like(cb.lower(root.get("projectName")), pattern, '\\'));
+            }
+            if (after != null) {
+                // updated_at <= :ts даёт границу диапазона по индексу, OR отсекает уже показанные строки
+                where.add(cb.lessThanOrEqualTo(root.get("updatedAt"), after.updatedAt()));
+                where.add(cb.or(
+                        cb.lessThan(root.get("updatedAt"), after.updatedAt()),
+                        cb.lessThan(root.get("id"), after.id())));
+            }
+            return cb.and(where.toArray(Predicate[]::new));
+        };
+
+        // на строку больше: есть ли следующая страница, без отдельного count
+        List<BuildingProjection> rows = repository.findBy(spec, q -> q.sortBy(ORDER).limit(size + 1).all());
+        if (rows.size() <= size) return new Page(rows, null);
+        List<BuildingProjection> items = rows.subList(0, size);
+        BuildingProjection last = items.getLast();
+        return new Page(List.copyOf(items), new Cursor(last.getUpdatedAt(), last.getId()).encode());
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,85 @@
+package ru.domium.building.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.Building;
+import ru.domium.building.model.WorkflowDefinition;
+import ru.domium.building.repository.TaskCompletionRepository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Материализованные счётчики выполненных видов работ (стройка + подэтап, стройка + стадия).
+ * Пишутся тем же запросом, что и отметки о выполнении; «всего» берётся из кешированного определения workflow.
+ * Вызывается внутри транзакции вызывающего.
+ */
+@Component
+@RequiredArgsConstructor
+public class BuildingProgressCounters {
+    private final TaskCompletionRepository completionRepository;
+
+    /**
+     * Отмечает виды работ выполненными (повторные отметки пропускаются) и обновляет счётчики.
+     */
+    public void complete(UUID buildingId, Collection<UUID> workItemIds, UUID userId) {
+        completionRepository.insertMissing(buildingId, workItemIds, userId, Instant.now());
+    }
+
+    /**
+     * Выполнено видов работ на стадии: ключ — id подэтапа или id самой стадии (итог по стадии).
+     */
+    public Map<UUID, Integer> stageCounters(UUID buildingId, UUID stageId) {
+        Map<UUID, Integer> result = new HashMap<>();
+        for (var row : completionRepository.findStageCounters(buildingId, stageId)) {
+            result.put(row.getScopeId(), row.getCompleted());
+        }
+        return result;
+    }
+
+    /**
+     * Прогресс стройки, %: больший из прогресса по стадиям и доли выполненных видов работ всего workflow.
+     */
+    public int progress(Building building, WorkflowDefinition definition) {
+        if (definition.totalWorkItems() == 0) return building.getProgress();
+        return progress(building, definition, completionRepository.sumCompleted(building.getId()));
+    }
+
+    public int progress(Building building, WorkflowDefinition definition, long completed) {
+        int total = definition.totalWorkItems();
+        if (total == 0) return building.getProgress();
+        int byWorkItems = (int) Math.min(100, Math.round(completed * 100.0 / total));
+        return Math.max(building.getProgress(), byWorkItems);
+    }
+
+    /**
+     * Выполнено видов работ по каждой стройке пачки одним запросом; строек без отметок в ответе нет.
+     */
+    public Map<UUID, Long> completedByBuilding(Collection<UUID> buildingIds) {
+        Map<UUID, Long> result = new HashMap<>();
+        if (buildingIds.isEmpty()) return result;
+        for (var row : completionRepository.sumCompletedByBuilding(buildingIds)) {
+            result.put(row.getBuildingId(), row.getCompleted());
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет счётчики стадии вместе с самой стадией: иначе её отметки продолжат входить в прогресс строек,
+     * а «всего» из определения workflow их уже не учитывает.
+     */
+    public void dropStage(UUID stageId) {
+        completionRepository.deleteStageCounters(stageId);
+    }
+
+    /**
+     * Пересчитывает счётчики стадии по отметкам — после изменения дерева задач стадии.
+     */
+    public void rebuildStage(UUID stageId) {
+        completionRepository.deleteStageCounters(stageId);
+        completionRepository.insertStageCounters(stageId);
+    }
+}
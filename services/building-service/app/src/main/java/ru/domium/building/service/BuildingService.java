@@ -2,15 +2,19 @@ package ru.domium.building.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 import ru.domium.building.mapper.BuildingMapper;
 import ru.domium.building.model.Building;
+import ru.domium.building.model.StageTransition;
 import ru.domium.building.model.Workflow;
-import ru.domium.building.model.Stage;
-import ru.domium.building.mapper.WorkflowMapper;
+import ru.domium.building.model.WorkflowDefinition;
+import ru.domium.building.model.WorkflowDefinition.TaskDef;
+import ru.domium.building.service.feed.BuildingFeed;
 import ru.domium.building.service.stage.StageTransitionResolver;
 import ru.domium.building.api.dto.BuildingDto;
 import ru.domium.building.api.dto.workflow.StageDto;
@@ -21,23 +25,22 @@ import ru.domium.building.service.stage.requirement.TransitionViolation;
 import ru.domium.building.repository.BuildingProjectionRepository;
 import ru.domium.building.repository.BuildingRepository;
 import ru.domium.building.repository.WorkflowRepository;
-import ru.domium.building.repository.StageRepository;
-import ru.domium.building.repository.TaskRepository;
 import ru.domium.building.repository.TaskCompletionRepository;
 import ru.domium.building.model.BuildingProjection;
-import ru.domium.building.model.Task;
-import ru.domium.building.model.TaskCompletion;
-import ru.domium.building.model.TaskCompletionId;
 import ru.domium.building.mapper.SubStageStatusMapper;
 import ru.domium.building.api.dto.substage.WorkItemStatusDto;
 
 import java.time.LocalDateTime;
-import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @Service
@@ -46,31 +49,136 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 public class BuildingService {
     private static final UUID DEFAULT_WORKFLOW_ID = UUID.fromString("11111111-1111-1111-1111-111111111111");
     private static final UUID SYSTEM_MANAGER_ID = UUID.fromString("00000000-0000-0000-0000-000000000000");
+    private static final int MAX_WORK_ITEMS_PER_REQUEST = 500;
+    private static final int MAX_ADVANCE_ATTEMPTS = 3;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 200;
 
     private final BuildingRepository buildingRepository;
     private final BuildingProjectionRepository buildingProjectionRepository;
     private final StageTransitionResolver stageTransitionResolver;
     private final StageTransitionRequirements stageTransitionRequirements;
-    private final StageRepository stageRepository;
     private final WorkflowRepository workflowRepository;
     private final BuildingMapper buildingMapper;
-    private final WorkflowMapper workflowMapper;
-    private final TaskRepository taskRepository;
     private final TaskCompletionRepository taskCompletionRepository;
     private final SubStageStatusMapper subStageStatusMapper;
+    private final WorkflowTreeLoader workflowTreeLoader;
+    private final WorkflowDefinitionCache workflowDefinitions;
+    private final TransactionTemplate transactionTemplate;
+    private final BuildingProgressCounters progressCounters;
+    private final BuildingFeed buildingFeed;
 
-    @Transactional
     public BuildingProjection nextStage(UUID buildingId, UUID userId) {
         return nextStage(buildingId, userId, null);
     }
 
-    @Transactional
     public BuildingProjection nextStage(UUID buildingId, UUID userId, String managerNameOverride) {
-        Building building = buildingRepository.findById(buildingId)
+        return nextStage(buildingId, userId, managerNameOverride, null, null).projection();
+    }
+
+    /**
+     * Переход на следующий этап. Требования к другим сервисам (подписи документов) проверяются до транзакции:
+     * медленный ответ не держит соединение с БД. Если за это время стройка сменила этап — 409 с текущим этапом.
+     * <p>
+     * {@code expectedStageId} — этап, который видел клиент; {@code idempotencyKey} — ключ повтора: запрос с уже
+     * использованным ключом не двигает стройку, а возвращает её текущее состояние. Конфликт версии без смены этапа
+     * повторяется несколько раз, смена этапа конкурентным запросом всегда даёт 409, а не второй переход.
+     * Если повторы исчерпаны, а этап не сменился — 409 {@code CONCURRENT_UPDATE}: запрос можно повторить.
+     */
+    public StageAdvanceResult nextStage(UUID buildingId, UUID userId, String managerNameOverride,
+                                        UUID expectedStageId, String idempotencyKey) {
+        String key = normalizeIdempotencyKey(idempotencyKey);
+        Building snapshot = buildingRepository.findById(buildingId)
                 .orElseThrow(() -> new IllegalArgumentException("Building not found"));
+        requireAccess(snapshot, userId);
+        if (key != null && buildingRepository.existsAdvanceKey(buildingId, key)) {
+            return replay(buildingId);
+        }
+        if (expectedStageId != null && !expectedStageId.equals(snapshot.getCurrentStageId())) {
+            throw stageChanged(snapshot);
+        }
+        stageTransitionRequirements.checkRemote(snapshot, userId, resolveTransition(snapshot));
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> advance(buildingId, userId, managerNameOverride, snapshot, key));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_ADVANCE_ATTEMPTS) {
+                    log.warn("Building {} stage advance gave up after {} optimistic lock conflicts", buildingId, attempt);
+                    Building current = buildingRepository.findById(buildingId).orElse(snapshot);
+                    throw Objects.equals(current.getCurrentStageId(), snapshot.getCurrentStageId())
+                            ? concurrentUpdate(current)
+                            : stageChanged(current);
+                }
+                backoff(attempt);
+            }
+        }
+    }
 
+    private StageAdvanceResult advance(UUID buildingId, UUID userId, String managerNameOverride,
+                                       Building snapshot, String key) {
+        Building building = buildingRepository.findById(buildingId)
+                .orElseThrow(() -> new IllegalArgumentException("Building not found"));
         requireAccess(building, userId);
+        // вставка ключа ждёт конкурентную транзакцию с тем же ключом: после её коммита это повтор
+        if (key != null && buildingRepository.registerAdvanceKey(buildingId, key, userId, snapshot.getCurrentStageId()) == 0) {
+            return replay(buildingId);
+        }
+        if (!Objects.equals(building.getCurrentStageId(), snapshot.getCurrentStageId())) {
+            throw stageChanged(building);
+        }
+
+        StageTransition transition = resolveTransition(building);
+        stageTransitionRequirements.checkLocal(building, userId, transition);
+        building.nextStage(userId, transition);
+
+        buildingRepository.saveAndFlush(building);
+        BuildingProjection projection = upsertProjectionFromBuilding(building, null, managerNameOverride, null);
+        buildingFeed.stageAdvanced(buildingId, building.getCurrentStageId(), building.getCurrentStageName(), projection.getProgress());
+
+        log.info("Building {} advanced to stage: {}", buildingId, building.getCurrentStageName());
+        return new StageAdvanceResult(projection, false);
+    }
+
+    private StageAdvanceResult replay(UUID buildingId) {
+        BuildingProjection projection = buildingProjectionRepository.findById(buildingId)
+                .orElseThrow(() -> new IllegalArgumentException("Building not found"));
+        return new StageAdvanceResult(projection, true);
+    }
+
+    private static StageTransitionNotAllowedException stageChanged(Building building) {
+        return new StageTransitionNotAllowedException(
+                List.of(new TransitionViolation("STAGE_CHANGED", "Этап стройки уже сменился")),
+                building.getCurrentStageId(),
+                building.getCurrentStageName());
+    }
+
+    private static StageTransitionNotAllowedException concurrentUpdate(Building building) {
+        return new StageTransitionNotAllowedException(
+                List.of(new TransitionViolation("CONCURRENT_UPDATE",
+                        "Стройка одновременно изменяется другими запросами, повторите переход")),
+                building.getCurrentStageId(),
+                building.getCurrentStageName());
+    }
+
+    private static String normalizeIdempotencyKey(String key) {
+        if (key == null || key.isBlank()) return null;
+        String trimmed = key.trim();
+        if (trimmed.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key is too long (max " + MAX_IDEMPOTENCY_KEY_LENGTH + ")");
+        }
+        return trimmed;
+    }
 
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(5, 20L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(CONFLICT, "Interrupted while retrying stage transition");
+        }
+    }
+
+    private StageTransition resolveTransition(Building building) {
         var transition = stageTransitionResolver.resolveNext(building.getWorkflowId(), building.getCurrentStageId());
         if (!transition.canTransition()) {
             String message;
@@ -88,15 +196,21 @@ public class BuildingService {
             }
             throw new StageTransitionNotAllowedException(List.of(new TransitionViolation(code, message)));
         }
+        return transition;
+    }
 
-        stageTransitionRequirements.check(building, userId, transition);
-        building.nextStage(userId, transition);
-
-        buildingRepository.save(building);
-        BuildingProjection projection = upsertProjectionFromBuilding(building, null, managerNameOverride, null);
-
-        log.info("Building {} advanced to stage: {}", buildingId, building.getCurrentStageName());
-        return projection;
+    /**
+     * Стройки, на события которых подписывается пользователь: одна (с проверкой доступа) или все, где он клиент или менеджер.
+     */
+    @Transactional(readOnly = true)
+    public Set<UUID> feedBuildingIds(UUID userId, UUID buildingId) {
+        if (buildingId != null) {
+            Building building = buildingRepository.findById(buildingId)
+                    .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Building not found: " + buildingId));
+            requireAccess(building, userId);
+            return Set.of(buildingId);
+        }
+        return buildingRepository.findIdsByParticipant(userId);
     }
 
     @Transactional(readOnly = true)
@@ -112,20 +226,7 @@ public class BuildingService {
         Building building = buildingRepository.findById(buildingId)
                 .orElseThrow(() -> new IllegalArgumentException("Building not found"));
         requireAccess(building, userId);
-        if (building.getWorkflowId() == null) return List.of();
-        List<Stage> stages = stageRepository.findByWorkflowIdOrderByPosition(building.getWorkflowId());
-        List<StageDto> dtos = workflowMapper.toStageDtos(stages);
-
-        for (StageDto dto : dtos) {
-            if (dto.getId() == null) continue;
-            var subStageDtos = workflowMapper.toSubStageDtos(taskRepository.findByStageIdAndParentIdIsNullOrderByPosition(dto.getId()));
-            for (var ss : subStageDtos) {
-                if (ss.getId() == null) continue;
-                ss.setWorkItems(workflowMapper.toWorkItemDtos(taskRepository.findByParentIdOrderByPosition(ss.getId())));
-            }
-            dto.setSubStages(subStageDtos);
-        }
-        return dtos;
+        return workflowTreeLoader.load(building.getWorkflowId());
     }
 
     @Transactional(readOnly = true)
@@ -135,7 +236,7 @@ public class BuildingService {
         requireAccess(building, userId);
         if (building.getCurrentStageId() == null) return List.of();
 
-        return getStageSubStagesInternal(buildingId, building.getCurrentStageId());
+        return getStageSubStagesInternal(buildingId, workflowDefinitions.get(building.getWorkflowId()), building.getCurrentStageId());
     }
 
     @Transactional(readOnly = true)
@@ -145,43 +246,41 @@ public class BuildingService {
         requireAccess(building, userId);
         if (stageId == null) return List.of();
 
-        Stage stage = stageRepository.findById(stageId)
-                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Stage not found: " + stageId));
-        if (building.getWorkflowId() == null || !building.getWorkflowId().equals(stage.getWorkflowId())) {
-            throw new ResponseStatusException(NOT_FOUND, "Stage does not belong to building workflow");
+        WorkflowDefinition definition = workflowDefinitions.get(building.getWorkflowId());
+        if (definition.stage(stageId).isEmpty()) {
+            throw new ResponseStatusException(NOT_FOUND, "Stage not found in building workflow: " + stageId);
         }
 
-        return getStageSubStagesInternal(buildingId, stageId);
+        return getStageSubStagesInternal(buildingId, definition, stageId);
     }
 
-    private List<SubStageStatusDto> getStageSubStagesInternal(UUID buildingId, UUID stageId) {
-        List<Task> subStages = taskRepository.findByStageIdAndParentIdIsNullOrderByPosition(stageId);
+    private List<SubStageStatusDto> getStageSubStagesInternal(UUID buildingId, WorkflowDefinition definition, UUID stageId) {
+        List<TaskDef> subStages = definition.subStages(stageId);
         if (subStages.isEmpty()) return List.of();
 
-        Set<UUID> subStageIds = subStages.stream().map(Task::getId).collect(java.util.stream.Collectors.toSet());
-        List<Task> workItems = taskRepository.findByParentIdInOrderByParentIdAscPositionAsc(subStageIds);
-        Set<UUID> workItemIds = workItems.stream().map(Task::getId).collect(java.util.stream.Collectors.toSet());
-        Set<UUID> completedWorkItemIds = workItemIds.isEmpty()
+        Map<UUID, Integer> counters = progressCounters.stageCounters(buildingId, stageId);
+        // отметки по видам работ нужны только если на стадии что-то выполнено
+        Set<UUID> completedWorkItemIds = counters.getOrDefault(stageId, 0) == 0
                 ? Set.of()
-                : taskCompletionRepository.findCompletedTaskIds(buildingId, workItemIds);
-
-        var workItemsBySubStage = workItems.stream().collect(java.util.stream.Collectors.groupingBy(Task::getParentId));
+                : taskCompletionRepository.findCompletedTaskIdsInStage(buildingId, stageId);
 
         return subStages.stream().map(s -> {
             SubStageStatusDto dto = subStageStatusMapper.toDto(s);
-            List<Task> items = workItemsBySubStage.getOrDefault(s.getId(), List.of());
+            List<TaskDef> items = definition.workItems(s.id());
             List<WorkItemStatusDto> itemDtos = items.stream().map(wi -> {
                 WorkItemStatusDto wid = new WorkItemStatusDto();
-                wid.setId(wi.getId());
-                wid.setName(wi.getName());
-                wid.setDescription(wi.getDescription());
-                wid.setPosition(wi.getPosition());
-                wid.setCompleted(completedWorkItemIds.contains(wi.getId()));
+                wid.setId(wi.id());
+                wid.setName(wi.name());
+                wid.setDescription(wi.description());
+                wid.setPosition(wi.position());
+                wid.setCompleted(completedWorkItemIds.contains(wi.id()));
                 return wid;
             }).toList();
             dto.setWorkItems(itemDtos);
-            boolean completed = !items.isEmpty() && itemDtos.stream().allMatch(WorkItemStatusDto::isCompleted);
-            dto.setCompleted(completed);
+            int completedItems = Math.min(counters.getOrDefault(s.id(), 0), items.size());
+            dto.setCompletedWorkItems(completedItems);
+            dto.setTotalWorkItems(items.size());
+            dto.setCompleted(!items.isEmpty() && completedItems == items.size());
             return dto;
         }).toList();
     }
@@ -192,31 +291,58 @@ public class BuildingService {
                 .orElseThrow(() -> new IllegalArgumentException("Building not found"));
         requireAccess(building, userId);
 
-        Task workItem = taskRepository.findById(workItemId)
+        WorkflowDefinition definition = workflowDefinitions.get(building.getWorkflowId());
+        requireCurrentStageWorkItem(building, definition, workItemId);
+        progressCounters.complete(buildingId, List.of(workItemId), userId); // idempotent
+        int progress = progressCounters.progress(building, definition);
+        buildingProjectionRepository.updateProgress(buildingId, progress);
+        buildingFeed.workItemsCompleted(buildingId, List.of(workItemId), progress);
+    }
+
+    /**
+     * Отмечает несколько видов работ текущей стадии одним запросом. Все виды работ проверяются до записи:
+     * если хотя бы один не относится к текущей стадии, не отмечается ни один.
+     * Возвращает статусы подэтапов текущей стадии после отметки.
+     */
+    @Transactional
+    public List<SubStageStatusDto> completeWorkItems(UUID buildingId, UUID userId, Collection<UUID> workItemIds) {
+        if (workItemIds == null || workItemIds.isEmpty()) {
+            throw new IllegalArgumentException("workItemIds must not be empty");
+        }
+        Set<UUID> ids = new LinkedHashSet<>(workItemIds);
+        if (ids.size() > MAX_WORK_ITEMS_PER_REQUEST) {
+            throw new IllegalArgumentException("Too many work items in one request (max " + MAX_WORK_ITEMS_PER_REQUEST + ")");
+        }
+        Building building = buildingRepository.findById(buildingId)
+                .orElseThrow(() -> new IllegalArgumentException("Building not found"));
+        requireAccess(building, userId);
+
+        WorkflowDefinition definition = workflowDefinitions.get(building.getWorkflowId());
+        for (UUID id : ids) {
+            requireCurrentStageWorkItem(building, definition, id);
+        }
+        progressCounters.complete(buildingId, ids, userId);
+        int progress = progressCounters.progress(building, definition);
+        buildingProjectionRepository.updateProgress(buildingId, progress);
+        buildingFeed.workItemsCompleted(buildingId, ids, progress);
+        return getStageSubStagesInternal(buildingId, definition, building.getCurrentStageId());
+    }
+
+    private void requireCurrentStageWorkItem(Building building, WorkflowDefinition definition, UUID workItemId) {
+        TaskDef workItem = definition.task(workItemId)
                 .orElseThrow(() -> new IllegalArgumentException("Task (вид работ) not found"));
-        if (!"WORK_ITEM".equalsIgnoreCase(workItem.getType())) {
+        if (!"WORK_ITEM".equalsIgnoreCase(workItem.type())) {
             throw new IllegalArgumentException("Task is not a WORK_ITEM (вид работ)");
         }
-        if (workItem.getParentId() == null) {
+        if (workItem.parentId() == null) {
             throw new IllegalArgumentException("WORK_ITEM has no parent SUBSTAGE (подэтап)");
         }
-        Task subStage = taskRepository.findById(workItem.getParentId())
+        TaskDef subStage = definition.task(workItem.parentId())
                 .orElseThrow(() -> new IllegalArgumentException("Parent SUBSTAGE (подэтап) not found"));
 
-        if (building.getCurrentStageId() == null || !building.getCurrentStageId().equals(subStage.getStageId())) {
+        if (building.getCurrentStageId() == null || !building.getCurrentStageId().equals(subStage.stageId())) {
             throw new IllegalArgumentException("Work item (вид работ) does not belong to current stage");
         }
-
-        TaskCompletionId id = new TaskCompletionId();
-        id.setBuildingId(buildingId);
-        id.setTaskId(workItemId);
-        if (taskCompletionRepository.existsById(id)) return; // idempotent
-
-        TaskCompletion completion = new TaskCompletion();
-        completion.setId(id);
-        completion.setCompletedBy(userId);
-        completion.setCompletedAt(Instant.now());
-        taskCompletionRepository.save(completion);
     }
 
     @Transactional
@@ -235,12 +361,12 @@ public class BuildingService {
 
         Building building = Building.from(projectId, clientId, managerId, resolvedWorkflowId);
 
-        List<Stage> stages = stageRepository.findByWorkflowIdOrderByPosition(resolvedWorkflowId);
+        List<WorkflowDefinition.StageDef> stages = workflowDefinitions.get(resolvedWorkflowId).stages();
         if (stages.isEmpty()) throw new IllegalStateException("Workflow has no stages: " + resolvedWorkflowId);
 
         int totalStages = stages.size();
-        building.setCurrentStageName(stages.getFirst().getName());
-        building.setCurrentStageId(stages.getFirst().getId());
+        building.setCurrentStageName(stages.getFirst().name());
+        building.setCurrentStageId(stages.getFirst().id());
         building.setCurrentStageIndex(0);
         building.setProgress(totalStages <= 1 ? 100 : 0);
         building.setStatus(totalStages <= 1 ? "COMPLETED" : "ACTIVE");
@@ -284,7 +410,8 @@ public class BuildingService {
             projection.setManagerName(managerName);
         }
         projection.setStage(building.getCurrentStageName());
-        projection.setProgress(building.getProgress());
+        projection.setStatus(building.getStatus());
+        projection.setProgress(progressCounters.progress(building, workflowDefinitions.get(building.getWorkflowId())));
         projection.setUpdatedAt(LocalDateTime.now());
         if (attributes != null && (projection.getMetadata() == null || projection.getMetadata().isEmpty())) {
             projection.setMetadata(attributes);
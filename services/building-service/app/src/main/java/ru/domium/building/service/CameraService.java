@@ -6,14 +6,31 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 import ru.domium.building.api.dto.video.CameraDto;
 import ru.domium.building.api.dto.video.CreateCameraRequest;
+import ru.domium.building.api.dto.video.TimelapseDto;
+import ru.domium.building.client.VideoNodeClient;
 import ru.domium.building.model.BuildingCamera;
 import ru.domium.building.repository.BuildingCameraRepository;
+import ru.domium.building.service.video.CameraArchiveStorage;
 import ru.domium.building.service.video.FfmpegStreamManager;
-import ru.domium.building.service.video.VideoPaths;
+import ru.domium.building.service.video.HlsTokenService;
+import ru.domium.building.service.video.PlaylistReadiness;
+import ru.domium.building.service.video.StreamOwnedElsewhereException;
+import ru.domium.building.service.video.StreamPlacement;
+import ru.domium.building.service.video.StreamPrewarmer;
+import ru.domium.building.service.video.VideoStreamingProperties;
 
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.OptionalLong;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
@@ -22,6 +39,13 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 public class CameraService {
     private final BuildingCameraRepository cameraRepository;
     private final FfmpegStreamManager streamManager;
+    private final HlsTokenService hlsTokenService;
+    private final VideoStreamingProperties videoProps;
+    private final PlaylistReadiness playlistReadiness;
+    private final StreamPrewarmer prewarmer;
+    private final CameraArchiveStorage archiveStorage;
+    private final StreamPlacement placement;
+    private final VideoNodeClient videoNodeClient;
 
     @Transactional(readOnly = true)
     public List<CameraDto> list(UUID buildingId) {
@@ -49,6 +73,12 @@ public class CameraService {
         cam.setRtspUrl(req.getRtspUrl().trim());
         cam.setEnabled(true);
         cam.setTranscode(Boolean.TRUE.equals(req.getTranscode()));
+        cam.setRenditions(validateRenditions(cam.isTranscode(), req.getRenditions()));
+        cam.setLowLatency(Boolean.TRUE.equals(req.getLowLatency()));
+        if (cam.isLowLatency() && (!cam.isTranscode() || cam.getRenditions() != null)) {
+            throw new IllegalArgumentException("lowLatency requires transcode=true and a single rendition");
+        }
+        cam.setArchive(Boolean.TRUE.equals(req.getArchive()));
         cam.setCreatedAt(LocalDateTime.now());
         cam.setUpdatedAt(LocalDateTime.now());
 
@@ -62,14 +92,99 @@ public class CameraService {
                 .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Camera not found: " + cameraId));
     }
 
-    public void ensureStarted(UUID buildingId, BuildingCamera camera) {
+    /**
+     * Запускает поток на этом узле или, если камера за другим узлом, на владельце.
+     *
+     * @return время запуска процесса; пусто — поток ждёт перезапуска
+     */
+    public OptionalLong ensureStarted(UUID buildingId, BuildingCamera camera) {
+        try {
+            return ensureStartedLocally(buildingId, camera);
+        } catch (StreamOwnedElsewhereException e) {
+            return videoNodeClient.start(e.getOwner(), buildingId, camera.getId());
+        }
+    }
+
+    /**
+     * Запуск без переадресации (запрос уже пришёл от другого узла).
+     *
+     * @throws StreamOwnedElsewhereException если камера за другим узлом
+     */
+    public OptionalLong ensureStartedLocally(UUID buildingId, BuildingCamera camera) {
+        prewarmer.recordView(camera.getId());
         streamManager.start(buildingId, camera);
+        return streamManager.startedAtMs(camera.getId());
+    }
+
+    /**
+     * Ждёт первый плейлист потока, запущенного в {@code startedAt}, не дольше {@code timeoutMs}
+     * (и {@code stream-ready-timeout-ms}). Каталог HLS общий для узлов, поэтому ждать можно на любом.
+     */
+    public CompletableFuture<Boolean> awaitReady(UUID buildingId, UUID cameraId, OptionalLong startedAt, long timeoutMs) {
+        if (startedAt.isEmpty()) return CompletableFuture.completedFuture(false);
+        long timeout = Math.min(Math.max(0, timeoutMs), videoProps.getStreamReadyTimeoutMs());
+        Path playlist = streamManager.paths(buildingId, cameraId).hlsPlaylist();
+        if (timeout == 0) {
+            return CompletableFuture.completedFuture(PlaylistReadiness.isReady(playlist, startedAt.getAsLong()));
+        }
+        return playlistReadiness.await(playlist, startedAt.getAsLong(), timeout);
     }
 
     public void stop(UUID cameraId) {
         streamManager.stop(cameraId);
     }
 
+    /**
+     * Готовые суточные таймлапсы камеры, по возрастанию даты.
+     */
+    public List<TimelapseDto> listTimelapses(UUID buildingId, UUID cameraId) {
+        if (!videoProps.getArchive().isEnabled()) return List.of();
+        String prefix = CameraArchiveStorage.timelapsePrefix(buildingId, cameraId);
+        List<TimelapseDto> result = new ArrayList<>();
+        archiveStorage.list(prefix, false, o -> {
+            String name = o.name().substring(prefix.length());
+            if (!name.endsWith(".mp4")) return;
+            try {
+                TimelapseDto dto = new TimelapseDto();
+                dto.setDate(LocalDate.parse(name.substring(0, name.length() - 4)));
+                dto.setSizeBytes(o.size());
+                result.add(dto);
+            } catch (DateTimeParseException ignored) {
+            }
+        });
+        return result;
+    }
+
+    public long timelapseSize(UUID buildingId, UUID cameraId, LocalDate date) {
+        if (!videoProps.getArchive().isEnabled()) throw new ResponseStatusException(NOT_FOUND, "Archive is disabled");
+        return archiveStorage.size(CameraArchiveStorage.timelapseName(buildingId, cameraId, date))
+                .orElseThrow(() -> new ResponseStatusException(NOT_FOUND, "Timelapse not found: " + date));
+    }
+
+    /**
+     * Поток байтов таймлапса начиная с {@code offset}; {@code length < 0} — до конца.
+     */
+    public InputStream openTimelapse(UUID buildingId, UUID cameraId, LocalDate date, long offset, long length) {
+        return archiveStorage.open(CameraArchiveStorage.timelapseName(buildingId, cameraId, date), offset, length);
+    }
+
+    private List<String> validateRenditions(boolean transcode, List<String> renditions) {
+        if (renditions == null || renditions.isEmpty()) return null;
+        if (!transcode) throw new IllegalArgumentException("renditions require transcode=true");
+        if (renditions.size() > videoProps.getMaxRenditions()) {
+            throw new IllegalArgumentException("At most " + videoProps.getMaxRenditions() + " renditions are allowed");
+        }
+        Set<String> unique = new LinkedHashSet<>();
+        for (String name : renditions) {
+            String key = name == null ? null : name.trim();
+            if (key == null || !videoProps.getRenditions().containsKey(key)) {
+                throw new IllegalArgumentException("Unknown rendition: " + name + ". Allowed: " + videoProps.getRenditions().keySet());
+            }
+            if (!unique.add(key)) throw new IllegalArgumentException("Renditions must be unique");
+        }
+        return List.copyOf(unique);
+    }
+
     private CameraDto toDto(UUID buildingId, BuildingCamera c) {
         CameraDto dto = new CameraDto();
         dto.setId(c.getId());
@@ -77,8 +192,11 @@ public class CameraService {
         dto.setName(c.getName());
         dto.setEnabled(c.isEnabled());
         dto.setTranscode(c.isTranscode());
-        dto.setHlsUrl(VideoPaths.hlsUrl(buildingId, c.getId()));
-        dto.setRunning(streamManager.isRunning(c.getId()));
+        dto.setLowLatency(c.isLowLatency());
+        dto.setArchive(c.isArchive());
+        dto.setRenditions(c.getRenditions() == null ? List.of() : c.getRenditions());
+        dto.setHlsUrl(hlsTokenService.hlsUrl(buildingId, c.getId()));
+        dto.setRunning(streamManager.isRunning(c.getId()) || placement.remoteOwner(c.getId()).isPresent());
         return dto;
     }
 }
@@ -0,0 +1,59 @@
+package ru.domium.building.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.domium.building.repository.BuildingProjectionRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Дозапись имени менеджера в проекции строек вне пути чтения.
+ * Список строек только запоминает имя из JWT, а задача раз в период пишет его одним UPDATE на менеджера;
+ * менеджерам, которых никто не запомнил, имя переносится из других их строек.
+ */
+@Slf4j
+@Component
+public class ManagerNameBackfillJob {
+    private static final int MAX_PENDING = 10_000;
+
+    private final BuildingProjectionRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<UUID, String> pending = new ConcurrentHashMap<>();
+
+    public ManagerNameBackfillJob(BuildingProjectionRepository repository, TransactionTemplate transactionTemplate) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void remember(UUID managerId, String name) {
+        if (managerId == null || name == null || name.isBlank()) return;
+        if (pending.size() >= MAX_PENDING) return;
+        pending.putIfAbsent(managerId, name.trim());
+    }
+
+    @Scheduled(fixedDelayString = "${domium.buildings.manager-name-backfill.period-ms:60000}",
+            initialDelayString = "${domium.buildings.manager-name-backfill.initial-delay-ms:30000}")
+    public void run() {
+        int updated = 0;
+        for (UUID managerId : List.copyOf(pending.keySet())) {
+            String name = pending.remove(managerId);
+            if (name == null) continue;
+            Integer rows = transactionTemplate.execute(status -> repository.fillMissingManagerName(managerId, name));
+            updated += rows == null ? 0 : rows;
+        }
+        for (UUID managerId : repository.findManagerIdsWithoutName()) {
+            String known = repository.findKnownManagerName(managerId);
+            if (known == null) continue;
+            Integer rows = transactionTemplate.execute(status -> repository.fillMissingManagerName(managerId, known));
+            updated += rows == null ? 0 : rows;
+        }
+        if (updated > 0) {
+            log.info("Backfilled manager name in {} building projections", updated);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ru.domium.building.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.domium.building.repository.BuildingRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Удаляет ключи идемпотентности перехода этапа старше TTL: повтор «двойного нажатия» приходит за секунды,
+ * сутки хранения с запасом покрывают ретраи клиентов и прокси.
+ */
+@Slf4j
+@Component
+public class StageAdvanceKeyCleanupJob {
+    private final BuildingRepository repository;
+    private final Duration ttl;
+
+    public StageAdvanceKeyCleanupJob(BuildingRepository repository,
+                                     @Value("${domium.buildings.stage-advance.key-ttl:PT24H}") Duration ttl) {
+        this.repository = repository;
+        this.ttl = ttl;
+    }
+
+    @Scheduled(fixedDelayString = "${domium.buildings.stage-advance.cleanup-period-ms:3600000}",
+            initialDelayString = "${domium.buildings.stage-advance.cleanup-initial-delay-ms:60000}")
+    public void run() {
+        int deleted = repository.deleteAdvanceKeysBefore(Instant.now().minus(ttl));
+        if (deleted > 0) {
+            log.info("Deleted {} expired stage advance idempotency keys", deleted);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.domium.building.service;
+
+import ru.domium.building.model.BuildingProjection;
+
+/**
+ * Результат перехода на следующий этап. {@code replayed} — запрос с уже использованным ключом идемпотентности:
+ * стройка не двигалась, возвращено её текущее состояние.
+ */
+public record StageAdvanceResult(BuildingProjection projection, boolean replayed) {
+}
@@ -0,0 +1,122 @@
+package ru.domium.building.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.domium.building.model.Stage;
+import ru.domium.building.model.WorkflowDefinition;
+import ru.domium.building.repository.StageRepository;
+import ru.domium.building.repository.TaskRepository;
+import ru.domium.building.repository.WorkflowRepository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Кеш неизменяемых определений workflow ({@link WorkflowDefinition}) по workflowId.
+ * <p>
+ * Изменение стадий/задач увеличивает {@code building_workflows.version} ({@link #markChanged}). Узел сверяет
+ * версию закешированного снимка с БД не чаще раза в {@code version-check-ms}, поэтому правки, сделанные на
+ * другом узле, видны не позже чем через этот интервал; на своём узле — сразу после коммита.
+ * Внутри транзакции, изменившей workflow, снимок всегда читается заново и не кешируется.
+ */
+@Component
+public class WorkflowDefinitionCache {
+    private final WorkflowRepository workflowRepository;
+    private final StageRepository stageRepository;
+    private final TaskRepository taskRepository;
+    private final long versionCheckMs;
+    private final Cache<UUID, Entry> entries;
+    private final Object dirtyKey = new Object();
+
+    private record Entry(WorkflowDefinition definition, long checkedAtMs) {
+    }
+
+    public WorkflowDefinitionCache(WorkflowRepository workflowRepository,
+                                   StageRepository stageRepository,
+                                   TaskRepository taskRepository,
+                                   @Value("${domium.workflow.cache.version-check-ms:2000}") long versionCheckMs,
+                                   @Value("${domium.workflow.cache.max-size:1000}") long maxSize) {
+        this.workflowRepository = workflowRepository;
+        this.stageRepository = stageRepository;
+        this.taskRepository = taskRepository;
+        this.versionCheckMs = versionCheckMs;
+        this.entries = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    @Transactional(readOnly = true)
+    public WorkflowDefinition get(UUID workflowId) {
+        if (workflowId == null) return WorkflowDefinition.empty(null);
+        if (dirtyInTransaction().contains(workflowId)) {
+            return workflowRepository.findVersion(workflowId)
+                    .map(version -> load(workflowId, version))
+                    .orElseGet(() -> WorkflowDefinition.empty(workflowId));
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = entries.getIfPresent(workflowId);
+        if (entry != null && now - entry.checkedAtMs() < versionCheckMs) return entry.definition();
+
+        Optional<Long> version = workflowRepository.findVersion(workflowId);
+        if (version.isEmpty()) {
+            entries.invalidate(workflowId);
+            return WorkflowDefinition.empty(workflowId);
+        }
+        WorkflowDefinition definition = entry != null && entry.definition().version() == version.get()
+                ? entry.definition()
+                : load(workflowId, version.get());
+        entries.put(workflowId, new Entry(definition, now));
+        return definition;
+    }
+
+    /**
+     * Стадии или задачи workflow изменены в текущей транзакции: новая версия в БД, локальный снимок сбрасывается
+     * сейчас и ещё раз после завершения транзакции (чтобы не остался снимок, прочитанный параллельно до коммита).
+     */
+    public void markChanged(UUID workflowId) {
+        workflowRepository.bumpVersion(workflowId);
+        entries.invalidate(workflowId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+
+        @SuppressWarnings("unchecked")
+        Set<UUID> dirty = (Set<UUID>) TransactionSynchronizationManager.getResource(dirtyKey);
+        if (dirty == null) {
+            Set<UUID> changed = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(dirtyKey, changed);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(dirtyKey);
+                    entries.invalidateAll(changed);
+                }
+            });
+            dirty = changed;
+        }
+        dirty.add(workflowId);
+    }
+
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    private WorkflowDefinition load(UUID workflowId, long version) {
+        List<Stage> stages = stageRepository.findByWorkflowIdOrderByPosition(workflowId);
+        List<UUID> stageIds = stages.stream().map(Stage::getId).toList();
+        return WorkflowDefinition.of(workflowId, version, stages,
+                stageIds.isEmpty() ? List.of() : taskRepository.findByStageIdInOrderByPositionAsc(stageIds));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<UUID> dirtyInTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return Set.of();
+        Set<UUID> dirty = (Set<UUID>) TransactionSynchronizationManager.getResource(dirtyKey);
+        return dirty == null ? Set.of() : dirty;
+    }
+}
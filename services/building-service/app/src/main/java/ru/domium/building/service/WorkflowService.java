@@ -40,6 +40,9 @@ public class WorkflowService {
     private final BuildingRepository buildingRepository;
     private final WorkflowMapper workflowMapper;
     private final StageUpdateMapper stageUpdateMapper;
+    private final WorkflowTreeLoader workflowTreeLoader;
+    private final WorkflowDefinitionCache workflowDefinitions;
+    private final BuildingProgressCounters progressCounters;
 
     @Transactional(readOnly = true)
     public WorkflowDto getActive(UUID managerId) {
@@ -102,6 +105,7 @@ public class WorkflowService {
         workflowRepository.deactivateActive(managerId);
         wf.setActive(true);
         workflowRepository.save(wf);
+        workflowDefinitions.markChanged(wf.getId());
         return toDtoWithStages(wf);
     }
 
@@ -112,6 +116,7 @@ public class WorkflowService {
         assertModifiable(wf, managerId);
         List<StageDto> stages = request.getStages() == null ? List.of() : request.getStages();
         upsertStagesInternal(workflowId, stages);
+        workflowDefinitions.markChanged(workflowId);
         return toDtoWithStages(wf);
     }
 
@@ -125,7 +130,7 @@ public class WorkflowService {
                 .orElseThrow(() -> new NoSuchElementException("Stage not found"));
         if (!workflowId.equals(stage.getWorkflowId())) throw new IllegalArgumentException("Stage does not belong to workflow");
 
-        if (buildingRepository.existsByWorkflowIdAndCurrentStageIdIn(workflowId, Set.of(stageId))) {
+        if (!stagesInUse(workflowId, Set.of(stageId)).isEmpty()) {
             throw new ResponseStatusException(CONFLICT, "Cannot change tasks for stage that is used by active buildings");
         }
 
@@ -195,6 +200,10 @@ public class WorkflowService {
             }
         }
 
+        // отметки удалённых видов работ больше не считаются в прогрессе
+        taskRepository.flush();
+        progressCounters.rebuildStage(stageId);
+        workflowDefinitions.markChanged(workflowId);
         return toDtoWithStages(wf);
     }
 
@@ -212,6 +221,11 @@ public class WorkflowService {
         }
     }
 
+    private Set<UUID> stagesInUse(UUID workflowId, Collection<UUID> stageIds) {
+        if (stageIds.isEmpty()) return Set.of();
+        return buildingRepository.findStageIdsInUse(workflowId, stageIds);
+    }
+
     private void upsertStagesInternal(UUID workflowId, List<StageDto> desired) {
         validateStages(desired);
 
@@ -225,15 +239,19 @@ public class WorkflowService {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
 
-        for (Stage s : existing) {
-            if (s.getId() == null) continue;
-            if (!desiredIds.contains(s.getId())) {
-                if (buildingRepository.existsByWorkflowIdAndCurrentStageIdIn(workflowId, Set.of(s.getId()))) {
-                    throw new IllegalStateException("Cannot delete stage in use by active buildings. stageId=" + s.getId());
-                }
-                stageRepository.delete(s);
+        List<Stage> removed = existing.stream()
+                .filter(s -> s.getId() != null && !desiredIds.contains(s.getId()))
+                .toList();
+        Set<UUID> inUse = stagesInUse(workflowId, removed.stream().map(Stage::getId).toList());
+        for (Stage s : removed) {
+            if (inUse.contains(s.getId())) {
+                throw new IllegalStateException("Cannot delete stage in use by active buildings. stageId=" + s.getId());
             }
         }
+        for (Stage s : removed) {
+            progressCounters.dropStage(s.getId());
+        }
+        stageRepository.deleteAll(removed);
 
         for (StageDto dto : desired) {
             Stage stage;
@@ -253,7 +271,10 @@ public class WorkflowService {
         }
     }
 
-    private void validateStages(List<StageDto> stages) {
+    /**
+     * Правила списка стадий; общие для upsert и импорта шаблона ({@link WorkflowTemplateService}).
+     */
+    static void validateStages(List<StageDto> stages) {
         if (stages.isEmpty()) return;
 
         for (StageDto s : stages) {
@@ -284,7 +305,7 @@ public class WorkflowService {
         }
     }
 
-    private void validateTaskTree(List<SubStageDto> subStages) {
+    static void validateTaskTree(List<SubStageDto> subStages) {
         if (subStages == null) return;
         if (!subStages.isEmpty()) {
             Set<Integer> positions = subStages.stream().map(SubStageDto::getPosition).collect(Collectors.toSet());
@@ -319,23 +340,7 @@ public class WorkflowService {
 
     private WorkflowDto toDtoWithStages(Workflow wf) {
         WorkflowDto dto = workflowMapper.toDto(wf);
-        List<StageDto> stageDtos = workflowMapper.toStageDtos(stageRepository.findByWorkflowIdOrderByPosition(wf.getId()));
-        for (StageDto s : stageDtos) {
-            if (s.getId() == null) continue;
-            List<Task> subStages = taskRepository.findByStageIdAndParentIdIsNullOrderByPosition(s.getId());
-            var subStageDtos = workflowMapper.toSubStageDtos(subStages);
-            Set<UUID> subStageIds = subStages.stream().map(Task::getId).collect(Collectors.toSet());
-            List<Task> workItems = subStageIds.isEmpty()
-                    ? List.of()
-                    : taskRepository.findByParentIdInOrderByParentIdAscPositionAsc(subStageIds);
-            var workItemsByParent = workItems.stream().collect(Collectors.groupingBy(Task::getParentId));
-            for (var ss : subStageDtos) {
-                if (ss.getId() == null) continue;
-                ss.setWorkItems(workflowMapper.toWorkItemDtos(workItemsByParent.getOrDefault(ss.getId(), List.of())));
-            }
-            s.setSubStages(subStageDtos);
-        }
-        dto.setStages(stageDtos);
+        dto.setStages(workflowTreeLoader.load(wf.getId()));
         return dto;
     }
 }
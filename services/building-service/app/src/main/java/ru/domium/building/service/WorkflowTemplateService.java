@@ -0,0 +1,239 @@
+package ru.domium.building.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.domium.building.api.dto.workflow.StageDto;
+import ru.domium.building.api.dto.workflow.SubStageDto;
+import ru.domium.building.api.dto.workflow.WorkflowDto;
+import ru.domium.building.api.dto.workitem.WorkItemDto;
+import ru.domium.building.mapper.WorkflowMapper;
+import ru.domium.building.model.Workflow;
+import ru.domium.building.model.WorkflowDefinition;
+import ru.domium.building.model.WorkflowDefinition.StageDef;
+import ru.domium.building.model.WorkflowDefinition.TaskDef;
+import ru.domium.building.repository.WorkflowRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Импорт и экспорт шаблона workflow одним JSON-документом для онбординга подрядчиков.
+ * <p>
+ * Импорт читает документ потоково: в памяти одновременно только одна стадия с её деревом задач. Дерево проверяется
+ * теми же правилами, что и upsert ({@link WorkflowService#validateTaskTree}), строки уходят JDBC-пачками в одной
+ * транзакции; правила списка стадий ({@link WorkflowService#validateStages}) проверяются в конце, ошибка откатывает всё.
+ * Идентификаторы из документа игнорируются — импорт всегда создаёт новый workflow.
+ * <p>
+ * Экспорт пишет дерево прямо из {@link WorkflowDefinition} генератором Jackson, не собирая граф DTO.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkflowTemplateService {
+    private static final UUID SYSTEM_MANAGER_ID = UUID.fromString("00000000-0000-0000-0000-000000000000");
+    private static final int MAX_STAGES = 200;
+    private static final int MAX_TASKS = 20_000;
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_STAGE = """
+            insert into workflow_stages (id, workflow_id, name, description, planned_days, position)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+    private static final String INSERT_TASK = """
+            insert into workflow_tasks (id, stage_id, parent_id, type, name, description, position)
+            values (?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final WorkflowRepository workflowRepository;
+    private final WorkflowMapper workflowMapper;
+    private final WorkflowDefinitionCache workflowDefinitions;
+
+    /**
+     * Формат документа — как у экспорта: {@code {"name": ..., "active": ..., "stages": [{..., "subStages": [{..., "workItems": [...]}]}]}}.
+     */
+    @Transactional
+    public WorkflowDto importWorkflow(UUID managerId, InputStream in) {
+        UUID workflowId = UUID.randomUUID();
+        String name = null;
+        boolean active = true;
+        List<StageDto> stageHeaders = new ArrayList<>();
+        List<Object[]> stageRows = new ArrayList<>();
+        List<Object[]> taskRows = new ArrayList<>();
+        int tasks = 0;
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Workflow document must be a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "name" -> name = parser.getValueAsString();
+                    case "active" -> active = parser.getValueAsBoolean(true);
+                    case "stages" -> {
+                        if (value != JsonToken.START_ARRAY) throw new IllegalArgumentException("stages must be an array");
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            if (stageHeaders.size() >= MAX_STAGES) {
+                                throw new IllegalArgumentException("Too many stages (max " + MAX_STAGES + ")");
+                            }
+                            StageDto stage = parser.readValueAs(StageDto.class);
+                            tasks += addStage(workflowId, stage, stageRows, taskRows);
+                            if (tasks > MAX_TASKS) {
+                                throw new IllegalArgumentException("Too many tasks (max " + MAX_TASKS + ")");
+                            }
+                            stageHeaders.add(stage);
+                            // стадии пишутся в конце, после проверки уникальности имён и позиций
+                            if (taskRows.size() >= BATCH_SIZE) {
+                                flush(List.of(), taskRows);
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed workflow document: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        WorkflowService.validateStages(stageHeaders);
+        flush(stageRows, taskRows);
+
+        Workflow wf = new Workflow();
+        wf.setId(workflowId);
+        wf.setManagerId(managerId);
+        wf.setName(name.trim());
+        wf.setActive(active);
+        if (active) {
+            workflowRepository.deactivateActive(managerId);
+        }
+        workflowRepository.save(wf);
+        log.info("Imported workflow {} for manager {}: {} stages, {} tasks", workflowId, managerId, stageHeaders.size(), tasks);
+
+        WorkflowDto dto = workflowMapper.toDto(wf);
+        dto.setStages(stageHeaders);
+        return dto;
+    }
+
+    /**
+     * Проверяет дерево стадии и раскладывает его в строки для вставки; у заголовка стадии дерево обнуляется,
+     * чтобы не держать его до конца импорта.
+     */
+    private static int addStage(UUID workflowId, StageDto stage, List<Object[]> stageRows, List<Object[]> taskRows) {
+        if (stage.getName() == null || stage.getName().isBlank()) {
+            throw new IllegalArgumentException("Stage name is required");
+        }
+        List<SubStageDto> subStages = stage.getSubStages() == null ? List.of() : stage.getSubStages();
+        WorkflowService.validateTaskTree(subStages);
+
+        UUID stageId = UUID.randomUUID();
+        stage.setId(stageId);
+        stage.setName(stage.getName().trim());
+        stage.setSubStages(null);
+        stageRows.add(new Object[]{stageId, workflowId, stage.getName(), stage.getDescription(), stage.getPlannedDays(), stage.getPosition()});
+
+        int tasks = 0;
+        for (SubStageDto ss : subStages) {
+            UUID subStageId = UUID.randomUUID();
+            taskRows.add(new Object[]{subStageId, stageId, null, "SUBSTAGE", ss.getName().trim(), ss.getDescription(), ss.getPosition()});
+            tasks++;
+            List<WorkItemDto> items = ss.getWorkItems() == null ? List.of() : ss.getWorkItems();
+            for (WorkItemDto wi : items) {
+                taskRows.add(new Object[]{UUID.randomUUID(), stageId, subStageId, "WORK_ITEM", wi.getName().trim(), wi.getDescription(), wi.getPosition()});
+                tasks++;
+            }
+        }
+        return tasks;
+    }
+
+    private void flush(List<Object[]> stageRows, List<Object[]> taskRows) {
+        if (!stageRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_STAGE, stageRows);
+            stageRows.clear();
+        }
+        if (!taskRows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TASK, taskRows);
+            taskRows.clear();
+        }
+    }
+
+    /**
+     * Проверка доступа до начала потока: после первого байта ответа статус уже не сменить.
+     */
+    @Transactional(readOnly = true)
+    public Workflow requireReadable(UUID workflowId, UUID managerId) {
+        Workflow wf = workflowRepository.findById(workflowId)
+                .orElseThrow(() -> new NoSuchElementException("Workflow not found"));
+        if (!wf.getManagerId().equals(managerId) && !SYSTEM_MANAGER_ID.equals(wf.getManagerId())) {
+            throw new AccessDeniedException("Forbidden");
+        }
+        return wf;
+    }
+
+    public void writeExport(Workflow wf, OutputStream out) throws IOException {
+        WorkflowDefinition definition = workflowDefinitions.get(wf.getId());
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            gen.writeStartObject();
+            gen.writeStringField("id", wf.getId().toString());
+            gen.writeStringField("name", wf.getName());
+            gen.writeBooleanField("active", wf.isActive());
+            gen.writeArrayFieldStart("stages");
+            for (StageDef stage : definition.stages()) {
+                gen.writeStartObject();
+                gen.writeStringField("id", stage.id().toString());
+                gen.writeStringField("name", stage.name());
+                gen.writeStringField("description", stage.description());
+                gen.writeNumberField("plannedDays", stage.plannedDays());
+                gen.writeNumberField("position", stage.position());
+                gen.writeArrayFieldStart("subStages");
+                for (TaskDef subStage : definition.subStages(stage.id())) {
+                    gen.writeStartObject();
+                    writeTaskFields(gen, subStage);
+                    gen.writeArrayFieldStart("workItems");
+                    for (TaskDef workItem : definition.workItems(subStage.id())) {
+                        gen.writeStartObject();
+                        writeTaskFields(gen, workItem);
+                        gen.writeEndObject();
+                    }
+                    gen.writeEndArray();
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    private static void writeTaskFields(JsonGenerator gen, TaskDef task) throws IOException {
+        gen.writeStringField("id", task.id().toString());
+        gen.writeStringField("name", task.name());
+        gen.writeStringField("description", task.description());
+        gen.writeNumberField("position", task.position());
+    }
+}
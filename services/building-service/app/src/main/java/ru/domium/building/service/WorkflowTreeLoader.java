@@ -0,0 +1,42 @@
+package ru.domium.building.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.domium.building.api.dto.workflow.StageDto;
+import ru.domium.building.api.dto.workflow.SubStageDto;
+import ru.domium.building.mapper.WorkflowMapper;
+import ru.domium.building.model.WorkflowDefinition;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Дерево workflow {@code StageDto → SubStageDto → WorkItemDto}. Строится в памяти из {@link WorkflowDefinition}:
+ * снимок из кеша или, при промахе, два запроса (стадии workflow и все его задачи через {@code stage_id IN (...)}).
+ * Число запросов не зависит от числа стадий и подэтапов.
+ */
+@Component
+@RequiredArgsConstructor
+public class WorkflowTreeLoader {
+    private final WorkflowDefinitionCache definitions;
+    private final WorkflowMapper workflowMapper;
+
+    public List<StageDto> load(UUID workflowId) {
+        if (workflowId == null) return List.of();
+        return toStageDtos(definitions.get(workflowId));
+    }
+
+    public List<StageDto> toStageDtos(WorkflowDefinition definition) {
+        return definition.stages().stream().map(stageDef -> {
+            StageDto stage = workflowMapper.toDto(stageDef);
+            stage.setSubStages(definition.subStages(stageDef.id()).stream().map(subStageDef -> {
+                SubStageDto subStage = workflowMapper.toSubStageDto(subStageDef);
+                subStage.setWorkItems(definition.workItems(subStageDef.id()).stream()
+                        .map(workflowMapper::toWorkItemDto)
+                        .toList());
+                return subStage;
+            }).toList());
+            return stage;
+        }).toList();
+    }
+}
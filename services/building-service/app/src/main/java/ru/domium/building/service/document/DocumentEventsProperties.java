@@ -0,0 +1,21 @@
+package ru.domium.building.service.document;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "domium.documents.events")
+public class DocumentEventsProperties {
+    /**
+     * true — проверка подписи документов читает локальную сводку, которую наполняют события document-service;
+     * false — запрашивает счётчики у document-service при каждом переходе.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Общий с document-service секрет заголовка X-Documents-Secret. Пустой — приём событий выключен.
+     */
+    private String secret = "";
+}
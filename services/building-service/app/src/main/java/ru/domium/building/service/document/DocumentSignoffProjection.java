@@ -0,0 +1,140 @@
+package ru.domium.building.service.document;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.domium.building.api.dto.document.DocumentEventDto;
+import ru.domium.building.client.DocumentServiceClient;
+import ru.domium.building.model.DocumentSignoffState;
+import ru.domium.building.repository.DocumentSignoffRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Локальная сводка подписания документов по (проекту, этапу), собираемая из событий document-service.
+ * Применение идемпотентно: событие с {@code seq} не больше уже применённого для документа отбрасывается,
+ * поэтому повторная доставка и перестановка событий сводку не портят.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DocumentSignoffProjection {
+    /**
+     * Удалённые документы в сводке не считаются.
+     */
+    static final String DELETED_STATUS = "DELETE";
+    static final String NO_GROUP = "";
+
+    private final DocumentSignoffRepository repository;
+
+    /**
+     * Применяет пачку событий. Возвращает число документов, состояние которых изменилось.
+     */
+    @Transactional
+    public int apply(List<DocumentEventDto> events) {
+        if (events == null || events.isEmpty()) return 0;
+
+        // из пачки по документу достаточно последнего события: оно несёт полное состояние
+        Map<UUID, DocumentEventDto> latest = new LinkedHashMap<>();
+        for (DocumentEventDto e : events) {
+            validate(e);
+            latest.merge(e.getDocumentId(), e, (a, b) -> a.getSeq() >= b.getSeq() ? a : b);
+        }
+        Map<UUID, DocumentSignoffState> current = repository.lockAll(latest.keySet()).stream()
+                .collect(Collectors.toMap(DocumentSignoffState::getDocumentId, Function.identity()));
+
+        Map<SummaryKey, Long> deltas = new TreeMap<>();
+        List<DocumentSignoffState> changed = new ArrayList<>();
+        Instant now = Instant.now();
+        for (DocumentEventDto e : latest.values()) {
+            DocumentSignoffState state = current.get(e.getDocumentId());
+            if (state != null && state.getSeq() >= e.getSeq()) continue;
+            if (state != null) {
+                count(deltas, state.getProjectId(), state.getStageId(), state.getGroupType(), state.getStatus(), -1);
+            } else {
+                state = new DocumentSignoffState();
+                state.setDocumentId(e.getDocumentId());
+            }
+            state.setProjectId(e.getProjectId());
+            state.setStageId(e.getStageCode());
+            state.setGroupType(e.getGroupType() != null ? e.getGroupType() : NO_GROUP);
+            state.setStatus(e.getStatus());
+            state.setSeq(e.getSeq());
+            state.setUpdatedAt(now);
+            count(deltas, state.getProjectId(), state.getStageId(), state.getGroupType(), state.getStatus(), 1);
+            changed.add(state);
+        }
+        // новый документ, одновременно вставленный другой пачкой, уронит транзакцию по ключу —
+        // отправитель повторит пачку, и при повторе документ уже будет заблокирован и сравнён по seq
+        repository.saveAll(changed);
+        deltas.forEach((key, delta) -> {
+            if (delta != 0) {
+                repository.addToSummary(key.projectId(), key.stageId(), key.groupType(), key.status(), delta);
+            }
+        });
+        if (!changed.isEmpty()) {
+            log.debug("Applied {} document events ({} received)", changed.size(), events.size());
+        }
+        return changed.size();
+    }
+
+    /**
+     * Счётчики документов этапа по статусам в том же виде, что отдаёт document-service.
+     */
+    @Transactional(readOnly = true)
+    public DocumentServiceClient.StageStatusCounts stageStatusCounts(UUID projectId, UUID stageId,
+                                                                     Collection<String> excludedGroupTypes) {
+        // пустой список в NOT IN недопустим: группы с таким именем не бывает
+        Collection<String> excluded = excludedGroupTypes == null || excludedGroupTypes.isEmpty()
+                ? List.of("-")
+                : excludedGroupTypes;
+        DocumentServiceClient.StageStatusCounts result = new DocumentServiceClient.StageStatusCounts();
+        for (var row : repository.stageStatusCounts(projectId, stageId, excluded)) {
+            result.getCounts().put(row.getStatus(), row.getCount());
+            result.setTotal(result.getTotal() + row.getCount());
+        }
+        return result;
+    }
+
+    private static void count(Map<SummaryKey, Long> deltas, UUID projectId, UUID stageId, String groupType,
+                              String status, long delta) {
+        if (DELETED_STATUS.equals(status)) return;
+        deltas.merge(new SummaryKey(projectId, stageId, groupType, status), delta, Long::sum);
+    }
+
+    private static void validate(DocumentEventDto e) {
+        if (e == null || e.getDocumentId() == null || e.getProjectId() == null
+                || e.getStageCode() == null || e.getStatus() == null) {
+            throw new IllegalArgumentException("Document event must have documentId, projectId, stageCode and status");
+        }
+    }
+
+    /**
+     * Ключ строки сводки; упорядочен, чтобы строки обновлялись в одном порядке во всех транзакциях.
+     */
+    record SummaryKey(UUID projectId, UUID stageId, String groupType, String status)
+            implements Comparable<SummaryKey> {
+        private static final Comparator<SummaryKey> ORDER = Comparator
+                .comparing(SummaryKey::projectId)
+                .thenComparing(SummaryKey::stageId)
+                .thenComparing(SummaryKey::groupType)
+                .thenComparing(SummaryKey::status);
+
+        @Override
+        public int compareTo(SummaryKey other) {
+            return ORDER.compare(this, Objects.requireNonNull(other));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package ru.domium.building.service.feed;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.domium.building.api.dto.feed.BuildingFeedEventDto;
+import ru.domium.building.service.video.CameraStateListener;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Лента изменений строек для SSE-подписчиков этого узла.
+ * <ul>
+ *     <li>события из транзакций публикуются после коммита — клиент не увидит откатившийся переход;</li>
+ *     <li>публикация только кладёт событие в очереди подписчиков, отправкой занимаются виртуальные потоки:
+ *     медленный клиент не тормозит ни сервис, ни других подписчиков; переполненная очередь закрывает соединение;</li>
+ *     <li>последние события хранятся в кольцевом буфере: переподключение с Last-Event-ID дочитывает пропущенное,
+ *     а если нужное уже вытеснено (или id выдан другим запуском/узлом) — получает событие {@code reset}
+ *     и перечитывает состояние.</li>
+ * </ul>
+ * Id события — {@code <эпоха>-<номер>}: эпоха случайна для каждого запуска узла, поэтому номер после рестарта
+ * или с соседнего узла за балансировщиком не примется за «свой».
+ * Шина внутрипроцессная: при нескольких узлах подписчик видит изменения, сделанные на своём узле.
+ */
+@Slf4j
+@Component
+public class BuildingFeed implements CameraStateListener {
+    static final String RESET_EVENT = "reset";
+
+    private final BuildingFeedProperties props;
+    private final String epoch = Long.toHexString(new SecureRandom().nextLong());
+    private final AtomicLong sequence = new AtomicLong();
+    private final Deque<Entry> replay = new ArrayDeque<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("building-feed-", 0).factory());
+
+    public BuildingFeed(BuildingFeedProperties props) {
+        this.props = props;
+    }
+
+    public void stageAdvanced(UUID buildingId, UUID stageId, String stageName, int progress) {
+        BuildingFeedEventDto event = event(BuildingFeedEventType.STAGE_ADVANCED, buildingId);
+        event.setStageId(stageId);
+        event.setStageName(stageName);
+        event.setProgress(progress);
+        publishAfterCommit(event);
+    }
+
+    public void workItemsCompleted(UUID buildingId, Collection<UUID> workItemIds, int progress) {
+        BuildingFeedEventDto event = event(BuildingFeedEventType.WORK_ITEMS_COMPLETED, buildingId);
+        event.setWorkItemIds(List.copyOf(workItemIds));
+        event.setProgress(progress);
+        publishAfterCommit(event);
+    }
+
+    @Override
+    public void onCameraStateChanged(UUID buildingId, UUID cameraId, boolean running) {
+        BuildingFeedEventDto event = event(BuildingFeedEventType.CAMERA_STATE, buildingId);
+        event.setCameraId(cameraId);
+        event.setRunning(running);
+        publish(event);
+    }
+
+    /**
+     * Подписка на события указанных строек. {@code lastEventId} — из заголовка Last-Event-ID при переподключении.
+     */
+    public SseEmitter subscribe(Set<UUID> buildingIds, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(props.getEmitterTimeoutMs());
+        Subscriber subscriber = new Subscriber(emitter, Set.copyOf(buildingIds));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // под замком буфера: между дочиткой и регистрацией не потеряется ни одно событие
+        synchronized (replay) {
+            if (lastEventId != null) {
+                List<BuildingFeedEventDto> missed = replaySince(lastEventId, subscriber.buildingIds);
+                if (missed == null) {
+                    subscriber.offer(SseEmitter.event().name(RESET_EVENT).data("{}", MediaType.APPLICATION_JSON));
+                } else {
+                    missed.forEach(e -> subscriber.offer(toSse(e)));
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${domium.buildings.feed.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber s : subscribers) {
+            s.offer(SseEmitter.event().comment("ping"));
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber s : subscribers) {
+            s.close();
+        }
+        sender.shutdownNow();
+    }
+
+    void publishAfterCommit(BuildingFeedEventDto event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(event);
+            }
+        });
+    }
+
+    void publish(BuildingFeedEventDto event) {
+        synchronized (replay) {
+            long seq = sequence.incrementAndGet();
+            event.setId(epoch + "-" + seq);
+            replay.addLast(new Entry(seq, event));
+            while (replay.size() > Math.max(1, props.getReplayBufferSize())) {
+                replay.removeFirst();
+            }
+            SseEmitter.SseEventBuilder sse = null;
+            for (Subscriber s : subscribers) {
+                if (!s.buildingIds.contains(event.getBuildingId())) continue;
+                if (sse == null) sse = toSse(event);
+                s.offer(sse);
+            }
+        }
+    }
+
+    /**
+     * События после {@code lastEventId} по указанным стройкам; {@code null} — id другого запуска или узла,
+     * нераспознан или часть уже вытеснена из буфера, дочитать нельзя. Вызывать под замком {@code replay}.
+     */
+    List<BuildingFeedEventDto> replaySince(String lastEventId, Set<UUID> buildingIds) {
+        long lastSeq = sequenceOf(lastEventId);
+        if (lastSeq < 0) return null;
+        long newest = sequence.get();
+        long oldest = replay.isEmpty() ? newest + 1 : replay.peekFirst().seq();
+        if (lastSeq > newest || lastSeq < oldest - 1) return null;
+        List<BuildingFeedEventDto> missed = new ArrayList<>();
+        for (Entry e : replay) {
+            if (e.seq() > lastSeq && buildingIds.contains(e.event().getBuildingId())) missed.add(e.event());
+        }
+        return missed;
+    }
+
+    /**
+     * Номер события этого запуска из Last-Event-ID; {@code -1} — чужая эпоха или неверный формат.
+     */
+    private long sequenceOf(String eventId) {
+        int dash = eventId.lastIndexOf('-');
+        if (dash <= 0 || !epoch.equals(eventId.substring(0, dash))) return -1;
+        try {
+            return Long.parseLong(eventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static BuildingFeedEventDto event(BuildingFeedEventType type, UUID buildingId) {
+        BuildingFeedEventDto event = new BuildingFeedEventDto();
+        event.setType(type.name());
+        event.setBuildingId(buildingId);
+        event.setAt(Instant.now());
+        return event;
+    }
+
+    private static SseEmitter.SseEventBuilder toSse(BuildingFeedEventDto event) {
+        return SseEmitter.event()
+                .id(event.getId())
+                .name(event.getType())
+                .data(event, MediaType.APPLICATION_JSON);
+    }
+
+    private record Entry(long seq, BuildingFeedEventDto event) {
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Set<UUID> buildingIds;
+        final Queue<SseEmitter.SseEventBuilder> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, Set<UUID> buildingIds) {
+            this.emitter = emitter;
+            this.buildingIds = buildingIds;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) return;
+            if (queued.incrementAndGet() > props.getMaxQueuedPerSubscriber()) {
+                log.debug("Building feed subscriber is too slow, closing the stream");
+                close();
+                return;
+            }
+            queue.add(event);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!draining.compareAndSet(false, true)) return;
+            try {
+                sender.execute(this::drain);
+            } catch (RuntimeException e) {
+                draining.set(false); // идёт остановка
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder next;
+                while (!closed && (next = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    emitter.send(next);
+                }
+            } catch (Exception e) {
+                close(); // клиент ушёл
+                return;
+            } finally {
+                draining.set(false);
+            }
+            if (!queue.isEmpty()) scheduleDrain();
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            try {
+                emitter.complete();
+            } catch (RuntimeException ignored) {
+                // ответ уже закрыт
+            }
+        }
+    }
+}
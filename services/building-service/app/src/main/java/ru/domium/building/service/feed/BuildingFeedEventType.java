@@ -0,0 +1,7 @@
+package ru.domium.building.service.feed;
+
+public enum BuildingFeedEventType {
+    STAGE_ADVANCED,
+    WORK_ITEMS_COMPLETED,
+    CAMERA_STATE
+}
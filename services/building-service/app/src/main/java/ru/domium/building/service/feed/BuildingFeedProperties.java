@@ -0,0 +1,28 @@
+package ru.domium.building.service.feed;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "domium.buildings.feed")
+public class BuildingFeedProperties {
+    /**
+     * Сколько последних событий узел хранит для переподключения с Last-Event-ID.
+     */
+    private int replayBufferSize = 2000;
+
+    /**
+     * Очередь неотправленных событий одного подписчика; при переполнении соединение закрывается,
+     * клиент переподключается и дочитывает пропущенное из буфера.
+     */
+    private int maxQueuedPerSubscriber = 256;
+
+    /**
+     * Время жизни соединения; после него клиент переподключается сам (EventSource).
+     */
+    private long emitterTimeoutMs = 30 * 60_000L;
+
+    private long heartbeatMs = 15_000;
+}
@@ -0,0 +1,218 @@
+package ru.domium.building.service.projection;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.domium.building.model.Building;
+import ru.domium.building.model.BuildingProjection;
+import ru.domium.building.model.ProjectionRebuildCheckpoint;
+import ru.domium.building.repository.BuildingProjectionRepository;
+import ru.domium.building.repository.BuildingRepository;
+import ru.domium.building.repository.ProjectionRebuildCheckpointRepository;
+import ru.domium.building.service.BuildingProgressCounters;
+import ru.domium.building.service.WorkflowDefinitionCache;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Сверка и перестроение {@link BuildingProjection} по {@link Building}.
+ * <ul>
+ *     <li>стройки читаются пачками по id (keyset), каждая пачка — своя короткая транзакция: таблицы не блокируются,
+ *     прогресс по видам работ берётся одним запросом на пачку;</li>
+ *     <li>после пачки в {@code projection_rebuild_checkpoints} сохраняется последняя стройка — прерванный проход
+ *     (рестарт, деплой) продолжается с неё; строка чекпойнта блокируется на время пачки, так что узлы не дублируют работу;</li>
+ *     <li>сверяются поля, выводимые из стройки: проект, клиент, менеджер, этап, статус, прогресс; имена и метаданные
+ *     пришли из запроса создания и не трогаются; недостающая проекция создаётся с пустыми метаданными и именами
+ *     из соседних проекций ({@link BuildingProjectionRepository#insertMissing});</li>
+ *     <li>исправление — точечный UPDATE выводимых полей с условием «проекция ({@code updated_at}) и стройка
+ *     ({@code version}) не менялись с момента чтения»: переход этапа, отметка работ или дозапись имени менеджера,
+ *     закоммиченные во время пачки, не перезаписываются устаревшими значениями — такая строка просто пропускается;</li>
+ *     <li>пауза между пачками ({@code pause-ms}) ограничивает нагрузку; счётчики — в метриках
+ *     {@code building_projection_rebuild_*}.</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ProjectionRebuildJob {
+    static final String JOB = "building-projections";
+    private static final UUID MIN_ID = new UUID(0L, 0L);
+    private static final String DEFAULT_VIDEO_URL = new BuildingProjection().getVideoUrl();
+
+    private final BuildingRepository buildingRepository;
+    private final BuildingProjectionRepository projectionRepository;
+    private final ProjectionRebuildCheckpointRepository checkpoints;
+    private final BuildingProgressCounters progressCounters;
+    private final WorkflowDefinitionCache workflowDefinitions;
+    private final TransactionTemplate transactionTemplate;
+    private final ProjectionRebuildProperties props;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopping;
+    private int loggedDrifts;
+
+    private final Counter scannedCounter;
+    private final Counter driftedCounter;
+    private final Counter repairedCounter;
+    private final Timer chunkTimer;
+
+    public ProjectionRebuildJob(BuildingRepository buildingRepository,
+                                BuildingProjectionRepository projectionRepository,
+                                ProjectionRebuildCheckpointRepository checkpoints,
+                                BuildingProgressCounters progressCounters,
+                                WorkflowDefinitionCache workflowDefinitions,
+                                TransactionTemplate transactionTemplate,
+                                ProjectionRebuildProperties props,
+                                MeterRegistry registry) {
+        this.buildingRepository = buildingRepository;
+        this.projectionRepository = projectionRepository;
+        this.checkpoints = checkpoints;
+        this.progressCounters = progressCounters;
+        this.workflowDefinitions = workflowDefinitions;
+        this.transactionTemplate = transactionTemplate;
+        this.props = props;
+        this.scannedCounter = Counter.builder("building.projection.rebuild.scanned").register(registry);
+        this.driftedCounter = Counter.builder("building.projection.rebuild.drifted").register(registry);
+        this.repairedCounter = Counter.builder("building.projection.rebuild.repaired").register(registry);
+        this.chunkTimer = Timer.builder("building.projection.rebuild.chunk").register(registry);
+        Gauge.builder("building.projection.rebuild.running", running, r -> r.get() ? 1 : 0).register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${domium.buildings.projection-rebuild.period-ms:21600000}",
+            initialDelayString = "${domium.buildings.projection-rebuild.initial-delay-ms:120000}")
+    public void scheduled() {
+        if (!props.isEnabled()) return;
+        start(props.isRepair());
+    }
+
+    /**
+     * Продолжает незавершённый проход или начинает новый (с флагом {@code repair}); работа идёт в отдельном потоке.
+     */
+    public ProjectionRebuildStatus start(boolean repair) {
+        ProjectionRebuildCheckpoint cp = transactionTemplate.execute(status -> {
+            ProjectionRebuildCheckpoint current = lockCheckpoint();
+            if (current.getStartedAt() == null || current.getFinishedAt() != null) {
+                current.setRepair(repair);
+                current.setLastBuildingId(null);
+                current.setScanned(0);
+                current.setDrifted(0);
+                current.setRepaired(0);
+                current.setStartedAt(Instant.now());
+                current.setUpdatedAt(current.getStartedAt());
+                current.setFinishedAt(null);
+            }
+            return current;
+        });
+        if (running.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("projection-rebuild").start(this::runPass);
+        }
+        return ProjectionRebuildStatus.of(cp, true);
+    }
+
+    public ProjectionRebuildStatus status() {
+        return ProjectionRebuildStatus.of(checkpoints.findById(JOB).orElse(null), running.get());
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopping = true;
+    }
+
+    void runPass() {
+        loggedDrifts = 0;
+        try {
+            while (!stopping && Boolean.TRUE.equals(chunkTimer.record(() -> transactionTemplate.execute(status -> processChunk())))) {
+                if (props.getPauseMs() > 0) Thread.sleep(props.getPauseMs());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Projection rebuild stopped, will resume from the checkpoint: {}", e.getMessage(), e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Одна пачка под блокировкой чекпойнта. false — проход завершён (или не начат).
+     */
+    boolean processChunk() {
+        ProjectionRebuildCheckpoint cp = lockCheckpoint();
+        if (cp.getStartedAt() == null || cp.getFinishedAt() != null) return false;
+
+        UUID after = cp.getLastBuildingId() == null ? MIN_ID : cp.getLastBuildingId();
+        List<Building> buildings = buildingRepository.findByIdGreaterThanOrderById(after, Limit.of(Math.max(1, props.getChunkSize())));
+        if (buildings.isEmpty()) {
+            cp.setFinishedAt(Instant.now());
+            cp.setUpdatedAt(cp.getFinishedAt());
+            log.info("Projection check finished: scanned={}, drifted={}, repaired={} (repair={})",
+                    cp.getScanned(), cp.getDrifted(), cp.getRepaired(), cp.isRepair());
+            return false;
+        }
+
+        List<UUID> ids = buildings.stream().map(Building::getId).toList();
+        Map<UUID, BuildingProjection> projections = projectionRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(BuildingProjection::getId, Function.identity()));
+        Map<UUID, Long> completed = progressCounters.completedByBuilding(ids);
+
+        int drifted = 0;
+        int repaired = 0;
+        for (Building b : buildings) {
+            int progress = progressCounters.progress(b, workflowDefinitions.get(b.getWorkflowId()), completed.getOrDefault(b.getId(), 0L));
+            BuildingProjection projection = projections.get(b.getId());
+            List<String> drift = drift(b, projection, progress);
+            if (drift.isEmpty()) continue;
+            drifted++;
+            if (loggedDrifts++ < props.getMaxLoggedDrifts()) {
+                log.warn("Projection drift for building {}: {}", b.getId(), drift);
+            }
+            if (!cp.isRepair()) continue;
+            repaired += projection == null
+                    ? projectionRepository.insertMissing(b.getId(), b.getVersion(), progress, DEFAULT_VIDEO_URL)
+                    : projectionRepository.repairDerived(b.getId(), projection.getUpdatedAt(), b.getVersion(), progress);
+        }
+
+        cp.setLastBuildingId(ids.getLast());
+        cp.setScanned(cp.getScanned() + buildings.size());
+        cp.setDrifted(cp.getDrifted() + drifted);
+        cp.setRepaired(cp.getRepaired() + repaired);
+        cp.setUpdatedAt(Instant.now());
+        scannedCounter.increment(buildings.size());
+        driftedCounter.increment(drifted);
+        repairedCounter.increment(repaired);
+        return true;
+    }
+
+    static List<String> drift(Building b, BuildingProjection p, int progress) {
+        if (p == null) return List.of("projection missing");
+        List<String> drift = new ArrayList<>();
+        if (!Objects.equals(p.getProjectId(), b.getProjectId())) drift.add("projectId");
+        if (!Objects.equals(p.getClientId(), b.getClientId())) drift.add("clientId");
+        if (!Objects.equals(p.getManagerId(), b.getManagerId())) drift.add("managerId");
+        if (!Objects.equals(p.getStage(), b.getCurrentStageName())) drift.add("stage: " + p.getStage() + " -> " + b.getCurrentStageName());
+        if (!Objects.equals(p.getStatus(), b.getStatus())) drift.add("status: " + p.getStatus() + " -> " + b.getStatus());
+        if (p.getProgress() != progress) drift.add("progress: " + p.getProgress() + " -> " + progress);
+        return drift;
+    }
+
+    private ProjectionRebuildCheckpoint lockCheckpoint() {
+        return checkpoints.lock(JOB).orElseGet(() -> {
+            ProjectionRebuildCheckpoint cp = new ProjectionRebuildCheckpoint();
+            cp.setJob(JOB);
+            return checkpoints.saveAndFlush(cp);
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package ru.domium.building.service.projection;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "domium.buildings.projection-rebuild")
+public class ProjectionRebuildProperties {
+    /**
+     * Периодическая сверка по расписанию; ручной запуск через /internal/projections/rebuild работает всегда.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Исправлять расхождения при запуске по расписанию (иначе только отчёт в логе и метриках).
+     */
+    private boolean repair = false;
+
+    private long periodMs = 6 * 60 * 60_000L;
+
+    private int chunkSize = 500;
+
+    /**
+     * Пауза между пачками — ограничение нагрузки на БД во время прохода.
+     */
+    private long pauseMs = 50;
+
+    /**
+     * Сколько расхождений за проход выводить в лог подробно.
+     */
+    private int maxLoggedDrifts = 50;
+
+    /**
+     * Секрет заголовка X-Maintenance-Secret для ручного запуска. Пустой — ручной запуск выключен.
+     */
+    private String secret = "";
+}
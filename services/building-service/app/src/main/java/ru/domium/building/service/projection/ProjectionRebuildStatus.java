@@ -0,0 +1,23 @@
+package ru.domium.building.service.projection;
+
+import ru.domium.building.model.ProjectionRebuildCheckpoint;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record ProjectionRebuildStatus(boolean running,
+                                      boolean repair,
+                                      UUID lastBuildingId,
+                                      long scanned,
+                                      long drifted,
+                                      long repaired,
+                                      Instant startedAt,
+                                      Instant updatedAt,
+                                      Instant finishedAt) {
+
+    static ProjectionRebuildStatus of(ProjectionRebuildCheckpoint cp, boolean running) {
+        if (cp == null) return new ProjectionRebuildStatus(running, false, null, 0, 0, 0, null, null, null);
+        return new ProjectionRebuildStatus(running, cp.isRepair(), cp.getLastBuildingId(), cp.getScanned(),
+                cp.getDrifted(), cp.getRepaired(), cp.getStartedAt(), cp.getUpdatedAt(), cp.getFinishedAt());
+    }
+}
@@ -10,17 +10,41 @@ import org.springframework.stereotype.Component;
 import ru.domium.building.client.DocumentServiceClient;
 import ru.domium.building.model.Building;
 import ru.domium.building.model.StageTransition;
+import ru.domium.building.service.document.DocumentEventsProperties;
+import ru.domium.building.service.document.DocumentSignoffProjection;
 
 /**
  * Проверяет, что все документы текущего этапа подписаны.
  * Если документов нет — переход разрешён.
+ * При включённых событиях документов читает локальную сводку, иначе спрашивает document-service.
  */
 @Component
 public class StageDocumentsSignedRequirement implements StageTransitionRequirement {
+    /**
+     * Фотоотчёты не подписываются и переход не блокируют.
+     */
+    private static final List<String> EXCLUDED_GROUP_TYPES = List.of("PHOTO_REPORTS");
+
     private final DocumentServiceClient documentServiceClient;
+    private final DocumentSignoffProjection signoffProjection;
+    private final DocumentEventsProperties eventsProperties;
 
-    public StageDocumentsSignedRequirement(DocumentServiceClient documentServiceClient) {
+    public StageDocumentsSignedRequirement(DocumentServiceClient documentServiceClient,
+                                           DocumentSignoffProjection signoffProjection,
+                                           DocumentEventsProperties eventsProperties) {
         this.documentServiceClient = documentServiceClient;
+        this.signoffProjection = signoffProjection;
+        this.eventsProperties = eventsProperties;
+    }
+
+    @Override
+    public String name() {
+        return "documents-signed";
+    }
+
+    @Override
+    public boolean remote() {
+        return !eventsProperties.isEnabled();
     }
 
     @Override
@@ -28,25 +52,18 @@ public class StageDocumentsSignedRequirement implements StageTransitionRequireme
         if (transition == null || !transition.canTransition()) return List.of();
         if (building.getCurrentStageId() == null) return List.of();
 
-        String token = resolveBearerToken();
-        List<DocumentServiceClient.DocumentInstanceDto> docs =
-            documentServiceClient.listStageDocuments(building.getProjectId(), building.getCurrentStageId(), token);
-
-        List<DocumentServiceClient.DocumentInstanceDto> stageDocs = docs.stream()
-            .filter(doc -> doc.getGroup() == null
-                || doc.getGroup().getType() == null
-                || !"PHOTO_REPORTS".equalsIgnoreCase(doc.getGroup().getType()))
-            .toList();
-
-        if (stageDocs.isEmpty()) return List.of();
+        DocumentServiceClient.StageStatusCounts counts = eventsProperties.isEnabled()
+            ? signoffProjection.stageStatusCounts(building.getProjectId(), building.getCurrentStageId(), EXCLUDED_GROUP_TYPES)
+            : documentServiceClient.stageStatusCounts(
+                building.getProjectId(), building.getCurrentStageId(), EXCLUDED_GROUP_TYPES, resolveBearerToken());
+        if (counts.getTotal() == 0) return List.of();
 
-        boolean allSigned = stageDocs.stream()
-            .allMatch(doc -> "SIGNED".equalsIgnoreCase(doc.getStatus()));
-        if (allSigned) return List.of();
+        long signed = counts.getCounts().getOrDefault("SIGNED", 0L);
+        if (signed >= counts.getTotal()) return List.of();
 
-        String missing = stageDocs.stream()
-            .filter(doc -> !"SIGNED".equalsIgnoreCase(doc.getStatus()))
-            .map(doc -> doc.getStatus() == null ? "UNKNOWN" : doc.getStatus())
+        String missing = counts.getCounts().entrySet().stream()
+            .filter(e -> !"SIGNED".equalsIgnoreCase(e.getKey()) && e.getValue() > 0)
+            .map(e -> e.getKey() + ": " + e.getValue())
             .collect(Collectors.joining(", "));
 
         return List.of(new TransitionViolation(
@@ -0,0 +1,45 @@
+package ru.domium.building.service.stage.requirement;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "domium.stage.requirements")
+public class StageRequirementProperties {
+    /**
+     * Срок на проверку одного требования (мс), если не переопределён.
+     */
+    private long timeoutMs = 3000;
+
+    /**
+     * false — требование, не ответившее в срок или упавшее, запрещает переход (fail-closed);
+     * true — такое требование пропускается (fail-open).
+     */
+    private boolean failOpen = false;
+
+    /**
+     * Переопределения по имени требования ({@link StageTransitionRequirement#name()}).
+     */
+    private Map<String, Requirement> overrides = new LinkedHashMap<>();
+
+    public long timeoutMs(String requirement) {
+        Requirement override = overrides.get(requirement);
+        return override != null && override.getTimeoutMs() != null ? override.getTimeoutMs() : timeoutMs;
+    }
+
+    public boolean failOpen(String requirement) {
+        Requirement override = overrides.get(requirement);
+        return override != null && override.getFailOpen() != null ? override.getFailOpen() : failOpen;
+    }
+
+    @Data
+    public static class Requirement {
+        private Long timeoutMs;
+        private Boolean failOpen;
+    }
+}
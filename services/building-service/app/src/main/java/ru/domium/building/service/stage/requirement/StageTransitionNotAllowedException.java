@@ -1,16 +1,36 @@
 package ru.domium.building.service.stage.requirement;
 
 import java.util.List;
+import java.util.UUID;
 
 public class StageTransitionNotAllowedException extends RuntimeException {
     private final List<TransitionViolation> violations;
+    private final UUID currentStageId;
+    private final String currentStageName;
 
     public StageTransitionNotAllowedException(List<TransitionViolation> violations) {
+        this(violations, null, null);
+    }
+
+    /**
+     * Запрет с текущим этапом стройки — чтобы клиент мог обновить экран без отдельного запроса.
+     */
+    public StageTransitionNotAllowedException(List<TransitionViolation> violations, UUID currentStageId, String currentStageName) {
         super("Stage transition is not allowed: " + violations);
         this.violations = violations;
+        this.currentStageId = currentStageId;
+        this.currentStageName = currentStageName;
     }
 
     public List<TransitionViolation> getViolations() {
         return violations;
     }
+
+    public UUID getCurrentStageId() {
+        return currentStageId;
+    }
+
+    public String getCurrentStageName() {
+        return currentStageName;
+    }
 }
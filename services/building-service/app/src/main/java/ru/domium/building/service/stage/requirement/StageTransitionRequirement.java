@@ -19,4 +19,19 @@ public interface StageTransitionRequirement {
      * В будущем можно возвращать несколько нарушений (например, не хватает нескольких документов).
      */
     List<TransitionViolation> validate(Building building, UUID userId, StageTransition transition);
+
+    /**
+     * Имя для настроек ({@code domium.stage.requirements.overrides.<name>}) и метрик.
+     */
+    default String name() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Требование ходит в другой сервис: проверяется до открытия транзакции перехода,
+     * параллельно с остальными такими же, в своём сроке.
+     */
+    default boolean remote() {
+        return false;
+    }
 }
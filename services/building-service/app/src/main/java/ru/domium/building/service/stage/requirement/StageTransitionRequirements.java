@@ -1,31 +1,157 @@
 package ru.domium.building.service.stage.requirement;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
 import org.springframework.stereotype.Component;
 import ru.domium.building.model.Building;
 import ru.domium.building.model.StageTransition;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * Прогоняет все требования.
  * Если требований нет — переход разрешён по умолчанию.
+ * <p>
+ * Удалённые требования ({@link StageTransitionRequirement#remote()}) проверяются параллельно на виртуальных потоках
+ * до открытия транзакции ({@link #checkRemote}); у каждого свой срок и режим fail-open/fail-closed
+ * ({@link StageRequirementProperties}). Локальные — в транзакции перехода, последовательно ({@link #checkLocal}).
+ * Длительность каждой проверки — гистограмма {@code stage_requirement_duration_seconds{requirement,outcome}}.
  */
 @Component
+@Slf4j
 public class StageTransitionRequirements {
+    private static final String UNAVAILABLE = "REQUIREMENT_UNAVAILABLE";
+
     private final List<StageTransitionRequirement> requirements;
+    private final StageRequirementProperties props;
+    private final MeterRegistry registry;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public StageTransitionRequirements(List<StageTransitionRequirement> requirements) {
+    public StageTransitionRequirements(List<StageTransitionRequirement> requirements,
+                                       StageRequirementProperties props,
+                                       MeterRegistry registry) {
         this.requirements = requirements;
+        this.props = props;
+        this.registry = registry;
     }
 
     public void check(Building building, UUID userId, StageTransition transition) {
+        checkRemote(building, userId, transition);
+        checkLocal(building, userId, transition);
+    }
+
+    /**
+     * Удалённые требования: параллельно, каждое ждём не дольше его срока (от общего старта).
+     * Вызывать вне транзакции — медленный сервис не должен держать соединение с БД.
+     */
+    public void checkRemote(Building building, UUID userId, StageTransition transition) {
+        List<StageTransitionRequirement> remote = requirements.stream().filter(StageTransitionRequirement::remote).toList();
+        if (remote.isEmpty()) return;
+
+        long startedAt = System.nanoTime();
+        Map<StageTransitionRequirement, Pending> pending = new LinkedHashMap<>();
+        for (StageTransitionRequirement req : remote) {
+            AtomicBoolean abandoned = new AtomicBoolean();
+            Future<List<TransitionViolation>> future = executor.submit(new DelegatingSecurityContextCallable<>(
+                    () -> timed(req, abandoned, () -> req.validate(building, userId, transition))));
+            pending.put(req, new Pending(future, abandoned));
+        }
+
+        List<TransitionViolation> violations = new ArrayList<>();
+        pending.forEach((req, p) -> violations.addAll(await(req, p, startedAt)));
+        if (!violations.isEmpty()) throw new StageTransitionNotAllowedException(violations);
+    }
+
+    /**
+     * Локальные требования (читают БД в транзакции перехода). Ошибки пробрасываются как есть.
+     */
+    public void checkLocal(Building building, UUID userId, StageTransition transition) {
         List<TransitionViolation> violations = new ArrayList<>();
         for (StageTransitionRequirement req : requirements) {
-            List<TransitionViolation> v = req.validate(building, userId, transition);
+            if (req.remote()) continue;
+            List<TransitionViolation> v = timed(req, new AtomicBoolean(), () -> req.validate(building, userId, transition));
             if (v != null && !v.isEmpty()) violations.addAll(v);
         }
         if (!violations.isEmpty()) throw new StageTransitionNotAllowedException(violations);
     }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Pending(Future<List<TransitionViolation>> future, AtomicBoolean abandoned) {
+    }
+
+    private List<TransitionViolation> await(StageTransitionRequirement req, Pending p, long startedAt) {
+        long timeoutMs = props.timeoutMs(req.name());
+        long remainingNanos = startedAt + TimeUnit.MILLISECONDS.toNanos(timeoutMs) - System.nanoTime();
+        try {
+            List<TransitionViolation> v = p.future().get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+            return v == null ? List.of() : v;
+        } catch (TimeoutException e) {
+            p.abandoned().set(true);
+            p.future().cancel(true);
+            timer(req, "timeout").record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+            return unavailable(req, "нет ответа за " + timeoutMs + " мс");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return unavailable(req, cause.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            p.future().cancel(true);
+            return unavailable(req, "проверка прервана");
+        }
+    }
+
+    private List<TransitionViolation> unavailable(StageTransitionRequirement req, String reason) {
+        if (props.failOpen(req.name())) {
+            log.warn("Stage requirement {} skipped (fail-open): {}", req.name(), reason);
+            return List.of();
+        }
+        log.warn("Stage requirement {} failed (fail-closed): {}", req.name(), reason);
+        return List.of(new TransitionViolation(
+                UNAVAILABLE,
+                "Не удалось проверить требование " + req.name() + ": " + reason
+        ));
+    }
+
+    private List<TransitionViolation> timed(StageTransitionRequirement req,
+                                            AtomicBoolean abandoned,
+                                            Supplier<List<TransitionViolation>> check) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            List<TransitionViolation> v = check.get();
+            outcome = v == null || v.isEmpty() ? "passed" : "violated";
+            return v;
+        } finally {
+            // по сроку результат уже записан как timeout
+            if (!abandoned.get()) timer(req, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(StageTransitionRequirement req, String outcome) {
+        return Timer.builder("stage.requirement.duration")
+                .description("Stage transition requirement check time")
+                .tag("requirement", req.name())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
 }
@@ -3,29 +3,35 @@ package ru.domium.building.service.stage.requirement;
 import org.springframework.stereotype.Component;
 import ru.domium.building.model.Building;
 import ru.domium.building.model.StageTransition;
-import ru.domium.building.model.Task;
-import ru.domium.building.repository.TaskCompletionRepository;
-import ru.domium.building.repository.TaskRepository;
+import ru.domium.building.model.WorkflowDefinition;
+import ru.domium.building.model.WorkflowDefinition.TaskDef;
+import ru.domium.building.service.BuildingProgressCounters;
+import ru.domium.building.service.WorkflowDefinitionCache;
 
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 /**
  * Перед переходом на следующий этап все подэтапы текущей стадии должны быть завершены.
  * Подэтап считается завершённым, если завершены все его дочерние виды работ (ITEM).
- * Порядок выполнения не важен.
+ * Порядок выполнения не важен. Читаются счётчики подэтапов стройки, а не отметки по каждому виду работ.
  */
 @Component
 public class TasksCompletedRequirement implements StageTransitionRequirement {
-    private final TaskRepository taskRepository;
-    private final TaskCompletionRepository completionRepository;
+    private final WorkflowDefinitionCache definitions;
+    private final BuildingProgressCounters progressCounters;
 
-    public TasksCompletedRequirement(TaskRepository taskRepository,
-                                     TaskCompletionRepository completionRepository) {
-        this.taskRepository = taskRepository;
-        this.completionRepository = completionRepository;
+    public TasksCompletedRequirement(WorkflowDefinitionCache definitions,
+                                     BuildingProgressCounters progressCounters) {
+        this.definitions = definitions;
+        this.progressCounters = progressCounters;
+    }
+
+    @Override
+    public String name() {
+        return "tasks-completed";
     }
 
     @Override
@@ -33,24 +39,19 @@ public class TasksCompletedRequirement implements StageTransitionRequirement {
         if (transition == null || !transition.canTransition()) return List.of();
         if (building.getCurrentStageId() == null) return List.of();
 
-        List<Task> subStages = taskRepository.findByStageIdAndParentIdIsNullOrderByPosition(building.getCurrentStageId());
+        WorkflowDefinition definition = definitions.get(building.getWorkflowId());
+        List<TaskDef> subStages = definition.subStages(building.getCurrentStageId());
         if (subStages.isEmpty()) return List.of();
 
-        Set<UUID> subStageIds = subStages.stream().map(Task::getId).collect(Collectors.toSet());
-        List<Task> workItems = taskRepository.findByParentIdInOrderByParentIdAscPositionAsc(subStageIds);
-        if (workItems.isEmpty()) return List.of();
+        int total = definition.workItemCount(building.getCurrentStageId());
+        if (total == 0) return List.of();
 
-        Set<UUID> workItemIds = workItems.stream().map(Task::getId).collect(Collectors.toSet());
-        Set<UUID> completed = completionRepository.findCompletedTaskIds(building.getId(), workItemIds);
-        if (completed.size() == workItemIds.size()) return List.of();
+        Map<UUID, Integer> counters = progressCounters.stageCounters(building.getId(), building.getCurrentStageId());
+        if (counters.getOrDefault(building.getCurrentStageId(), 0) >= total) return List.of();
 
-        var workItemsBySubStage = workItems.stream().collect(Collectors.groupingBy(Task::getParentId));
         String missing = subStages.stream()
-                .filter(ss -> {
-                    List<Task> items = workItemsBySubStage.getOrDefault(ss.getId(), List.of());
-                    return !items.isEmpty() && items.stream().anyMatch(wi -> !completed.contains(wi.getId()));
-                })
-                .map(Task::getName)
+                .filter(ss -> counters.getOrDefault(ss.id(), 0) < definition.workItems(ss.id()).size())
+                .map(TaskDef::name)
                 .collect(Collectors.joining(", "));
 
         return List.of(new TransitionViolation(
@@ -0,0 +1,67 @@
+package ru.domium.building.service.video;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.domium.building.repository.ArchiveLeaseRepository;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Аренды задач архива камер ({@code video_archive_leases}): снимки камеры и склейку суток выполняет один узел.
+ * <p>
+ * Узел — тот же, что в {@link StreamPlacement}; размещение выключено — узел единственный, всё выполняет сам.
+ */
+@Component
+@Slf4j
+public class ArchiveLeases {
+    private final StreamPlacement placement;
+    private final ArchiveLeaseRepository leases;
+
+    public ArchiveLeases(StreamPlacement placement, ArchiveLeaseRepository leases) {
+        this.placement = placement;
+        this.leases = leases;
+    }
+
+    static String snapshotKey(UUID cameraId) {
+        return "snapshot:" + cameraId;
+    }
+
+    static String timelapseKey(UUID cameraId, LocalDate date) {
+        return "timelapse:" + cameraId + ":" + date;
+    }
+
+    /**
+     * Берёт (или продлевает) аренду. Ошибка БД — не наша: задачу выполнит узел, который аренду получит.
+     */
+    public boolean tryAcquire(String key, long ttlMs) {
+        if (!placement.isEnabled()) return true;
+        try {
+            return leases.tryAcquire(key, placement.nodeId(), Math.max(1, ttlMs)) == 1;
+        } catch (Exception e) {
+            log.warn("Failed to acquire archive lease {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    public void release(String key) {
+        if (!placement.isEnabled()) return;
+        try {
+            leases.release(key, placement.nodeId());
+        } catch (Exception e) {
+            // аренда истечёт сама
+            log.warn("Failed to release archive lease {}: {}", key, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        if (!placement.isEnabled()) return;
+        try {
+            leases.releaseAll(placement.nodeId());
+        } catch (Exception e) {
+            log.warn("Failed to release archive leases of node {}: {}", placement.nodeId(), e.getMessage());
+        }
+    }
+}
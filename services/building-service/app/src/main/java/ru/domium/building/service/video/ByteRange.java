@@ -0,0 +1,54 @@
+package ru.domium.building.service.video;
+
+import java.util.Optional;
+
+/**
+ * Один диапазон из заголовка {@code Range: bytes=...} (RFC 9110), границы включительно.
+ */
+public record ByteRange(long start, long end) {
+    /**
+     * Диапазон за пределами ресурса: ответ 416 с {@code Content-Range: bytes *}/size.
+     */
+    public static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public boolean isSatisfiable() {
+        return start >= 0;
+    }
+
+    public String contentRange(long size) {
+        return isSatisfiable() ? "bytes " + start + "-" + end + "/" + size : "bytes */" + size;
+    }
+
+    /**
+     * Пусто — отдать ресурс целиком (заголовка нет, он некорректен или просит несколько диапазонов:
+     * сервер вправе их игнорировать). Поддерживаются {@code a-b}, {@code a-} и {@code -n}.
+     */
+    public static Optional<ByteRange> parse(String header, long size) {
+        if (header == null || !header.startsWith("bytes=")) return Optional.empty();
+        String spec = header.substring(6).trim();
+        if (spec.contains(",")) return Optional.empty();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return Optional.empty();
+        try {
+            String from = spec.substring(0, dash).trim();
+            String to = spec.substring(dash + 1).trim();
+            if (from.isEmpty()) {
+                if (to.isEmpty()) return Optional.empty();
+                long suffix = Long.parseLong(to);
+                if (suffix <= 0 || size == 0) return Optional.of(UNSATISFIABLE);
+                return Optional.of(new ByteRange(Math.max(0, size - suffix), size - 1));
+            }
+            long start = Long.parseLong(from);
+            long end = to.isEmpty() ? Long.MAX_VALUE : Long.parseLong(to);
+            if (start < 0 || end < start) return Optional.empty();
+            if (start >= size) return Optional.of(UNSATISFIABLE);
+            return Optional.of(new ByteRange(start, Math.min(end, size - 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package ru.domium.building.service.video;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.repository.BuildingCameraRepository;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Снимки архива: раз в {@code snapshot-interval-ms} для каждой камеры с {@code archive=true} короткий ffmpeg
+ * пишет один кадр в spool ({@code spool-dir}/{имя объекта}), загрузчик пачками переносит файлы в MinIO
+ * и удаляет их. Если MinIO недоступен, снимки копятся на диске и уходят следующими проходами.
+ * <p>
+ * Снимки не зависят от онлайн-потока и его слотов: у архива свой лимит {@code max-concurrent-snapshots}.
+ * <p>
+ * При нескольких узлах камеру снимает один: если её поток идёт на другом узле — владелец потока, иначе узел,
+ * взявший аренду {@code snapshot:{camera}} ({@link ArchiveLeases}).
+ */
+@Component
+@Slf4j
+public class CameraArchiveRecorder {
+    private static final String PART_SUFFIX = ".part";
+
+    private final VideoStreamingProperties props;
+    private final FfmpegCommandBuilder commandBuilder;
+    private final CameraArchiveStorage storage;
+    private final BuildingCameraRepository cameraRepository;
+    private final StreamPlacement placement;
+    private final ArchiveLeases archiveLeases;
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final Semaphore snapshotSlots;
+    private final Counter snapshotsOk;
+    private final Counter snapshotsFailed;
+    private final Counter snapshotsSkipped;
+    private final Counter uploadedBytes;
+    private final AtomicLong spooled = new AtomicLong();
+
+    public CameraArchiveRecorder(VideoStreamingProperties props,
+                                 FfmpegCommandBuilder commandBuilder,
+                                 CameraArchiveStorage storage,
+                                 BuildingCameraRepository cameraRepository,
+                                 StreamPlacement placement,
+                                 ArchiveLeases archiveLeases,
+                                 MeterRegistry registry) {
+        this.props = props;
+        this.commandBuilder = commandBuilder;
+        this.storage = storage;
+        this.cameraRepository = cameraRepository;
+        this.placement = placement;
+        this.archiveLeases = archiveLeases;
+        this.snapshotSlots = new Semaphore(Math.max(1, props.getArchive().getMaxConcurrentSnapshots()));
+        this.snapshotsOk = Counter.builder("video.archive.snapshots").tag("result", "ok").register(registry);
+        this.snapshotsFailed = Counter.builder("video.archive.snapshots").tag("result", "failed").register(registry);
+        this.snapshotsSkipped = Counter.builder("video.archive.snapshots").tag("result", "skipped").register(registry);
+        this.uploadedBytes = Counter.builder("video.archive.uploaded.bytes").register(registry);
+        Gauge.builder("video.archive.spool.files", spooled, AtomicLong::get)
+                .description("Snapshots in the local spool waiting for upload")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${domium.video.archive.snapshot-interval-ms:60000}")
+    public void captureSnapshots() {
+        if (!props.getArchive().isEnabled()) return;
+        for (BuildingCamera camera : cameraRepository.findByArchiveTrueAndEnabledTrue()) {
+            if (!capturesHere(camera)) continue;
+            if (!inFlight.add(camera.getId())) {
+                snapshotsSkipped.increment();
+                continue;
+            }
+            if (!snapshotSlots.tryAcquire()) {
+                inFlight.remove(camera.getId());
+                snapshotsSkipped.increment();
+                continue;
+            }
+            Thread.ofVirtual().name("archive-snapshot-" + camera.getId()).start(() -> {
+                try {
+                    capture(camera);
+                } finally {
+                    snapshotSlots.release();
+                    inFlight.remove(camera.getId());
+                }
+            });
+        }
+    }
+
+    /**
+     * Снимает ли камеру этот узел. Аренда живёт несколько периодов и продлевается каждым проходом; поток камеры
+     * на другом узле — аренду отпускаем, чтобы RTSP тянул только владелец потока.
+     */
+    private boolean capturesHere(BuildingCamera camera) {
+        String key = ArchiveLeases.snapshotKey(camera.getId());
+        if (placement.remoteOwner(camera.getId()).isPresent()) {
+            archiveLeases.release(key);
+            return false;
+        }
+        long ttlMs = 3 * props.getArchive().getSnapshotIntervalMs() + props.getArchive().getSnapshotTimeoutMs();
+        return archiveLeases.tryAcquire(key, ttlMs);
+    }
+
+    void capture(BuildingCamera camera) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneId.of(props.getArchive().getZone()));
+        Path target = props.getArchive().getSpoolDir().resolve(CameraArchiveStorage.snapshotName(
+                camera.getBuildingId(), camera.getId(), now.toLocalDate(), now.toLocalTime()));
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        Process p = null;
+        try {
+            Files.createDirectories(target.getParent());
+            p = new ProcessBuilder(commandBuilder.buildSnapshot(camera, part))
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!p.waitFor(props.getArchive().getSnapshotTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                p.destroyForcibly();
+                throw new IOException("timed out");
+            }
+            if (p.exitValue() != 0 || !Files.exists(part) || Files.size(part) == 0) {
+                throw new IOException("ffmpeg exited with " + p.exitValue());
+            }
+            Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            snapshotsOk.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (p != null) p.destroyForcibly();
+            snapshotsFailed.increment();
+        } catch (IOException e) {
+            snapshotsFailed.increment();
+            log.warn("Archive snapshot failed for camera {}: {}", camera.getId(), e.getMessage());
+        } finally {
+            deleteQuietly(part);
+        }
+    }
+
+    /**
+     * Переносит до {@code upload-batch-size} готовых снимков из spool в MinIO; путь файла в spool — имя объекта.
+     * Первая ошибка загрузки прерывает проход: остальное уйдёт следующим.
+     */
+    @Scheduled(fixedDelayString = "${domium.video.archive.upload-period-ms:60000}")
+    public void uploadSpool() {
+        if (!props.getArchive().isEnabled()) return;
+        Path spool = props.getArchive().getSpoolDir();
+        if (!Files.isDirectory(spool)) return;
+
+        int batchSize = Math.max(1, props.getArchive().getUploadBatchSize());
+        List<Path> batch = new ArrayList<>();
+        long pending = 0;
+        try (Stream<Path> files = Files.walk(spool)) {
+            Iterator<Path> it = files.filter(f -> f.getFileName().toString().endsWith(".jpg")).iterator();
+            while (it.hasNext()) {
+                Path f = it.next();
+                if (batch.size() < batchSize) batch.add(f);
+                pending++;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cannot scan archive spool {}: {}", spool, e.getMessage());
+            return;
+        }
+
+        String today = LocalDate.now(ZoneId.of(props.getArchive().getZone())).toString();
+        int uploaded = 0;
+        for (Path file : batch) {
+            try {
+                long size = Files.size(file);
+                storage.upload(file, objectName(spool, file), "image/jpeg");
+                Files.delete(file);
+                deleteEmptyParents(spool, file.getParent(), today);
+                uploadedBytes.increment(size);
+                uploaded++;
+            } catch (NoSuchFileException e) {
+                // уже загружен параллельным проходом
+            } catch (Exception e) {
+                log.warn("Archive upload stopped after {} of {} files: {}", uploaded, batch.size(), e.getMessage());
+                break;
+            }
+        }
+        spooled.set(pending - uploaded);
+        if (uploaded > 0) log.debug("Uploaded {} archive snapshots", uploaded);
+    }
+
+    /**
+     * Имя объекта MinIO для файла в spool: относительный путь с '/' в качестве разделителя.
+     */
+    static String objectName(Path spool, Path file) {
+        Path relative = spool.relativize(file);
+        StringBuilder name = new StringBuilder();
+        for (Path segment : relative) {
+            if (!name.isEmpty()) name.append('/');
+            name.append(segment);
+        }
+        return name.toString();
+    }
+
+    /**
+     * Каталог текущих суток не трогаем: в него параллельно пишет следующий снимок.
+     */
+    private static void deleteEmptyParents(Path spool, Path dir, String today) {
+        while (dir != null && dir.startsWith(spool) && !dir.equals(spool)) {
+            if (dir.getFileName().toString().equals(today)) return;
+            try {
+                Files.delete(dir);
+            } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+                return;
+            } catch (IOException e) {
+                log.debug("Cannot remove spool dir {}: {}", dir, e.getMessage());
+                return;
+            }
+            dir = dir.getParent();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+        }
+    }
+}
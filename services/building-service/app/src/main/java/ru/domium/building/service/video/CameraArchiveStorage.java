@@ -0,0 +1,191 @@
+package ru.domium.building.service.video;
+
+import io.minio.GetObjectArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Архив камер в MinIO. Раскладка объектов:
+ * <pre>
+ * {buildingId}/{cameraId}/snapshots/{yyyy-MM-dd}/{HHmmss}.jpg
+ * {buildingId}/{cameraId}/timelapse/{yyyy-MM-dd}.mp4
+ * </pre>
+ * Все операции потоковые: загрузка — из файла с известным размером, чтение — из ответа MinIO (в т.ч. диапазоном),
+ * листинг — постранично внутри итератора клиента.
+ */
+@Component
+@Slf4j
+public class CameraArchiveStorage {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HHmmss");
+    private static final int DELETE_BATCH = 1000;
+
+    private final MinioClient minio;
+    private final VideoStreamingProperties props;
+
+    public CameraArchiveStorage(MinioClient minio, VideoStreamingProperties props) {
+        this.minio = minio;
+        this.props = props;
+    }
+
+    public record ArchiveObject(String name, long size) {
+    }
+
+    public static String cameraPrefix(UUID buildingId, UUID cameraId) {
+        return buildingId + "/" + cameraId + "/";
+    }
+
+    public static String snapshotsPrefix(UUID buildingId, UUID cameraId) {
+        return cameraPrefix(buildingId, cameraId) + "snapshots/";
+    }
+
+    public static String snapshotsPrefix(UUID buildingId, UUID cameraId, LocalDate date) {
+        return snapshotsPrefix(buildingId, cameraId) + date + "/";
+    }
+
+    public static String snapshotName(UUID buildingId, UUID cameraId, LocalDate date, LocalTime time) {
+        return snapshotsPrefix(buildingId, cameraId, date) + TIME.format(time) + ".jpg";
+    }
+
+    public static String timelapsePrefix(UUID buildingId, UUID cameraId) {
+        return cameraPrefix(buildingId, cameraId) + "timelapse/";
+    }
+
+    public static String timelapseName(UUID buildingId, UUID cameraId, LocalDate date) {
+        return timelapsePrefix(buildingId, cameraId) + date + ".mp4";
+    }
+
+    /**
+     * Загружает файл потоком: размер известен, поэтому клиент не буферизует части в памяти сверх одного куска.
+     */
+    public void upload(Path file, String objectName, String contentType) {
+        try (InputStream in = Files.newInputStream(file)) {
+            minio.putObject(PutObjectArgs.builder()
+                    .bucket(props.getArchive().getBucket())
+                    .object(objectName)
+                    .stream(in, Files.size(file), -1)
+                    .contentType(contentType)
+                    .build());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to upload " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    public InputStream open(String objectName) {
+        return open(objectName, 0, -1);
+    }
+
+    /**
+     * Поток байтов объекта с {@code offset}; {@code length < 0} — до конца.
+     */
+    public InputStream open(String objectName, long offset, long length) {
+        GetObjectArgs.Builder args = GetObjectArgs.builder()
+                .bucket(props.getArchive().getBucket())
+                .object(objectName)
+                .offset(offset);
+        if (length >= 0) args.length(length);
+        try {
+            return minio.getObject(args.build());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to read " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Размер объекта или пусто, если его нет.
+     */
+    public OptionalLong size(String objectName) {
+        try {
+            return OptionalLong.of(minio.statObject(StatObjectArgs.builder()
+                    .bucket(props.getArchive().getBucket())
+                    .object(objectName)
+                    .build()).size());
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) return OptionalLong.empty();
+            throw new IllegalStateException("Failed to stat " + objectName + ": " + e.getMessage(), e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to stat " + objectName + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Объекты под префиксом в лексикографическом порядке. {@code recursive=false} отдаёт и «каталоги»
+     * (имена с завершающим '/').
+     */
+    public void list(String prefix, boolean recursive, Consumer<ArchiveObject> consumer) {
+        Iterable<Result<Item>> results = minio.listObjects(ListObjectsArgs.builder()
+                .bucket(props.getArchive().getBucket())
+                .prefix(prefix)
+                .recursive(recursive)
+                .build());
+        try {
+            for (Result<Item> result : results) {
+                Item item = result.get();
+                consumer.accept(new ArchiveObject(item.objectName(), item.isDir() ? 0 : item.size()));
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to list " + prefix + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Удаляет все объекты под префиксом пачками по {@value #DELETE_BATCH} (лимит DeleteObjects в S3).
+     */
+    public int removePrefix(String prefix) {
+        List<DeleteObject> batch = new ArrayList<>(DELETE_BATCH);
+        int[] removed = {0};
+        list(prefix, true, o -> {
+            batch.add(new DeleteObject(o.name()));
+            if (batch.size() == DELETE_BATCH) {
+                removed[0] += remove(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) removed[0] += remove(batch);
+        return removed[0];
+    }
+
+    private int remove(List<DeleteObject> objects) {
+        Iterator<Result<DeleteError>> errors = minio.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(props.getArchive().getBucket())
+                .objects(List.copyOf(objects))
+                .build()).iterator();
+        int failed = 0;
+        try {
+            while (errors.hasNext()) {
+                DeleteError error = errors.next().get();
+                failed++;
+                log.warn("Failed to remove archive object {}: {}", error.objectName(), error.message());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to remove archive objects: " + e.getMessage(), e);
+        }
+        return objects.size() - failed;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.domium.building.service.video;
+
+import java.util.UUID;
+
+/**
+ * Уведомление о старте и остановке трансляции камеры на этом узле. Вызывается из потоков супервизора ffmpeg,
+ * реализация не должна блокировать.
+ */
+public interface CameraStateListener {
+    CameraStateListener NOOP = (buildingId, cameraId, running) -> {
+    };
+
+    void onCameraStateChanged(UUID buildingId, UUID cameraId, boolean running);
+}
@@ -0,0 +1,39 @@
+package ru.domium.building.service.video;
+
+import ru.domium.building.model.BuildingCamera;
+
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Состояние потока одной камеры под супервизором. Все поля меняются только под {@link #lock}.
+ * Экземпляр, помеченный {@code retired}, уже удалён из реестра и больше не используется.
+ */
+final class CameraStream {
+    final UUID cameraId;
+    final ReentrantLock lock = new ReentrantLock();
+
+    UUID buildingId;
+    BuildingCamera camera;
+    Process process;
+    Semaphore slot;
+    long startedAtMs;
+    int restartAttempts;
+    ScheduledFuture<?> pendingRestart;
+    boolean stopRequested;
+    boolean retired;
+    /**
+     * Аренда камеры в video_stream_leases взята этим узлом (читается продлением без блокировки).
+     */
+    volatile boolean leaseHeld;
+
+    CameraStream(UUID cameraId) {
+        this.cameraId = cameraId;
+    }
+
+    boolean isAlive() {
+        return process != null && process.isAlive();
+    }
+}
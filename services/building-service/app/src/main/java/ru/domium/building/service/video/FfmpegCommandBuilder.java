@@ -0,0 +1,262 @@
+package ru.domium.building.service.video;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.BuildingCamera;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Собирает командную строку ffmpeg для RTSP → HLS.
+ */
+@Component
+@RequiredArgsConstructor
+public class FfmpegCommandBuilder {
+    private final VideoStreamingProperties props;
+
+    public List<String> build(BuildingCamera camera, VideoPaths paths) {
+        List<String> cmd = new ArrayList<>();
+        cmd.add("ffmpeg");
+        cmd.add("-hide_banner");
+        cmd.add("-loglevel");
+        cmd.add("warning");
+        // key=value каждые 0.5 с в stdout — источник метрик StreamMetrics
+        cmd.add("-progress");
+        cmd.add("pipe:1");
+        cmd.add("-nostats");
+        cmd.add("-rtsp_transport");
+        cmd.add("tcp");
+        cmd.add("-fflags");
+        cmd.add("nobuffer");
+        cmd.add("-flags");
+        cmd.add("low_delay");
+        cmd.add("-i");
+        cmd.add(camera.getRtspUrl());
+
+        List<String> renditions = camera.isTranscode() ? renditionNames(camera) : List.of();
+        if (isLowLatency(camera)) {
+            addLowLatencyOutput(cmd, paths);
+        } else if (renditions.isEmpty()) {
+            addSingleOutput(cmd, camera, paths);
+        } else {
+            addAbrOutput(cmd, renditions, paths);
+        }
+        return cmd;
+    }
+
+    /**
+     * Имена вариантов ABR камеры; неизвестные пресеты отбрасываются, лишние сверх лимита — тоже.
+     */
+    public List<String> renditionNames(BuildingCamera camera) {
+        if (camera.getRenditions() == null) return List.of();
+        return camera.getRenditions().stream()
+                .filter(name -> props.getRenditions().containsKey(name))
+                .distinct()
+                .limit(Math.max(1, props.getMaxRenditions()))
+                .toList();
+    }
+
+    /**
+     * Плейлист с сегментами (не master): для ABR — первый вариант, для LL-HLS — список частей ffmpeg.
+     */
+    public Path mediaPlaylist(BuildingCamera camera, VideoPaths paths) {
+        if (isLowLatency(camera)) return paths.llPartsPlaylist();
+        List<String> renditions = camera.isTranscode() ? renditionNames(camera) : List.of();
+        if (renditions.isEmpty()) return paths.hlsPlaylist();
+        return paths.hlsDir().resolve("index_" + renditions.getFirst() + ".m3u8");
+    }
+
+    /**
+     * LL-HLS возможен только с перекодированием: границы сегментов должны совпадать с ключевыми кадрами.
+     */
+    public boolean isLowLatency(BuildingCamera camera) {
+        return camera.isLowLatency() && camera.isTranscode();
+    }
+
+    /**
+     * LL-HLS: ffmpeg режет поток на CMAF-части длиной {@code llPartMs} (parts.m3u8 + part_N.m4s),
+     * ключевой кадр — на каждой {@code llPartsPerSegment}-й части. Плейлист с EXT-X-PART собирает
+     * {@link LowLatencyHlsPackager}. Нумерация частей идёт от текущего времени и кратна числу частей
+     * в сегменте, чтобы номера не повторялись после перезапуска и part_N с N % parts == 0 открывал сегмент.
+     */
+    private void addLowLatencyOutput(List<String> cmd, VideoPaths paths) {
+        int partsPerSegment = Math.max(1, props.getLlPartsPerSegment());
+        long partMs = Math.max(40, props.getLlPartMs());
+        String segmentSeconds = seconds(partMs * partsPerSegment);
+
+        cmd.add("-map");
+        cmd.add("0:v:0");
+        cmd.add("-c:v");
+        cmd.add("libx264");
+        cmd.add("-preset");
+        cmd.add("veryfast");
+        cmd.add("-tune");
+        cmd.add("zerolatency");
+        cmd.add("-pix_fmt");
+        cmd.add("yuv420p");
+        cmd.add("-force_key_frames");
+        cmd.add("expr:gte(t,n_forced*" + segmentSeconds + ")");
+        cmd.add("-sc_threshold");
+        cmd.add("0");
+        cmd.add("-an");
+
+        cmd.add("-f");
+        cmd.add("hls");
+        cmd.add("-hls_time");
+        cmd.add(seconds(partMs));
+        cmd.add("-hls_list_size");
+        cmd.add(String.valueOf(partsPerSegment * (Math.max(1, props.getLlWindowSegments()) + 2)));
+        cmd.add("-hls_segment_type");
+        cmd.add("fmp4");
+        cmd.add("-hls_fmp4_init_filename");
+        cmd.add(VideoPaths.LL_INIT);
+        cmd.add("-hls_flags");
+        cmd.add("delete_segments+split_by_time+program_date_time+temp_file");
+        cmd.add("-start_number");
+        cmd.add(String.valueOf(System.currentTimeMillis() / partMs / partsPerSegment * partsPerSegment));
+        cmd.add("-hls_segment_filename");
+        cmd.add(paths.hlsDir() + "/part_%d.m4s");
+        cmd.add(paths.llPartsPlaylist().toString());
+    }
+
+    private void addSingleOutput(List<String> cmd, BuildingCamera camera, VideoPaths paths) {
+        cmd.add("-map");
+        cmd.add("0:v:0");
+
+        if (camera.isTranscode()) {
+            // Предсказуемый H264 для браузера + частые ключевые кадры под сегментацию.
+            cmd.add("-c:v");
+            cmd.add("libx264");
+            addX264Options(cmd);
+        } else {
+            cmd.add("-c:v");
+            cmd.add("copy");
+        }
+
+        // Аудио для стройки обычно не нужно, и часто ломает совместимость.
+        cmd.add("-an");
+
+        addHlsOptions(cmd);
+        cmd.add("-hls_segment_filename");
+        cmd.add(paths.hlsDir() + "/seg_%08d.ts");
+        cmd.add(paths.hlsPlaylist().toString());
+    }
+
+    /**
+     * Один декод, split на N масштабов, N x264 в одном процессе.
+     * Варианты лежат рядом: index_{name}.m3u8 + seg_{name}_N.ts, master — index.m3u8.
+     */
+    private void addAbrOutput(List<String> cmd, List<String> renditions, VideoPaths paths) {
+        int n = renditions.size();
+        StringBuilder filter = new StringBuilder("[0:v:0]split=").append(n);
+        for (int i = 0; i < n; i++) filter.append("[s").append(i).append(']');
+        for (int i = 0; i < n; i++) {
+            VideoStreamingProperties.Rendition r = props.getRenditions().get(renditions.get(i));
+            filter.append(";[s").append(i).append("]scale=-2:").append(r.getHeight()).append("[v").append(i).append(']');
+        }
+        cmd.add("-filter_complex");
+        cmd.add(filter.toString());
+
+        StringBuilder streamMap = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            VideoStreamingProperties.Rendition r = props.getRenditions().get(renditions.get(i));
+            int kbps = r.getVideoBitrateKbps();
+            cmd.add("-map");
+            cmd.add("[v" + i + "]");
+            cmd.add("-c:v:" + i);
+            cmd.add("libx264");
+            cmd.add("-b:v:" + i);
+            cmd.add(kbps + "k");
+            cmd.add("-maxrate:v:" + i);
+            cmd.add((kbps * 107 / 100) + "k");
+            cmd.add("-bufsize:v:" + i);
+            cmd.add((kbps * 3 / 2) + "k");
+            if (i > 0) streamMap.append(' ');
+            streamMap.append("v:").append(i).append(",name:").append(renditions.get(i));
+        }
+        addX264Options(cmd);
+        cmd.add("-an");
+
+        addHlsOptions(cmd);
+        cmd.add("-master_pl_name");
+        cmd.add(paths.hlsPlaylist().getFileName().toString());
+        cmd.add("-var_stream_map");
+        cmd.add(streamMap.toString());
+        cmd.add("-hls_segment_filename");
+        cmd.add(paths.hlsDir() + "/seg_%v_%08d.ts");
+        cmd.add(paths.hlsDir() + "/index_%v.m3u8");
+    }
+
+    /**
+     * Архив: один кадр с камеры в JPEG фиксированной высоты. Процесс короткий — RTSP не держится между снимками.
+     */
+    public List<String> buildSnapshot(BuildingCamera camera, Path output) {
+        return List.of(
+                "ffmpeg", "-hide_banner", "-loglevel", "error",
+                "-rtsp_transport", "tcp",
+                "-i", camera.getRtspUrl(),
+                "-frames:v", "1",
+                "-vf", "scale=-2:" + props.getArchive().getSnapshotHeight(),
+                "-q:v", "4",
+                "-f", "image2", "-update", "1", "-c:v", "mjpeg",
+                "-y", output.toString()
+        );
+    }
+
+    /**
+     * Таймлапс: JPEG-снимки подаются в stdin подряд (image2pipe), на выходе H264 MP4 с moov в начале,
+     * чтобы плеер начинал воспроизведение и перемотку по Range без загрузки всего файла.
+     */
+    public List<String> buildTimelapse(Path output) {
+        int height = props.getArchive().getSnapshotHeight();
+        return List.of(
+                "ffmpeg", "-hide_banner", "-loglevel", "error",
+                "-f", "image2pipe", "-c:v", "mjpeg",
+                "-framerate", String.valueOf(Math.max(1, props.getArchive().getTimelapseFps())),
+                "-i", "pipe:0",
+                "-vf", "scale=-2:" + height + ",format=yuv420p",
+                "-c:v", "libx264", "-preset", "veryfast", "-crf", "26",
+                "-an",
+                "-movflags", "+faststart",
+                "-f", "mp4",
+                "-y", output.toString()
+        );
+    }
+
+    private void addX264Options(List<String> cmd) {
+        cmd.add("-preset");
+        cmd.add("veryfast");
+        cmd.add("-tune");
+        cmd.add("zerolatency");
+        cmd.add("-pix_fmt");
+        cmd.add("yuv420p");
+        cmd.add("-g");
+        cmd.add(String.valueOf(gopFrames()));
+        cmd.add("-keyint_min");
+        cmd.add(String.valueOf(gopFrames()));
+        cmd.add("-sc_threshold");
+        cmd.add("0");
+    }
+
+    private void addHlsOptions(List<String> cmd) {
+        cmd.add("-f");
+        cmd.add("hls");
+        cmd.add("-hls_time");
+        cmd.add(String.valueOf(props.getHlsTimeSeconds()));
+        cmd.add("-hls_list_size");
+        cmd.add(String.valueOf(props.getHlsListSize()));
+        cmd.add("-hls_flags");
+        cmd.add("delete_segments+append_list+independent_segments+program_date_time");
+    }
+
+    private static String seconds(long ms) {
+        return BigDecimal.valueOf(ms, 3).stripTrailingZeros().toPlainString();
+    }
+
+    private int gopFrames() {
+        return Math.max(10, props.getHlsTimeSeconds() * 25);
+    }
+}
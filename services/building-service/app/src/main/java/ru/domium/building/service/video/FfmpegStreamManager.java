@@ -1,37 +1,87 @@
 package ru.domium.building.service.video;
 
 import jakarta.annotation.PreDestroy;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.model.StreamLease;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Супервизор процессов ffmpeg (RTSP → HLS).
+ * <ul>
+ *     <li>блокировка на камеру вместо общего монитора — старт одной камеры не ждёт другие;</li>
+ *     <li>лимит процессов на узел отдельно для transcode и copy; без слота старт получает 503;</li>
+ *     <li>остановка не ждёт процесс: SIGTERM, через {@code stop-grace-ms} — SIGKILL; обход неактивных не ждёт блокировок;</li>
+ *     <li>упавший процесс перезапускается с экспоненциальной задержкой, пока у камеры есть зрители;</li>
+ *     <li>вывод ffmpeg читается виртуальными потоками; строки {@code -progress} уходят в {@link StreamMetrics};</li>
+ *     <li>при нескольких узлах камера запускается только под арендой {@link StreamPlacement}; потерянная аренда
+ *     останавливает поток, зрители с других узлов продлевают его через отметки в аренде.</li>
+ * </ul>
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class FfmpegStreamManager {
     private static final int MAX_FFMPEG_LOG_LINES = 200;
+    private static final int CAPACITY_RETRY_AFTER_SECONDS = 5;
 
     private final VideoStreamingProperties props;
-    private final Map<UUID, Process> processes = new ConcurrentHashMap<>();
+    private final FfmpegCommandBuilder commandBuilder;
+    private final LowLatencyHlsPackager llPackager;
+    private final StreamMetrics metrics;
+    private final StreamPlacement placement;
+    private final CameraStateListener stateListener;
+    private final Map<UUID, CameraStream> streams = new ConcurrentHashMap<>();
     private final Map<UUID, Long> lastAccessMs = new ConcurrentHashMap<>();
-    private final Map<UUID, Deque<String>> lastFfmpegOutput = new ConcurrentHashMap<>();
+    private final Map<UUID, Long> warmUntilMs = new ConcurrentHashMap<>();
+    private final Semaphore transcodeSlots;
+    private final Semaphore copySlots;
+    private final ScheduledExecutorService supervisor;
+    private volatile long lastLeaseRenewMs;
+
+    public FfmpegStreamManager(VideoStreamingProperties props,
+                               FfmpegCommandBuilder commandBuilder,
+                               LowLatencyHlsPackager llPackager,
+                               StreamMetrics metrics,
+                               StreamPlacement placement,
+                               CameraStateListener stateListener) {
+        this.props = props;
+        this.commandBuilder = commandBuilder;
+        this.llPackager = llPackager;
+        this.metrics = metrics;
+        this.placement = placement;
+        this.stateListener = stateListener;
+        this.transcodeSlots = new Semaphore(Math.max(0, props.getMaxTranscodeProcesses()), true);
+        this.copySlots = new Semaphore(Math.max(0, props.getMaxCopyProcesses()), true);
+        this.supervisor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("ffmpeg-supervisor").daemon(true).factory()
+        );
+    }
 
     public boolean isRunning(UUID cameraId) {
-        Process p = processes.get(cameraId);
-        return p != null && p.isAlive();
+        CameraStream s = streams.get(cameraId);
+        return s != null && s.isAlive();
     }
 
     /**
@@ -40,6 +90,49 @@ public class FfmpegStreamManager {
     public void touch(UUID cameraId) {
         if (cameraId == null) return;
         lastAccessMs.put(cameraId, System.currentTimeMillis());
+        if (!streams.containsKey(cameraId)) placement.recordAccess(cameraId);
+    }
+
+    /**
+     * Пакетное обновление активности (отчёт nginx при доступе по подписанным ссылкам).
+     * Трогаем только запущенные потоки, чтобы отчёт не "воскрешал" остановленные камеры.
+     */
+    public int touchAll(Collection<UUID> cameraIds) {
+        if (cameraIds == null) return 0;
+        long now = System.currentTimeMillis();
+        int touched = 0;
+        for (UUID cameraId : cameraIds) {
+            if (cameraId == null) continue;
+            if (!streams.containsKey(cameraId)) {
+                placement.recordAccess(cameraId); // поток на другом узле
+                continue;
+            }
+            lastAccessMs.put(cameraId, now);
+            touched++;
+        }
+        return touched;
+    }
+
+    /**
+     * Не останавливать поток без зрителей до {@code untilMs} (прогрев горячих камер).
+     */
+    public void keepWarm(UUID cameraId, long untilMs) {
+        if (cameraId == null) return;
+        warmUntilMs.merge(cameraId, untilMs, Math::max);
+    }
+
+    /**
+     * Время запуска текущего процесса камеры.
+     */
+    public OptionalLong startedAtMs(UUID cameraId) {
+        CameraStream s = streams.get(cameraId);
+        if (s == null) return OptionalLong.empty();
+        s.lock.lock();
+        try {
+            return s.isAlive() ? OptionalLong.of(s.startedAtMs) : OptionalLong.empty();
+        } finally {
+            s.lock.unlock();
+        }
     }
 
     public VideoPaths paths(UUID buildingId, UUID cameraId) {
@@ -48,169 +141,464 @@ public class FfmpegStreamManager {
         );
     }
 
-    public synchronized void start(UUID buildingId, BuildingCamera camera) {
-        if (!camera.isEnabled()) {
-            throw new IllegalStateException("Camera is disabled: " + camera.getId());
-        }
-        UUID cameraId = camera.getId();
-        if (cameraId == null) throw new IllegalArgumentException("camera.id is required");
-        if (isRunning(cameraId)) return;
-        touch(cameraId);
+    /**
+     * Число свободных слотов на узле для режима камеры.
+     */
+    public int availableSlots(boolean transcode) {
+        return slots(transcode).availablePermits();
+    }
 
-        VideoPaths paths = paths(buildingId, cameraId);
+    /**
+     * Запускает поток, если он ещё не запущен и не ждёт перезапуска.
+     *
+     * @throws StreamCapacityExhaustedException если за {@code startQueueTimeoutMs} не освободился слот
+     * @throws StreamOwnedElsewhereException     если поток камеры принадлежит другому узлу
+     */
+    public void start(UUID buildingId, BuildingCamera camera) {
+        requireStartable(camera);
+        touch(camera.getId());
+        start(buildingId, camera, props.getStartQueueTimeoutMs());
+    }
+
+    /**
+     * Прогрев: старт без ожидания слота и без отметки зрителя.
+     *
+     * @return {@code false}, если свободного слота нет или камера на другом узле
+     */
+    public boolean prewarm(UUID buildingId, BuildingCamera camera) {
+        requireStartable(camera);
         try {
-            Files.createDirectories(paths.hlsDir());
-        } catch (Exception e) {
-            throw new IllegalStateException("Cannot create video directories", e);
-        }
-
-        String hlsDir = paths.hlsDir().toString();
-
-        String hlsPlaylist = hlsDir + "/index.m3u8";
-
-        List<String> cmd = new ArrayList<>();
-        cmd.add("ffmpeg");
-        cmd.add("-hide_banner");
-        cmd.add("-loglevel");
-        cmd.add("warning");
-        cmd.add("-rtsp_transport");
-        cmd.add("tcp");
-        cmd.add("-fflags");
-        cmd.add("nobuffer");
-        cmd.add("-flags");
-        cmd.add("low_delay");
-        cmd.add("-i");
-        cmd.add(camera.getRtspUrl());
-        cmd.add("-map");
-        cmd.add("0:v:0");
-
-        if (camera.isTranscode()) {
-            // Предсказуемый H264 для браузера + частые ключевые кадры под сегментацию.
-            cmd.add("-c:v");
-            cmd.add("libx264");
-            cmd.add("-preset");
-            cmd.add("veryfast");
-            cmd.add("-tune");
-            cmd.add("zerolatency");
-            cmd.add("-pix_fmt");
-            cmd.add("yuv420p");
-            cmd.add("-g");
-            cmd.add(String.valueOf(Math.max(10, props.getHlsTimeSeconds() * 25)));
-            cmd.add("-keyint_min");
-            cmd.add(String.valueOf(Math.max(10, props.getHlsTimeSeconds() * 25)));
-            cmd.add("-sc_threshold");
-            cmd.add("0");
-        } else {
-            cmd.add("-c:v");
-            cmd.add("copy");
-        }
-
-        // Аудио для стройки обычно не нужно, и часто ломает совместимость.
-        cmd.add("-an");
-
-        cmd.add("-f");
-        cmd.add("hls");
-        cmd.add("-hls_time");
-        cmd.add(String.valueOf(props.getHlsTimeSeconds()));
-        cmd.add("-hls_list_size");
-        cmd.add(String.valueOf(props.getHlsListSize()));
-        cmd.add("-hls_flags");
-        cmd.add("delete_segments+append_list+independent_segments");
-        cmd.add("-hls_segment_filename");
-        cmd.add(hlsDir + "/seg_%08d.ts");
-        cmd.add(hlsPlaylist);
+            start(buildingId, camera, 0);
+            return true;
+        } catch (StreamCapacityExhaustedException | StreamOwnedElsewhereException e) {
+            return false;
+        }
+    }
 
+    /**
+     * Подхват потока упавшего узла: старт без ожидания слота, отсчёт неактивности — от последнего зрителя.
+     *
+     * @return {@code false}, если свободного слота нет или камеру уже забрал другой узел
+     */
+    public boolean adopt(UUID buildingId, BuildingCamera camera, long lastViewerMs) {
+        requireStartable(camera);
+        lastAccessMs.merge(camera.getId(), lastViewerMs, Math::max);
         try {
-            Process p = new ProcessBuilder(cmd)
-                    .redirectErrorStream(true)
-                    .start();
-            processes.put(cameraId, p);
-            lastFfmpegOutput.put(cameraId, new ConcurrentLinkedDeque<>());
-            touch(cameraId);
-            log.info("FFmpeg started for camera {} (building {})", cameraId, buildingId);
+            start(buildingId, camera, 0);
+            return true;
+        } catch (StreamCapacityExhaustedException | StreamOwnedElsewhereException e) {
+            if (!streams.containsKey(camera.getId())) lastAccessMs.remove(camera.getId());
+            return false;
+        }
+    }
 
-            // Не блокируем: читаем вывод, чтобы не забить буфер процесса.
-            Thread t = new Thread(() -> drainLogs(cameraId, p), "ffmpeg-" + cameraId);
-            t.setDaemon(true);
-            t.start();
-
-            p.onExit().thenRun(() -> {
-                processes.remove(cameraId, p);
-                lastAccessMs.remove(cameraId);
-                int code = p.exitValue();
-                Deque<String> out = lastFfmpegOutput.remove(cameraId);
-                if (code == 0) {
-                    log.info("FFmpeg exited for camera {} (code=0)", cameraId);
-                    return;
-                }
+    private static void requireStartable(BuildingCamera camera) {
+        if (!camera.isEnabled()) {
+            throw new IllegalStateException("Camera is disabled: " + camera.getId());
+        }
+        if (camera.getId() == null) throw new IllegalArgumentException("camera.id is required");
+    }
 
-                String details = formatLastFfmpegLines(out);
-                if (details.isBlank()) {
-                    log.warn("FFmpeg exited for camera {} (code={})", cameraId, code);
-                } else {
-                    log.warn("FFmpeg exited for camera {} (code={}). Last ffmpeg output:\n{}", cameraId, code, details);
+    private void start(UUID buildingId, BuildingCamera camera, long slotWaitMs) {
+        UUID cameraId = camera.getId();
+        while (true) {
+            CameraStream s = streams.computeIfAbsent(cameraId, CameraStream::new);
+            s.lock.lock();
+            try {
+                if (s.retired) continue;
+                s.stopRequested = false;
+                s.buildingId = buildingId;
+                s.camera = camera;
+                if (s.isAlive() || s.pendingRestart != null) return;
+                try {
+                    acquireLease(s);
+                    launch(s, slotWaitMs);
+                } catch (RuntimeException e) {
+                    retire(s);
+                    throw e;
                 }
-            });
+                return;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Вызывать под {@code s.lock}.
+     */
+    private void acquireLease(CameraStream s) {
+        if (s.leaseHeld) return;
+        Optional<StreamLease> owner = placement.acquire(s.cameraId, s.buildingId);
+        if (owner.isPresent()) throw new StreamOwnedElsewhereException(owner.get());
+        s.leaseHeld = true;
+    }
+
+    /**
+     * Продление аренд потоков узла. Поток, чью аренду забрал другой узел (этот не продлевал дольше TTL),
+     * останавливается; отметки зрителей с других узлов переносятся в активность потока.
+     */
+    @Scheduled(fixedDelayString = "${domium.video.placement.renew-period-ms:5000}")
+    public void renewLeases() {
+        if (!placement.isEnabled()) return;
+        long since = lastLeaseRenewMs;
+        lastLeaseRenewMs = System.currentTimeMillis();
+        List<UUID> held = streams.values().stream().filter(s -> s.leaseHeld).map(s -> s.cameraId).toList();
+        List<UUID> viewed = held.stream().filter(id -> lastAccessMs.getOrDefault(id, 0L) >= since).toList();
+
+        StreamPlacement.Heartbeat heartbeat;
+        try {
+            heartbeat = placement.heartbeat(held, viewed);
         } catch (Exception e) {
-            throw new IllegalStateException("Cannot start ffmpeg for camera " + cameraId, e);
+            log.warn("Failed to renew stream leases: {}", e.getMessage());
+            return;
         }
+        for (UUID cameraId : held) {
+            CameraStream s = streams.get(cameraId);
+            if (s == null || !s.leaseHeld || heartbeat.owned().contains(cameraId)) continue;
+            log.warn("Stream lease for camera {} was taken over by another node, stopping", cameraId);
+            s.leaseHeld = false; // чужую аренду не удаляем
+            stop(cameraId);
+        }
+        heartbeat.lastAccessMs().forEach((cameraId, ts) -> {
+            if (streams.containsKey(cameraId)) lastAccessMs.merge(cameraId, ts, Math::max);
+        });
     }
 
-    public synchronized void stop(UUID cameraId) {
-        Process p = processes.remove(cameraId);
+    /**
+     * Останавливает поток, не дожидаясь выхода процесса: SIGTERM, через {@code stop-grace-ms} — SIGKILL.
+     * Слот освобождается, когда процесс действительно завершился.
+     *
+     * @return завершается после выхода процесса
+     */
+    public CompletableFuture<Void> stop(UUID cameraId) {
         lastAccessMs.remove(cameraId);
-        if (p == null) return;
-        if (!p.isAlive()) return;
+        warmUntilMs.remove(cameraId);
+        CameraStream s = streams.get(cameraId);
+        if (s == null) return CompletableFuture.completedFuture(null);
 
-        p.destroy();
+        s.lock.lock();
         try {
-            p.waitFor();
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
-        }
-        if (p.isAlive()) {
-            p.destroyForcibly();
+            return detachAndTerminate(s);
+        } finally {
+            s.lock.unlock();
         }
-        log.info("FFmpeg stopped for camera {}", cameraId);
     }
 
+    /**
+     * Обход неактивных потоков. Не ждёт ни блокировок камер (занятую стартом камеру пропускает до следующего обхода),
+     * ни выхода процессов, поэтому не задерживает {@link #start} и не зависит от медленно завершающегося ffmpeg.
+     */
     @Scheduled(fixedDelayString = "${domium.video.idle-check-period-ms:30000}")
     public void stopIdleStreams() {
         if (!props.isAutoStopEnabled()) return;
-        long now = System.currentTimeMillis();
-        long idleMs = Math.max(1, props.getIdleTimeoutSeconds()) * 1000L;
-        for (UUID cameraId : List.copyOf(processes.keySet())) {
-            Process p = processes.get(cameraId);
-            if (p == null || !p.isAlive()) continue;
-            Long last = lastAccessMs.get(cameraId);
-            if (last == null) continue; // нет данных — не трогаем
-            if (now - last > idleMs) {
-                log.info("Auto-stopping idle camera {} (idle={}ms)", cameraId, (now - last));
-                try {
-                    stop(cameraId);
-                } catch (Exception e) {
-                    log.warn("Failed to auto-stop camera {}", cameraId, e);
+        long sweepStartedNs = System.nanoTime();
+        int stopped = 0;
+        for (CameraStream s : List.copyOf(streams.values())) {
+            if (!isIdle(s.cameraId, System.currentTimeMillis())) continue;
+            if (!s.lock.tryLock()) continue;
+            try {
+                long now = System.currentTimeMillis();
+                if (s.retired || !s.isAlive() || !isIdle(s.cameraId, now)) continue;
+                Long last = lastAccessMs.remove(s.cameraId);
+                warmUntilMs.remove(s.cameraId);
+                if (last == null) {
+                    log.info("Stopping pre-warmed camera {} without viewers", s.cameraId);
+                } else {
+                    log.info("Auto-stopping idle camera {} (idle={}ms)", s.cameraId, (now - last));
                 }
+                detachAndTerminate(s);
+                stopped++;
+            } catch (Exception e) {
+                log.warn("Failed to auto-stop camera {}", s.cameraId, e);
+            } finally {
+                s.lock.unlock();
             }
         }
+        metrics.idleSweepFinished(System.nanoTime() - sweepStartedNs, stopped);
+    }
+
+    private boolean isIdle(UUID cameraId, long now) {
+        Long warmUntil = warmUntilMs.get(cameraId);
+        if (warmUntil != null && warmUntil > now) return false;
+        Long last = lastAccessMs.get(cameraId);
+        if (last == null) {
+            // нет данных — не трогаем; прогретый поток без зрителей — сразу после окна прогрева
+            return warmUntil != null;
+        }
+        return now - last > Math.max(1, props.getIdleTimeoutSeconds()) * 1000L;
     }
 
     @PreDestroy
     public void shutdown() {
-        for (UUID cameraId : List.copyOf(processes.keySet())) {
+        List<CompletableFuture<Void>> exits = new ArrayList<>();
+        for (UUID cameraId : List.copyOf(streams.keySet())) {
             try {
-                stop(cameraId);
+                exits.add(stop(cameraId));
             } catch (Exception ignored) {
                 // best-effort
             }
         }
+        try {
+            CompletableFuture.allOf(exits.toArray(CompletableFuture[]::new))
+                    .get(stopGraceMs() + 1_000, TimeUnit.MILLISECONDS);
+        } catch (Exception ignored) {
+            // best-effort
+        }
+        supervisor.shutdownNow();
     }
 
-    private void drainLogs(UUID cameraId, Process p) {
+    /**
+     * Вызывать под {@code s.lock}.
+     */
+    private CompletableFuture<Void> detachAndTerminate(CameraStream s) {
+        s.stopRequested = true;
+        Process p = s.process;
+        Semaphore slot = s.slot;
+        s.process = null;
+        s.slot = null;
+        retire(s);
+        llPackager.stop(s.cameraId);
+        if (p != null) stateListener.onCameraStateChanged(s.buildingId, s.cameraId, false);
+        return terminate(s.cameraId, p, slot);
+    }
+
+    private CompletableFuture<Void> terminate(UUID cameraId, Process p, Semaphore slot) {
+        if (p == null || !p.isAlive()) {
+            if (slot != null) slot.release();
+            return CompletableFuture.completedFuture(null);
+        }
+        metrics.terminationStarted();
+        p.destroy();
+        ScheduledFuture<?> kill;
+        try {
+            kill = supervisor.schedule(() -> forceKill(cameraId, p), stopGraceMs(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            kill = null;
+            forceKill(cameraId, p); // идёт остановка приложения
+        }
+        ScheduledFuture<?> pendingKill = kill;
+        return p.onExit().thenAccept(exited -> {
+            if (pendingKill != null) pendingKill.cancel(false);
+            if (slot != null) slot.release();
+            metrics.terminationFinished();
+            log.info("FFmpeg stopped for camera {}", cameraId);
+        });
+    }
+
+    private void forceKill(UUID cameraId, Process p) {
+        if (!p.isAlive()) return;
+        log.warn("FFmpeg for camera {} did not exit within {}ms after SIGTERM, killing", cameraId, stopGraceMs());
+        metrics.killEscalated();
+        p.destroyForcibly();
+    }
+
+    private long stopGraceMs() {
+        return Math.max(0, props.getStopGraceMs());
+    }
+
+    /**
+     * Запуск процесса. Вызывать под {@code s.lock}.
+     */
+    private void launch(CameraStream s, long slotWaitMs) {
+        UUID cameraId = s.cameraId;
+        boolean transcode = s.camera.isTranscode();
+        Semaphore slot = slots(transcode);
+        try {
+            if (!slot.tryAcquire(Math.max(0, slotWaitMs), TimeUnit.MILLISECONDS)) {
+                throw new StreamCapacityExhaustedException(transcode, limit(transcode), CAPACITY_RETRY_AFTER_SECONDS);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for ffmpeg slot", ie);
+        }
+
+        try {
+            VideoPaths paths = paths(s.buildingId, cameraId);
+            try {
+                Files.createDirectories(paths.hlsDir());
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot create video directories", e);
+            }
+
+            boolean lowLatency = commandBuilder.isLowLatency(s.camera);
+            if (lowLatency) {
+                llPackager.start(cameraId, paths);
+            }
+
+            Process p;
+            try {
+                p = new ProcessBuilder(commandBuilder.build(s.camera, paths))
+                        .redirectErrorStream(true)
+                        .start();
+            } catch (Exception e) {
+                if (lowLatency) llPackager.stop(cameraId);
+                throw new IllegalStateException("Cannot start ffmpeg for camera " + cameraId, e);
+            }
+
+            s.process = p;
+            s.slot = slot;
+            s.startedAtMs = System.currentTimeMillis();
+            metrics.processStarted(cameraId, s.buildingId, transcode, commandBuilder.mediaPlaylist(s.camera, paths));
+            log.info("FFmpeg started for camera {} (building {}, transcode={}, lowLatency={}, attempt={})",
+                    cameraId, s.buildingId, transcode, lowLatency, s.restartAttempts);
+            stateListener.onCameraStateChanged(s.buildingId, cameraId, true);
+
+            // Не блокируем: читаем вывод, чтобы не забить буфер процесса.
+            Deque<String> out = new ConcurrentLinkedDeque<>();
+            Thread.ofVirtual().name("ffmpeg-" + cameraId).start(() -> drainLogs(cameraId, p, out));
+            p.onExit().thenRun(() -> onExit(s, p, out));
+        } catch (RuntimeException e) {
+            if (s.slot == slot) {
+                // процесс уже запущен, но onExit не зарегистрирован: останавливаем сами, слот вернётся после выхода
+                Process started = s.process;
+                s.process = null;
+                s.slot = null;
+                llPackager.stop(cameraId);
+                metrics.processExited(cameraId);
+                terminate(cameraId, started, slot);
+            } else {
+                slot.release();
+            }
+            throw e;
+        }
+    }
+
+    private void onExit(CameraStream s, Process p, Deque<String> out) {
+        UUID cameraId = s.cameraId;
+        int code = p.exitValue();
+        s.lock.lock();
+        try {
+            if (s.process != p) return; // остановлен явно или уже заменён
+            long uptimeMs = System.currentTimeMillis() - s.startedAtMs;
+            s.process = null;
+            releaseSlot(s);
+            llPackager.stop(cameraId);
+            metrics.processExited(cameraId);
+            stateListener.onCameraStateChanged(s.buildingId, cameraId, false);
+
+            String details = formatLastFfmpegLines(out);
+            if (code == 0) {
+                log.info("FFmpeg exited for camera {} (code=0)", cameraId);
+            } else if (details.isBlank()) {
+                log.warn("FFmpeg exited for camera {} (code={})", cameraId, code);
+            } else {
+                log.warn("FFmpeg exited for camera {} (code={}). Last ffmpeg output:\n{}", cameraId, code, details);
+            }
+
+            if (s.stopRequested || s.retired) {
+                retire(s);
+                return;
+            }
+            if (uptimeMs >= props.getRestartMaxDelayMs()) {
+                s.restartAttempts = 0; // процесс успел поработать — это новый сбой, а не серия
+            }
+            scheduleRestartOrRetire(s);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Вызывать под {@code s.lock}.
+     */
+    private void scheduleRestartOrRetire(CameraStream s) {
+        int maxAttempts = props.getRestartMaxAttempts();
+        if (!props.isRestartEnabled() || !hasViewers(s.cameraId)
+                || (maxAttempts > 0 && s.restartAttempts >= maxAttempts)) {
+            if (props.isRestartEnabled() && hasViewers(s.cameraId)) {
+                log.warn("FFmpeg for camera {} gave up after {} restart attempts", s.cameraId, s.restartAttempts);
+            }
+            retire(s);
+            lastAccessMs.remove(s.cameraId);
+            warmUntilMs.remove(s.cameraId);
+            return;
+        }
+
+        long delayMs = restartDelayMs(s.restartAttempts);
+        s.restartAttempts++;
+        metrics.restartScheduled(s.cameraId);
+        log.info("Restarting ffmpeg for camera {} in {}ms (attempt {})", s.cameraId, delayMs, s.restartAttempts);
+        try {
+            s.pendingRestart = supervisor.schedule(() -> restart(s), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            retire(s); // идёт остановка приложения
+        }
+    }
+
+    private void restart(CameraStream s) {
+        s.lock.lock();
+        try {
+            s.pendingRestart = null;
+            if (s.retired || s.stopRequested || s.isAlive()) return;
+            try {
+                launch(s, 0);
+            } catch (RuntimeException e) {
+                log.warn("FFmpeg restart failed for camera {}: {}", s.cameraId, e.getMessage());
+                scheduleRestartOrRetire(s);
+            }
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    long restartDelayMs(int attempt) {
+        long initial = Math.max(1, props.getRestartInitialDelayMs());
+        long max = Math.max(initial, props.getRestartMaxDelayMs());
+        int shift = Math.min(attempt, 30);
+        return Math.min(max, initial << shift);
+    }
+
+    private boolean hasViewers(UUID cameraId) {
+        if (!props.isAutoStopEnabled()) return true;
+        Long warmUntil = warmUntilMs.get(cameraId);
+        if (warmUntil != null && warmUntil > System.currentTimeMillis()) return true;
+        Long last = lastAccessMs.get(cameraId);
+        long idleMs = Math.max(1, props.getIdleTimeoutSeconds()) * 1000L;
+        return last != null && System.currentTimeMillis() - last <= idleMs;
+    }
+
+    /**
+     * Вызывать под {@code s.lock}.
+     */
+    private void retire(CameraStream s) {
+        if (s.pendingRestart != null) {
+            s.pendingRestart.cancel(false);
+            s.pendingRestart = null;
+        }
+        s.retired = true;
+        if (streams.remove(s.cameraId, s)) {
+            metrics.retired(s.cameraId);
+        }
+        if (s.leaseHeld) {
+            s.leaseHeld = false;
+            placement.release(s.cameraId);
+        }
+    }
+
+    /**
+     * Вызывать под {@code s.lock}.
+     */
+    private void releaseSlot(CameraStream s) {
+        if (s.slot != null) {
+            s.slot.release();
+            s.slot = null;
+        }
+    }
+
+    private Semaphore slots(boolean transcode) {
+        return transcode ? transcodeSlots : copySlots;
+    }
+
+    private int limit(boolean transcode) {
+        return transcode ? props.getMaxTranscodeProcesses() : props.getMaxCopyProcesses();
+    }
+
+    private void drainLogs(UUID cameraId, Process p, Deque<String> buf) {
         try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
-            Deque<String> buf = lastFfmpegOutput.computeIfAbsent(cameraId, id -> new ConcurrentLinkedDeque<>());
             String line;
             while ((line = br.readLine()) != null) {
+                if (metrics.onOutputLine(cameraId, line)) continue;
                 // warning-уровень обычно достаточно шумный, оставляем debug
                 log.debug("[ffmpeg:{}] {}", cameraId, line);
 
@@ -233,5 +621,3 @@ public class FfmpegStreamManager {
         return sb.toString().trim();
     }
 }
-
-
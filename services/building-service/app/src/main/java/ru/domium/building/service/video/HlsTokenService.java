@@ -0,0 +1,85 @@
+package ru.domium.building.service.video;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Подпись HLS-ссылок, которую nginx проверяет сам через secure_link, без auth_request в building-service.
+ * Формат совместим с {@code secure_link_md5 "$expires:$building:$camera:$secret"}:
+ * token = base64url(md5(expires:buildingId:cameraId:secret)) без паддинга.
+ * Токен ограничен стройкой, камерой и сроком действия; БД для проверки не нужна.
+ */
+@Component
+public class HlsTokenService {
+    private static final Base64.Encoder TOKEN_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final VideoStreamingProperties props;
+
+    public HlsTokenService(VideoStreamingProperties props) {
+        this.props = props;
+    }
+
+    public boolean isEnabled() {
+        return props.getHlsTokenSecret() != null && !props.getHlsTokenSecret().isBlank();
+    }
+
+    /**
+     * URL плейлиста для клиента: подписанный, если задан секрет, иначе обычный (под auth_request).
+     */
+    public String hlsUrl(UUID buildingId, UUID cameraId) {
+        if (!isEnabled()) return VideoPaths.hlsUrl(buildingId, cameraId);
+        long expires = Instant.now().getEpochSecond() + Math.max(1, props.getHlsTokenTtlSeconds());
+        return VideoPaths.signedHlsUrl(buildingId, cameraId, sign(buildingId, cameraId, expires), expires);
+    }
+
+    public String sign(UUID buildingId, UUID cameraId, long expiresEpochSeconds) {
+        if (!isEnabled()) throw new IllegalStateException("HLS token secret is not configured");
+        String payload = expiresEpochSeconds + ":" + buildingId + ":" + cameraId + ":" + props.getHlsTokenSecret();
+        return TOKEN_ENCODER.encodeToString(md5(payload.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public boolean verify(UUID buildingId, UUID cameraId, long expiresEpochSeconds, String token) {
+        return verify(buildingId, cameraId, expiresEpochSeconds, token, Instant.now());
+    }
+
+    public boolean verify(UUID buildingId, UUID cameraId, long expiresEpochSeconds, String token, Instant now) {
+        if (!isEnabled() || token == null || buildingId == null || cameraId == null) return false;
+        if (expiresEpochSeconds < now.getEpochSecond()) return false;
+        byte[] expected = sign(buildingId, cameraId, expiresEpochSeconds).getBytes(StandardCharsets.US_ASCII);
+        return MessageDigest.isEqual(expected, token.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Секрет внутренних вызовов: отдельный, если задан, иначе секрет подписи ссылок.
+     */
+    public String internalSecret() {
+        String internal = props.getInternalSecret();
+        return internal != null && !internal.isBlank() ? internal : props.getHlsTokenSecret();
+    }
+
+    /**
+     * Проверка секрета для внутренних вызовов без JWT (отчёт активности от nginx, LL-HLS, межузловые вызовы).
+     */
+    public boolean isInternalSecret(String value) {
+        String expected = internalSecret();
+        if (expected == null || expected.isBlank() || value == null) return false;
+        return MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8),
+                value.getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    private static byte[] md5(byte[] data) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
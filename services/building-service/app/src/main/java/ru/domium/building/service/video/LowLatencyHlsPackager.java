@@ -0,0 +1,369 @@
+package ru.domium.building.service.video;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Упаковщик LL-HLS поверх ffmpeg.
+ * <p>
+ * Муксер hls в ffmpeg не умеет EXT-X-PART, поэтому ffmpeg пишет короткие CMAF-части (parts.m3u8 + part_N.m4s),
+ * а упаковщик группирует их в сегменты: склеивает завершённые сегменты в seg_M.m4s, пишет index.m3u8
+ * с EXT-X-PART/EXT-X-PRELOAD-HINT и держит плейлист в памяти для блокирующей перезагрузки
+ * ({@code _HLS_msn}/{@code _HLS_part}) и ожидания части из preload hint.
+ * <p>
+ * Нумерация: часть N принадлежит сегменту N / parts, индекс части в сегменте — N % parts.
+ */
+@Component
+@Slf4j
+public class LowLatencyHlsPackager {
+    private static final Pattern PART_URI = Pattern.compile("^part_(\\d+)\\.m4s$");
+    private static final String EXTINF = "#EXTINF:";
+    private static final String PROGRAM_DATE_TIME = "#EXT-X-PROGRAM-DATE-TIME:";
+    /**
+     * Сколько последних сегментов перечисляются с частями (спецификация: не меньше трёх целевых длительностей частей).
+     */
+    private static final int SEGMENTS_WITH_PARTS = 2;
+
+    private final VideoStreamingProperties props;
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+
+    public LowLatencyHlsPackager(VideoStreamingProperties props) {
+        this.props = props;
+    }
+
+    /**
+     * Новая сессия камеры: чистит файлы прошлого запуска и запускает опрос parts.m3u8.
+     * Вызывать до старта ffmpeg, иначе можно удалить его первые части.
+     */
+    public void start(UUID cameraId, VideoPaths paths) {
+        stop(cameraId);
+        cleanup(paths);
+        Session s = new Session(cameraId, paths);
+        sessions.put(cameraId, s);
+        s.poller = Thread.ofVirtual().name("ll-hls-" + cameraId).start(() -> poll(s));
+    }
+
+    public void stop(UUID cameraId) {
+        Session s = sessions.remove(cameraId);
+        if (s == null) return;
+        s.closed = true;
+        if (s.poller != null) s.poller.interrupt();
+        synchronized (s) {
+            s.waiters.values().forEach(list -> list.forEach(f -> f.complete(false)));
+            s.waiters.clear();
+        }
+    }
+
+    public boolean isActive(UUID cameraId) {
+        return sessions.containsKey(cameraId);
+    }
+
+    /**
+     * Номер части, нужной для ответа на блокирующий запрос плейлиста.
+     * Без {@code _HLS_part} ждём завершения всего сегмента {@code msn}.
+     */
+    public long requiredPart(long msn, Integer part) {
+        int parts = partsPerSegment();
+        return part == null ? (msn + 1) * parts - 1 : msn * parts + part;
+    }
+
+    /**
+     * Спецификация: блокирующий запрос дальше чем на два сегмента от текущего — ошибка клиента.
+     */
+    public boolean isTooFarAhead(long lastPart, long msn) {
+        return lastPart >= 0 && msn > lastPart / partsPerSegment() + 2;
+    }
+
+    /**
+     * Последняя опубликованная часть камеры, -1 если частей ещё нет; empty — сессии нет.
+     */
+    public Optional<Long> lastPart(UUID cameraId) {
+        Session s = sessions.get(cameraId);
+        if (s == null) return Optional.empty();
+        synchronized (s) {
+            return Optional.of(s.lastPart);
+        }
+    }
+
+    /**
+     * Текущий плейлист LL-HLS из памяти.
+     */
+    public Optional<String> playlist(UUID cameraId) {
+        Session s = sessions.get(cameraId);
+        return s == null ? Optional.empty() : Optional.ofNullable(s.playlist);
+    }
+
+    /**
+     * Завершается {@code true}, когда опубликована часть {@code part}; {@code false} — по таймауту или остановке.
+     */
+    public CompletableFuture<Boolean> awaitPart(UUID cameraId, long part, long timeoutMs) {
+        Session s = sessions.get(cameraId);
+        if (s == null) return CompletableFuture.completedFuture(false);
+        synchronized (s) {
+            if (s.lastPart >= part) return CompletableFuture.completedFuture(true);
+            CompletableFuture<Boolean> f = new CompletableFuture<>();
+            s.waiters.computeIfAbsent(part, k -> new ArrayList<>()).add(f);
+            return f.completeOnTimeout(false, timeoutMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Таймаут блокирующего запроса: три целевые длительности сегмента.
+     */
+    public long blockingTimeoutMs() {
+        return 3L * segmentMs();
+    }
+
+    private void poll(Session s) {
+        long periodMs = Math.max(10, props.getLlPartMs() / 4);
+        while (!s.closed) {
+            try {
+                refresh(s);
+                Thread.sleep(periodMs);
+            } catch (InterruptedException ie) {
+                return;
+            } catch (Exception e) {
+                log.warn("LL-HLS packaging failed for camera {}: {}", s.cameraId, e.getMessage());
+                try {
+                    Thread.sleep(periodMs);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Один шаг: читает parts.m3u8, склеивает завершённые сегменты, публикует плейлист, будит ожидающих.
+     */
+    void refresh(Session s) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(s.paths.llPartsPlaylist());
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        List<Part> listed = parseParts(lines);
+        if (listed.isEmpty()) return;
+
+        synchronized (s) {
+            if (s.closed || listed.getLast().number() <= s.lastPart) return;
+            for (Part p : listed) s.parts.putIfAbsent(p.number(), p);
+            s.parts.headMap(listed.getFirst().number(), false).clear();
+            s.lastPart = listed.getLast().number();
+
+            int parts = partsPerSegment();
+            if (s.lastSegment < 0) s.lastSegment = s.parts.firstKey() / parts - 1;
+            long lastCompleteMsn = (s.lastPart + 1) / parts - 1;
+            long fromMsn = Math.max(s.parts.firstKey() / parts, s.lastSegment + 1);
+            for (long msn = fromMsn; msn <= lastCompleteMsn; msn++) {
+                List<Part> segParts = partsOf(s, msn);
+                if (segParts.size() != parts || !writeSegment(s, msn, segParts)) {
+                    // дыра в нумерации сломала бы EXT-X-MEDIA-SEQUENCE — окно начинается заново
+                    dropSegments(s);
+                }
+                s.lastSegment = msn;
+            }
+            trimSegments(s);
+
+            s.playlist = render(s);
+            writeAtomically(s.paths.hlsPlaylist(), s.playlist);
+
+            NavigableMap<Long, List<CompletableFuture<Boolean>>> ready = s.waiters.headMap(s.lastPart, true);
+            ready.values().forEach(list -> list.forEach(f -> f.complete(true)));
+            ready.clear();
+        }
+    }
+
+    /**
+     * Вызывать под монитором сессии.
+     */
+    String render(Session s) {
+        int parts = partsPerSegment();
+        String partTarget = seconds(Math.max(40, props.getLlPartMs()));
+        StringBuilder sb = new StringBuilder(2048);
+        sb.append("#EXTM3U\n");
+        sb.append("#EXT-X-VERSION:9\n");
+        sb.append("#EXT-X-TARGETDURATION:").append((segmentMs() + 999) / 1000).append('\n');
+        sb.append("#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=")
+                .append(seconds(3L * Math.max(40, props.getLlPartMs()))).append('\n');
+        sb.append("#EXT-X-PART-INF:PART-TARGET=").append(partTarget).append('\n');
+
+        long currentMsn = s.lastSegment + 1;
+        long firstMsn = s.segments.isEmpty() ? currentMsn : s.segments.firstKey();
+        sb.append("#EXT-X-MEDIA-SEQUENCE:").append(firstMsn).append('\n');
+        sb.append("#EXT-X-MAP:URI=\"").append(VideoPaths.LL_INIT).append("\"\n");
+
+        boolean first = true;
+        for (Map.Entry<Long, Segment> e : s.segments.entrySet()) {
+            long msn = e.getKey();
+            Segment seg = e.getValue();
+            if (first && seg.programDateTime() != null) {
+                sb.append(PROGRAM_DATE_TIME).append(seg.programDateTime()).append('\n');
+            }
+            first = false;
+            if (msn > s.lastSegment - SEGMENTS_WITH_PARTS) {
+                appendParts(sb, partsOf(s, msn), parts);
+            }
+            sb.append(EXTINF).append(seconds(seg.durationMs())).append(",\n");
+            sb.append(VideoPaths.llSegmentName(msn)).append('\n');
+        }
+
+        List<Part> current = partsOf(s, currentMsn);
+        if (first && !current.isEmpty() && current.getFirst().programDateTime() != null) {
+            sb.append(PROGRAM_DATE_TIME).append(current.getFirst().programDateTime()).append('\n');
+        }
+        appendParts(sb, current, parts);
+        sb.append("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"")
+                .append(VideoPaths.llPartName(s.lastPart + 1)).append("\"\n");
+        return sb.toString();
+    }
+
+    private static void appendParts(StringBuilder sb, List<Part> parts, int partsPerSegment) {
+        for (Part p : parts) {
+            sb.append("#EXT-X-PART:DURATION=").append(seconds(p.durationMs()))
+                    .append(",URI=\"").append(VideoPaths.llPartName(p.number())).append('"');
+            if (p.number() % partsPerSegment == 0) sb.append(",INDEPENDENT=YES");
+            sb.append('\n');
+        }
+    }
+
+    private List<Part> partsOf(Session s, long msn) {
+        int parts = partsPerSegment();
+        return List.copyOf(s.parts.subMap(msn * parts, true, msn * parts + parts - 1, true).values());
+    }
+
+    private boolean writeSegment(Session s, long msn, List<Part> segParts) throws IOException {
+        Path target = s.paths.hlsDir().resolve(VideoPaths.llSegmentName(msn));
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            for (Part p : segParts) {
+                Files.copy(s.paths.hlsDir().resolve(VideoPaths.llPartName(p.number())), out);
+            }
+        } catch (NoSuchFileException e) {
+            // ffmpeg уже удалил часть (догоняем после паузы) — сегмент пропускаем
+            Files.deleteIfExists(tmp);
+            return false;
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long durationMs = segParts.stream().mapToLong(Part::durationMs).sum();
+        s.segments.put(msn, new Segment(durationMs, segParts.getFirst().programDateTime()));
+        return true;
+    }
+
+    private void dropSegments(Session s) throws IOException {
+        while (!s.segments.isEmpty()) {
+            long msn = s.segments.pollFirstEntry().getKey();
+            Files.deleteIfExists(s.paths.hlsDir().resolve(VideoPaths.llSegmentName(msn)));
+        }
+    }
+
+    private void trimSegments(Session s) throws IOException {
+        int window = Math.max(1, props.getLlWindowSegments());
+        while (s.segments.size() > window) {
+            long msn = s.segments.pollFirstEntry().getKey();
+            Files.deleteIfExists(s.paths.hlsDir().resolve(VideoPaths.llSegmentName(msn)));
+        }
+    }
+
+    static List<Part> parseParts(List<String> lines) {
+        List<Part> out = new ArrayList<>();
+        long durationMs = -1;
+        String pdt = null;
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.startsWith(EXTINF)) {
+                String value = line.substring(EXTINF.length());
+                int comma = value.indexOf(',');
+                durationMs = new BigDecimal(comma < 0 ? value : value.substring(0, comma))
+                        .movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact();
+            } else if (line.startsWith(PROGRAM_DATE_TIME)) {
+                pdt = line.substring(PROGRAM_DATE_TIME.length());
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                Matcher m = PART_URI.matcher(line);
+                if (m.matches() && durationMs >= 0) {
+                    out.add(new Part(Long.parseLong(m.group(1)), durationMs, pdt));
+                }
+                durationMs = -1;
+                pdt = null;
+            }
+        }
+        return out;
+    }
+
+    private static void cleanup(VideoPaths paths) {
+        if (!Files.isDirectory(paths.hlsDir())) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(paths.hlsDir(), "{part_,seg_,parts,index}*")) {
+            for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                Files.deleteIfExists(it.next());
+            }
+        } catch (IOException e) {
+            log.warn("Cannot clean LL-HLS directory {}: {}", paths.hlsDir(), e.getMessage());
+        }
+    }
+
+    private static void writeAtomically(Path target, String content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.writeString(tmp, content);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int partsPerSegment() {
+        return Math.max(1, props.getLlPartsPerSegment());
+    }
+
+    private long segmentMs() {
+        return (long) Math.max(40, props.getLlPartMs()) * partsPerSegment();
+    }
+
+    private static String seconds(long ms) {
+        return BigDecimal.valueOf(ms, 3).setScale(3, RoundingMode.UNNECESSARY).toPlainString();
+    }
+
+    record Part(long number, long durationMs, String programDateTime) {
+    }
+
+    record Segment(long durationMs, String programDateTime) {
+    }
+
+    static final class Session {
+        final UUID cameraId;
+        final VideoPaths paths;
+        final TreeMap<Long, Part> parts = new TreeMap<>();
+        final TreeMap<Long, Segment> segments = new TreeMap<>();
+        final TreeMap<Long, List<CompletableFuture<Boolean>>> waiters = new TreeMap<>();
+        long lastPart = -1;
+        long lastSegment = -1;
+        volatile String playlist;
+        volatile boolean closed;
+        Thread poller;
+
+        Session(UUID cameraId, VideoPaths paths) {
+            this.cameraId = cameraId;
+            this.paths = paths;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ru.domium.building.service.video;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ожидание первого плейлиста без занятого потока запроса.
+ * Один фоновый поток раз в {@code readyPollMs} проверяет только те плейлисты, которые кто-то ждёт;
+ * все ожидающие одного плейлиста делят одну проверку.
+ */
+@Component
+public class PlaylistReadiness {
+    /**
+     * Поправка на грубое разрешение mtime: плейлист прошлого запуска не считается готовым.
+     */
+    private static final long MTIME_SLACK_MS = 1_000;
+
+    private final Map<Path, Pending> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService poller;
+
+    public PlaylistReadiness(VideoStreamingProperties props) {
+        this.poller = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("hls-ready").daemon(true).factory()
+        );
+        long periodMs = Math.max(10, props.getReadyPollMs());
+        poller.scheduleWithFixedDelay(this::poll, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Завершается {@code true}, когда плейлист записан после {@code notBeforeMs}; {@code false} — по таймауту.
+     */
+    public CompletableFuture<Boolean> await(Path playlist, long notBeforeMs, long timeoutMs) {
+        if (isReady(playlist, notBeforeMs)) return CompletableFuture.completedFuture(true);
+        Pending p = pending.compute(playlist, (k, existing) ->
+                existing != null && existing.notBeforeMs == notBeforeMs ? existing : new Pending(notBeforeMs));
+        p.touch(timeoutMs);
+        // копия: таймаут одного запроса не завершает общую проверку
+        return p.future.copy().completeOnTimeout(false, Math.max(0, timeoutMs), TimeUnit.MILLISECONDS);
+    }
+
+    public static boolean isReady(Path playlist, long notBeforeMs) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(playlist, BasicFileAttributes.class);
+            return attrs.size() > 0 && attrs.lastModifiedTime().toMillis() >= notBeforeMs - MTIME_SLACK_MS;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    void poll() {
+        long now = System.currentTimeMillis();
+        pending.forEach((playlist, p) -> {
+            if (isReady(playlist, p.notBeforeMs)) {
+                p.future.complete(true);
+                pending.remove(playlist, p);
+            } else if (now > p.expiresAtMs) {
+                p.future.complete(false);
+                pending.remove(playlist, p);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        pending.values().forEach(p -> p.future.complete(false));
+        pending.clear();
+    }
+
+    private static final class Pending {
+        final long notBeforeMs;
+        final CompletableFuture<Boolean> future = new CompletableFuture<>();
+        volatile long expiresAtMs;
+
+        Pending(long notBeforeMs) {
+            this.notBeforeMs = notBeforeMs;
+        }
+
+        synchronized void touch(long timeoutMs) {
+            expiresAtMs = Math.max(expiresAtMs, System.currentTimeMillis() + timeoutMs);
+        }
+    }
+}
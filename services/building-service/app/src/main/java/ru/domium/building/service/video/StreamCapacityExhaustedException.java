@@ -0,0 +1,26 @@
+package ru.domium.building.service.video;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+/**
+ * На узле нет свободного слота под ещё один процесс ffmpeg. Отдаётся клиенту как 503 с Retry-After.
+ */
+public class StreamCapacityExhaustedException extends ResponseStatusException {
+    private final int retryAfterSeconds;
+
+    public StreamCapacityExhaustedException(boolean transcode, int limit, int retryAfterSeconds) {
+        super(SERVICE_UNAVAILABLE, "Video capacity exhausted: all " + limit + " "
+                + (transcode ? "transcode" : "copy") + " slots are busy on this node, retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return headers;
+    }
+}
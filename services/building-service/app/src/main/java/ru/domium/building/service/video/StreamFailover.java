@@ -0,0 +1,50 @@
+package ru.domium.building.service.video;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.model.StreamLease;
+import ru.domium.building.repository.BuildingCameraRepository;
+
+/**
+ * Подхват потоков упавшего узла. Аренда, которую владелец не продлил, а у камеры за последние
+ * {@code idle-timeout-seconds} были зрители, означает, что плееры сейчас смотрят на застывший плейлист.
+ * Любой живой узел со свободным слотом запускает такой поток у себя; гонку узлов решает сама аренда.
+ */
+@Component
+@Slf4j
+public class StreamFailover {
+    private final VideoStreamingProperties props;
+    private final StreamPlacement placement;
+    private final FfmpegStreamManager streamManager;
+    private final BuildingCameraRepository cameraRepository;
+
+    public StreamFailover(VideoStreamingProperties props,
+                          StreamPlacement placement,
+                          FfmpegStreamManager streamManager,
+                          BuildingCameraRepository cameraRepository) {
+        this.props = props;
+        this.placement = placement;
+        this.streamManager = streamManager;
+        this.cameraRepository = cameraRepository;
+    }
+
+    @Scheduled(fixedDelayString = "${domium.video.placement.renew-period-ms:5000}")
+    public void adoptOrphans() {
+        if (!placement.isEnabled()) return;
+        long activeWithinMs = Math.max(1, props.getIdleTimeoutSeconds()) * 1000L;
+        for (StreamLease orphan : placement.orphans(activeWithinMs)) {
+            BuildingCamera camera = cameraRepository.findById(orphan.getCameraId()).orElse(null);
+            if (camera == null || !camera.isEnabled()) continue;
+            if (streamManager.availableSlots(camera.isTranscode()) == 0) continue;
+            try {
+                if (streamManager.adopt(orphan.getBuildingId(), camera, orphan.getLastAccessAt().toEpochMilli())) {
+                    log.info("Adopted camera {} from node {}", camera.getId(), orphan.getNodeId());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to adopt camera {} from node {}: {}", camera.getId(), orphan.getNodeId(), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package ru.domium.building.service.video;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Метрики потоков камер для Prometheus.
+ * <ul>
+ *     <li>по камере из {@code -progress} ffmpeg: fps, битрейт, скорость, пропущенные/дублированные кадры;</li>
+ *     <li>по камере из плейлиста: время до первого сегмента и задержка записи сегмента
+ *     (mtime плейлиста минус EXT-X-PROGRAM-DATE-TIME + EXTINF последнего сегмента);</li>
+ *     <li>по узлу: активные процессы transcode/copy, завершающиеся процессы, обход неактивных, SIGKILL после SIGTERM.</li>
+ * </ul>
+ * Gauge камеры снимаются, когда поток окончательно остановлен; счётчики и таймеры остаются.
+ */
+@Component
+@Slf4j
+public class StreamMetrics {
+    private static final Duration[] LATENCY_SLO = {
+            Duration.ofMillis(250), Duration.ofMillis(500), Duration.ofSeconds(1),
+            Duration.ofSeconds(2), Duration.ofSeconds(4), Duration.ofSeconds(8), Duration.ofSeconds(16)
+    };
+    private static final DateTimeFormatter PDT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXX");
+
+    private final MeterRegistry registry;
+    private final Map<UUID, CameraMetrics> cameras = new ConcurrentHashMap<>();
+    private final AtomicInteger activeTranscode = new AtomicInteger();
+    private final AtomicInteger activeCopy = new AtomicInteger();
+    private final AtomicInteger terminating = new AtomicInteger();
+    private final Timer idleSweep;
+    private final Counter idleStopped;
+    private final Counter killEscalations;
+
+    public StreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("video.streams.active", activeTranscode, AtomicInteger::get)
+                .tag("mode", "transcode")
+                .description("Running ffmpeg processes on this node")
+                .register(registry);
+        Gauge.builder("video.streams.active", activeCopy, AtomicInteger::get)
+                .tag("mode", "copy")
+                .description("Running ffmpeg processes on this node")
+                .register(registry);
+        Gauge.builder("video.streams.terminating", terminating, AtomicInteger::get)
+                .description("ffmpeg processes sent SIGTERM that have not exited yet")
+                .register(registry);
+        this.idleSweep = Timer.builder("video.idle.sweep")
+                .description("Duration of one idle stream sweep")
+                .register(registry);
+        this.idleStopped = Counter.builder("video.idle.sweep.stopped").register(registry);
+        this.killEscalations = Counter.builder("video.stream.kill.escalations")
+                .description("ffmpeg processes killed after the stop grace period")
+                .register(registry);
+    }
+
+    public void idleSweepFinished(long durationNs, int stopped) {
+        idleSweep.record(durationNs, TimeUnit.NANOSECONDS);
+        idleStopped.increment(stopped);
+    }
+
+    public void terminationStarted() {
+        terminating.incrementAndGet();
+    }
+
+    public void terminationFinished() {
+        terminating.decrementAndGet();
+    }
+
+    public void killEscalated() {
+        killEscalations.increment();
+    }
+
+    /**
+     * Процесс ffmpeg запущен; {@code mediaPlaylist} — плейлист с сегментами, по которому меряется запись.
+     */
+    public void processStarted(UUID cameraId, UUID buildingId, boolean transcode, Path mediaPlaylist) {
+        CameraMetrics m = cameras.computeIfAbsent(cameraId, id -> new CameraMetrics(id, buildingId, transcode));
+        synchronized (m) {
+            if (!m.running) mode(m.transcode).incrementAndGet();
+            m.running = true;
+            m.mediaPlaylist = mediaPlaylist;
+            m.startedAtMs = System.currentTimeMillis();
+            m.firstSegmentSeen = false;
+            m.lastPlaylistMtime = 0;
+            m.lastDropped = 0;
+            m.lastDuplicated = 0;
+        }
+    }
+
+    public void processExited(UUID cameraId) {
+        CameraMetrics m = cameras.get(cameraId);
+        if (m == null) return;
+        synchronized (m) {
+            if (m.running) mode(m.transcode).decrementAndGet();
+            m.running = false;
+            m.fps = 0;
+            m.bitrateKbps = 0;
+            m.speed = 0;
+        }
+    }
+
+    public void restartScheduled(UUID cameraId) {
+        CameraMetrics m = cameras.get(cameraId);
+        if (m != null) m.restarts.increment();
+    }
+
+    /**
+     * Поток окончательно остановлен: gauge камеры больше не публикуются.
+     */
+    public void retired(UUID cameraId) {
+        CameraMetrics m = cameras.remove(cameraId);
+        if (m == null) return;
+        synchronized (m) {
+            if (m.running) mode(m.transcode).decrementAndGet();
+            m.running = false;
+        }
+        m.gauges.forEach(registry::remove);
+    }
+
+    /**
+     * Строка вывода ffmpeg. Возвращает {@code true}, если это строка {@code -progress} (её не нужно логировать).
+     */
+    public boolean onOutputLine(UUID cameraId, String line) {
+        int eq = line.indexOf('=');
+        if (eq <= 0) return false;
+        String key = line.substring(0, eq);
+        String value = line.substring(eq + 1).trim();
+        CameraMetrics m = cameras.get(cameraId);
+        switch (key) {
+            case "fps" -> {
+                if (m != null) m.fps = Math.max(0, parse(value, ""));
+            }
+            case "bitrate" -> {
+                if (m != null) m.bitrateKbps = Math.max(0, parse(value, "kbits/s"));
+            }
+            case "speed" -> {
+                if (m != null) m.speed = Math.max(0, parse(value, "x"));
+            }
+            case "drop_frames" -> {
+                if (m != null) m.lastDropped = increment(m.dropped, m.lastDropped, value);
+            }
+            case "dup_frames" -> {
+                if (m != null) m.lastDuplicated = increment(m.duplicated, m.lastDuplicated, value);
+            }
+            case "frame", "total_size", "out_time_us", "out_time_ms", "out_time", "progress" -> {
+            }
+            default -> {
+                return key.startsWith("stream_");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет mtime плейлистов запущенных потоков; сам плейлист читается только при изменении.
+     */
+    @Scheduled(fixedDelayString = "${domium.video.segment-check-period-ms:500}")
+    public void scanPlaylists() {
+        for (CameraMetrics m : List.copyOf(cameras.values())) {
+            try {
+                scan(m);
+            } catch (Exception e) {
+                log.debug("Cannot inspect playlist for camera {}: {}", m.cameraId, e.getMessage());
+            }
+        }
+    }
+
+    void scan(CameraMetrics m) throws IOException {
+        Path playlist;
+        long startedAtMs;
+        synchronized (m) {
+            if (!m.running || m.mediaPlaylist == null) return;
+            playlist = m.mediaPlaylist;
+            startedAtMs = m.startedAtMs;
+        }
+        long mtime;
+        try {
+            mtime = Files.getLastModifiedTime(playlist).toMillis();
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (mtime == m.lastPlaylistMtime) return;
+        m.lastPlaylistMtime = mtime;
+
+        Long segmentEndMs = lastSegmentEndMs(Files.readAllLines(playlist));
+        if (segmentEndMs == null) return;
+        if (!m.firstSegmentSeen) {
+            m.firstSegmentSeen = true;
+            m.firstSegment.record(Math.max(0, mtime - startedAtMs), TimeUnit.MILLISECONDS);
+        }
+        m.segmentLatency.record(Math.max(0, mtime - segmentEndMs), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Конец последнего сегмента по настенным часам: EXT-X-PROGRAM-DATE-TIME + EXTINF.
+     */
+    static Long lastSegmentEndMs(List<String> lines) {
+        Long pdtMs = null;
+        double durationSec = -1;
+        Long lastEnd = null;
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (line.startsWith("#EXT-X-PROGRAM-DATE-TIME:")) {
+                try {
+                    pdtMs = OffsetDateTime.parse(line.substring(25), PDT).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    pdtMs = null;
+                }
+            } else if (line.startsWith("#EXTINF:")) {
+                String v = line.substring(8);
+                int comma = v.indexOf(',');
+                durationSec = parse(comma < 0 ? v : v.substring(0, comma), "");
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                if (pdtMs != null && durationSec >= 0) {
+                    lastEnd = pdtMs + Math.round(durationSec * 1000);
+                    pdtMs = lastEnd; // следующий сегмент без своего PDT продолжает предыдущий
+                } else {
+                    pdtMs = null;
+                }
+                durationSec = -1;
+            }
+        }
+        return lastEnd;
+    }
+
+    private AtomicInteger mode(boolean transcode) {
+        return transcode ? activeTranscode : activeCopy;
+    }
+
+    /**
+     * ffmpeg отдаёт накопленные значения за процесс; после перезапуска они начинаются с нуля.
+     */
+    private static long increment(Counter counter, long last, String value) {
+        long current = (long) parse(value, "");
+        if (current < 0) return last;
+        counter.increment(current >= last ? current - last : current);
+        return current;
+    }
+
+    private static double parse(String value, String suffix) {
+        String v = value.endsWith(suffix) ? value.substring(0, value.length() - suffix.length()) : value;
+        try {
+            return Double.parseDouble(v.trim());
+        } catch (NumberFormatException e) {
+            return -1; // N/A на старте
+        }
+    }
+
+    final class CameraMetrics {
+        final UUID cameraId;
+        final boolean transcode;
+        final Counter restarts;
+        final Counter dropped;
+        final Counter duplicated;
+        final Timer firstSegment;
+        final Timer segmentLatency;
+        final List<Meter> gauges;
+
+        volatile double fps;
+        volatile double bitrateKbps;
+        volatile double speed;
+        long lastDropped;
+        long lastDuplicated;
+        boolean running;
+        Path mediaPlaylist;
+        long startedAtMs;
+        volatile boolean firstSegmentSeen;
+        volatile long lastPlaylistMtime;
+
+        CameraMetrics(UUID cameraId, UUID buildingId, boolean transcode) {
+            this.cameraId = cameraId;
+            this.transcode = transcode;
+            Tags tags = Tags.of(
+                    "camera", cameraId.toString(),
+                    "building", String.valueOf(buildingId),
+                    "mode", transcode ? "transcode" : "copy"
+            );
+            this.restarts = Counter.builder("video.stream.restarts").tags(tags).register(registry);
+            this.dropped = Counter.builder("video.stream.frames.dropped").tags(tags).register(registry);
+            this.duplicated = Counter.builder("video.stream.frames.duplicated").tags(tags).register(registry);
+            this.firstSegment = Timer.builder("video.stream.first.segment")
+                    .description("From ffmpeg start to the first segment in the playlist")
+                    .tags(tags).serviceLevelObjectives(LATENCY_SLO).register(registry);
+            this.segmentLatency = Timer.builder("video.stream.segment.write.latency")
+                    .description("Playlist update time minus wall-clock end of the last segment")
+                    .tags(tags).serviceLevelObjectives(LATENCY_SLO).register(registry);
+            this.gauges = List.of(
+                    Gauge.builder("video.stream.fps", this, c -> c.fps).tags(tags).register(registry),
+                    Gauge.builder("video.stream.bitrate.kbps", this, c -> c.bitrateKbps).tags(tags).register(registry),
+                    Gauge.builder("video.stream.speed", this, c -> c.speed).tags(tags).register(registry)
+            );
+        }
+    }
+}
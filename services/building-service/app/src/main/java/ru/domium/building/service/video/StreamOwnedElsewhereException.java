@@ -0,0 +1,17 @@
+package ru.domium.building.service.video;
+
+import lombok.Getter;
+import ru.domium.building.model.StreamLease;
+
+/**
+ * Поток камеры принадлежит другому узлу: запрос нужно переадресовать владельцу ({@link #getOwner()}).
+ */
+@Getter
+public class StreamOwnedElsewhereException extends RuntimeException {
+    private final StreamLease owner;
+
+    public StreamOwnedElsewhereException(StreamLease owner) {
+        super("Camera " + owner.getCameraId() + " is streamed by node " + owner.getNodeId());
+        this.owner = owner;
+    }
+}
@@ -0,0 +1,196 @@
+package ru.domium.building.service.video;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.StreamLease;
+import ru.domium.building.repository.StreamLeaseRepository;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Размещение потоков камер по узлам через аренды в Postgres ({@code video_stream_leases}).
+ * <p>
+ * Перед запуском ffmpeg узел берёт аренду камеры; если она у живого чужого узла, запрос уходит владельцу.
+ * Владелец продлевает аренды своих потоков, заодно отмечает недавних зрителей и забирает отметки, сделанные
+ * другими узлами. Истёкшая аренда с недавними зрителями — признак упавшего узла: её подхватывает {@link StreamFailover}.
+ * <p>
+ * Выключено ({@code placement.enabled=false}) — узел считает все камеры своими и в БД не ходит.
+ */
+@Component
+@Slf4j
+public class StreamPlacement {
+    private final VideoStreamingProperties props;
+    private final StreamLeaseRepository leases;
+    private final String nodeId;
+    private final String nodeAddress;
+    private final Set<UUID> pendingAccess = ConcurrentHashMap.newKeySet();
+    private final Cache<UUID, Optional<StreamLease>> owners;
+
+    @Autowired
+    public StreamPlacement(VideoStreamingProperties props,
+                           StreamLeaseRepository leases,
+                           ObjectProvider<Registration> registration,
+                           @Value("${server.port:8091}") int serverPort) {
+        this(props, leases,
+                resolveNodeId(props.getPlacement(), registration.getIfAvailable()),
+                resolveNodeAddress(props.getPlacement(), registration.getIfAvailable(), serverPort));
+    }
+
+    public StreamPlacement(VideoStreamingProperties props, StreamLeaseRepository leases, String nodeId, String nodeAddress) {
+        this.props = props;
+        this.leases = leases;
+        this.nodeId = nodeId;
+        this.nodeAddress = nodeAddress;
+        this.owners = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMillis(Math.max(1, props.getPlacement().getOwnerCacheMs())))
+                .build();
+        if (isEnabled()) log.info("Video stream placement enabled: node {} at {}", nodeId, nodeAddress);
+    }
+
+    /**
+     * Итог продления: какие камеры всё ещё за узлом и когда у них последний раз были зрители (мс, часы БД).
+     */
+    public record Heartbeat(Set<UUID> owned, Map<UUID, Long> lastAccessMs) {
+    }
+
+    public boolean isEnabled() {
+        return props.getPlacement().isEnabled();
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Берёт (или продлевает) аренду камеры.
+     *
+     * @return пусто, если камера за этим узлом; иначе аренда живого владельца
+     */
+    public Optional<StreamLease> acquire(UUID cameraId, UUID buildingId) {
+        if (!isEnabled()) return Optional.empty();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (leases.tryAcquire(cameraId, buildingId, nodeId, nodeAddress, leaseTtlMs()) == 1) {
+                owners.invalidate(cameraId);
+                return Optional.empty();
+            }
+            Optional<StreamLease> owner = leases.findLive(cameraId);
+            if (owner.isPresent()) {
+                owners.put(cameraId, owner);
+                return owner;
+            }
+            // аренда истекла между попыткой и чтением — пробуем снова
+        }
+        throw new IllegalStateException("Cannot acquire stream lease for camera " + cameraId);
+    }
+
+    /**
+     * Живой владелец камеры, если это другой узел. Кешируется на {@code owner-cache-ms}.
+     */
+    public Optional<StreamLease> remoteOwner(UUID cameraId) {
+        if (!isEnabled() || cameraId == null) return Optional.empty();
+        return owners.get(cameraId, leases::findLive)
+                .filter(lease -> !nodeId.equals(lease.getNodeId()));
+    }
+
+    public void release(UUID cameraId) {
+        if (!isEnabled()) return;
+        owners.invalidate(cameraId);
+        try {
+            leases.release(cameraId, nodeId);
+        } catch (Exception e) {
+            // аренда истечёт сама
+            log.warn("Failed to release stream lease for camera {}: {}", cameraId, e.getMessage());
+        }
+    }
+
+    /**
+     * Зритель камеры, которая не запущена на этом узле: отметка уйдёт владельцу со следующим продлением.
+     */
+    public void recordAccess(UUID cameraId) {
+        if (isEnabled() && cameraId != null) pendingAccess.add(cameraId);
+    }
+
+    /**
+     * Продлевает аренды {@code held}, записывает отметки зрителей ({@code viewed} и накопленные от чужих камер)
+     * и возвращает актуальное состояние аренд узла.
+     */
+    public Heartbeat heartbeat(Collection<UUID> held, Collection<UUID> viewed) {
+        Set<UUID> access = new HashSet<>(viewed);
+        for (UUID id : List.copyOf(pendingAccess)) {
+            pendingAccess.remove(id);
+            access.add(id);
+        }
+        if (!access.isEmpty()) leases.recordAccess(access);
+        if (!held.isEmpty()) leases.renew(nodeId, held, leaseTtlMs());
+
+        Set<UUID> owned = new HashSet<>();
+        Map<UUID, Long> lastAccess = new HashMap<>();
+        for (StreamLease lease : leases.findByNodeId(nodeId)) {
+            owned.add(lease.getCameraId());
+            if (lease.getLastAccessAt() != null) lastAccess.put(lease.getCameraId(), lease.getLastAccessAt().toEpochMilli());
+        }
+        return new Heartbeat(owned, lastAccess);
+    }
+
+    /**
+     * Истёкшие аренды камер со зрителями за последние {@code activeWithinMs}.
+     */
+    public List<StreamLease> orphans(long activeWithinMs) {
+        if (!isEnabled()) return List.of();
+        return leases.findOrphaned(activeWithinMs);
+    }
+
+    @PreDestroy
+    public void releaseAll() {
+        if (!isEnabled()) return;
+        try {
+            int released = leases.releaseAll(nodeId);
+            if (released > 0) log.info("Released {} stream leases of node {}", released, nodeId);
+        } catch (Exception e) {
+            log.warn("Failed to release stream leases of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private long leaseTtlMs() {
+        return Math.max(1, props.getPlacement().getLeaseTtlMs());
+    }
+
+    private static String resolveNodeId(VideoStreamingProperties.Placement cfg, Registration registration) {
+        if (!cfg.getNodeId().isBlank()) return cfg.getNodeId();
+        if (registration != null && registration.getInstanceId() != null) return registration.getInstanceId();
+        return hostname() + ":" + UUID.randomUUID();
+    }
+
+    private static String resolveNodeAddress(VideoStreamingProperties.Placement cfg, Registration registration, int port) {
+        if (!cfg.getNodeAddress().isBlank()) return cfg.getNodeAddress();
+        if (registration != null) return registration.getHost() + ":" + registration.getPort();
+        return hostname() + ":" + port;
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+}
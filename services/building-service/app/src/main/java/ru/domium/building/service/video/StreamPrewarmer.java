@@ -0,0 +1,102 @@
+package ru.domium.building.service.video;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.repository.BuildingCameraRepository;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Прогрев горячих камер, чтобы первый зритель не ждал подключения к RTSP и первого сегмента.
+ * <p>
+ * Горячая камера — недавно открытая через /stream или камера стройки на одном из этапов {@code prewarm.stage-names}.
+ * Пока камера горячая, поток держится через {@link FfmpegStreamManager#keepWarm}; после — живёт ещё
+ * {@code grace-seconds}, если зрителей нет. Прогрев занимает только свободные слоты сверх {@code reserve-slots}.
+ */
+@Component
+@Slf4j
+public class StreamPrewarmer {
+    private final VideoStreamingProperties props;
+    private final FfmpegStreamManager streamManager;
+    private final BuildingCameraRepository cameraRepository;
+    private final Map<UUID, Long> lastViewMs = new ConcurrentHashMap<>();
+
+    public StreamPrewarmer(VideoStreamingProperties props,
+                           FfmpegStreamManager streamManager,
+                           BuildingCameraRepository cameraRepository) {
+        this.props = props;
+        this.streamManager = streamManager;
+        this.cameraRepository = cameraRepository;
+    }
+
+    /**
+     * Зритель открыл камеру.
+     */
+    public void recordView(UUID cameraId) {
+        if (props.getPrewarm().isEnabled()) {
+            lastViewMs.put(cameraId, System.currentTimeMillis());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${domium.video.prewarm.period-ms:30000}")
+    public void prewarm() {
+        VideoStreamingProperties.Prewarm cfg = props.getPrewarm();
+        if (!cfg.isEnabled()) return;
+
+        long now = System.currentTimeMillis();
+        long graceUntil = now + Math.max(0, cfg.getGraceSeconds()) * 1000L + Math.max(0, cfg.getPeriodMs());
+        Map<UUID, BuildingCamera> hot = hotCameras(cfg, now);
+
+        int warmed = 0;
+        for (BuildingCamera camera : hot.values()) {
+            if (warmed >= cfg.getMaxStreams()) break;
+            if (streamManager.isRunning(camera.getId())) {
+                streamManager.keepWarm(camera.getId(), graceUntil);
+                warmed++;
+                continue;
+            }
+            if (streamManager.availableSlots(camera.isTranscode()) <= Math.max(0, cfg.getReserveSlots())) continue;
+            try {
+                if (streamManager.prewarm(camera.getBuildingId(), camera)) {
+                    streamManager.keepWarm(camera.getId(), graceUntil);
+                    warmed++;
+                    log.info("Pre-warmed camera {} (building {})", camera.getId(), camera.getBuildingId());
+                }
+            } catch (Exception e) {
+                log.warn("Failed to pre-warm camera {}: {}", camera.getId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Сначала недавно просмотренные (свежие первыми), затем камеры строек на горячих этапах.
+     */
+    private Map<UUID, BuildingCamera> hotCameras(VideoStreamingProperties.Prewarm cfg, long now) {
+        long viewWindowMs = Math.max(0, cfg.getRecentViewMinutes()) * 60_000L;
+        lastViewMs.values().removeIf(ts -> now - ts > viewWindowMs);
+
+        Map<UUID, BuildingCamera> hot = new LinkedHashMap<>();
+        lastViewMs.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Long>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(id -> hot.put(id, null));
+        if (!hot.isEmpty()) {
+            cameraRepository.findAllById(hot.keySet()).stream()
+                    .filter(BuildingCamera::isEnabled)
+                    .forEach(c -> hot.put(c.getId(), c));
+            hot.values().removeIf(Objects::isNull);
+        }
+        if (!cfg.getStageNames().isEmpty()) {
+            cameraRepository.findEnabledInActiveStages(cfg.getStageNames())
+                    .forEach(c -> hot.putIfAbsent(c.getId(), c));
+        }
+        return hot;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.domium.building.service.video;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.repository.BuildingCameraRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ночная склейка архива: снимки каждых прошедших суток камеры → {@code timelapse/{date}.mp4}.
+ * <p>
+ * Снимки по одному читаются из MinIO и пишутся в stdin ffmpeg, поэтому в памяти не больше одного буфера копирования
+ * независимо от длины архива. MP4 пишется во временный файл в spool (для {@code +faststart} нужен seekable выход)
+ * и загружается потоком. Готовый таймлапс — признак выполненной склейки: повторный запуск только дочищает снимки.
+ * <p>
+ * Расписание срабатывает на всех узлах, но сутки камеры склеивает тот, кто взял аренду
+ * {@code timelapse:{camera}:{date}} ({@link ArchiveLeases}): ffmpeg не запускается дважды, и снимки не удаляются,
+ * пока их читает другой узел.
+ */
+@Component
+@Slf4j
+public class TimelapseCompactor {
+    private final VideoStreamingProperties props;
+    private final FfmpegCommandBuilder commandBuilder;
+    private final CameraArchiveStorage storage;
+    private final BuildingCameraRepository cameraRepository;
+    private final ArchiveLeases archiveLeases;
+    private final Timer compactionTimer;
+    private final Counter compactionFailures;
+
+    public TimelapseCompactor(VideoStreamingProperties props,
+                              FfmpegCommandBuilder commandBuilder,
+                              CameraArchiveStorage storage,
+                              BuildingCameraRepository cameraRepository,
+                              ArchiveLeases archiveLeases,
+                              MeterRegistry registry) {
+        this.props = props;
+        this.commandBuilder = commandBuilder;
+        this.storage = storage;
+        this.cameraRepository = cameraRepository;
+        this.archiveLeases = archiveLeases;
+        this.compactionTimer = Timer.builder("video.archive.timelapse.compaction")
+                .description("Building one daily timelapse from snapshots")
+                .register(registry);
+        this.compactionFailures = Counter.builder("video.archive.timelapse.failures").register(registry);
+    }
+
+    @Scheduled(cron = "${domium.video.archive.compaction-cron:0 30 2 * * *}",
+            zone = "${domium.video.archive.zone:Europe/Moscow}")
+    public void compactAll() {
+        if (!props.getArchive().isEnabled()) return;
+        LocalDate today = LocalDate.now(ZoneId.of(props.getArchive().getZone()));
+        // с запасом на чтение списка и загрузку: аренда не должна истечь посреди склейки
+        long leaseTtlMs = TimeUnit.MINUTES.toMillis(2 * props.getArchive().getCompactionTimeoutMinutes());
+        for (BuildingCamera camera : cameraRepository.findByArchiveTrue()) {
+            for (LocalDate date : snapshotDates(camera)) {
+                if (!date.isBefore(today)) continue;
+                String lease = ArchiveLeases.timelapseKey(camera.getId(), date);
+                if (!archiveLeases.tryAcquire(lease, leaseTtlMs)) continue;
+                try {
+                    compact(camera, date);
+                } catch (Exception e) {
+                    compactionFailures.increment();
+                    log.warn("Timelapse for camera {} on {} failed: {}", camera.getId(), date, e.getMessage());
+                } finally {
+                    archiveLeases.release(lease);
+                }
+            }
+        }
+    }
+
+    /**
+     * Сутки, за которые в MinIO есть снимки камеры (каталоги {@code snapshots/{date}/}).
+     */
+    private TreeSet<LocalDate> snapshotDates(BuildingCamera camera) {
+        String prefix = CameraArchiveStorage.snapshotsPrefix(camera.getBuildingId(), camera.getId());
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        storage.list(prefix, false, o -> {
+            String dir = o.name().substring(prefix.length());
+            if (!dir.endsWith("/")) return;
+            try {
+                dates.add(LocalDate.parse(dir.substring(0, dir.length() - 1)));
+            } catch (DateTimeParseException ignored) {
+            }
+        });
+        return dates;
+    }
+
+    void compact(BuildingCamera camera, LocalDate date) throws IOException, InterruptedException {
+        String timelapse = CameraArchiveStorage.timelapseName(camera.getBuildingId(), camera.getId(), date);
+        String snapshots = CameraArchiveStorage.snapshotsPrefix(camera.getBuildingId(), camera.getId(), date);
+        if (storage.size(timelapse).isPresent()) {
+            removeSnapshots(snapshots);
+            return;
+        }
+
+        Path spool = props.getArchive().getSpoolDir();
+        Files.createDirectories(spool);
+        Path output = Files.createTempFile(spool, "timelapse-", ".mp4");
+        long startedNs = System.nanoTime();
+        try {
+            int frames = encode(snapshots, output);
+            if (frames == 0) return;
+            storage.upload(output, timelapse, "video/mp4");
+            compactionTimer.record(System.nanoTime() - startedNs, TimeUnit.NANOSECONDS);
+            log.info("Timelapse {} built from {} snapshots ({} bytes)", timelapse, frames, Files.size(output));
+        } finally {
+            Files.deleteIfExists(output);
+        }
+        removeSnapshots(snapshots);
+    }
+
+    /**
+     * Прогоняет снимки суток через ffmpeg. Возвращает число поданных кадров.
+     */
+    private int encode(String snapshotsPrefix, Path output) throws IOException, InterruptedException {
+        List<String> names = new ArrayList<>();
+        storage.list(snapshotsPrefix, true, o -> {
+            if (o.name().endsWith(".jpg")) names.add(o.name());
+        });
+        if (names.isEmpty()) return 0;
+
+        Process p = new ProcessBuilder(commandBuilder.buildTimelapse(output))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        AtomicInteger fed = new AtomicInteger();
+        Thread feeder = Thread.ofVirtual().name("timelapse-feed").start(() -> {
+            try (OutputStream stdin = p.getOutputStream()) {
+                for (String name : names) {
+                    try (InputStream in = storage.open(name)) {
+                        in.transferTo(stdin);
+                    }
+                    fed.incrementAndGet();
+                }
+            } catch (IOException e) {
+                log.warn("ffmpeg stopped reading snapshots from {}: {}", snapshotsPrefix, e.getMessage());
+            } catch (RuntimeException e) {
+                log.warn("Cannot read snapshots from {}: {}", snapshotsPrefix, e.getMessage());
+                p.destroyForcibly();
+            }
+        });
+
+        if (!p.waitFor(props.getArchive().getCompactionTimeoutMinutes(), TimeUnit.MINUTES)) {
+            p.destroyForcibly();
+            feeder.join();
+            throw new IOException("ffmpeg timed out");
+        }
+        feeder.join();
+        if (p.exitValue() != 0) throw new IOException("ffmpeg exited with " + p.exitValue());
+        if (fed.get() < names.size()) throw new IOException("only " + fed.get() + " of " + names.size() + " snapshots encoded");
+        return fed.get();
+    }
+
+    private void removeSnapshots(String prefix) {
+        if (!props.getArchive().isDeleteSnapshotsAfterCompaction()) return;
+        int removed = storage.removePrefix(prefix);
+        if (removed > 0) log.debug("Removed {} compacted snapshots under {}", removed, prefix);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.domium.building.service.video;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Кеш положительных решений auth_request для HLS.
+ * Плейлист и каждый сегмент проверяются nginx отдельно, поэтому без кеша один зритель
+ * даёт пару запросов в Postgres на каждый сегмент.
+ * Отказы не кешируются: они редкие, а закешированный отказ пережил бы выдачу доступа.
+ */
+@Slf4j
+@Component
+public class VideoAccessCache {
+    static final String CACHE_NAME = "video.auth.decisions";
+
+    private final Cache<Key, Boolean> decisions;
+
+    public VideoAccessCache(VideoStreamingProperties props, MeterRegistry meterRegistry) {
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, props.getAuthCacheMaxSize()))
+                .expireAfterWrite(Duration.ofSeconds(Math.max(1, props.getAuthCacheTtlSeconds())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, decisions, CACHE_NAME);
+    }
+
+    /**
+     * Проверяет доступ через кеш. {@code check} выполняется только при промахе и должен бросить
+     * исключение, если доступа нет. Параллельные промахи по одному ключу схлопываются в одну проверку.
+     */
+    public void requireAccess(UUID subject, UUID buildingId, UUID cameraId, Runnable check) {
+        decisions.get(new Key(subject, buildingId, cameraId), k -> {
+            check.run();
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Сбрасывает решения по стройке (сменился клиент/менеджер, стройка удалена).
+     */
+    public void invalidateBuilding(UUID buildingId) {
+        if (buildingId == null) return;
+        decisions.asMap().keySet().removeIf(k -> buildingId.equals(k.buildingId()));
+        log.debug("Video access decisions invalidated for building {}", buildingId);
+    }
+
+    /**
+     * Сбрасывает решения по камере (камера удалена или перенесена).
+     */
+    public void invalidateCamera(UUID cameraId) {
+        if (cameraId == null) return;
+        decisions.asMap().keySet().removeIf(k -> cameraId.equals(k.cameraId()));
+        log.debug("Video access decisions invalidated for camera {}", cameraId);
+    }
+
+    public void invalidateAll() {
+        decisions.invalidateAll();
+    }
+
+    private record Key(UUID subject, UUID buildingId, UUID cameraId) {
+    }
+}
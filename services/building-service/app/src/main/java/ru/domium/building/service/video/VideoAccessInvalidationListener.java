@@ -0,0 +1,49 @@
+package ru.domium.building.service.video;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.domium.building.model.Building;
+import ru.domium.building.model.BuildingCamera;
+
+/**
+ * JPA-listener, сбрасывающий {@link VideoAccessCache} при изменении стройки или камеры.
+ * Сброс делается сразу и повторно после коммита, чтобы параллельный auth_request
+ * не успел закешировать ещё не закоммиченное старое состояние.
+ * Кеш берём через {@link ObjectProvider}: listener создаётся Hibernate во время старта EntityManagerFactory.
+ */
+public class VideoAccessInvalidationListener {
+    private final ObjectProvider<VideoAccessCache> cacheProvider;
+
+    public VideoAccessInvalidationListener(ObjectProvider<VideoAccessCache> cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        VideoAccessCache cache = cacheProvider.getIfAvailable();
+        if (cache == null) return;
+
+        Runnable invalidate;
+        if (entity instanceof Building b) {
+            invalidate = () -> cache.invalidateBuilding(b.getId());
+        } else if (entity instanceof BuildingCamera c) {
+            invalidate = () -> cache.invalidateCamera(c.getId());
+        } else {
+            return;
+        }
+
+        invalidate.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate.run();
+                }
+            });
+        }
+    }
+}
@@ -4,13 +4,41 @@ import java.nio.file.Path;
 import java.util.UUID;
 
 public record VideoPaths(Path hlsDir) {
+    /**
+     * LL-HLS: init-сегмент CMAF.
+     */
+    public static final String LL_INIT = "init.mp4";
+
     public Path hlsPlaylist() {
         return hlsDir.resolve("index.m3u8");
     }
 
+    /**
+     * LL-HLS: плейлист частей, который пишет ffmpeg (вход {@link LowLatencyHlsPackager}).
+     */
+    public Path llPartsPlaylist() {
+        return hlsDir.resolve("parts.m3u8");
+    }
+
+    public static String llPartName(long part) {
+        return "part_" + part + ".m4s";
+    }
+
+    public static String llSegmentName(long msn) {
+        return "seg_" + msn + ".m4s";
+    }
+
     public static String hlsUrl(UUID buildingId, UUID cameraId) {
         return "/hls/" + buildingId + "/" + cameraId + "/index.m3u8";
     }
+
+    /**
+     * Подписанный URL: токен и срок действия лежат в пути, поэтому относительные ссылки
+     * на сегменты в плейлисте наследуют их без переписывания m3u8.
+     */
+    public static String signedHlsUrl(UUID buildingId, UUID cameraId, String token, long expiresEpochSeconds) {
+        return "/hls/s/" + token + "/" + expiresEpochSeconds + "/" + buildingId + "/" + cameraId + "/index.m3u8";
+    }
 }
 
 
@@ -1,10 +1,16 @@
 package ru.domium.building.service.video;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Data
 @Configuration
@@ -39,6 +45,279 @@ public class VideoStreamingProperties {
      * Как часто проверять неактивные потоки (мс).
      */
     private long idleCheckPeriodMs = 30_000;
-}
 
+    /**
+     * Сколько ждать выхода ffmpeg после SIGTERM, прежде чем убить (мс).
+     */
+    private long stopGraceMs = 5_000;
+
+    /**
+     * Как часто проверять плейлисты запущенных потоков для метрик сегментов (мс).
+     */
+    private long segmentCheckPeriodMs = 500;
+
+    /**
+     * Максимум одновременных ffmpeg с перекодированием (transcode=true) на узле. Ограничено CPU.
+     */
+    private int maxTranscodeProcesses = 4;
+
+    /**
+     * Максимум одновременных ffmpeg в режиме copy на узле. Ограничено сетью/дескрипторами.
+     */
+    private int maxCopyProcesses = 32;
+
+    /**
+     * Сколько запрос на старт ждёт свободный слот (мс), прежде чем получить 503.
+     */
+    private long startQueueTimeoutMs = 2_000;
+
+    /**
+     * Перезапуск упавшего ffmpeg, пока у камеры есть зрители.
+     */
+    private boolean restartEnabled = true;
+
+    /**
+     * Первая задержка перезапуска (мс), дальше удваивается.
+     */
+    private long restartInitialDelayMs = 1_000;
+
+    /**
+     * Потолок задержки перезапуска (мс). Процесс, проживший дольше, сбрасывает счётчик попыток.
+     */
+    private long restartMaxDelayMs = 30_000;
+
+    /**
+     * Максимум подряд идущих перезапусков (0 — без ограничения).
+     */
+    private int restartMaxAttempts = 10;
+
+    /**
+     * Пресеты качества для ABR (имя → высота и битрейт). Камера выбирает из них до {@link #maxRenditions}.
+     */
+    private Map<String, Rendition> renditions = new LinkedHashMap<>(Map.of(
+            "1080p", new Rendition(1080, 5_000),
+            "720p", new Rendition(720, 2_800),
+            "480p", new Rendition(480, 1_400),
+            "360p", new Rendition(360, 800)
+    ));
+
+    /**
+     * Максимум вариантов в лестнице одной камеры (каждый вариант — отдельный x264 в том же процессе).
+     */
+    private int maxRenditions = 3;
+
+    /**
+     * LL-HLS: длительность части (мс). Кратна длительности кадра при 25 fps.
+     */
+    private int llPartMs = 200;
+
+    /**
+     * LL-HLS: частей в сегменте. Сегмент начинается с ключевого кадра.
+     */
+    private int llPartsPerSegment = 5;
+
+    /**
+     * LL-HLS: полных сегментов в плейлисте.
+     */
+    private int llWindowSegments = 6;
+
+    /**
+     * Максимальное число закешированных решений auth_request (subject + стройка + камера).
+     */
+    private long authCacheMaxSize = 10_000;
+
+    /**
+     * Время жизни решения о доступе к HLS (сек). Ограничивает окно, в котором отозванный доступ ещё действует.
+     */
+    private int authCacheTtlSeconds = 30;
+
+    /**
+     * Секрет подписи HLS-ссылок (должен совпадать с секретом secure_link в nginx).
+     * Пусто — ссылки не подписываются, доступ проверяется через auth_request.
+     */
+    private String hlsTokenSecret = "";
 
+    /**
+     * Секрет внутренних вызовов без JWT (заголовок X-Video-Secret): nginx и activity-reporter → building-service,
+     * узел → узел. Пусто — используется {@link #hlsTokenSecret}.
+     */
+    private String internalSecret = "";
+
+    /**
+     * Время жизни подписанной HLS-ссылки (сек). После истечения клиент заново запрашивает /stream.
+     */
+    private int hlsTokenTtlSeconds = 1800;
+
+    /**
+     * Максимальное ожидание первого плейлиста в /stream?waitReady=true (мс).
+     */
+    private long streamReadyTimeoutMs = 10_000;
+
+    /**
+     * Период проверки появления плейлиста у ожидающих запросов (мс).
+     */
+    private long readyPollMs = 100;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Rendition {
+        /**
+         * Высота кадра; ширина считается по исходной пропорции.
+         */
+        private int height;
+
+        /**
+         * Целевой битрейт видео (кбит/с).
+         */
+        private int videoBitrateKbps;
+    }
+
+    private Prewarm prewarm = new Prewarm();
+
+    /**
+     * Прогрев горячих камер: недавно просмотренные и камеры строек на выбранных этапах
+     * держатся запущенными, пока они горячие, и ещё {@code graceSeconds} после.
+     */
+    @Data
+    public static class Prewarm {
+        private boolean enabled = false;
+
+        /**
+         * Период пересчёта горячих камер (мс).
+         */
+        private long periodMs = 30_000;
+
+        /**
+         * Камера горячая, если /stream вызывали за последние N минут.
+         */
+        private int recentViewMinutes = 30;
+
+        /**
+         * Камеры строек (status=ACTIVE), текущий этап которых в списке, тоже горячие.
+         */
+        private List<String> stageNames = new ArrayList<>();
+
+        /**
+         * Сколько поток живёт без зрителей после того, как камера перестала быть горячей (сек).
+         */
+        private int graceSeconds = 60;
+
+        /**
+         * Максимум прогретых потоков на узле.
+         */
+        private int maxStreams = 8;
+
+        /**
+         * Слоты режима, которые прогрев не занимает (остаются для зрителей).
+         */
+        private int reserveSlots = 1;
+    }
+
+    private Placement placement = new Placement();
+
+    /**
+     * Несколько узлов building-service: поток камеры работает ровно на одном узле, который держит аренду
+     * в таблице video_stream_leases и продлевает её каждые {@code renewPeriodMs}. Узел, переставший продлевать,
+     * теряет камеры через {@code leaseTtlMs}. Каталог {@code hls-root} должен быть общим для всех узлов и nginx.
+     */
+    @Data
+    public static class Placement {
+        private boolean enabled = false;
+
+        /**
+         * Идентификатор узла. Пусто — instance-id регистрации в Consul (или hostname + случайный суффикс).
+         */
+        private String nodeId = "";
+
+        /**
+         * host:port, по которому другие узлы и nginx достают этот узел. Пусто — адрес регистрации в Consul.
+         */
+        private String nodeAddress = "";
+
+        private long leaseTtlMs = 15_000;
+
+        private long renewPeriodMs = 5_000;
+
+        /**
+         * Сколько помнить владельца чужой камеры (мс): LL-HLS спрашивает его на каждую часть.
+         */
+        private long ownerCacheMs = 1_000;
+    }
+
+    private Archive archive = new Archive();
+
+    /**
+     * Архив камер с {@code archive=true}: короткий ffmpeg раз в {@code snapshotIntervalMs} снимает кадр в локальный
+     * spool, загрузчик пачками переносит снимки в MinIO, ночью снимки за прошедшие сутки склеиваются в таймлапс MP4.
+     */
+    @Data
+    public static class Archive {
+        private boolean enabled = false;
+
+        /**
+         * Бакет MinIO для снимков и таймлапсов.
+         */
+        private String bucket = "camera-archive";
+
+        /**
+         * Локальный буфер снимков до загрузки в MinIO (переживает недоступность хранилища).
+         */
+        private Path spoolDir = Path.of("/var/domium/video/archive-spool");
+
+        /**
+         * Период снимков (мс).
+         */
+        private long snapshotIntervalMs = 60_000;
+
+        /**
+         * Сколько ждать кадр от камеры (мс), после — процесс убивается.
+         */
+        private long snapshotTimeoutMs = 20_000;
+
+        /**
+         * Высота снимка; ширина по пропорции. Одинаковая высота нужна для склейки в таймлапс.
+         */
+        private int snapshotHeight = 720;
+
+        /**
+         * Одновременных снимков на узле. Камера, до которой не дошла очередь, пропускает период.
+         */
+        private int maxConcurrentSnapshots = 4;
+
+        /**
+         * Период загрузки spool в MinIO (мс).
+         */
+        private long uploadPeriodMs = 60_000;
+
+        /**
+         * Максимум файлов за один проход загрузки.
+         */
+        private int uploadBatchSize = 500;
+
+        /**
+         * Кадров в секунду таймлапса: при снимке раз в минуту сутки — это минута видео при 24 fps.
+         */
+        private int timelapseFps = 24;
+
+        /**
+         * Расписание склейки таймлапсов за прошедшие сутки.
+         */
+        private String compactionCron = "0 30 2 * * *";
+
+        /**
+         * Часовой пояс суток архива и расписания склейки.
+         */
+        private String zone = "Europe/Moscow";
+
+        /**
+         * Предел одной склейки (мин).
+         */
+        private long compactionTimeoutMinutes = 60;
+
+        /**
+         * Удалять снимки суток после загрузки таймлапса.
+         */
+        private boolean deleteSnapshotsAfterCompaction = true;
+    }
+}
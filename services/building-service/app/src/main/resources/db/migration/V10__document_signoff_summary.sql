@@ -0,0 +1,22 @@
+-- Локальная проекция состояния документов этапов, собираемая из событий document-service (outbox).
+-- Последнее применённое состояние каждого документа; seq — id события в outbox, повторы и устаревшие события отбрасываются.
+CREATE TABLE IF NOT EXISTS document_signoff_documents (
+    document_id UUID PRIMARY KEY,
+    project_id UUID NOT NULL,
+    stage_id UUID NOT NULL,
+    -- '' — документ без группы
+    group_type TEXT NOT NULL DEFAULT '',
+    status TEXT NOT NULL,
+    seq BIGINT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+-- Сводка по этапу: число неудалённых документов в каждом статусе, поддерживается приращениями.
+CREATE TABLE IF NOT EXISTS stage_document_summary (
+    project_id UUID NOT NULL,
+    stage_id UUID NOT NULL,
+    group_type TEXT NOT NULL,
+    status TEXT NOT NULL,
+    doc_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (project_id, stage_id, group_type, status)
+);
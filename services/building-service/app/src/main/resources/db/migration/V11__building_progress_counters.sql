@@ -0,0 +1,19 @@
+-- Счётчики выполненных видов работ стройки: по подэтапу (scope_id = id подэтапа) и по стадии (scope_id = stage_id).
+-- Обновляются тем же запросом, что пишет building_task_completions; всего видов работ — из определения workflow.
+CREATE TABLE IF NOT EXISTS building_progress_counters (
+    building_id UUID NOT NULL,
+    scope_id UUID NOT NULL,
+    stage_id UUID NOT NULL,
+    completed INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (building_id, scope_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_building_progress_counters_stage_id ON building_progress_counters(stage_id);
+
+INSERT INTO building_progress_counters (building_id, scope_id, stage_id, completed)
+SELECT c.building_id, s.scope_id, t.stage_id, COUNT(*)
+  FROM building_task_completions c
+  JOIN workflow_tasks t ON t.id = c.task_id AND t.parent_id IS NOT NULL
+ CROSS JOIN LATERAL (VALUES (t.parent_id), (t.stage_id)) AS s(scope_id)
+ GROUP BY c.building_id, s.scope_id, t.stage_id
+ON CONFLICT (building_id, scope_id) DO NOTHING;
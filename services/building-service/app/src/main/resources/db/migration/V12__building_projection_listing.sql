@@ -0,0 +1,34 @@
+-- Постраничный список строек: курсор по (updated_at, id), фильтры по стадии, статусу, прогрессу и префиксу имени проекта.
+ALTER TABLE building_projections ADD COLUMN IF NOT EXISTS status TEXT;
+
+UPDATE building_projections p
+   SET status = b.status
+  FROM buildings b
+ WHERE b.id = p.id AND p.status IS NULL;
+
+UPDATE building_projections SET status = 'ACTIVE' WHERE status IS NULL;
+UPDATE building_projections SET updated_at = NOW() WHERE updated_at IS NULL;
+
+ALTER TABLE building_projections ALTER COLUMN status SET NOT NULL;
+ALTER TABLE building_projections ALTER COLUMN status SET DEFAULT 'ACTIVE';
+ALTER TABLE building_projections ALTER COLUMN updated_at SET NOT NULL;
+ALTER TABLE building_projections ALTER COLUMN updated_at SET DEFAULT NOW();
+
+-- одноколоночные индексы владельца покрываются префиксом составных
+DROP INDEX IF EXISTS idx_building_projections_client_id;
+DROP INDEX IF EXISTS idx_building_projections_manager_id;
+
+CREATE INDEX IF NOT EXISTS idx_building_projections_manager_updated
+    ON building_projections(manager_id, updated_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_building_projections_client_updated
+    ON building_projections(client_id, updated_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_building_projections_manager_stage_updated
+    ON building_projections(manager_id, stage, updated_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_building_projections_manager_status_updated
+    ON building_projections(manager_id, status, updated_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_building_projections_manager_project_name
+    ON building_projections(manager_id, lower(project_name) text_pattern_ops);
+-- строки без имени менеджера для фоновой дозаписи
+CREATE INDEX IF NOT EXISTS idx_building_projections_missing_manager_name
+    ON building_projections(manager_id)
+    WHERE manager_name IS NULL OR manager_name = '';
@@ -0,0 +1,12 @@
+-- Ключи идемпотентности перехода на следующий этап: повтор запроса с тем же ключом не двигает стройку второй раз.
+-- Строки старше TTL удаляет фоновая задача.
+CREATE TABLE IF NOT EXISTS stage_advance_requests (
+    building_id UUID NOT NULL,
+    idempotency_key TEXT NOT NULL,
+    user_id UUID,
+    from_stage_id UUID,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (building_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_stage_advance_requests_created_at ON stage_advance_requests(created_at);
@@ -0,0 +1,6 @@
+-- Проверка «стадия используется стройками» одним запросом по (workflow_id, current_stage_id) — только по индексу.
+CREATE INDEX IF NOT EXISTS idx_buildings_workflow_current_stage
+    ON buildings(workflow_id, current_stage_id);
+
+-- одноколоночный индекс покрывается префиксом составного
+DROP INDEX IF EXISTS idx_buildings_workflow_id;
@@ -0,0 +1,15 @@
+-- Прогресс сверки/перестроения building_projections: последняя обработанная стройка (keyset по id) и итоги прохода.
+-- Строка блокируется на время обработки пачки, поэтому несколько узлов берут пачки по очереди, не повторяя их.
+CREATE TABLE IF NOT EXISTS projection_rebuild_checkpoints (
+    job TEXT PRIMARY KEY,
+    repair BOOLEAN NOT NULL DEFAULT FALSE,
+    last_building_id UUID,
+    scanned BIGINT NOT NULL DEFAULT 0,
+    drifted BIGINT NOT NULL DEFAULT 0,
+    repaired BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP WITH TIME ZONE,
+    updated_at TIMESTAMP WITH TIME ZONE,
+    finished_at TIMESTAMP WITH TIME ZONE
+);
+
+INSERT INTO projection_rebuild_checkpoints (job) VALUES ('building-projections') ON CONFLICT DO NOTHING;
@@ -0,0 +1,9 @@
+-- Аренды фоновых задач архива камер: снимки камеры ('snapshot:{camera}') и склейка суток ('timelapse:{camera}:{date}')
+-- выполняет один узел — тот, что держит аренду.
+CREATE TABLE IF NOT EXISTS video_archive_leases (
+    lease_key TEXT PRIMARY KEY,
+    node_id TEXT NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_video_archive_leases_node_id ON video_archive_leases(node_id);
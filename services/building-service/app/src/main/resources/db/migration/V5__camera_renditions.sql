@@ -0,0 +1,3 @@
+-- Лестница ABR для камеры: список имён пресетов из domium.video.renditions (например ["720p","360p"]).
+-- NULL/пусто — одна выходная дорожка, как раньше.
+ALTER TABLE building_cameras ADD COLUMN IF NOT EXISTS renditions JSONB;
@@ -0,0 +1,2 @@
+-- Режим LL-HLS (части CMAF, EXT-X-PART, блокирующая перезагрузка плейлиста).
+ALTER TABLE building_cameras ADD COLUMN IF NOT EXISTS low_latency BOOLEAN NOT NULL DEFAULT FALSE;
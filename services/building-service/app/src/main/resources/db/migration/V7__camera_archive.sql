@@ -0,0 +1,2 @@
+-- Архив камеры: снимки и суточные таймлапсы в MinIO.
+ALTER TABLE building_cameras ADD COLUMN IF NOT EXISTS archive BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,14 @@
+-- Размещение потоков камер по узлам: камера принадлежит одному узлу, пока он продлевает аренду.
+CREATE TABLE IF NOT EXISTS video_stream_leases (
+    camera_id UUID PRIMARY KEY,
+    building_id UUID NOT NULL,
+    node_id TEXT NOT NULL,
+    node_address TEXT NOT NULL,
+    acquired_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW(),
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    -- последний запрос зрителя, пришедший на другой узел (владелец подхватывает при продлении)
+    last_access_at TIMESTAMP WITH TIME ZONE
+);
+
+CREATE INDEX IF NOT EXISTS idx_video_stream_leases_node_id ON video_stream_leases(node_id);
+CREATE INDEX IF NOT EXISTS idx_video_stream_leases_expires_at ON video_stream_leases(expires_at);
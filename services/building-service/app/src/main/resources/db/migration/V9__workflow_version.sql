@@ -0,0 +1,3 @@
+-- Версия определения workflow (стадии + задачи): растёт при каждом изменении,
+-- по ней узлы сверяют свои кеши определений.
+ALTER TABLE building_workflows ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
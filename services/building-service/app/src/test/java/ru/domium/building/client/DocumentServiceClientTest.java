@@ -0,0 +1,109 @@
+package ru.domium.building.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class DocumentServiceClientTest {
+    private static final UUID PROJECT_ID = UUID.randomUUID();
+    private static final UUID STAGE_ID = UUID.randomUUID();
+    private static final String PATH = "/projects/" + PROJECT_ID + "/documents/status-counts?stage=" + STAGE_ID
+            + "&excludeGroupType=PHOTO_REPORTS";
+    private static final String BODY = "{\"total\":2,\"counts\":{\"SIGNED\":2}}";
+
+    private final DiscoveryClient discoveryClient = mock(DiscoveryClient.class);
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DocumentServiceClientProperties props = new DocumentServiceClientProperties();
+    private MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+        props.setRetryBackoffMs(0);
+        when(discoveryClient.getInstances("documents")).thenReturn(List.of(instance("doc-a"), instance("doc-b")));
+    }
+
+    @Test
+    void requests_areSpreadAcrossInstances_andInstanceListIsCached() {
+        DocumentServiceClient client = client();
+        server.expect(requestTo("http://doc-a:8080" + PATH)).andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON));
+        server.expect(requestTo("http://doc-b:8080" + PATH)).andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON));
+
+        assertThat(counts(client).getTotal()).isEqualTo(2);
+        assertThat(counts(client).getCounts()).containsEntry("SIGNED", 2L);
+
+        server.verify();
+        verify(discoveryClient, times(1)).getInstances("documents");
+        assertThat(registry.get("documents.client.requests").tag("instance", "doc-b:8080").tag("outcome", "success")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void serverError_isRetriedOnTheNextInstance() {
+        DocumentServiceClient client = client();
+        server.expect(requestTo("http://doc-a:8080" + PATH)).andRespond(withStatus(HttpStatus.BAD_GATEWAY));
+        server.expect(requestTo("http://doc-b:8080" + PATH)).andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON));
+
+        assertThat(counts(client).getTotal()).isEqualTo(2);
+        server.verify();
+        assertThat(registry.get("documents.client.requests").tag("instance", "doc-a:8080").tag("outcome", "server_error")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failingInstances_areSkippedOnceTheirBreakersOpen() {
+        props.setMaxAttempts(2);
+        props.getBreaker().setMinimumCalls(1);
+        props.getBreaker().setSlidingWindowSize(1);
+        DocumentServiceClient client = client();
+        server.expect(requestTo("http://doc-a:8080" + PATH)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        server.expect(requestTo("http://doc-b:8080" + PATH)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThatThrownBy(() -> counts(client)).isInstanceOf(ResponseStatusException.class);
+        // оба breaker-а открыты: следующий вызов не уходит в сеть
+        assertThatThrownBy(() -> counts(client)).isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("All document-service instances are failing");
+        server.verify();
+    }
+
+    @Test
+    void noRegisteredInstances_meansNoDocuments() {
+        when(discoveryClient.getInstances("documents")).thenReturn(List.of());
+
+        assertThat(counts(client()).getTotal()).isZero();
+    }
+
+    private DocumentServiceClient.StageStatusCounts counts(DocumentServiceClient client) {
+        return client.stageStatusCounts(PROJECT_ID, STAGE_ID, List.of("PHOTO_REPORTS"), null);
+    }
+
+    private DocumentServiceClient client() {
+        return new DocumentServiceClient(discoveryClient, restTemplate, props, registry);
+    }
+
+    private static ServiceInstance instance(String host) {
+        return new DefaultServiceInstance(host, "documents", host, 8080, false);
+    }
+}
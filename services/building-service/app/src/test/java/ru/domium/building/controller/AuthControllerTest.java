@@ -0,0 +1,108 @@
+package ru.domium.building.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import ru.domium.building.model.Building;
+import ru.domium.building.repository.BuildingCameraRepository;
+import ru.domium.building.repository.BuildingRepository;
+import ru.domium.building.service.AccessService;
+import ru.domium.building.service.video.FfmpegStreamManager;
+import ru.domium.building.service.video.HlsTokenService;
+import ru.domium.building.service.video.VideoAccessCache;
+import ru.domium.building.service.video.VideoStreamingProperties;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class AuthControllerTest {
+    private static final UUID CLIENT_ID = UUID.fromString("c1d2e3f4-a5b6-7890-cdef-123456789012");
+    private static final UUID STRANGER_ID = UUID.fromString("aaaaaaaa-aaaa-aaaa-aaaa-aaaaaaaaaaaa");
+    private static final UUID BUILDING_ID = UUID.fromString("8f1d6d18-1bfb-4a8a-95c9-6bfe0c2e8a0b");
+    private static final UUID CAMERA_ID = UUID.fromString("b2c7c12b-0d1f-4f29-8ad0-0fa3d8c9f5d1");
+
+    BuildingRepository buildingRepository;
+    BuildingCameraRepository cameraRepository;
+    FfmpegStreamManager streamManager;
+    SimpleMeterRegistry meterRegistry;
+    VideoAccessCache cache;
+    AuthController controller;
+
+    @BeforeEach
+    void setUp() {
+        buildingRepository = mock(BuildingRepository.class);
+        cameraRepository = mock(BuildingCameraRepository.class);
+        streamManager = mock(FfmpegStreamManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        VideoStreamingProperties props = new VideoStreamingProperties();
+        cache = new VideoAccessCache(props, meterRegistry);
+        controller = new AuthController(new AccessService(buildingRepository), cameraRepository, streamManager,
+                cache, new HlsTokenService(props));
+
+        Building building = Building.from(UUID.randomUUID(), CLIENT_ID, UUID.randomUUID(), UUID.randomUUID());
+        building.setId(BUILDING_ID);
+        when(buildingRepository.findById(BUILDING_ID)).thenReturn(Optional.of(building));
+        when(cameraRepository.existsByIdAndBuildingId(CAMERA_ID, BUILDING_ID)).thenReturn(true);
+    }
+
+    @Test
+    void segmentFetches_hitDatabaseOnce() {
+        int segments = 50;
+        for (int i = 0; i < segments; i++) {
+            assertThat(controller.auth(BUILDING_ID, CAMERA_ID, jwt(CLIENT_ID)).getStatusCode().value()).isEqualTo(204);
+        }
+
+        verify(buildingRepository, times(1)).findById(BUILDING_ID);
+        verify(cameraRepository, times(1)).existsByIdAndBuildingId(CAMERA_ID, BUILDING_ID);
+        verify(streamManager, times(segments)).touch(CAMERA_ID);
+        assertThat(gets("hit")).isEqualTo(segments - 1);
+        assertThat(gets("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void deniedDecision_isNotCached() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> controller.auth(BUILDING_ID, CAMERA_ID, jwt(STRANGER_ID)))
+                    .isInstanceOf(AccessDeniedException.class);
+        }
+
+        verify(buildingRepository, times(3)).findById(BUILDING_ID);
+        verify(streamManager, never()).touch(any());
+    }
+
+    @Test
+    void invalidateBuilding_forcesRecheck() {
+        controller.auth(BUILDING_ID, CAMERA_ID, jwt(CLIENT_ID));
+        cache.invalidateBuilding(BUILDING_ID);
+        controller.auth(BUILDING_ID, CAMERA_ID, jwt(CLIENT_ID));
+
+        verify(buildingRepository, times(2)).findById(BUILDING_ID);
+    }
+
+    @Test
+    void invalidateCamera_forcesRecheck() {
+        controller.auth(BUILDING_ID, CAMERA_ID, jwt(CLIENT_ID));
+        cache.invalidateCamera(CAMERA_ID);
+        when(cameraRepository.existsByIdAndBuildingId(CAMERA_ID, BUILDING_ID)).thenReturn(false);
+
+        assertThatThrownBy(() -> controller.auth(BUILDING_ID, CAMERA_ID, jwt(CLIENT_ID)))
+                .hasMessageContaining("Camera not accessible");
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("result", result).functionCounter().count();
+    }
+
+    private static Jwt jwt(UUID subject) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject(subject.toString())
+                .build();
+    }
+}
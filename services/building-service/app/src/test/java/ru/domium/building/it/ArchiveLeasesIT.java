@@ -0,0 +1,63 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.domium.building.repository.ArchiveLeaseRepository;
+import ru.domium.building.repository.StreamLeaseRepository;
+import ru.domium.building.service.video.ArchiveLeases;
+import ru.domium.building.service.video.StreamPlacement;
+import ru.domium.building.service.video.VideoStreamingProperties;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Задачи архива двух узлов делят одну таблицу аренд: ключ за раз держит один узел.
+ */
+class ArchiveLeasesIT extends AbstractPostgresIT {
+    private static final long TTL_MS = 500;
+
+    @Autowired ArchiveLeaseRepository archiveLeases;
+    @Autowired StreamLeaseRepository streamLeases;
+
+    ArchiveLeases nodeA;
+    ArchiveLeases nodeB;
+
+    @BeforeEach
+    void setUp() {
+        archiveLeases.deleteAll();
+        VideoStreamingProperties props = new VideoStreamingProperties();
+        props.getPlacement().setEnabled(true);
+        nodeA = new ArchiveLeases(new StreamPlacement(props, streamLeases, "node-a", "node-a:8091"), archiveLeases);
+        nodeB = new ArchiveLeases(new StreamPlacement(props, streamLeases, "node-b", "node-b:8091"), archiveLeases);
+    }
+
+    @Test
+    void key_isHeldByOneNode_untilReleased() {
+        String key = "timelapse:" + UUID.randomUUID() + ":2026-01-01";
+
+        assertThat(nodeA.tryAcquire(key, 60_000)).isTrue();
+        assertThat(nodeB.tryAcquire(key, 60_000)).isFalse();
+        // повторный захват владельцем — продление
+        assertThat(nodeA.tryAcquire(key, 60_000)).isTrue();
+
+        nodeB.release(key); // чужая аренда не снимается
+        assertThat(nodeB.tryAcquire(key, 60_000)).isFalse();
+
+        nodeA.release(key);
+        assertThat(nodeB.tryAcquire(key, 60_000)).isTrue();
+    }
+
+    @Test
+    void expiredLease_isTakenOverByAnotherNode() throws InterruptedException {
+        String key = "snapshot:" + UUID.randomUUID();
+        assertThat(nodeA.tryAcquire(key, TTL_MS)).isTrue();
+
+        Thread.sleep(TTL_MS * 2);
+
+        assertThat(nodeB.tryAcquire(key, TTL_MS)).isTrue();
+        assertThat(nodeA.tryAcquire(key, TTL_MS)).isFalse();
+    }
+}
@@ -0,0 +1,92 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.domium.building.model.BuildingProjection;
+import ru.domium.building.repository.BuildingProjectionRepository;
+import ru.domium.building.service.BuildingListQuery;
+import ru.domium.building.service.BuildingListQuery.Filter;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BuildingListPagingIT extends AbstractPostgresIT {
+    private static final UUID MANAGER_ID = UUID.fromString("7a3c1f52-9a0e-4f3b-b3b1-3c1e2d4f5a61");
+    private static final Filter NO_FILTER = new Filter(null, null, null, null, null);
+
+    @Autowired BuildingProjectionRepository projections;
+    @Autowired BuildingListQuery listQuery;
+
+    @BeforeEach
+    void setUp() {
+        projections.deleteAll(projections.findByManagerId(MANAGER_ID));
+    }
+
+    @Test
+    void pages_coverEveryBuildingOnce_inUpdatedAtOrder_evenWithEqualTimestamps() {
+        LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < 7; i++) {
+            // пары строк с одинаковым updated_at: порядок внутри пары решает id
+            save("Дом " + i, "Фундамент", "ACTIVE", i * 10, base.minusMinutes(i / 2));
+        }
+
+        List<UUID> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            BuildingListQuery.Page page = listQuery.forManager(MANAGER_ID, NO_FILTER, cursor, 3);
+            page.items().forEach(p -> seen.add(p.getId()));
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(7).doesNotHaveDuplicates();
+        List<BuildingProjection> all = projections.findAllById(seen);
+        List<LocalDateTime> order = seen.stream()
+                .map(id -> all.stream().filter(p -> p.getId().equals(id)).findFirst().orElseThrow().getUpdatedAt())
+                .toList();
+        assertThat(order).isSortedAccordingTo((a, b) -> b.compareTo(a));
+    }
+
+    @Test
+    void filters_narrowByStageStatusProgressAndNamePrefix() {
+        LocalDateTime now = LocalDateTime.now();
+        save("Дом у озера", "Фундамент", "ACTIVE", 20, now);
+        save("Дом в лесу", "Кровля", "ACTIVE", 70, now.minusMinutes(1));
+        save("Баня 100%_", "Кровля", "COMPLETED", 100, now.minusMinutes(2));
+
+        assertThat(names(new Filter("Кровля", null, null, null, null))).containsExactly("Дом в лесу", "Баня 100%_");
+        assertThat(names(new Filter(null, "COMPLETED", null, null, null))).containsExactly("Баня 100%_");
+        assertThat(names(new Filter(null, null, 50, 90, null))).containsExactly("Дом в лесу");
+        assertThat(names(new Filter(null, null, null, null, "дом у"))).containsExactly("Дом у озера");
+        // спецсимволы LIKE в префиксе — обычные символы
+        assertThat(names(new Filter(null, null, null, null, "баня 100%_"))).containsExactly("Баня 100%_");
+        assertThat(names(new Filter(null, null, null, null, "%"))).isEmpty();
+    }
+
+    private List<String> names(Filter filter) {
+        return listQuery.forManager(MANAGER_ID, filter, null, 50).items().stream()
+                .map(BuildingProjection::getProjectName)
+                .toList();
+    }
+
+    private void save(String projectName, String stage, String status, int progress, LocalDateTime updatedAt) {
+        BuildingProjection p = new BuildingProjection();
+        p.setId(UUID.randomUUID());
+        p.setProjectId(UUID.randomUUID());
+        p.setProjectName(projectName);
+        p.setManagerId(MANAGER_ID);
+        p.setStage(stage);
+        p.setStatus(status);
+        p.setProgress(progress);
+        p.setUpdatedAt(updatedAt);
+        projections.save(p);
+    }
+}
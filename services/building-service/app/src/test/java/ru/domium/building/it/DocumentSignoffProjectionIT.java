@@ -0,0 +1,100 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.domium.building.api.dto.document.DocumentEventDto;
+import ru.domium.building.client.DocumentServiceClient;
+import ru.domium.building.service.document.DocumentSignoffProjection;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сводка подписания из событий document-service: повторы и перестановки событий не меняют результат.
+ */
+class DocumentSignoffProjectionIT extends AbstractPostgresIT {
+    private static final UUID PROJECT_ID = UUID.fromString("5c8e3f0e-3a57-4b4e-9d63-7a0a7f0e2b11");
+    private static final UUID STAGE_ID = UUID.fromString("0b6e8d0c-62d8-4a5f-8a3e-0d9a8b4c7e21");
+    private static final List<String> EXCLUDED = List.of("PHOTO_REPORTS");
+
+    @Autowired DocumentSignoffProjection projection;
+    @Autowired JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        jdbc.update("delete from document_signoff_documents");
+        jdbc.update("delete from stage_document_summary");
+    }
+
+    @Test
+    void summary_tracksLatestStatusPerDocument() {
+        UUID contract = UUID.randomUUID();
+        UUID act = UUID.randomUUID();
+        UUID photo = UUID.randomUUID();
+
+        projection.apply(List.of(
+                event(1, contract, "STAGE_DOCS", "SENT_TO_USER"),
+                event(2, act, null, "SENT_TO_USER"),
+                event(3, photo, "PHOTO_REPORTS", "SENT_TO_USER"),
+                event(4, contract, "STAGE_DOCS", "SIGNED")));
+
+        DocumentServiceClient.StageStatusCounts counts = projection.stageStatusCounts(PROJECT_ID, STAGE_ID, EXCLUDED);
+        assertThat(counts.getTotal()).isEqualTo(2);
+        assertThat(counts.getCounts()).isEqualTo(Map.of("SIGNED", 1L, "SENT_TO_USER", 1L));
+
+        projection.apply(List.of(event(5, act, null, "DELETE")));
+
+        counts = projection.stageStatusCounts(PROJECT_ID, STAGE_ID, EXCLUDED);
+        assertThat(counts.getTotal()).isEqualTo(1);
+        assertThat(counts.getCounts()).isEqualTo(Map.of("SIGNED", 1L));
+    }
+
+    @Test
+    void redeliveredAndStaleEvents_areIgnored() {
+        UUID doc = UUID.randomUUID();
+
+        assertThat(projection.apply(List.of(event(10, doc, "STAGE_DOCS", "SENT_TO_USER")))).isEqualTo(1);
+        assertThat(projection.apply(List.of(event(12, doc, "STAGE_DOCS", "SIGNED")))).isEqualTo(1);
+        // повтор пачки и опоздавшее событие
+        assertThat(projection.apply(List.of(event(12, doc, "STAGE_DOCS", "SIGNED")))).isZero();
+        assertThat(projection.apply(List.of(event(11, doc, "STAGE_DOCS", "VIEWED")))).isZero();
+
+        DocumentServiceClient.StageStatusCounts counts = projection.stageStatusCounts(PROJECT_ID, STAGE_ID, EXCLUDED);
+        assertThat(counts.getTotal()).isEqualTo(1);
+        assertThat(counts.getCounts()).isEqualTo(Map.of("SIGNED", 1L));
+    }
+
+    @Test
+    void documentMovedToAnotherStage_leavesPreviousStageSummary() {
+        UUID doc = UUID.randomUUID();
+        UUID nextStage = UUID.randomUUID();
+
+        projection.apply(List.of(event(1, doc, "STAGE_DOCS", "SENT_TO_USER")));
+        DocumentEventDto moved = event(2, doc, "STAGE_DOCS", "SENT_TO_USER");
+        moved.setStageCode(nextStage);
+        projection.apply(List.of(moved));
+
+        assertThat(projection.stageStatusCounts(PROJECT_ID, STAGE_ID, EXCLUDED).getTotal()).isZero();
+        assertThat(projection.stageStatusCounts(PROJECT_ID, nextStage, EXCLUDED).getTotal()).isEqualTo(1);
+    }
+
+    private static DocumentEventDto event(long seq, UUID documentId, String groupType, String status) {
+        DocumentEventDto e = new DocumentEventDto();
+        e.setEventId(UUID.randomUUID());
+        e.setSeq(seq);
+        e.setType("SNAPSHOT");
+        e.setDocumentId(documentId);
+        e.setProjectId(PROJECT_ID);
+        e.setStageCode(STAGE_ID);
+        e.setGroupType(groupType);
+        e.setStatus(status);
+        e.setOccurredAt(Instant.now());
+        return e;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.domium.building.model.BuildingProjection;
+import ru.domium.building.repository.BuildingProjectionRepository;
+import ru.domium.building.service.BuildingService;
+import ru.domium.building.service.projection.ProjectionRebuildJob;
+import ru.domium.building.service.projection.ProjectionRebuildStatus;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ProjectionRebuildIT extends AbstractPostgresIT {
+
+    private static final UUID CLIENT_ID = UUID.fromString("c1d2e3f4-a5b6-7890-cdef-123456789012");
+    private static final UUID MANAGER_ID = UUID.fromString("d2e3f4a5-b6c7-8901-def2-234567890123");
+    private static final UUID PROJECT_ID = UUID.fromString("99999999-9999-9999-9999-999999999999");
+    private static final UUID DEFAULT_WORKFLOW_ID = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+    @Autowired BuildingService buildingService;
+    @Autowired BuildingProjectionRepository projections;
+    @Autowired ProjectionRebuildJob job;
+
+    @Test
+    void checkOnlyPass_reportsDrift_andRepairPass_fixesIt() throws Exception {
+        BuildingProjection tampered = create();
+        String stage = tampered.getStage();
+        tampered.setStage("Чужой этап");
+        tampered.setProgress(77);
+        projections.save(tampered);
+        BuildingProjection lost = create();
+        projections.deleteById(lost.getId());
+
+        ProjectionRebuildStatus report = runToEnd(false);
+        assertThat(report.drifted()).isGreaterThanOrEqualTo(2);
+        assertThat(report.repaired()).isZero();
+        assertThat(projections.findById(tampered.getId())).hasValueSatisfying(p -> assertThat(p.getProgress()).isEqualTo(77));
+
+        ProjectionRebuildStatus repaired = runToEnd(true);
+        assertThat(repaired.repaired()).isEqualTo(repaired.drifted()).isGreaterThanOrEqualTo(2);
+        assertThat(projections.findById(tampered.getId())).hasValueSatisfying(p -> {
+            assertThat(p.getStage()).isEqualTo(stage);
+            assertThat(p.getProgress()).isZero();
+        });
+        assertThat(projections.findById(lost.getId())).hasValueSatisfying(p -> {
+            assertThat(p.getStage()).isEqualTo(stage);
+            assertThat(p.getMetadata()).isNotNull();
+            assertThat(p.getManagerName()).isNotBlank(); // из соседней проекции того же менеджера
+            assertThat(p.getProjectName()).isEqualTo("Проект");
+        });
+    }
+
+    private BuildingProjection create() {
+        return buildingService.createBuilding(PROJECT_ID, "Проект", CLIENT_ID, MANAGER_ID, "Менеджер", Map.of(), DEFAULT_WORKFLOW_ID);
+    }
+
+    private ProjectionRebuildStatus runToEnd(boolean repair) throws InterruptedException {
+        awaitIdle();
+        job.start(repair);
+        awaitIdle();
+        ProjectionRebuildStatus status = job.status();
+        assertThat(status.finishedAt()).isNotNull();
+        return status;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 300 && job.status().running(); i++) {
+            Thread.sleep(100);
+        }
+        assertThat(job.status().running()).isFalse();
+    }
+}
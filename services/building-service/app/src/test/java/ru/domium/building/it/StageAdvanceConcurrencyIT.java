@@ -0,0 +1,124 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.domium.building.model.Building;
+import ru.domium.building.model.BuildingProjection;
+import ru.domium.building.model.Task;
+import ru.domium.building.repository.BuildingRepository;
+import ru.domium.building.repository.TaskRepository;
+import ru.domium.building.service.BuildingService;
+import ru.domium.building.service.StageAdvanceResult;
+import ru.domium.building.service.stage.requirement.StageTransitionNotAllowedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Параллельные «двойные нажатия» перехода на следующий этап: стройка двигается ровно на один этап.
+ * Без @Transactional — потокам нужны закоммиченные данные.
+ */
+class StageAdvanceConcurrencyIT extends AbstractPostgresIT {
+
+    private static final UUID CLIENT_ID = UUID.fromString("c1d2e3f4-a5b6-7890-cdef-123456789012");
+    private static final UUID MANAGER_ID = UUID.fromString("d2e3f4a5-b6c7-8901-def2-234567890123");
+    private static final UUID PROJECT_ID = UUID.fromString("99999999-9999-9999-9999-999999999999");
+
+    private static final UUID DEFAULT_WORKFLOW_ID = UUID.fromString("11111111-1111-1111-1111-111111111111");
+    private static final UUID PREPARATION_STAGE_ID = UUID.fromString("22222222-2222-2222-2222-222222222221");
+    private static final int THREADS = 16;
+
+    @Autowired BuildingService buildingService;
+    @Autowired BuildingRepository buildingRepository;
+    @Autowired TaskRepository taskRepository;
+
+    @Test
+    void parallelAdvances_withDistinctKeys_advanceOnce_andOthersGet409WithCurrentStage() throws Exception {
+        UUID buildingId = preparedBuilding();
+
+        List<Outcome> outcomes = runParallel(i -> () ->
+                buildingService.nextStage(buildingId, CLIENT_ID, null, PREPARATION_STAGE_ID, "tap-" + i));
+
+        assertThat(outcomes).filteredOn(o -> o.result() != null).hasSize(1);
+        Building after = buildingRepository.findById(buildingId).orElseThrow();
+        assertThat(after.getCurrentStageIndex()).isEqualTo(1);
+        assertThat(outcomes).filteredOn(o -> o.denied() != null).hasSize(THREADS - 1)
+                .allSatisfy(o -> {
+                    assertThat(o.denied().getViolations().getFirst().code()).isEqualTo("STAGE_CHANGED");
+                    assertThat(o.denied().getCurrentStageId()).isEqualTo(after.getCurrentStageId());
+                });
+    }
+
+    @Test
+    void parallelAdvances_withSameKey_advanceOnce_andOthersReplay() throws Exception {
+        UUID buildingId = preparedBuilding();
+
+        List<Outcome> outcomes = runParallel(i -> () ->
+                buildingService.nextStage(buildingId, CLIENT_ID, null, null, "same-tap"));
+
+        assertThat(outcomes).allSatisfy(o -> assertThat(o.result()).isNotNull());
+        assertThat(outcomes).filteredOn(o -> !o.result().replayed()).hasSize(1);
+        assertThat(buildingRepository.findById(buildingId).orElseThrow().getCurrentStageIndex()).isEqualTo(1);
+
+        // повтор после завершения — тоже без второго перехода
+        StageAdvanceResult retry = buildingService.nextStage(buildingId, CLIENT_ID, null, null, "same-tap");
+        assertThat(retry.replayed()).isTrue();
+        assertThat(buildingRepository.findById(buildingId).orElseThrow().getCurrentStageIndex()).isEqualTo(1);
+    }
+
+    private UUID preparedBuilding() {
+        BuildingProjection created = buildingService.createBuilding(
+                PROJECT_ID, "Проект", CLIENT_ID, MANAGER_ID, "Менеджер", Map.of(), DEFAULT_WORKFLOW_ID);
+        Set<UUID> subStageIds = taskRepository.findByStageIdAndParentIdIsNullOrderByPosition(PREPARATION_STAGE_ID).stream()
+                .map(Task::getId)
+                .collect(Collectors.toSet());
+        List<UUID> workItemIds = taskRepository.findByParentIdInOrderByParentIdAscPositionAsc(subStageIds).stream()
+                .filter(t -> "WORK_ITEM".equalsIgnoreCase(t.getType()))
+                .map(Task::getId)
+                .toList();
+        buildingService.completeWorkItems(created.getId(), CLIENT_ID, workItemIds);
+        return created.getId();
+    }
+
+    private List<Outcome> runParallel(IntFunction<Callable<StageAdvanceResult>> call) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Outcome>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                Callable<StageAdvanceResult> task = call.apply(i);
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        return new Outcome(task.call(), null);
+                    } catch (StageTransitionNotAllowedException e) {
+                        return new Outcome(null, e);
+                    }
+                }));
+            }
+            start.countDown();
+            List<Outcome> outcomes = new ArrayList<>();
+            for (Future<Outcome> f : futures) {
+                outcomes.add(f.get());
+            }
+            return outcomes;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private record Outcome(StageAdvanceResult result, StageTransitionNotAllowedException denied) {
+    }
+}
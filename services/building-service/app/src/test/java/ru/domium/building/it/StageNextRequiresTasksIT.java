@@ -3,16 +3,26 @@ package ru.domium.building.it;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import ru.domium.building.api.dto.substage.SubStageStatusDto;
+import ru.domium.building.api.dto.workflow.StageDto;
+import ru.domium.building.api.dto.workflow.UpsertStagesRequest;
+import ru.domium.building.api.dto.workflow.WorkflowDto;
+import ru.domium.building.model.Building;
 import ru.domium.building.model.BuildingProjection;
 import ru.domium.building.model.Task;
-import ru.domium.building.model.TaskCompletion;
-import ru.domium.building.model.TaskCompletionId;
+import ru.domium.building.repository.BuildingProjectionRepository;
+import ru.domium.building.repository.BuildingRepository;
 import ru.domium.building.repository.TaskCompletionRepository;
 import ru.domium.building.repository.TaskRepository;
+import ru.domium.building.service.BuildingProgressCounters;
 import ru.domium.building.service.BuildingService;
+import ru.domium.building.service.WorkflowDefinitionCache;
+import ru.domium.building.service.WorkflowService;
+import ru.domium.building.service.WorkflowTemplateService;
 import ru.domium.building.service.stage.requirement.StageTransitionNotAllowedException;
 
-import java.time.Instant;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -32,6 +42,12 @@ class StageNextRequiresTasksIT extends AbstractPostgresIT {
     @Autowired BuildingService buildingService;
     @Autowired TaskRepository taskRepository;
     @Autowired TaskCompletionRepository taskCompletionRepository;
+    @Autowired BuildingProjectionRepository buildingProjectionRepository;
+    @Autowired BuildingRepository buildingRepository;
+    @Autowired BuildingProgressCounters progressCounters;
+    @Autowired WorkflowDefinitionCache workflowDefinitions;
+    @Autowired WorkflowService workflowService;
+    @Autowired WorkflowTemplateService workflowTemplates;
 
     @Test
     @Transactional
@@ -75,21 +91,96 @@ class StageNextRequiresTasksIT extends AbstractPostgresIT {
                 .toList();
         assertThat(workItems).isNotEmpty();
 
+        // отметки пишутся только через сервис: он же ведёт счётчики прогресса
         for (Task wi : workItems) {
-            TaskCompletionId id = new TaskCompletionId();
-            id.setBuildingId(created.getId());
-            id.setTaskId(wi.getId());
-            TaskCompletion c = new TaskCompletion();
-            c.setId(id);
-            c.setCompletedBy(CLIENT_ID);
-            c.setCompletedAt(Instant.now());
-            taskCompletionRepository.save(c);
+            buildingService.completeWorkItem(created.getId(), CLIENT_ID, wi.getId());
         }
+        assertThat(buildingProjectionRepository.findById(created.getId()))
+                .hasValueSatisfying(p -> assertThat(p.getProgress()).isGreaterThan(0));
 
         BuildingProjection after = buildingService.nextStage(created.getId(), CLIENT_ID, null);
         assertThat(after.getStage()).isNotNull();
         assertThat(after.getProgress()).isGreaterThanOrEqualTo(0);
     }
-}
 
+    @Test
+    @Transactional
+    void completeWorkItems_marksBatch_andIsIdempotent() {
+        BuildingProjection created = buildingService.createBuilding(
+                PROJECT_ID,
+                "Проект",
+                CLIENT_ID,
+                MANAGER_ID,
+                "Менеджер",
+                java.util.Map.of(),
+                DEFAULT_WORKFLOW_ID
+        );
+
+        List<Task> subStages = taskRepository.findByStageIdAndParentIdIsNullOrderByPosition(PREPARATION_STAGE_ID);
+        Set<UUID> subStageIds = subStages.stream().map(Task::getId).collect(Collectors.toSet());
+        List<UUID> workItemIds = taskRepository.findByParentIdInOrderByParentIdAscPositionAsc(subStageIds).stream()
+                .filter(t -> "WORK_ITEM".equalsIgnoreCase(t.getType()))
+                .map(Task::getId)
+                .toList();
+        assertThat(workItemIds).isNotEmpty();
+
+        List<SubStageStatusDto> statuses = buildingService.completeWorkItems(created.getId(), CLIENT_ID, workItemIds);
+        assertThat(statuses).isNotEmpty().allMatch(SubStageStatusDto::isCompleted)
+                .allMatch(s -> s.getCompletedWorkItems() == s.getTotalWorkItems());
+        // повтор той же пачки (повторная отправка с телефона) ничего не ломает
+        assertThat(buildingService.completeWorkItems(created.getId(), CLIENT_ID, workItemIds))
+                .allMatch(SubStageStatusDto::isCompleted);
+        assertThat(taskCompletionRepository.findCompletedTaskIds(created.getId(), Set.copyOf(workItemIds)))
+                .hasSize(workItemIds.size());
+
+        // вид работ чужой стадии отклоняет всю пачку
+        assertThatThrownBy(() -> buildingService.completeWorkItems(created.getId(), CLIENT_ID, List.of(UUID.randomUUID())))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        BuildingProjection after = buildingService.nextStage(created.getId(), CLIENT_ID, null);
+        assertThat(after.getStage()).isNotNull();
+    }
 
+    @Test
+    @Transactional
+    void deletingPassedStage_dropsItsCounters_andDoesNotInflateProgress() {
+        UUID managerId = UUID.randomUUID();
+        String doc = """
+                {"name": "Два этапа", "stages": [
+                  {"name": "Фундамент", "position": 0, "subStages": [
+                    {"name": "Разметка", "position": 0, "workItems": [{"name": "Колышки", "position": 0}]}
+                  ]},
+                  {"name": "Стены", "position": 1, "subStages": [
+                    {"name": "Кладка", "position": 0, "workItems": [{"name": "Первый ряд", "position": 0}]}
+                  ]}
+                ]}
+                """;
+        WorkflowDto workflow = workflowTemplates.importWorkflow(managerId,
+                new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8)));
+        WorkflowDto tree = workflowService.get(workflow.getId(), managerId);
+        StageDto foundation = tree.getStages().get(0);
+        StageDto walls = tree.getStages().get(1);
+
+        BuildingProjection created = buildingService.createBuilding(PROJECT_ID, "Проект", CLIENT_ID, managerId,
+                "Менеджер", java.util.Map.of(), workflow.getId());
+        buildingService.completeWorkItem(created.getId(), CLIENT_ID,
+                foundation.getSubStages().getFirst().getWorkItems().getFirst().getId());
+        buildingService.nextStage(created.getId(), CLIENT_ID, null);
+        assertThat(taskCompletionRepository.sumCompleted(created.getId())).isEqualTo(1);
+
+        StageDto remaining = new StageDto();
+        remaining.setId(walls.getId());
+        remaining.setName(walls.getName());
+        remaining.setPlannedDays(walls.getPlannedDays());
+        remaining.setPosition(0);
+        UpsertStagesRequest request = new UpsertStagesRequest();
+        request.setStages(List.of(remaining));
+        workflowService.upsertStages(workflow.getId(), managerId, request);
+
+        // отметки удалённого этапа не входят в прогресс: в оставшемся этапе ничего не выполнено
+        assertThat(taskCompletionRepository.sumCompleted(created.getId())).isZero();
+        Building building = buildingRepository.findById(created.getId()).orElseThrow();
+        assertThat(progressCounters.progress(building, workflowDefinitions.get(workflow.getId())))
+                .isEqualTo(progressCounters.progress(building, workflowDefinitions.get(workflow.getId()), 0));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.domium.building.model.StreamLease;
+import ru.domium.building.repository.StreamLeaseRepository;
+import ru.domium.building.service.video.StreamPlacement;
+import ru.domium.building.service.video.VideoStreamingProperties;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Два узла (два экземпляра {@link StreamPlacement} с разными node-id) делят одну таблицу аренд в Postgres.
+ */
+class StreamPlacementIT extends AbstractPostgresIT {
+    private static final UUID BUILDING_ID = UUID.fromString("8f1d6d18-1bfb-4a8a-95c9-6bfe0c2e8a0b");
+    private static final long TTL_MS = 500;
+
+    @Autowired StreamLeaseRepository leases;
+
+    StreamPlacement nodeA;
+    StreamPlacement nodeB;
+
+    @BeforeEach
+    void setUp() {
+        leases.deleteAll();
+        VideoStreamingProperties props = new VideoStreamingProperties();
+        props.getPlacement().setEnabled(true);
+        props.getPlacement().setLeaseTtlMs(TTL_MS);
+        props.getPlacement().setOwnerCacheMs(1);
+        nodeA = new StreamPlacement(props, leases, "node-a", "node-a:8091");
+        nodeB = new StreamPlacement(props, leases, "node-b", "node-b:8091");
+    }
+
+    @Test
+    void camera_isOwnedByExactlyOneNode() {
+        UUID cameraId = UUID.randomUUID();
+
+        assertThat(nodeA.acquire(cameraId, BUILDING_ID)).isEmpty();
+        Optional<StreamLease> owner = nodeB.acquire(cameraId, BUILDING_ID);
+
+        assertThat(owner).map(StreamLease::getNodeId).contains("node-a");
+        assertThat(owner).map(StreamLease::getNodeAddress).contains("node-a:8091");
+        assertThat(nodeB.remoteOwner(cameraId)).map(StreamLease::getNodeId).contains("node-a");
+        assertThat(nodeA.remoteOwner(cameraId)).isEmpty();
+        // повторный захват владельцем — продление, а не конфликт
+        assertThat(nodeA.acquire(cameraId, BUILDING_ID)).isEmpty();
+    }
+
+    @Test
+    void lease_failsOver_whenOwnerStopsRenewing() throws InterruptedException {
+        UUID cameraId = UUID.randomUUID();
+        assertThat(nodeA.acquire(cameraId, BUILDING_ID)).isEmpty();
+
+        Thread.sleep(TTL_MS * 2);
+
+        assertThat(nodeB.acquire(cameraId, BUILDING_ID)).isEmpty();
+        StreamPlacement.Heartbeat heartbeatA = nodeA.heartbeat(List.of(cameraId), List.of());
+        assertThat(heartbeatA.owned()).doesNotContain(cameraId);
+        assertThat(nodeA.acquire(cameraId, BUILDING_ID)).map(StreamLease::getNodeId).contains("node-b");
+    }
+
+    @Test
+    void renewedLease_survivesTtl_andCarriesViewersFromOtherNodes() throws InterruptedException {
+        UUID cameraId = UUID.randomUUID();
+        assertThat(nodeA.acquire(cameraId, BUILDING_ID)).isEmpty();
+
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(TTL_MS / 2);
+            nodeA.heartbeat(List.of(cameraId), List.of());
+        }
+        assertThat(nodeB.acquire(cameraId, BUILDING_ID)).map(StreamLease::getNodeId).contains("node-a");
+
+        nodeB.recordAccess(cameraId);
+        nodeB.heartbeat(List.of(), List.of());
+        StreamPlacement.Heartbeat heartbeatA = nodeA.heartbeat(List.of(cameraId), List.of());
+
+        assertThat(heartbeatA.owned()).isEqualTo(Set.of(cameraId));
+        assertThat(heartbeatA.lastAccessMs()).containsKey(cameraId);
+    }
+
+    @Test
+    void expiredLeaseWithRecentViewers_isOrphaned_untilReleased() throws InterruptedException {
+        UUID watched = UUID.randomUUID();
+        UUID unwatched = UUID.randomUUID();
+        nodeA.acquire(watched, BUILDING_ID);
+        nodeA.acquire(unwatched, BUILDING_ID);
+        nodeA.heartbeat(List.of(watched, unwatched), List.of(watched));
+
+        Thread.sleep(TTL_MS * 2);
+
+        assertThat(nodeB.orphans(60_000)).extracting(StreamLease::getCameraId).containsExactly(watched);
+        nodeA.release(watched);
+        assertThat(nodeB.orphans(60_000)).isEmpty();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.domium.building.it;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.domium.building.api.dto.workflow.StageDto;
+import ru.domium.building.api.dto.workflow.WorkflowDto;
+import ru.domium.building.service.WorkflowService;
+import ru.domium.building.service.WorkflowTemplateService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.*;
+
+class WorkflowTemplateIT extends AbstractPostgresIT {
+
+    private static final UUID DEFAULT_WORKFLOW_ID = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+    @Autowired WorkflowTemplateService workflowTemplates;
+    @Autowired WorkflowService workflowService;
+
+    @Test
+    void exportThenImport_reproducesTree() throws Exception {
+        UUID managerId = UUID.randomUUID();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workflowTemplates.writeExport(workflowTemplates.requireReadable(DEFAULT_WORKFLOW_ID, managerId), out);
+
+        WorkflowDto imported = workflowTemplates.importWorkflow(managerId, new ByteArrayInputStream(out.toByteArray()));
+
+        assertThat(imported.getId()).isNotEqualTo(DEFAULT_WORKFLOW_ID);
+        WorkflowDto source = workflowService.get(DEFAULT_WORKFLOW_ID, managerId);
+        WorkflowDto copy = workflowService.getActive(managerId);
+        assertThat(copy.getId()).isEqualTo(imported.getId());
+        assertThat(shape(copy.getStages())).isEqualTo(shape(source.getStages()));
+    }
+
+    @Test
+    void import_rejectsDuplicateStageNames_andWritesNothing() {
+        UUID managerId = UUID.randomUUID();
+        String doc = """
+                {"name": "Шаблон", "stages": [
+                  {"name": "Фундамент", "position": 0, "subStages": [
+                    {"name": "Разметка", "position": 0, "workItems": [{"name": "Колышки", "position": 0}]}
+                  ]},
+                  {"name": "фундамент", "position": 1}
+                ]}
+                """;
+
+        assertThatThrownBy(() -> workflowTemplates.importWorkflow(managerId,
+                new ByteArrayInputStream(doc.getBytes(StandardCharsets.UTF_8))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Stage names must be unique");
+        assertThat(workflowService.getActive(managerId).getId()).isEqualTo(DEFAULT_WORKFLOW_ID);
+    }
+
+    private static List<String> shape(List<StageDto> stages) {
+        return stages.stream()
+                .flatMap(s -> s.getSubStages().stream()
+                        .flatMap(ss -> ss.getWorkItems().stream()
+                                .map(wi -> s.getPosition() + ":" + s.getName() + "/" + ss.getPosition() + ":" + ss.getName()
+                                        + "/" + wi.getPosition() + ":" + wi.getName())))
+                .toList();
+    }
+}
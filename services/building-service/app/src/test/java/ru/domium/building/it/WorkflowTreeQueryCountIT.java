@@ -0,0 +1,73 @@
+package ru.domium.building.it;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import ru.domium.building.api.dto.workflow.StageDto;
+import ru.domium.building.api.dto.workflow.WorkflowDto;
+import ru.domium.building.service.BuildingService;
+import ru.domium.building.service.WorkflowDefinitionCache;
+import ru.domium.building.service.WorkflowService;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Число SQL-запросов при загрузке дерева workflow не зависит от числа стадий и подэтапов,
+ * а повторная загрузка берёт определение workflow из кеша.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class WorkflowTreeQueryCountIT extends AbstractPostgresIT {
+
+    private static final UUID TEST_BUILDING_ID = UUID.fromString("12d05685-c6d9-41ab-a660-17460ffa1824");
+    private static final UUID CLIENT_ID = UUID.fromString("c1d2e3f4-a5b6-7890-cdef-123456789012");
+    private static final UUID DEFAULT_WORKFLOW_ID = UUID.fromString("11111111-1111-1111-1111-111111111111");
+    private static final UUID RANDOM_MANAGER_ID = UUID.fromString("aaaaaaaa-aaaa-aaaa-aaaa-aaaaaaaaaaaa");
+
+    @Autowired BuildingService buildingService;
+    @Autowired WorkflowService workflowService;
+    @Autowired WorkflowDefinitionCache workflowDefinitions;
+    @Autowired EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        workflowDefinitions.invalidateAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getStages_loadsWholeTree_inFourQueries_thenFromCache() {
+        List<StageDto> stages = buildingService.getStages(TEST_BUILDING_ID, CLIENT_ID);
+
+        assertThat(stages).hasSizeGreaterThan(1);
+        assertThat(stages).flatExtracting(StageDto::getSubStages).isNotEmpty()
+                .allSatisfy(ss -> assertThat(ss.getWorkItems()).isNotNull());
+        // стройка + версия workflow + стадии + задачи
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+
+        statistics.clear();
+        assertThat(buildingService.getStages(TEST_BUILDING_ID, CLIENT_ID)).isEqualTo(stages);
+        // только стройка
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void getWorkflow_loadsWholeTree_inFourQueries() {
+        WorkflowDto dto = workflowService.get(DEFAULT_WORKFLOW_ID, RANDOM_MANAGER_ID);
+
+        assertThat(dto.getStages()).hasSizeGreaterThan(1);
+        assertThat(dto.getStages()).map(StageDto::getSubStages).allMatch(Objects::nonNull);
+        // workflow + версия workflow + стадии + задачи
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.domium.building.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WorkflowDefinitionTest {
+    private static final UUID WORKFLOW_ID = UUID.randomUUID();
+
+    @Test
+    void next_resolvesFollowingStage_andStopsAtTheLast() {
+        Stage first = stage("FOUNDATION", 0);
+        Stage second = stage("WALLS", 1);
+        Stage last = stage("ROOF", 2);
+        // порядок стадий задаётся position, а не порядком строк из БД
+        WorkflowDefinition definition = WorkflowDefinition.of(WORKFLOW_ID, 1, List.of(last, first, second), List.of());
+
+        assertThat(definition.next(first.getId()))
+                .isEqualTo(new StageTransition(second.getId(), "WALLS", 1, 3, true));
+        assertThat(definition.next(second.getId()))
+                .isEqualTo(new StageTransition(last.getId(), "ROOF", 2, 3, true));
+        assertThat(definition.next(last.getId()).canTransition()).isFalse();
+        assertThat(definition.next(UUID.randomUUID()).canTransition()).isFalse();
+        assertThat(definition.next(null).totalStages()).isEqualTo(3);
+    }
+
+    @Test
+    void taskTree_isGroupedByStageAndSubStage_inPositionOrder() {
+        Stage stage = stage("FOUNDATION", 0);
+        Task subStage = task(stage.getId(), null, "SUBSTAGE", 0);
+        Task secondItem = task(stage.getId(), subStage.getId(), "WORK_ITEM", 1);
+        Task firstItem = task(stage.getId(), subStage.getId(), "WORK_ITEM", 0);
+
+        WorkflowDefinition definition = WorkflowDefinition.of(WORKFLOW_ID, 1, List.of(stage),
+                List.of(secondItem, subStage, firstItem));
+
+        assertThat(definition.subStages(stage.getId())).extracting(WorkflowDefinition.TaskDef::id)
+                .containsExactly(subStage.getId());
+        assertThat(definition.workItems(subStage.getId())).extracting(WorkflowDefinition.TaskDef::id)
+                .containsExactly(firstItem.getId(), secondItem.getId());
+        assertThat(definition.task(firstItem.getId())).map(WorkflowDefinition.TaskDef::parentId).contains(subStage.getId());
+        assertThat(definition.subStages(UUID.randomUUID())).isEmpty();
+        assertThat(definition.workItemCount(stage.getId())).isEqualTo(2);
+        assertThat(definition.totalWorkItems()).isEqualTo(2);
+    }
+
+    private static Stage stage(String name, int position) {
+        Stage stage = new Stage();
+        stage.setId(UUID.randomUUID());
+        stage.setWorkflowId(WORKFLOW_ID);
+        stage.setName(name);
+        stage.setPosition(position);
+        return stage;
+    }
+
+    private static Task task(UUID stageId, UUID parentId, String type, int position) {
+        Task task = new Task();
+        task.setId(UUID.randomUUID());
+        task.setStageId(stageId);
+        task.setParentId(parentId);
+        task.setType(type);
+        task.setName(type + "-" + position);
+        task.setPosition(position);
+        return task;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.domium.building.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+import ru.domium.building.api.dto.BuildingDetailsDto;
+import ru.domium.building.repository.BuildingRepository;
+import ru.domium.building.repository.BuildingRepository.DetailsVersion;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BuildingDetailsCacheTest {
+
+    private static final UUID BUILDING_ID = UUID.randomUUID();
+    private static final UUID CLIENT_ID = UUID.randomUUID();
+    private static final UUID MANAGER_ID = UUID.randomUUID();
+
+    private final BuildingRepository repository = mock(BuildingRepository.class);
+    private final BuildingDetailsCache cache = new BuildingDetailsCache(repository, 100, Duration.ofMinutes(1));
+
+    @Test
+    void etag_changesWithVersionProjectionUpdateAndManagerName() {
+        String base = etagFor(version(3, 1000L, null));
+
+        assertThat(etagFor(version(3, 1000L, null))).isEqualTo(base);
+        assertThat(etagFor(version(4, 1000L, null))).isNotEqualTo(base);
+        assertThat(etagFor(version(3, 2000L, null))).isNotEqualTo(base);
+        assertThat(etagFor(version(3, 1000L, "Иван"))).isNotEqualTo(base);
+    }
+
+    @Test
+    void etag_rejectsOutsiders() {
+        when(repository.findDetailsVersion(BUILDING_ID)).thenReturn(Optional.of(version(1, null, null)));
+
+        assertThat(cache.etag(BUILDING_ID, MANAGER_ID)).startsWith("\"").endsWith("\"");
+        assertThatThrownBy(() -> cache.etag(BUILDING_ID, UUID.randomUUID())).isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void get_loadsOncePerEtag() {
+        AtomicInteger loads = new AtomicInteger();
+        BuildingDetailsDto first = cache.get("\"a\"", () -> {
+            loads.incrementAndGet();
+            return new BuildingDetailsDto();
+        });
+
+        assertThat(cache.get("\"a\"", BuildingDetailsDto::new)).isSameAs(first);
+        assertThat(cache.get("\"b\"", BuildingDetailsDto::new)).isNotSameAs(first);
+        assertThat(loads).hasValue(1);
+    }
+
+    private String etagFor(DetailsVersion v) {
+        when(repository.findDetailsVersion(BUILDING_ID)).thenReturn(Optional.of(v));
+        return cache.etag(BUILDING_ID, CLIENT_ID);
+    }
+
+    private static DetailsVersion version(long version, Long updatedMicros, String managerName) {
+        return new DetailsVersion() {
+            public long getVersion() { return version; }
+            public UUID getClientId() { return CLIENT_ID; }
+            public UUID getManagerId() { return MANAGER_ID; }
+            public Long getProjectionUpdatedMicros() { return updatedMicros; }
+            public String getManagerName() { return managerName; }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package ru.domium.building.service.feed;
+
+import org.junit.jupiter.api.Test;
+import ru.domium.building.api.dto.feed.BuildingFeedEventDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BuildingFeedTest {
+
+    private static final UUID BUILDING_A = UUID.randomUUID();
+    private static final UUID BUILDING_B = UUID.randomUUID();
+
+    @Test
+    void replaySince_returnsMissedEventsOfSubscribedBuildingsOnly() {
+        BuildingFeed feed = new BuildingFeed(props(10));
+        String first = publish(feed, BUILDING_A, BuildingFeedEventType.CAMERA_STATE);
+        publish(feed, BUILDING_B, BuildingFeedEventType.WORK_ITEMS_COMPLETED);
+        String third = publish(feed, BUILDING_A, BuildingFeedEventType.STAGE_ADVANCED);
+
+        List<BuildingFeedEventDto> missed = feed.replaySince(first, Set.of(BUILDING_A));
+
+        assertThat(missed).extracting(BuildingFeedEventDto::getId).containsExactly(third);
+        assertThat(missed.getFirst().getType()).isEqualTo("STAGE_ADVANCED");
+        assertThat(feed.replaySince(third, Set.of(BUILDING_A, BUILDING_B))).isEmpty();
+    }
+
+    @Test
+    void replaySince_returnsNull_whenEventsWereEvicted() {
+        BuildingFeed feed = new BuildingFeed(props(2));
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(publish(feed, BUILDING_A, BuildingFeedEventType.CAMERA_STATE));
+        }
+
+        assertThat(feed.replaySince(ids.get(0), Set.of(BUILDING_A))).isNull();
+        assertThat(feed.replaySince(ids.get(2), Set.of(BUILDING_A))).extracting(BuildingFeedEventDto::getId)
+                .containsExactly(ids.get(3), ids.get(4));
+    }
+
+    @Test
+    void replaySince_returnsNull_forIdOfAnotherRunOrMalformed() {
+        BuildingFeed previousRun = new BuildingFeed(props(10));
+        BuildingFeed feed = new BuildingFeed(props(10));
+        String foreignId = publish(previousRun, BUILDING_A, BuildingFeedEventType.CAMERA_STATE);
+        String ownId = publish(feed, BUILDING_A, BuildingFeedEventType.CAMERA_STATE);
+        publish(feed, BUILDING_A, BuildingFeedEventType.CAMERA_STATE);
+        String ownEpoch = ownId.substring(0, ownId.lastIndexOf('-'));
+
+        // тот же номер 1, но эпоха другого запуска — свои события с этого места дочитывать нельзя
+        assertThat(foreignId).endsWith("-1").isNotEqualTo(ownId);
+        assertThat(feed.replaySince(foreignId, Set.of(BUILDING_A))).isNull();
+        assertThat(feed.replaySince("1", Set.of(BUILDING_A))).isNull();
+        assertThat(feed.replaySince(ownEpoch + "-x", Set.of(BUILDING_A))).isNull();
+        assertThat(feed.replaySince(ownId, Set.of(BUILDING_A))).hasSize(1);
+    }
+
+    private static String publish(BuildingFeed feed, UUID buildingId, BuildingFeedEventType type) {
+        BuildingFeedEventDto event = new BuildingFeedEventDto();
+        event.setType(type.name());
+        event.setBuildingId(buildingId);
+        feed.publish(event);
+        return event.getId();
+    }
+
+    private static BuildingFeedProperties props(int bufferSize) {
+        BuildingFeedProperties props = new BuildingFeedProperties();
+        props.setReplayBufferSize(bufferSize);
+        return props;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.domium.building.service.stage.requirement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.domium.building.model.Building;
+import ru.domium.building.model.StageTransition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StageTransitionRequirementsTest {
+    private static final StageTransition TRANSITION = new StageTransition(UUID.randomUUID(), "WALLS", 1, 3, true);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StageRequirementProperties props = new StageRequirementProperties();
+    private final List<StageTransitionRequirements> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        created.forEach(StageTransitionRequirements::shutdown);
+    }
+
+    @Test
+    void checkRemote_runsRequirementsConcurrently() {
+        props.setTimeoutMs(2_000);
+        StageTransitionRequirements requirements = requirements(
+                new SlowRemote("a", 300, List.of()),
+                new SlowRemote("b", 300, List.of()),
+                new SlowRemote("c", 300, List.of()));
+
+        long start = System.nanoTime();
+        requirements.checkRemote(new Building(), UUID.randomUUID(), TRANSITION);
+
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(800);
+        assertThat(registry.get("stage.requirement.duration").tag("requirement", "a").tag("outcome", "passed").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void checkRemote_failsClosed_whenRequirementMissesItsDeadline() {
+        props.setTimeoutMs(100);
+        StageTransitionRequirements requirements = requirements(new SlowRemote("documents-signed", 5_000, List.of()));
+
+        assertThatThrownBy(() -> requirements.checkRemote(new Building(), UUID.randomUUID(), TRANSITION))
+                .isInstanceOf(StageTransitionNotAllowedException.class)
+                .satisfies(e -> assertThat(((StageTransitionNotAllowedException) e).getViolations())
+                        .extracting(TransitionViolation::code).containsExactly("REQUIREMENT_UNAVAILABLE"));
+        assertThat(registry.get("stage.requirement.duration").tag("outcome", "timeout").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void checkRemote_skipsFailOpenRequirement_butKeepsViolationsOfOthers() {
+        props.setTimeoutMs(100);
+        StageRequirementProperties.Requirement failOpen = new StageRequirementProperties.Requirement();
+        failOpen.setFailOpen(true);
+        props.getOverrides().put("slow", failOpen);
+        TransitionViolation violation = new TransitionViolation("DOCUMENTS_NOT_SIGNED", "not signed");
+        StageTransitionRequirements requirements = requirements(
+                new SlowRemote("slow", 5_000, List.of()),
+                new SlowRemote("fast", 0, List.of(violation)));
+
+        assertThatThrownBy(() -> requirements.checkRemote(new Building(), UUID.randomUUID(), TRANSITION))
+                .isInstanceOf(StageTransitionNotAllowedException.class)
+                .satisfies(e -> assertThat(((StageTransitionNotAllowedException) e).getViolations()).containsExactly(violation));
+    }
+
+    @Test
+    void checkLocal_ignoresRemoteRequirements() {
+        StageTransitionRequirements requirements = requirements(
+                new SlowRemote("remote", 0, List.of(new TransitionViolation("X", "x"))));
+
+        assertThatCode(() -> requirements.checkLocal(new Building(), UUID.randomUUID(), TRANSITION)).doesNotThrowAnyException();
+    }
+
+    private StageTransitionRequirements requirements(StageTransitionRequirement... reqs) {
+        StageTransitionRequirements requirements = new StageTransitionRequirements(List.of(reqs), props, registry);
+        created.add(requirements);
+        return requirements;
+    }
+
+    private record SlowRemote(String name, long delayMs, List<TransitionViolation> violations)
+            implements StageTransitionRequirement {
+        @Override
+        public List<TransitionViolation> validate(Building building, UUID userId, StageTransition transition) {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return violations;
+        }
+
+        @Override
+        public boolean remote() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ru.domium.building.service.video;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteRangeTest {
+
+    @Test
+    void parse_supportsClosedOpenAndSuffixRanges() {
+        assertThat(ByteRange.parse("bytes=0-99", 1000)).contains(new ByteRange(0, 99));
+        assertThat(ByteRange.parse("bytes=900-", 1000)).contains(new ByteRange(900, 999));
+        assertThat(ByteRange.parse("bytes=-100", 1000)).contains(new ByteRange(900, 999));
+        assertThat(ByteRange.parse("bytes=-5000", 1000)).contains(new ByteRange(0, 999));
+        assertThat(ByteRange.parse("bytes=500-5000", 1000)).contains(new ByteRange(500, 999));
+        assertThat(new ByteRange(500, 999).contentRange(1000)).isEqualTo("bytes 500-999/1000");
+    }
+
+    @Test
+    void parse_ignoresMissingMalformedAndMultiRanges() {
+        assertThat(ByteRange.parse(null, 1000)).isEmpty();
+        assertThat(ByteRange.parse("items=0-1", 1000)).isEmpty();
+        assertThat(ByteRange.parse("bytes=abc", 1000)).isEmpty();
+        assertThat(ByteRange.parse("bytes=9-1", 1000)).isEmpty();
+        assertThat(ByteRange.parse("bytes=0-1,5-9", 1000)).isEmpty();
+    }
+
+    @Test
+    void parse_rejectsRangesBeyondTheEnd() {
+        assertThat(ByteRange.parse("bytes=1000-", 1000)).contains(ByteRange.UNSATISFIABLE);
+        assertThat(ByteRange.parse("bytes=-0", 1000)).contains(ByteRange.UNSATISFIABLE);
+        assertThat(ByteRange.UNSATISFIABLE.contentRange(1000)).isEqualTo("bytes */1000");
+    }
+}
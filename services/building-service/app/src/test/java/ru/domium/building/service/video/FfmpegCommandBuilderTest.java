@@ -0,0 +1,102 @@
+package ru.domium.building.service.video;
+
+import org.junit.jupiter.api.Test;
+import ru.domium.building.model.BuildingCamera;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FfmpegCommandBuilderTest {
+    private final VideoStreamingProperties props = new VideoStreamingProperties();
+    private final FfmpegCommandBuilder builder = new FfmpegCommandBuilder(props);
+    private final VideoPaths paths = new VideoPaths(Path.of("/hls/b/c"));
+
+    @Test
+    void abr_splitsOnceAndWritesMasterPlaylist() {
+        BuildingCamera cam = camera(true, List.of("720p", "360p"));
+
+        List<String> cmd = builder.build(cam, paths);
+
+        assertThat(cmd).containsSubsequence("-filter_complex",
+                "[0:v:0]split=2[s0][s1];[s0]scale=-2:720[v0];[s1]scale=-2:360[v1]");
+        assertThat(cmd).containsSubsequence("-map", "[v0]", "-c:v:0", "libx264", "-b:v:0", "2800k");
+        assertThat(cmd).containsSubsequence("-map", "[v1]", "-c:v:1", "libx264", "-b:v:1", "800k");
+        assertThat(cmd).containsSubsequence("-master_pl_name", "index.m3u8");
+        assertThat(cmd).containsSubsequence("-var_stream_map", "v:0,name:720p v:1,name:360p");
+        assertThat(cmd.getLast()).isEqualTo("/hls/b/c/index_%v.m3u8");
+        assertThat(cmd.stream().filter("-i"::equals)).hasSize(1);
+    }
+
+    @Test
+    void renditions_areIgnoredInCopyMode() {
+        BuildingCamera cam = camera(false, List.of("720p", "360p"));
+
+        List<String> cmd = builder.build(cam, paths);
+
+        assertThat(cmd).doesNotContain("-filter_complex");
+        assertThat(cmd).containsSubsequence("-c:v", "copy");
+        assertThat(cmd.getLast()).isEqualTo("/hls/b/c/index.m3u8");
+    }
+
+    @Test
+    void lowLatency_writesCmafPartsAlignedToSegments() {
+        BuildingCamera cam = camera(true, null);
+        cam.setLowLatency(true);
+
+        List<String> cmd = builder.build(cam, paths);
+
+        assertThat(cmd).containsSubsequence("-force_key_frames", "expr:gte(t,n_forced*1)");
+        assertThat(cmd).containsSubsequence("-hls_time", "0.2");
+        assertThat(cmd).containsSubsequence("-hls_segment_type", "fmp4");
+        assertThat(cmd).containsSubsequence("-hls_fmp4_init_filename", "init.mp4");
+        assertThat(cmd).containsSubsequence("-hls_segment_filename", "/hls/b/c/part_%d.m4s");
+        assertThat(Long.parseLong(cmd.get(cmd.indexOf("-start_number") + 1)) % props.getLlPartsPerSegment()).isZero();
+        assertThat(cmd.getLast()).isEqualTo("/hls/b/c/parts.m3u8");
+    }
+
+    @Test
+    void lowLatency_isIgnoredInCopyMode() {
+        BuildingCamera cam = camera(false, null);
+        cam.setLowLatency(true);
+
+        assertThat(builder.isLowLatency(cam)).isFalse();
+        assertThat(builder.build(cam, paths).getLast()).isEqualTo("/hls/b/c/index.m3u8");
+    }
+
+    @Test
+    void renditionNames_dropUnknownAndLimitLadder() {
+        props.setMaxRenditions(2);
+        BuildingCamera cam = camera(true, List.of("4k", "1080p", "720p", "480p"));
+
+        assertThat(builder.renditionNames(cam)).containsExactly("1080p", "720p");
+    }
+
+    @Test
+    void snapshotAndTimelapse_shareFrameHeight() {
+        props.getArchive().setSnapshotHeight(540);
+        props.getArchive().setTimelapseFps(30);
+
+        List<String> snapshot = builder.buildSnapshot(camera(false, null), Path.of("/spool/s.jpg.part"));
+        List<String> timelapse = builder.buildTimelapse(Path.of("/spool/t.mp4"));
+
+        assertThat(snapshot).containsSubsequence("-i", "rtsp://localhost:8554/test", "-frames:v", "1", "-vf", "scale=-2:540");
+        assertThat(snapshot).containsSubsequence("-f", "image2", "-update", "1", "-c:v", "mjpeg");
+        assertThat(snapshot.getLast()).isEqualTo("/spool/s.jpg.part");
+        assertThat(timelapse).containsSubsequence("-f", "image2pipe", "-c:v", "mjpeg", "-framerate", "30", "-i", "pipe:0");
+        assertThat(timelapse).containsSubsequence("-vf", "scale=-2:540,format=yuv420p");
+        assertThat(timelapse).containsSubsequence("-movflags", "+faststart");
+        assertThat(timelapse.getLast()).isEqualTo("/spool/t.mp4");
+    }
+
+    private static BuildingCamera camera(boolean transcode, List<String> renditions) {
+        BuildingCamera cam = new BuildingCamera();
+        cam.setId(UUID.randomUUID());
+        cam.setRtspUrl("rtsp://localhost:8554/test");
+        cam.setTranscode(transcode);
+        cam.setRenditions(renditions);
+        return cam;
+    }
+}
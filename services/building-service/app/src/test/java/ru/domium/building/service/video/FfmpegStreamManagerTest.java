@@ -0,0 +1,266 @@
+package ru.domium.building.service.video;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.domium.building.model.BuildingCamera;
+import ru.domium.building.model.StreamLease;
+import ru.domium.building.repository.StreamLeaseRepository;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Вместо ffmpeg запускаются {@code sleep}/{@code sh}: проверяется супервизор, а не кодирование.
+ */
+class FfmpegStreamManagerTest {
+    private static final UUID BUILDING_ID = UUID.fromString("8f1d6d18-1bfb-4a8a-95c9-6bfe0c2e8a0b");
+
+    @TempDir
+    Path hlsRoot;
+
+    VideoStreamingProperties props;
+    FfmpegCommandBuilder commandBuilder;
+    SimpleMeterRegistry registry;
+    StreamMetrics metrics;
+    StreamLeaseRepository leases;
+    StreamPlacement placement;
+    FfmpegStreamManager manager;
+
+    @BeforeEach
+    void setUp() {
+        props = new VideoStreamingProperties();
+        props.setHlsRoot(hlsRoot);
+        props.setMaxCopyProcesses(1);
+        props.setMaxTranscodeProcesses(1);
+        props.setStartQueueTimeoutMs(0);
+        props.setRestartInitialDelayMs(20);
+        props.setRestartMaxDelayMs(100);
+        props.setRestartMaxAttempts(3);
+        registry = new SimpleMeterRegistry();
+        metrics = new StreamMetrics(registry);
+        commandBuilder = mock(FfmpegCommandBuilder.class);
+        when(commandBuilder.build(any(), any())).thenReturn(List.of("sleep", "30"));
+        leases = mock(StreamLeaseRepository.class);
+        placement = new StreamPlacement(props, leases, "node-a", "node-a:8091");
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    void start_rejectsWithCapacityExhausted_whenModeLimitReached() {
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera first = camera(false);
+        BuildingCamera second = camera(false);
+        BuildingCamera transcoded = camera(true);
+
+        manager.start(BUILDING_ID, first);
+        assertThat(manager.isRunning(first.getId())).isTrue();
+
+        assertThatThrownBy(() -> manager.start(BUILDING_ID, second))
+                .isInstanceOf(StreamCapacityExhaustedException.class)
+                .hasMessageContaining("capacity exhausted");
+
+        // лимит transcode считается отдельно
+        manager.start(BUILDING_ID, transcoded);
+        assertThat(manager.isRunning(transcoded.getId())).isTrue();
+
+        assertThat(registry.get("video.streams.active").tag("mode", "copy").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("video.streams.active").tag("mode", "transcode").gauge().value()).isEqualTo(1);
+
+        manager.stop(first.getId()).join(); // слот освобождается после выхода процесса
+        manager.start(BUILDING_ID, second);
+        assertThat(manager.isRunning(second.getId())).isTrue();
+        assertThat(manager.availableSlots(false)).isZero();
+    }
+
+    @Test
+    void start_isIdempotent_forRunningCamera() {
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera cam = camera(false);
+
+        manager.start(BUILDING_ID, cam);
+        manager.start(BUILDING_ID, cam);
+
+        verify(commandBuilder, times(1)).build(any(), any());
+    }
+
+    @Test
+    void start_stopsProcessAndFreesSlot_whenLaunchFailsAfterProcessStarted() throws Exception {
+        CameraStateListener failing = (buildingId, cameraId, running) -> {
+            if (running) throw new IllegalStateException("listener failed");
+        };
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, failing);
+        BuildingCamera cam = camera(false);
+
+        assertThatThrownBy(() -> manager.start(BUILDING_ID, cam)).hasMessageContaining("listener failed");
+
+        assertThat(manager.isRunning(cam.getId())).isFalse();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (manager.availableSlots(false) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(manager.availableSlots(false)).isEqualTo(1);
+        assertThat(registry.get("video.streams.active").tag("mode", "copy").gauge().value()).isZero();
+    }
+
+    @Test
+    void crashedProcess_isRestartedWithBackoff_untilAttemptsExhausted() {
+        when(commandBuilder.build(any(), any())).thenReturn(List.of("sh", "-c", "exit 1"));
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera cam = camera(false);
+
+        manager.start(BUILDING_ID, cam);
+
+        verify(commandBuilder, timeout(5_000).times(1 + props.getRestartMaxAttempts()))
+                .build(argThat(c -> c.getId().equals(cam.getId())), any());
+        verify(commandBuilder, after(300).times(1 + props.getRestartMaxAttempts())).build(any(), any());
+        assertThat(manager.isRunning(cam.getId())).isFalse();
+        assertThat(manager.availableSlots(false)).isEqualTo(1);
+        assertThat(registry.get("video.stream.restarts").tag("camera", cam.getId().toString()).counter().count())
+                .isEqualTo(props.getRestartMaxAttempts());
+        assertThat(registry.get("video.streams.active").tag("mode", "copy").gauge().value()).isZero();
+    }
+
+    @Test
+    void crashedProcess_isNotRestarted_withoutViewers() {
+        when(commandBuilder.build(any(), any())).thenReturn(List.of("sh", "-c", "exit 1"));
+        props.setIdleTimeoutSeconds(1);
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera cam = camera(false);
+
+        manager.start(BUILDING_ID, cam);
+        manager.stop(cam.getId()); // сбрасывает активность, как авто-останов
+
+        verify(commandBuilder, after(300).times(1)).build(any(), any());
+    }
+
+    @Test
+    void prewarmedStream_isKeptWhileWarm_andStoppedWithoutViewersAfterwards() {
+        props.setMaxCopyProcesses(2);
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera warm = camera(false);
+        BuildingCamera cooled = camera(false);
+        long now = System.currentTimeMillis();
+
+        assertThat(manager.prewarm(BUILDING_ID, warm)).isTrue();
+        assertThat(manager.prewarm(BUILDING_ID, cooled)).isTrue();
+        assertThat(manager.prewarm(BUILDING_ID, camera(false))).isFalse(); // без слота не ждёт и не бросает 503
+        manager.keepWarm(warm.getId(), now + 60_000);
+        manager.keepWarm(cooled.getId(), now - 1);
+
+        manager.stopIdleStreams();
+
+        assertThat(manager.isRunning(warm.getId())).isTrue();
+        assertThat(manager.isRunning(cooled.getId())).isFalse();
+    }
+
+    @Test
+    void stop_escalatesToKill_whenProcessIgnoresSigterm() throws Exception {
+        when(commandBuilder.build(any(), any())).thenReturn(List.of("sh", "-c", "trap '' TERM; sleep 30; true"));
+        props.setStopGraceMs(200);
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera cam = camera(false);
+        manager.start(BUILDING_ID, cam);
+        Thread.sleep(100); // trap должен успеть установиться
+
+        long startedNs = System.nanoTime();
+        CompletableFuture<Void> exited = manager.stop(cam.getId());
+        assertThat(System.nanoTime() - startedNs).isLessThan(TimeUnit.MILLISECONDS.toNanos(150)); // не ждёт процесс
+        assertThat(manager.availableSlots(false)).isZero();
+
+        exited.get(5, TimeUnit.SECONDS);
+        assertThat(registry.get("video.stream.kill.escalations").counter().count()).isEqualTo(1);
+        assertThat(registry.get("video.streams.terminating").gauge().value()).isZero();
+        assertThat(manager.availableSlots(false)).isEqualTo(1);
+    }
+
+    @Test
+    void idleSweep_stopsIdleStreams_andRecordsDuration() throws Exception {
+        props.setIdleTimeoutSeconds(1);
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        BuildingCamera idle = camera(false);
+        manager.start(BUILDING_ID, idle);
+        Thread.sleep(1_100);
+
+        manager.stopIdleStreams();
+
+        assertThat(manager.isRunning(idle.getId())).isFalse();
+        assertThat(registry.get("video.idle.sweep").timer().count()).isEqualTo(1);
+        assertThat(registry.get("video.idle.sweep.stopped").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void restartDelay_growsExponentially_upToCeiling() {
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+
+        assertThat(manager.restartDelayMs(0)).isEqualTo(20);
+        assertThat(manager.restartDelayMs(1)).isEqualTo(40);
+        assertThat(manager.restartDelayMs(2)).isEqualTo(80);
+        assertThat(manager.restartDelayMs(3)).isEqualTo(100);
+        assertThat(manager.restartDelayMs(64)).isEqualTo(100);
+    }
+
+    @Test
+    void start_doesNotLaunch_whenCameraIsLeasedByAnotherNode() {
+        props.getPlacement().setEnabled(true);
+        BuildingCamera cam = camera(false);
+        StreamLease owner = new StreamLease();
+        owner.setCameraId(cam.getId());
+        owner.setNodeId("node-b");
+        owner.setNodeAddress("node-b:8091");
+        when(leases.tryAcquire(eq(cam.getId()), eq(BUILDING_ID), eq("node-a"), eq("node-a:8091"), anyLong())).thenReturn(0);
+        when(leases.findLive(cam.getId())).thenReturn(Optional.of(owner));
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+
+        assertThatThrownBy(() -> manager.start(BUILDING_ID, cam))
+                .isInstanceOf(StreamOwnedElsewhereException.class)
+                .satisfies(e -> assertThat(((StreamOwnedElsewhereException) e).getOwner().getNodeId()).isEqualTo("node-b"));
+        assertThat(manager.isRunning(cam.getId())).isFalse();
+        verify(commandBuilder, never()).build(any(), any());
+    }
+
+    @Test
+    void renewLeases_stopsStream_whenLeaseWasTakenOver() {
+        props.getPlacement().setEnabled(true);
+        BuildingCamera cam = camera(false);
+        when(leases.tryAcquire(any(), any(), any(), any(), anyLong())).thenReturn(1);
+        manager = new FfmpegStreamManager(props, commandBuilder, new LowLatencyHlsPackager(props), metrics, placement, CameraStateListener.NOOP);
+        manager.start(BUILDING_ID, cam);
+        assertThat(manager.isRunning(cam.getId())).isTrue();
+
+        when(leases.findByNodeId("node-a")).thenReturn(List.of());
+        manager.renewLeases();
+
+        assertThat(manager.isRunning(cam.getId())).isFalse();
+        verify(leases).renew(eq("node-a"), eq(List.of(cam.getId())), anyLong());
+        verify(leases, never()).release(any(), any());
+    }
+
+    private static BuildingCamera camera(boolean transcode) {
+        BuildingCamera cam = new BuildingCamera();
+        cam.setId(UUID.randomUUID());
+        cam.setBuildingId(BUILDING_ID);
+        cam.setName("cam");
+        cam.setRtspUrl("rtsp://localhost:8554/test");
+        cam.setTranscode(transcode);
+        return cam;
+    }
+}
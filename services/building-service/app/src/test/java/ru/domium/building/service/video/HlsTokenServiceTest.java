@@ -0,0 +1,77 @@
+package ru.domium.building.service.video;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HlsTokenServiceTest {
+    private static final UUID BUILDING_ID = UUID.fromString("8f1d6d18-1bfb-4a8a-95c9-6bfe0c2e8a0b");
+    private static final UUID CAMERA_ID = UUID.fromString("b2c7c12b-0d1f-4f29-8ad0-0fa3d8c9f5d1");
+    private static final String SECRET = "test-secret";
+
+    VideoStreamingProperties props;
+    HlsTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        props = new VideoStreamingProperties();
+        props.setHlsTokenSecret(SECRET);
+        service = new HlsTokenService(props);
+    }
+
+    @Test
+    void token_matchesNginxSecureLinkMd5() throws Exception {
+        long expires = 1_900_000_000L;
+        byte[] md5 = MessageDigest.getInstance("MD5")
+                .digest((expires + ":" + BUILDING_ID + ":" + CAMERA_ID + ":" + SECRET).getBytes(StandardCharsets.UTF_8));
+        String expected = Base64.getUrlEncoder().withoutPadding().encodeToString(md5);
+
+        assertThat(service.sign(BUILDING_ID, CAMERA_ID, expires)).isEqualTo(expected);
+    }
+
+    @Test
+    void verify_acceptsOwnToken_andRejectsOtherCameraOrExpired() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        long expires = now.getEpochSecond() + 60;
+        String token = service.sign(BUILDING_ID, CAMERA_ID, expires);
+
+        assertThat(service.verify(BUILDING_ID, CAMERA_ID, expires, token, now)).isTrue();
+        assertThat(service.verify(BUILDING_ID, UUID.randomUUID(), expires, token, now)).isFalse();
+        assertThat(service.verify(BUILDING_ID, CAMERA_ID, expires + 1, token, now)).isFalse();
+        assertThat(service.verify(BUILDING_ID, CAMERA_ID, expires, token, now.plusSeconds(61))).isFalse();
+    }
+
+    @Test
+    void hlsUrl_carriesTokenInPath_whenSecretConfigured() {
+        String url = service.hlsUrl(BUILDING_ID, CAMERA_ID);
+
+        String[] parts = url.split("/");
+        assertThat(url).startsWith("/hls/s/").endsWith("/" + BUILDING_ID + "/" + CAMERA_ID + "/index.m3u8");
+        assertThat(service.verify(BUILDING_ID, CAMERA_ID, Long.parseLong(parts[4]), parts[3])).isTrue();
+    }
+
+    @Test
+    void hlsUrl_fallsBackToAuthRequestUrl_withoutSecret() {
+        props.setHlsTokenSecret("");
+
+        assertThat(service.hlsUrl(BUILDING_ID, CAMERA_ID)).isEqualTo(VideoPaths.hlsUrl(BUILDING_ID, CAMERA_ID));
+        assertThat(service.isInternalSecret("")).isFalse();
+    }
+
+    @Test
+    void internalSecret_isSeparateFromSigningKey_whenConfigured() {
+        assertThat(service.isInternalSecret(SECRET)).isTrue();
+
+        props.setInternalSecret("internal-secret");
+
+        assertThat(service.isInternalSecret("internal-secret")).isTrue();
+        assertThat(service.isInternalSecret(SECRET)).isFalse();
+    }
+}
@@ -0,0 +1,121 @@
+package ru.domium.building.service.video;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LowLatencyHlsPackagerTest {
+    @TempDir
+    Path dir;
+
+    VideoStreamingProperties props;
+    LowLatencyHlsPackager packager;
+    LowLatencyHlsPackager.Session session;
+
+    @BeforeEach
+    void setUp() {
+        props = new VideoStreamingProperties();
+        props.setLlPartMs(200);
+        props.setLlPartsPerSegment(3);
+        props.setLlWindowSegments(2);
+        packager = new LowLatencyHlsPackager(props);
+        session = new LowLatencyHlsPackager.Session(UUID.randomUUID(), new VideoPaths(dir));
+    }
+
+    @Test
+    void refresh_groupsPartsIntoSegments_andPublishesLlPlaylist() throws Exception {
+        writeParts(300, 307); // сегменты 100, 101 целиком + 2 части сегмента 102
+
+        packager.refresh(session);
+
+        assertThat(Files.readString(dir.resolve("seg_100.m4s"))).isEqualTo("p300p301p302");
+        assertThat(Files.readString(dir.resolve("seg_101.m4s"))).isEqualTo("p303p304p305");
+        assertThat(dir.resolve("seg_102.m4s")).doesNotExist();
+
+        String playlist = Files.readString(dir.resolve("index.m3u8"));
+        assertThat(playlist).isEqualTo(session.playlist);
+        assertThat(playlist)
+                .contains("#EXT-X-SERVER-CONTROL:CAN-BLOCK-RELOAD=YES,PART-HOLD-BACK=0.600")
+                .contains("#EXT-X-PART-INF:PART-TARGET=0.200")
+                .contains("#EXT-X-MEDIA-SEQUENCE:100")
+                .contains("#EXT-X-MAP:URI=\"init.mp4\"")
+                .contains("#EXT-X-PART:DURATION=0.200,URI=\"part_303.m4s\",INDEPENDENT=YES")
+                .contains("#EXT-X-PART:DURATION=0.200,URI=\"part_304.m4s\"\n")
+                .contains("#EXTINF:0.600,\nseg_101.m4s")
+                .contains("#EXT-X-PART:DURATION=0.200,URI=\"part_307.m4s\"")
+                .endsWith("#EXT-X-PRELOAD-HINT:TYPE=PART,URI=\"part_308.m4s\"\n");
+    }
+
+    @Test
+    void refresh_keepsSegmentWindow() throws Exception {
+        writeParts(300, 311);
+
+        packager.refresh(session);
+
+        assertThat(dir.resolve("seg_100.m4s")).doesNotExist();
+        assertThat(dir.resolve("seg_101.m4s")).doesNotExist();
+        assertThat(dir.resolve("seg_102.m4s")).exists();
+        assertThat(dir.resolve("seg_103.m4s")).exists();
+        assertThat(session.playlist).contains("#EXT-X-MEDIA-SEQUENCE:102");
+    }
+
+    @Test
+    void waiters_completeWhenRequiredPartIsPublished() throws Exception {
+        writeParts(300, 302);
+        packager.refresh(session);
+
+        // блокирующий запрос _HLS_msn=101&_HLS_part=1 → часть 304
+        assertThat(packager.requiredPart(101, 1)).isEqualTo(304);
+        assertThat(packager.requiredPart(101, null)).isEqualTo(305);
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        synchronized (session) {
+            session.waiters.computeIfAbsent(304L, k -> new ArrayList<>()).add(waiter);
+        }
+
+        writeParts(300, 303);
+        packager.refresh(session);
+        assertThat(waiter).isNotDone();
+
+        writeParts(300, 304);
+        packager.refresh(session);
+        assertThat(waiter).isCompletedWithValue(true);
+    }
+
+    @Test
+    void parseParts_readsDurationsAndProgramDateTime() {
+        var parts = LowLatencyHlsPackager.parseParts(List.of(
+                "#EXTM3U",
+                "#EXT-X-MAP:URI=\"init.mp4\"",
+                "#EXT-X-PROGRAM-DATE-TIME:2026-01-01T00:00:00.000+0000",
+                "#EXTINF:0.240000,",
+                "part_12.m4s",
+                "#EXTINF:0.2,",
+                "part_13.m4s"
+        ));
+
+        assertThat(parts).containsExactly(
+                new LowLatencyHlsPackager.Part(12, 240, "2026-01-01T00:00:00.000+0000"),
+                new LowLatencyHlsPackager.Part(13, 200, null)
+        );
+    }
+
+    private void writeParts(long from, long toInclusive) throws Exception {
+        StringBuilder pl = new StringBuilder("#EXTM3U\n#EXT-X-VERSION:7\n#EXT-X-TARGETDURATION:1\n")
+                .append("#EXT-X-MEDIA-SEQUENCE:").append(from).append('\n')
+                .append("#EXT-X-MAP:URI=\"init.mp4\"\n");
+        for (long n = from; n <= toInclusive; n++) {
+            Files.writeString(dir.resolve("part_" + n + ".m4s"), "p" + n);
+            pl.append("#EXTINF:0.200000,\npart_").append(n).append(".m4s\n");
+        }
+        Files.writeString(dir.resolve("parts.m3u8"), pl);
+    }
+}
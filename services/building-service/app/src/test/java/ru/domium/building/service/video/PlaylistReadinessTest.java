@@ -0,0 +1,57 @@
+package ru.domium.building.service.video;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PlaylistReadinessTest {
+    @TempDir
+    Path dir;
+
+    private final PlaylistReadiness readiness = new PlaylistReadiness(props());
+
+    @AfterEach
+    void tearDown() {
+        readiness.shutdown();
+    }
+
+    @Test
+    void await_completesWhenPlaylistAppears() throws Exception {
+        Path playlist = dir.resolve("index.m3u8");
+        long startedAt = System.currentTimeMillis();
+
+        CompletableFuture<Boolean> first = readiness.await(playlist, startedAt, 5_000);
+        CompletableFuture<Boolean> second = readiness.await(playlist, startedAt, 5_000);
+        assertThat(first).isNotDone();
+
+        Files.writeString(playlist, "#EXTM3U\n");
+
+        assertThat(first.get(2, TimeUnit.SECONDS)).isTrue();
+        assertThat(second.get(2, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void await_timesOut_andIgnoresPlaylistOfPreviousRun() throws Exception {
+        Path playlist = dir.resolve("index.m3u8");
+        Files.writeString(playlist, "#EXTM3U\n");
+        Files.setLastModifiedTime(playlist, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        CompletableFuture<Boolean> ready = readiness.await(playlist, System.currentTimeMillis(), 100);
+
+        assertThat(ready.get(2, TimeUnit.SECONDS)).isFalse();
+    }
+
+    private static VideoStreamingProperties props() {
+        VideoStreamingProperties props = new VideoStreamingProperties();
+        props.setReadyPollMs(10);
+        return props;
+    }
+}
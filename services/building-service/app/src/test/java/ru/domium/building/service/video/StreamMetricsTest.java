@@ -0,0 +1,99 @@
+package ru.domium.building.service.video;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StreamMetrics metrics = new StreamMetrics(registry);
+    private final UUID cameraId = UUID.randomUUID();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void progressLines_updateGaugesAndCounters_andAreNotLogged() {
+        metrics.processStarted(cameraId, UUID.randomUUID(), true, null);
+
+        assertThat(metrics.onOutputLine(cameraId, "fps=24.5")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "bitrate=1850.3kbits/s")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "speed=1.01x")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "drop_frames=3")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "drop_frames=5")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "stream_0_0_q=23.0")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "progress=continue")).isTrue();
+        assertThat(metrics.onOutputLine(cameraId, "[rtsp @ 0x1] method DESCRIBE failed: 404 Not Found")).isFalse();
+
+        assertThat(gauge("video.stream.fps")).isEqualTo(24.5);
+        assertThat(gauge("video.stream.bitrate.kbps")).isEqualTo(1850.3);
+        assertThat(gauge("video.stream.speed")).isEqualTo(1.01);
+        assertThat(registry.get("video.stream.frames.dropped").counter().count()).isEqualTo(5);
+
+        // новый процесс начинает счёт кадров с нуля
+        metrics.processExited(cameraId);
+        metrics.processStarted(cameraId, UUID.randomUUID(), true, null);
+        metrics.onOutputLine(cameraId, "drop_frames=2");
+        assertThat(registry.get("video.stream.frames.dropped").counter().count()).isEqualTo(7);
+    }
+
+    @Test
+    void retired_removesCameraGauges_andDecrementsActive() {
+        metrics.processStarted(cameraId, UUID.randomUUID(), false, null);
+        assertThat(registry.get("video.streams.active").tag("mode", "copy").gauge().value()).isEqualTo(1);
+
+        metrics.retired(cameraId);
+
+        assertThat(registry.find("video.stream.fps").gauge()).isNull();
+        assertThat(registry.get("video.streams.active").tag("mode", "copy").gauge().value()).isZero();
+    }
+
+    @Test
+    void scan_recordsFirstSegmentAndWriteLatency() throws Exception {
+        Path playlist = dir.resolve("index.m3u8");
+        metrics.processStarted(cameraId, UUID.randomUUID(), true, playlist);
+        OffsetDateTime segmentStart = OffsetDateTime.now().minusSeconds(2);
+        Files.writeString(playlist, String.join("\n",
+                "#EXTM3U",
+                "#EXT-X-PROGRAM-DATE-TIME:" + segmentStart.format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXX")),
+                "#EXTINF:1.000000,",
+                "seg_00000001.ts",
+                ""));
+
+        metrics.scanPlaylists();
+        metrics.scanPlaylists(); // плейлист не менялся — повторно не считаем
+
+        assertThat(registry.get("video.stream.first.segment").timer().count()).isEqualTo(1);
+        assertThat(registry.get("video.stream.segment.write.latency").timer().count()).isEqualTo(1);
+        assertThat(registry.get("video.stream.segment.write.latency").timer().max(TimeUnit.MILLISECONDS))
+                .isBetween(500.0, 5_000.0);
+    }
+
+    @Test
+    void lastSegmentEndMs_continuesFromPreviousProgramDateTime() {
+        Long end = StreamMetrics.lastSegmentEndMs(List.of(
+                "#EXT-X-PROGRAM-DATE-TIME:2026-01-01T00:00:00.000+0000",
+                "#EXTINF:1.5,",
+                "seg_1.ts",
+                "#EXTINF:0.5,",
+                "seg_2.ts"
+        ));
+
+        assertThat(end).isEqualTo(OffsetDateTime.parse("2026-01-01T00:00:02Z").toInstant().toEpochMilli());
+        assertThat(StreamMetrics.lastSegmentEndMs(List.of("#EXTINF:1.0,", "seg_1.ts"))).isNull();
+    }
+
+    private double gauge(String name) {
+        return registry.get(name).tag("camera", cameraId.toString()).gauge().value();
+    }
+}
@@ -2,8 +2,10 @@ package ru.domium.documentservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DocumentServiceApplication {
   public static void main(String[] args) {
     SpringApplication.run(DocumentServiceApplication.class, args);
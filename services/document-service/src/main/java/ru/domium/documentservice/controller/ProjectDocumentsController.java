@@ -93,6 +93,27 @@ public class ProjectDocumentsController {
     return docs.stream().map(DocumentMapper::toDto).toList();
   }
 
+  @Operation(
+      summary = "Сводка статусов документов этапа",
+      description = """
+        Число документов этапа по статусам (без удалённых) — для проверки подписания этапа
+        без выгрузки самих документов. Группы из excludeGroupType не учитываются.
+        """
+  )
+  @ApiResponses({
+      @ApiResponse(responseCode = "200", description = "Счётчики по статусам"),
+      @ApiResponse(responseCode = "403", description = "Недостаточно прав")
+  })
+  @PreAuthorize("hasAnyRole('MANAGER','ADMIN')")
+  @GetMapping("/status-counts")
+  public StageStatusCountsDto statusCounts(@PathVariable UUID projectId,
+      @RequestParam UUID stage,
+      @RequestParam(name = "excludeGroupType", required = false) Set<DocumentGroupType> excludeGroupTypes) {
+    Map<DocumentStatus, Long> counts = workflow.countStageDocumentsByStatus(projectId, stage, excludeGroupTypes);
+    long total = counts.values().stream().mapToLong(Long::longValue).sum();
+    return new StageStatusCountsDto(projectId, stage, total, counts);
+  }
+
   @Operation(
       summary = "Загрузить документ этапа (CLIENT/MANAGER)",
       description = """
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import ru.domium.documentservice.model.*;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public final class DocumentDtos {
@@ -31,6 +32,8 @@ public final class DocumentDtos {
       TemplateInfo template
   ) {}
 
+  public record StageStatusCountsDto(UUID projectId, UUID stageCode, long total, Map<DocumentStatus, Long> counts) {}
+
   public record FileVersionDto(UUID id, int version, String fileStorageId, Instant createdAt, ActorType createdByType, UUID createdById) {}
 
   public record CommentDto(UUID id, UUID documentId, CommentAuthorType authorType, UUID authorId, String text, Instant createdAt) {}
@@ -48,4 +51,10 @@ public final class DocumentDtos {
   public record RejectRequest(String comment) {}
 
   public record AdvanceStageRequest(UUID nextStage) {}
+
+  /**
+   * Событие документа для потребителей outbox; {@code seq} монотонно растёт для одного документа.
+   */
+  public record DocumentEventDto(UUID eventId, long seq, DocumentEventType type, UUID documentId, UUID projectId,
+                                 UUID stageCode, DocumentGroupType groupType, DocumentStatus status, Instant occurredAt) {}
 }
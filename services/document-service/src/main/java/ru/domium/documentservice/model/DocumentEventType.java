@@ -0,0 +1,11 @@
+package ru.domium.documentservice.model;
+
+public enum DocumentEventType {
+  UPLOADED,
+  NEW_VERSION,
+  VIEWED,
+  SIGNED,
+  REJECTED,
+  DELETED,
+  SNAPSHOT
+}
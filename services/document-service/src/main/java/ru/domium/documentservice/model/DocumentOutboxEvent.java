@@ -0,0 +1,67 @@
+package ru.domium.documentservice.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Событие жизненного цикла документа, записанное в той же транзакции, что и смена статуса.
+ * Несёт полное текущее состояние документа: потребителю достаточно последнего события по id.
+ */
+@Getter
+@Setter
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "document_outbox")
+public class DocumentOutboxEvent {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Column(name = "event_id", nullable = false, updatable = false)
+  private UUID eventId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "event_type", nullable = false)
+  private DocumentEventType eventType;
+
+  @Column(name = "document_id", nullable = false)
+  private UUID documentId;
+
+  @Column(name = "project_id", nullable = false)
+  private UUID projectId;
+
+  @Column(name = "stage_code", nullable = false)
+  private UUID stageCode;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "group_type")
+  private DocumentGroupType groupType;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "status", nullable = false)
+  private DocumentStatus status;
+
+  @Column(name = "created_at", nullable = false, updatable = false)
+  private Instant createdAt;
+
+  @Column(name = "published_at")
+  private Instant publishedAt;
+
+  @Column(name = "attempts", nullable = false)
+  private int attempts;
+
+  @PrePersist
+  void onCreate() {
+    if (eventId == null) {
+      eventId = UUID.randomUUID();
+    }
+    this.createdAt = Instant.now();
+  }
+}
@@ -3,6 +3,7 @@ package ru.domium.documentservice.repository;
 import ru.domium.documentservice.model.DocumentInstance;
 import ru.domium.documentservice.model.DocumentStatus;
 import ru.domium.documentservice.model.DocumentGroupType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -43,6 +44,25 @@ public interface DocumentInstanceRepository extends JpaRepository<DocumentInstan
       + "and d.status <> 'SIGNED' and d.status <> 'DELETE'")
   long countUnsignedRequiredForStage(@Param("projectId") UUID projectId, @Param("stage") UUID stage);
 
+  /**
+   * Число документов этапа по статусам (без удалённых и без групп {@code excludedGroupTypes}).
+   * Документы без группы учитываются.
+   */
+  @Query("select d.status as status, count(d) as count from DocumentInstance d left join d.group g "
+      + "where d.projectId = :projectId and d.stageCode = :stage and d.status <> 'DELETE' "
+      + "and (:excludeNone = true or g is null or g.type is null or g.type not in :excludedGroupTypes) "
+      + "group by d.status")
+  List<StatusCount> countByStatusForStage(@Param("projectId") UUID projectId,
+                                          @Param("stage") UUID stage,
+                                          @Param("excludeNone") boolean excludeNone,
+                                          @Param("excludedGroupTypes") Collection<DocumentGroupType> excludedGroupTypes);
+
+  interface StatusCount {
+    DocumentStatus getStatus();
+
+    long getCount();
+  }
+
   @Lock(LockModeType.PESSIMISTIC_WRITE)
   @Query("select d from DocumentInstance d where d.id = :id")
   Optional<DocumentInstance> findByIdForUpdate(@Param("id") UUID id);
@@ -0,0 +1,41 @@
+package ru.domium.documentservice.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.domium.documentservice.model.DocumentOutboxEvent;
+
+public interface DocumentOutboxRepository extends JpaRepository<DocumentOutboxEvent, Long> {
+
+  /**
+   * Забирает пачку неотправленных событий. Строки остаются заблокированными до конца транзакции,
+   * параллельные ретрансляторы (другие экземпляры сервиса) их пропускают.
+   */
+  @Query(nativeQuery = true, value = """
+      select * from document_outbox
+       where published_at is null
+       order by id
+       limit :limit
+       for update skip locked
+      """)
+  List<DocumentOutboxEvent> claimBatch(@Param("limit") int limit);
+
+  @Modifying
+  @Query("update DocumentOutboxEvent e set e.publishedAt = :now where e.id in :ids")
+  int markPublished(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+  @Modifying
+  @Query("update DocumentOutboxEvent e set e.attempts = e.attempts + 1 where e.id in :ids")
+  int incrementAttempts(@Param("ids") Collection<Long> ids);
+
+  @Modifying
+  @Query("delete from DocumentOutboxEvent e where e.publishedAt < :before")
+  int deletePublishedBefore(@Param("before") Instant before);
+
+  @Query("select count(e) from DocumentOutboxEvent e where e.publishedAt is null")
+  long countPending();
+}
@@ -0,0 +1,62 @@
+package ru.domium.documentservice.service;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import ru.domium.documentservice.dto.DocumentDtos.DocumentEventDto;
+
+/**
+ * Доставляет события в building-service (экземпляр выбирается через Consul по кругу).
+ */
+@Component
+@ConditionalOnProperty(name = "domium.documents.outbox.relay-enabled", havingValue = "true")
+public class BuildingServiceEventSink implements DocumentEventSink {
+
+  static final String SECRET_HEADER = "X-Documents-Secret";
+
+  private final DiscoveryClient discoveryClient;
+  private final RestClient restClient;
+  private final String serviceId;
+  private final String path;
+  private final String secret;
+  private final AtomicInteger next = new AtomicInteger();
+
+  public BuildingServiceEventSink(DiscoveryClient discoveryClient,
+                                  RestClient.Builder restClientBuilder,
+                                  @Value("${domium.documents.outbox.target-service-id:buildings}") String serviceId,
+                                  @Value("${domium.documents.outbox.target-path:/internal/documents/events}") String path,
+                                  @Value("${domium.documents.outbox.secret:}") String secret,
+                                  @Value("${domium.documents.outbox.timeout-ms:5000}") int timeoutMs) {
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout(timeoutMs);
+    requestFactory.setReadTimeout(timeoutMs);
+    this.discoveryClient = discoveryClient;
+    this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+    this.serviceId = serviceId;
+    this.path = path;
+    this.secret = secret;
+  }
+
+  @Override
+  public void publish(List<DocumentEventDto> events) {
+    List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+    if (instances == null || instances.isEmpty()) {
+      throw new IllegalStateException("No instances of " + serviceId + " registered");
+    }
+    ServiceInstance instance = instances.get(Math.floorMod(next.getAndIncrement(), instances.size()));
+    restClient.post()
+        .uri(instance.getUri().resolve(path))
+        .contentType(MediaType.APPLICATION_JSON)
+        .header(SECRET_HEADER, secret)
+        .body(events)
+        .retrieve()
+        .toBodilessEntity();
+  }
+}
@@ -0,0 +1,32 @@
+package ru.domium.documentservice.service;
+
+import org.springframework.stereotype.Component;
+import ru.domium.documentservice.model.DocumentEventType;
+import ru.domium.documentservice.model.DocumentInstance;
+import ru.domium.documentservice.model.DocumentOutboxEvent;
+import ru.domium.documentservice.repository.DocumentOutboxRepository;
+
+/**
+ * Пишет событие документа в outbox. Вызывается внутри транзакции, меняющей документ:
+ * событие фиксируется вместе со сменой статуса или не фиксируется вовсе.
+ */
+@Component
+public class DocumentEventOutbox {
+
+  private final DocumentOutboxRepository outboxRepo;
+
+  public DocumentEventOutbox(DocumentOutboxRepository outboxRepo) {
+    this.outboxRepo = outboxRepo;
+  }
+
+  public void record(DocumentInstance doc, DocumentEventType type) {
+    DocumentOutboxEvent event = new DocumentOutboxEvent();
+    event.setEventType(type);
+    event.setDocumentId(doc.getId());
+    event.setProjectId(doc.getProjectId());
+    event.setStageCode(doc.getStageCode());
+    event.setGroupType(doc.getGroup() != null ? doc.getGroup().getType() : null);
+    event.setStatus(doc.getStatus());
+    outboxRepo.save(event);
+  }
+}
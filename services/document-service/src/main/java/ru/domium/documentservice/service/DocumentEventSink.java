@@ -0,0 +1,13 @@
+package ru.domium.documentservice.service;
+
+import java.util.List;
+import ru.domium.documentservice.dto.DocumentDtos.DocumentEventDto;
+
+/**
+ * Получатель событий outbox. Доставка «хотя бы один раз»: получатель обязан быть идемпотентным
+ * и выбрасывать исключение, если пачка не принята целиком.
+ */
+public interface DocumentEventSink {
+
+  void publish(List<DocumentEventDto> events);
+}
@@ -0,0 +1,102 @@
+package ru.domium.documentservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.domium.documentservice.dto.DocumentDtos.DocumentEventDto;
+import ru.domium.documentservice.model.DocumentOutboxEvent;
+import ru.domium.documentservice.repository.DocumentOutboxRepository;
+
+/**
+ * Ретранслятор outbox: пачками отправляет неотправленные события получателю и помечает их отправленными.
+ * Пачка забирается через {@code FOR UPDATE SKIP LOCKED}, поэтому экземпляры сервиса не делят одну пачку.
+ * При ошибке пачка остаётся неотправленной и уходит повторно в следующем цикле — получатель
+ * отбрасывает повторы по {@code seq}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "domium.documents.outbox.relay-enabled", havingValue = "true")
+public class DocumentOutboxRelay {
+
+  private final DocumentOutboxRepository outboxRepo;
+  private final DocumentEventSink sink;
+  private final TransactionTemplate transactionTemplate;
+  private final int batchSize;
+  private final Duration retention;
+  private final Counter published;
+  private final Counter failed;
+
+  public DocumentOutboxRelay(DocumentOutboxRepository outboxRepo,
+                             DocumentEventSink sink,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${domium.documents.outbox.batch-size:200}") int batchSize,
+                             @Value("${domium.documents.outbox.retention-hours:72}") long retentionHours) {
+    this.outboxRepo = outboxRepo;
+    this.sink = sink;
+    this.transactionTemplate = transactionTemplate;
+    this.batchSize = batchSize;
+    this.retention = Duration.ofHours(retentionHours);
+    this.published = Counter.builder("documents_outbox_published_total").register(meterRegistry);
+    this.failed = Counter.builder("documents_outbox_failed_batches_total").register(meterRegistry);
+    Gauge.builder("documents_outbox_pending", outboxRepo, DocumentOutboxRepository::countPending)
+        .register(meterRegistry);
+  }
+
+  @Scheduled(fixedDelayString = "${domium.documents.outbox.relay-period-ms:1000}")
+  public void relay() {
+    // полные пачки отправляем подряд, неполная означает, что очередь разобрана
+    int sent;
+    do {
+      sent = relayBatch();
+    } while (sent >= batchSize);
+  }
+
+  /**
+   * Отправляет одну пачку. Возвращает число отправленных событий (0 — очередь пуста или ошибка доставки).
+   */
+  public int relayBatch() {
+    Integer sent = transactionTemplate.execute(status -> {
+      List<DocumentOutboxEvent> batch = outboxRepo.claimBatch(batchSize);
+      if (batch.isEmpty()) {
+        return 0;
+      }
+      List<Long> ids = batch.stream().map(DocumentOutboxEvent::getId).toList();
+      try {
+        sink.publish(batch.stream().map(DocumentOutboxRelay::toDto).toList());
+      } catch (RuntimeException e) {
+        log.warn("Failed to relay {} document events starting at {}: {}", ids.size(), ids.getFirst(), e.getMessage());
+        outboxRepo.incrementAttempts(ids);
+        failed.increment();
+        return 0;
+      }
+      outboxRepo.markPublished(ids, Instant.now());
+      published.increment(ids.size());
+      return ids.size();
+    });
+    return sent != null ? sent : 0;
+  }
+
+  @Scheduled(fixedDelayString = "${domium.documents.outbox.cleanup-period-ms:3600000}")
+  public void cleanup() {
+    Integer removed = transactionTemplate.execute(status ->
+        outboxRepo.deletePublishedBefore(Instant.now().minus(retention)));
+    if (removed != null && removed > 0) {
+      log.info("Removed {} published document events", removed);
+    }
+  }
+
+  static DocumentEventDto toDto(DocumentOutboxEvent e) {
+    return new DocumentEventDto(e.getEventId(), e.getId(), e.getEventType(), e.getDocumentId(), e.getProjectId(),
+        e.getStageCode(), e.getGroupType(), e.getStatus(), e.getCreatedAt());
+  }
+}
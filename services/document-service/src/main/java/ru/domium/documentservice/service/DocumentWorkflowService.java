@@ -39,6 +39,7 @@ public class DocumentWorkflowService {
   private final Counter documentsSigned;
   private final Counter documentsRejected;
   private final ObjectMapper objectMapper;
+  private final DocumentEventOutbox events;
 
   public DocumentWorkflowService(
       DocumentTemplateRepository templateRepo,
@@ -53,7 +54,8 @@ public class DocumentWorkflowService {
       Counter documentsGeneratedTotal,
       Counter documentsSignedTotal,
       Counter documentsRejectedTotal,
-      ObjectMapper objectMapper) {
+      ObjectMapper objectMapper,
+      DocumentEventOutbox events) {
     this.templateRepo = templateRepo;
     this.groupRepo = groupRepo;
     this.docRepo = docRepo;
@@ -67,6 +69,7 @@ public class DocumentWorkflowService {
     this.documentsSigned = documentsSignedTotal;
     this.documentsRejected = documentsRejectedTotal;
     this.objectMapper = objectMapper;
+    this.events = events;
   }
 
   public List<DocumentInstance> listProjectDocuments(UUID projectId, DocumentStatus status,
@@ -79,6 +82,18 @@ public class DocumentWorkflowService {
     return docRepo.findForProjectAndUser(projectId, userId, status, stage, groupType);
   }
 
+  public Map<DocumentStatus, Long> countStageDocumentsByStatus(UUID projectId, UUID stage,
+      Set<DocumentGroupType> excludedGroupTypes) {
+    // пустой список в NOT IN не везде допустим: без исключений передаём флаг и список-заглушку
+    boolean excludeNone = excludedGroupTypes == null || excludedGroupTypes.isEmpty();
+    Collection<DocumentGroupType> excluded = excludeNone ? EnumSet.allOf(DocumentGroupType.class) : excludedGroupTypes;
+    Map<DocumentStatus, Long> counts = new EnumMap<>(DocumentStatus.class);
+    for (var row : docRepo.countByStatusForStage(projectId, stage, excludeNone, excluded)) {
+      counts.put(row.getStatus(), row.getCount());
+    }
+    return counts;
+  }
+
   public List<DocumentInstance> listGroupDocuments(UUID groupId) {
     return docRepo.findAllByGroup_Id(groupId);
   }
@@ -101,6 +116,7 @@ public class DocumentWorkflowService {
       doc.setStatus(DocumentStatus.VIEWED);
       doc.setViewedAt(Instant.now());
       docRepo.save(doc);
+      events.record(doc, DocumentEventType.VIEWED);
       audit(doc, actorType, actorId, AuditAction.VIEWED, json());
     }
     return storage.load(BUCKET_DOCUMENTS, doc.getCurrentFileStorageId());
@@ -120,6 +136,7 @@ public class DocumentWorkflowService {
       doc.setStatus(DocumentStatus.VIEWED);
       doc.setViewedAt(Instant.now());
       docRepo.save(doc);
+      events.record(doc, DocumentEventType.VIEWED);
       audit(doc, actorType, actorId, AuditAction.VIEWED, json());
     }
     return storage.loadWithMetadata(BUCKET_DOCUMENTS, doc.getCurrentFileStorageId());
@@ -134,6 +151,7 @@ public class DocumentWorkflowService {
     }
     doc.setStatus(DocumentStatus.DELETE);
     docRepo.save(doc);
+    events.record(doc, DocumentEventType.DELETED);
     if (comment != null && !comment.isBlank()) {
       DocumentComment c = new DocumentComment();
       c.setDocument(doc);
@@ -198,6 +216,7 @@ public class DocumentWorkflowService {
       doc.setStatus(DocumentStatus.SIGNED);
       doc.setSignedAt(Instant.now());
       docRepo.save(doc);
+      events.record(doc, DocumentEventType.SIGNED);
       documentsSigned.increment();
     }
 
@@ -217,6 +236,7 @@ public class DocumentWorkflowService {
     doc.setStatus(DocumentStatus.REJECTED);
     doc.setRejectedAt(Instant.now());
     docRepo.save(doc);
+    events.record(doc, DocumentEventType.REJECTED);
 
     if (comment != null && !comment.isBlank()) {
       DocumentComment c = new DocumentComment();
@@ -263,6 +283,7 @@ public class DocumentWorkflowService {
     doc.setStatus(DocumentStatus.SENT_TO_USER);
     doc.setSentAt(Instant.now());
     docRepo.save(doc);
+    events.record(doc, DocumentEventType.NEW_VERSION);
 
     if (comment != null && !comment.isBlank()) {
       DocumentComment c = new DocumentComment();
@@ -330,6 +351,7 @@ public class DocumentWorkflowService {
     doc.setVersion(1);
     doc.setCurrentFileStorageId(fileId);
     doc = docRepo.save(doc);
+    events.record(doc, DocumentEventType.UPLOADED);
 
     DocumentFileVersion fv = new DocumentFileVersion();
     fv.setDocument(doc);
@@ -391,6 +413,7 @@ public class DocumentWorkflowService {
     doc.setVersion(1);
     doc.setCurrentFileStorageId(fileId);
     doc = docRepo.save(doc);
+    events.record(doc, DocumentEventType.UPLOADED);
 
     DocumentFileVersion fv = new DocumentFileVersion();
     fv.setDocument(doc);
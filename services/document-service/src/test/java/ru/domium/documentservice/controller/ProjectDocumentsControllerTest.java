@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.security.oauth2.jwt.Jwt;
 import ru.domium.documentservice.dto.DocumentDtos.DocumentInstanceDto;
+import ru.domium.documentservice.dto.DocumentDtos.StageStatusCountsDto;
 import ru.domium.documentservice.model.*;
 import ru.domium.documentservice.security.AuthorizationService;
 import ru.domium.documentservice.service.DocumentWorkflowService;
@@ -12,6 +13,7 @@ import ru.domium.documentservice.service.DocumentWorkflowService;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -131,6 +133,24 @@ class ProjectDocumentsControllerTest {
     verifyNoInteractions(authz);
   }
 
+  @Test
+  void statusCounts_shouldSumCountsFromService() {
+    UUID projectId = UUID.randomUUID();
+    UUID stage = UUID.randomUUID();
+    Set<DocumentGroupType> excluded = Set.of(DocumentGroupType.PHOTO_REPORTS);
+
+    when(workflow.countStageDocumentsByStatus(projectId, stage, excluded))
+        .thenReturn(Map.of(DocumentStatus.SIGNED, 3L, DocumentStatus.SENT_TO_USER, 2L));
+
+    StageStatusCountsDto result = controller.statusCounts(projectId, stage, excluded);
+
+    assertEquals(5, result.total());
+    assertEquals(3L, result.counts().get(DocumentStatus.SIGNED));
+    assertEquals(stage, result.stageCode());
+    verify(workflow).countStageDocumentsByStatus(projectId, stage, excluded);
+    verifyNoInteractions(authz);
+  }
+
   // -------------------- helpers --------------------
 
   private static Jwt jwtWithSubjectAndRoles(UUID subject, List<String> roles) {
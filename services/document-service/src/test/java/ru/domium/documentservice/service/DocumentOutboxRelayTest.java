@@ -0,0 +1,101 @@
+package ru.domium.documentservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.domium.documentservice.dto.DocumentDtos.DocumentEventDto;
+import ru.domium.documentservice.model.DocumentEventType;
+import ru.domium.documentservice.model.DocumentGroupType;
+import ru.domium.documentservice.model.DocumentOutboxEvent;
+import ru.domium.documentservice.model.DocumentStatus;
+import ru.domium.documentservice.repository.DocumentOutboxRepository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentOutboxRelayTest {
+
+  @Mock private DocumentOutboxRepository outboxRepo;
+  @Mock private DocumentEventSink sink;
+  @Mock private TransactionTemplate transactionTemplate;
+
+  private DocumentOutboxRelay relay;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(transactionTemplate.execute(any())).thenAnswer(inv ->
+        inv.<TransactionCallback<?>>getArgument(0).doInTransaction(new SimpleTransactionStatus()));
+    relay = new DocumentOutboxRelay(outboxRepo, sink, transactionTemplate, new SimpleMeterRegistry(), 2, 72);
+  }
+
+  @Test
+  void shouldPublishBatchesUntilQueueIsDrained_andMarkThemPublished() {
+    DocumentOutboxEvent e1 = event(1L, DocumentStatus.SENT_TO_USER);
+    DocumentOutboxEvent e2 = event(2L, DocumentStatus.SIGNED);
+    DocumentOutboxEvent e3 = event(3L, DocumentStatus.DELETE);
+    when(outboxRepo.claimBatch(2)).thenReturn(List.of(e1, e2), List.of(e3));
+
+    relay.relay();
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<DocumentEventDto>> batches = ArgumentCaptor.forClass(List.class);
+    verify(sink, times(2)).publish(batches.capture());
+    List<DocumentEventDto> first = batches.getAllValues().get(0);
+    assertEquals(List.of(1L, 2L), first.stream().map(DocumentEventDto::seq).toList());
+    assertEquals(e2.getEventId(), first.get(1).eventId());
+    assertEquals(DocumentStatus.SIGNED, first.get(1).status());
+    assertEquals(DocumentGroupType.STAGE_DOCS, first.get(1).groupType());
+
+    verify(outboxRepo).markPublished(eq(List.of(1L, 2L)), any(Instant.class));
+    verify(outboxRepo).markPublished(eq(List.of(3L)), any(Instant.class));
+    verify(outboxRepo, never()).incrementAttempts(any());
+  }
+
+  @Test
+  void shouldLeaveBatchUnpublished_whenSinkFails() {
+    when(outboxRepo.claimBatch(2)).thenReturn(List.of(event(7L, DocumentStatus.SIGNED), event(8L, DocumentStatus.VIEWED)));
+    doThrow(new IllegalStateException("down")).when(sink).publish(anyList());
+
+    assertEquals(0, relay.relayBatch());
+
+    verify(outboxRepo).incrementAttempts(List.of(7L, 8L));
+    verify(outboxRepo, never()).markPublished(any(), any());
+  }
+
+  @Test
+  void shouldDoNothing_whenQueueIsEmpty() {
+    when(outboxRepo.claimBatch(2)).thenReturn(List.of());
+
+    relay.relay();
+
+    verifyNoInteractions(sink);
+    verify(outboxRepo, never()).markPublished(any(), any());
+  }
+
+  private DocumentOutboxEvent event(long id, DocumentStatus status) {
+    DocumentOutboxEvent e = new DocumentOutboxEvent();
+    e.setId(id);
+    e.setEventId(UUID.randomUUID());
+    e.setEventType(DocumentEventType.SNAPSHOT);
+    e.setDocumentId(UUID.randomUUID());
+    e.setProjectId(UUID.randomUUID());
+    e.setStageCode(UUID.randomUUID());
+    e.setGroupType(DocumentGroupType.STAGE_DOCS);
+    e.setStatus(status);
+    e.setCreatedAt(Instant.now());
+    return e;
+  }
+}
@@ -38,6 +38,7 @@ class DocumentWorkflowServiceTest {
   @Mock private DocumentAuditLogRepository auditRepo;
   @Mock private FileStorageService storage;
   @Mock private PdfGenerator pdfGenerator;
+  @Mock private DocumentEventOutbox events;
 
   @Mock private Counter documentsGeneratedTotal;
   @Mock private Counter documentsSignedTotal;
@@ -62,7 +63,8 @@ class DocumentWorkflowServiceTest {
         documentsGeneratedTotal,
         documentsSignedTotal,
         documentsRejectedTotal,
-        objectMapper
+        objectMapper,
+        events
     );
   }
 
@@ -197,6 +199,7 @@ class DocumentWorkflowServiceTest {
       assertNotNull(saved.getSentAt());
       assertFalse(saved.getSentAt().isBefore(before));
       assertFalse(saved.getSentAt().isAfter(after));
+      verify(events).record(doc, DocumentEventType.NEW_VERSION);
 
       verify(commentRepo, never()).save(any());
 
@@ -428,6 +431,7 @@ class DocumentWorkflowServiceTest {
         assertEquals("fid", fv.getFileStorageId());
         assertEquals(ActorType.MANAGER, fv.getCreatedByType());
         assertEquals(providerId, fv.getCreatedById());
+        verify(events).record(created, DocumentEventType.UPLOADED);
 
         verify(auditRepo, times(2)).save(auditCap.capture());
         List<DocumentAuditLog> audits = auditCap.getAllValues();